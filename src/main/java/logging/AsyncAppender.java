@@ -0,0 +1,101 @@
+package logging;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+appender asincrono con coda limitata
+chi registra un evento non attende mai: se la coda è piena l'evento viene scartato e conteggiato
+la coda è senza lock (ConcurrentLinkedQueue, più produttori e un solo consumatore): gli event loop che registrano eventi non si
+contendono un monitor, il limite è un contatore atomico e il thread di scrittura viene risvegliato solo quando è fermo in attesa
+un thread dedicato formatta gli eventi e li scrive sul logger java.util.logging corrispondente
+ */
+public final class AsyncAppender {
+
+	static Logger logger = Logger.getLogger("[AsyncAppender]");
+	static final String CAPACITY_PROPERTY = "ttt.log.queue"; //proprietà di sistema con la capacità della coda
+	private static final AsyncAppender INSTANCE = new AsyncAppender(Integer.getInteger(CAPACITY_PROPERTY, 8192));
+
+	private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(10); //attesa massima del thread di scrittura a coda vuota
+
+	private final ConcurrentLinkedQueue<LogEvent> queue; //eventi in attesa di essere scritti
+	private final AtomicInteger size; //eventi in coda (la dimensione della coda senza lock non è costante da calcolare)
+	private final int capacity; //eventi in coda oltre i quali i nuovi vengono scartati
+	private final AtomicLong dropped; //eventi scartati perché la coda era piena
+	private final Thread writer; //thread di scrittura
+	private volatile boolean idle; //il thread di scrittura è fermo in attesa di eventi
+
+	private AsyncAppender(int capacity) {
+		queue = new ConcurrentLinkedQueue<>();
+		size = new AtomicInteger();
+		this.capacity = capacity;
+		dropped = new AtomicLong();
+		writer = new Thread(this::writeLoop, "async-log-appender");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	//appender condiviso
+	static AsyncAppender instance() {
+		return INSTANCE;
+	}
+
+	//accoda un evento senza bloccare
+	void append(LogEvent event) {
+		if (size.incrementAndGet() > capacity) {
+			size.decrementAndGet();
+			dropped.incrementAndGet();
+			return;
+		}
+		queue.offer(event);
+		if (idle) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	//numero di eventi scartati
+	public static long droppedEvents() {
+		return INSTANCE.dropped.get();
+	}
+
+	//numero di eventi in attesa
+	public static int queuedEvents() {
+		return INSTANCE.size.get();
+	}
+
+	//ciclo del thread di scrittura
+	private void writeLoop() {
+		long reportedDrops = 0;
+		while (true) {
+			try {
+				var event = queue.poll();
+				if (event == null) {
+					idle = true;
+					if (queue.isEmpty()) { //ricontrolla dopo aver segnalato l'attesa: un evento accodato nel frattempo non resta in coda
+						LockSupport.parkNanos(this, IDLE_PARK);
+					}
+					idle = false;
+					if (Thread.interrupted()) {
+						return;
+					}
+					continue;
+				}
+				size.decrementAndGet();
+				var logger = event.logger();
+				logger.target().log(event.level(), event.format());
+				long drops = dropped.get();
+				if (drops != reportedDrops && queue.isEmpty()) { //segnala gli eventi persi quando la coda si svuota
+					Logger.getLogger(logger.name()).log(Level.WARNING, "dropped=" + (drops - reportedDrops) + " reason=log-queue-full");
+					reportedDrops = drops;
+				}
+			} catch (RuntimeException ex) { //un evento che non si riesce a formattare non ferma il thread di scrittura
+				logger.log(Level.SEVERE, "cannot write log event", ex);
+			}
+		}
+	}
+}
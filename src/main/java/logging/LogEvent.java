@@ -0,0 +1,105 @@
+package logging;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.logging.Level;
+
+/*
+evento di log strutturato: sequenza di coppie chiave=valore associate a una rotta
+i valori vengono solo memorizzati; la riga di testo viene costruita dal thread dell'appender
+i campi che contengono credenziali vengono oscurati
+ */
+public class LogEvent {
+
+	static final LogEvent DISABLED = new LogEvent(null, null, null) { //evento vuoto (livello disabilitato o rotta non campionata): ignora tutto
+		public LogEvent kv(String key, Object value) { return this; }
+		public LogEvent kv(String key, long value) { return this; }
+		public void emit() {}
+	};
+	static final Set<String> CREDENTIAL_KEYS = Set.of("password", "passwordHash", "pwd", "secret", "token"); //campi da oscurare
+	static final String REDACTED = "***"; //valore mostrato al posto delle credenziali
+	private static final int INITIAL_FIELDS = 4;
+
+	private final StructuredLogger logger; //logger che ha creato l'evento
+	private final Level level; //livello dell'evento
+	private final String route; //rotta dell'evento
+	private final long timestamp; //istante di creazione (ms)
+	private String[] keys; //chiavi
+	private Object[] values; //valori
+	private int size; //numero di coppie
+
+	LogEvent(StructuredLogger logger, Level level, String route) {
+		this.logger = logger;
+		this.level = level;
+		this.route = route;
+		this.timestamp = logger == null ? 0 : System.currentTimeMillis();
+	}
+
+	//aggiunge una coppia chiave=valore
+	public LogEvent kv(String key, Object value) {
+		if (keys == null) {
+			keys = new String[INITIAL_FIELDS];
+			values = new Object[INITIAL_FIELDS];
+		} else if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		keys[size] = key;
+		values[size] = CREDENTIAL_KEYS.contains(key) ? REDACTED : value;
+		size++;
+		return this;
+	}
+
+	//aggiunge una coppia chiave=valore numerica
+	public LogEvent kv(String key, long value) {
+		return kv(key, (Object) value);
+	}
+
+	//invia l'evento all'appender asincrono
+	public void emit() {
+		AsyncAppender.instance().append(this);
+	}
+
+	//livello dell'evento
+	Level level() {
+		return level;
+	}
+
+	//logger che ha creato l'evento
+	StructuredLogger logger() {
+		return logger;
+	}
+
+	//costruisce la riga chiave=valore (eseguito dal thread dell'appender)
+	String format() {
+		var sb = new StringBuilder(64);
+		sb.append("ts=").append(timestamp).append(" route=").append(route);
+		for (int i = 0; i < size; i++) {
+			sb.append(' ').append(keys[i]).append('=');
+			appendValue(sb, String.valueOf(values[i]));
+		}
+		return sb.toString();
+	}
+
+	//aggiunge un valore, tra virgolette se contiene spazi, virgolette o '='
+	private static void appendValue(StringBuilder sb, String value) {
+		boolean quote = value.isEmpty();
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ' ' || c == '"' || c == '=' || c < 0x20;
+		}
+		if (!quote) {
+			sb.append(value);
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\');
+			}
+			sb.append(c < 0x20 ? ' ' : c);
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,90 @@
+package logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+logger strutturato (chiave=valore) per i percorsi delle richieste
+- costruzione lazy: se il livello è disabilitato o la rotta non viene campionata si ottiene un evento vuoto e nessun messaggio viene costruito
+- campionamento configurabile per rotta (-Dttt.log.sample=makeAMove=0.01,login=1 oppure setSampleRate)
+- scrittura asincrona tramite un appender con coda limitata (fuori dall'event loop)
+ */
+public final class StructuredLogger {
+
+	static final String SAMPLING_PROPERTY = "ttt.log.sample"; //proprietà di sistema con i tassi di campionamento per rotta
+	private static final Map<String, StructuredLogger> loggers = new ConcurrentHashMap<>(); //logger creati, per nome
+	private static final Map<String, Double> sampleRates = new ConcurrentHashMap<>(); //tassi di campionamento per rotta (default 1, ovvero tutti gli eventi)
+
+	static {
+		var config = System.getProperty(SAMPLING_PROPERTY, "");
+		for (var entry: config.split(",")) { //formato: rotta=tasso,rotta=tasso
+			var kv = entry.split("=");
+			if (kv.length == 2) {
+				setSampleRate(kv[0].trim(), Double.parseDouble(kv[1].trim()));
+			}
+		}
+	}
+
+	private final String name; //nome del logger
+	private final Logger target; //logger java.util.logging su cui l'appender scrive le righe
+
+	private StructuredLogger(String name) {
+		this.name = name;
+		this.target = Logger.getLogger(name);
+	}
+
+	//recupera (o crea) il logger con il nome indicato
+	public static StructuredLogger getLogger(String name) {
+		return loggers.computeIfAbsent(name, StructuredLogger::new);
+	}
+
+	//imposta il tasso di campionamento di una rotta (0 = nessun evento, 1 = tutti gli eventi)
+	public static void setSampleRate(String route, double rate) {
+		sampleRates.put(route, rate);
+	}
+
+	//evento di livello FINE (debug) per la rotta indicata: con il livello di default (INFO) non viene costruito
+	public LogEvent debug(String route) {
+		return event(Level.FINE, route);
+	}
+
+	//evento di livello INFO per la rotta indicata
+	public LogEvent info(String route) {
+		return event(Level.INFO, route);
+	}
+
+	//evento di livello WARNING per la rotta indicata
+	public LogEvent warning(String route) {
+		return event(Level.WARNING, route);
+	}
+
+	//crea l'evento solo se il livello è abilitato e la rotta viene campionata, altrimenti restituisce l'evento vuoto
+	private LogEvent event(Level level, String route) {
+		if (!target.isLoggable(level) || !sampled(route)) {
+			return LogEvent.DISABLED;
+		}
+		return new LogEvent(this, level, route);
+	}
+
+	//decide se registrare un evento della rotta
+	private static boolean sampled(String route) {
+		var rate = sampleRates.get(route);
+		if (rate == null || rate >= 1) {
+			return true;
+		}
+		return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+	}
+
+	//nome del logger
+	String name() {
+		return name;
+	}
+
+	//logger su cui scrivere le righe formattate
+	Logger target() {
+		return target;
+	}
+}
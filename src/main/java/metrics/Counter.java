@@ -0,0 +1,31 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+contatore monotono senza lock
+l'incremento usa un LongAdder: i thread in conflitto aggiornano celle diverse (create una sola volta), la lettura somma le celle
+ */
+public final class Counter {
+
+	private final LongAdder value; //valore del contatore
+
+	Counter() {
+		value = new LongAdder();
+	}
+
+	//incrementa il contatore di uno
+	public void inc() {
+		value.increment();
+	}
+
+	//incrementa il contatore del valore indicato
+	public void add(long amount) {
+		value.add(amount);
+	}
+
+	//valore attuale
+	public long get() {
+		return value.sum();
+	}
+}
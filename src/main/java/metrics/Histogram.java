@@ -0,0 +1,89 @@
+package metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+istogramma delle durate (in nanosecondi) con intervalli fissi 1-2.5-5 da 1 µs a 10 s, più l'intervallo oltre l'ultimo limite
+la registrazione non usa lock e non alloca: una ricerca binaria sui limiti e un incremento atomico del contatore dell'intervallo
+l'esposizione riporta i limiti in secondi e i conteggi cumulativi (formato prometheus)
+ */
+public final class Histogram {
+
+	static final long[] BOUNDS = bounds(); //limiti superiori degli intervalli (ns)
+	static final String[] BOUND_LABELS = boundLabels(); //limiti superiori in secondi (etichetta "le")
+	private final AtomicLongArray counts; //conteggio per intervallo (l'ultimo raccoglie i valori oltre l'ultimo limite)
+	private final LongAdder sum; //somma dei valori registrati (ns)
+
+	Histogram() {
+		counts = new AtomicLongArray(BOUNDS.length + 1);
+		sum = new LongAdder();
+	}
+
+	//registra una durata in nanosecondi (i valori negativi contano come zero)
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucket(nanos));
+		sum.add(nanos);
+	}
+
+	//indice dell'intervallo che contiene il valore (primo limite maggiore o uguale)
+	static int bucket(long nanos) {
+		int low = 0;
+		int high = BOUNDS.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (BOUNDS[mid] < nanos) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	//numero di valori registrati
+	public long count() {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	//somma dei valori registrati (ns)
+	public long sum() {
+		return sum.sum();
+	}
+
+	//conteggio dell'intervallo "i"
+	long bucketCount(int i) {
+		return counts.get(i);
+	}
+
+	private static long[] bounds() {
+		var bounds = new long[22];
+		long decade = 1_000; //1 µs
+		for (int i = 0; i < bounds.length; decade *= 10) {
+			bounds[i++] = decade;
+			if (i < bounds.length) {
+				bounds[i++] = decade * 5 / 2;
+			}
+			if (i < bounds.length) {
+				bounds[i++] = decade * 5;
+			}
+		}
+		return bounds;
+	}
+
+	private static String[] boundLabels() {
+		var labels = new String[BOUNDS.length];
+		for (int i = 0; i < BOUNDS.length; i++) {
+			labels[i] = BigDecimal.valueOf(BOUNDS[i], 9).stripTrailingZeros().toPlainString();
+		}
+		return labels;
+	}
+}
@@ -0,0 +1,148 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/*
+registro delle metriche (contatori, istogrammi, gauge) esposte in formato testo prometheus
+un contatore può anche essere mantenuto da un altro componente e letto durante l'esposizione (sempre con il tipo "counter")
+le metriche vengono create una volta (tipicamente in campi statici o all'avvio) e poi aggiornate senza passare dal registro;
+la stessa coppia nome + etichette restituisce sempre la stessa istanza, una gauge registrata di nuovo sostituisce la precedente
+le gauge vengono lette solo durante l'esposizione
+ */
+public final class MetricsRegistry {
+
+	private static final MetricsRegistry GLOBAL = new MetricsRegistry(); //registro condiviso dal processo
+	private final Map<String, Family> families; //nome -> famiglia di metriche (ordinate per nome nell'esposizione)
+
+	//famiglia di metriche con lo stesso nome (una per combinazione di etichette)
+	private record Family(String name, String help, String type, Map<String, Object> children) {}
+
+	public MetricsRegistry() {
+		families = new ConcurrentSkipListMap<>();
+	}
+
+	//registro condiviso dal processo
+	public static MetricsRegistry global() {
+		return GLOBAL;
+	}
+
+	//recupera (o crea) un contatore; "labels" contiene coppie nome, valore
+	public Counter counter(String name, String help, String... labels) {
+		return (Counter) family(name, help, "counter").children().computeIfAbsent(labels(labels), k -> new Counter());
+	}
+
+	//registra un contatore mantenuto altrove (valore monotono letto durante l'esposizione); sostituisce la registrazione precedente
+	public void counter(String name, String help, LongSupplier value, String... labels) {
+		family(name, help, "counter").children().put(labels(labels), value);
+	}
+
+	//recupera (o crea) un istogramma delle durate
+	public Histogram histogram(String name, String help, String... labels) {
+		return (Histogram) family(name, help, "histogram").children().computeIfAbsent(labels(labels), k -> new Histogram());
+	}
+
+	//registra una gauge, letta durante l'esposizione
+	public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+		family(name, help, "gauge").children().put(labels(labels), value);
+	}
+
+	//recupera (o crea) la famiglia; lo stesso nome non può essere usato con tipi diversi
+	private Family family(String name, String help, String type) {
+		var family = families.computeIfAbsent(name, n -> new Family(n, help, type, new ConcurrentSkipListMap<>()));
+		if (!family.type().equals(type)) {
+			throw new IllegalArgumentException("metric " + name + " already registered as " + family.type());
+		}
+		return family;
+	}
+
+	//esposizione di tutte le metriche in formato testo prometheus
+	public String scrape() {
+		var out = new StringBuilder(4096);
+		for (var family: families.values()) {
+			out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+			out.append("# TYPE ").append(family.name()).append(' ').append(family.type()).append('\n');
+			for (var child: family.children().entrySet()) {
+				var labels = child.getKey();
+				var metric = child.getValue();
+				if (metric instanceof Counter) {
+					sample(out, family.name(), labels, null, ((Counter) metric).get());
+				} else if (metric instanceof LongSupplier) {
+					sample(out, family.name(), labels, null, ((LongSupplier) metric).getAsLong());
+				} else if (metric instanceof Histogram) {
+					writeHistogram(out, family.name(), labels, (Histogram) metric);
+				} else {
+					sample(out, family.name(), labels, null, ((DoubleSupplier) metric).getAsDouble());
+				}
+			}
+		}
+		return out.toString();
+	}
+
+	//intervalli cumulativi, somma (in secondi) e conteggio
+	private static void writeHistogram(StringBuilder out, String name, String labels, Histogram h) {
+		long cumulative = 0;
+		for (int i = 0; i < Histogram.BOUNDS.length; i++) {
+			cumulative += h.bucketCount(i);
+			sample(out, name + "_bucket", labels, Histogram.BOUND_LABELS[i], cumulative);
+		}
+		cumulative += h.bucketCount(Histogram.BOUNDS.length);
+		sample(out, name + "_bucket", labels, "+Inf", cumulative);
+		sample(out, name + "_sum", labels, null, h.sum() / 1e9);
+		sample(out, name + "_count", labels, null, cumulative);
+	}
+
+	private static void sample(StringBuilder out, String name, String labels, String le, long value) {
+		appendName(out, name, labels, le).append(' ').append(value).append('\n');
+	}
+
+	private static void sample(StringBuilder out, String name, String labels, String le, double value) {
+		appendName(out, name, labels, le).append(' ');
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) { //valori interi senza ".0"
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+	//nome della serie con le etichette ("le" per gli intervalli degli istogrammi)
+	private static StringBuilder appendName(StringBuilder out, String name, String labels, String le) {
+		out.append(name);
+		if (!labels.isEmpty() || le != null) {
+			out.append('{').append(labels);
+			if (le != null) {
+				out.append(labels.isEmpty() ? "" : ",").append("le=\"").append(le).append('"');
+			}
+			out.append('}');
+		}
+		return out;
+	}
+
+	//etichette già formattate (nome="valore",...), chiave della metrica nella famiglia
+	private static String labels(String... pairs) {
+		if (pairs.length % 2 != 0) {
+			throw new IllegalArgumentException("labels must be name/value pairs");
+		}
+		var sb = new StringBuilder();
+		for (int i = 0; i < pairs.length; i += 2) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(pairs[i]).append("=\"");
+			for (char c: pairs[i + 1].toCharArray()) {
+				if (c == '\\' || c == '"') {
+					sb.append('\\').append(c);
+				} else if (c == '\n') {
+					sb.append("\\n");
+				} else {
+					sb.append(c);
+				}
+			}
+			sb.append('"');
+		}
+		return sb.toString();
+	}
+}
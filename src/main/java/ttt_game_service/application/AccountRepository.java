@@ -1,5 +1,6 @@
 package ttt_game_service.application;
 
+import java.util.concurrent.CompletableFuture;
 import ddd.Repository;
 import exagonal.OutBoundPort;
 import ttt_game_service.domain.Account;
@@ -7,6 +8,8 @@ import ttt_game_service.domain.Account;
 /*
 interfaccia che collega l'architettura (applicazione) al db degli account
 contiene tutti i metodi che l'architettura utilizza per interagire con il db degli account
+le varianti asincrone vengono usate dagli event loop: di default eseguono il metodo sincrono sul thread chiamante (adapter in memoria),
+un adapter che blocca (disco, rete) le ridefinisce per completare la future senza occupare il chiamante
  */
 @OutBoundPort
 public interface AccountRepository extends Repository {
@@ -14,9 +17,39 @@ public interface AccountRepository extends Repository {
 	//aggiunge un account
 	void addAccount(Account account);
 
+	//aggiunge l'account solo se l'username è libero (operazione atomica); restituisce false se è già registrato
+	boolean addAccountIfAbsent(Account account);
+
+	//sostituisce l'account solo se quello registrato è ancora expected (operazione atomica); restituisce false altrimenti
+	boolean replaceAccount(Account expected, Account updated);
+
 	//verifica se un account è presente
 	boolean isPresent(String userName);
 
-	//verifica la validità dei dati inseriti per l'account
-	boolean isValid(String userName, String password);
+	//recupera un account (null se non è presente); la verifica della password spetta al servizio (CredentialVerifier)
+	Account getAccount(String userName);
+
+	//recupera un account senza bloccare il chiamante (null se non è presente)
+	default CompletableFuture<Account> getAccountAsync(String userName) {
+		return CompletableFuture.completedFuture(getAccount(userName));
+	}
+
+	//aggiunge un account senza bloccare il chiamante; la future viene completata quando l'account è salvato
+	default CompletableFuture<Void> addAccountAsync(Account account) {
+		addAccount(account);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	//aggiunge l'account solo se l'username è libero senza bloccare il chiamante; la future fallisce con AccountAlreadyPresentException se è già registrato
+	default CompletableFuture<Void> addAccountIfAbsentAsync(Account account) {
+		if (!addAccountIfAbsent(account)) {
+			return CompletableFuture.failedFuture(new AccountAlreadyPresentException());
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	//sostituisce l'account solo se quello registrato è ancora expected, senza bloccare il chiamante; la future restituisce false altrimenti
+	default CompletableFuture<Boolean> replaceAccountAsync(Account expected, Account updated) {
+		return CompletableFuture.completedFuture(replaceAccount(expected, updated));
+	}
 }
@@ -0,0 +1,84 @@
+package ttt_game_service.application;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import logging.StructuredLogger;
+import ttt_game_service.domain.InvalidMoveException;
+import ttt_game_service.domain.PositionTable;
+import ttt_game_service.domain.TTTSymbol;
+
+/*
+giocatore automatico con gioco perfetto: entra nella partita come una normale sessione giocatore e riceve gli eventi come suo observer
+la griglia viene ricostruita dagli eventi ricevuti (maschere a 9 bit), quindi la scelta della mossa è una lettura della PositionTable
+la mossa viene eseguita tramite l'executor indicato e non dentro la notifica: la notifica arriva con il lock della partita acquisito,
+mentre gli altri observer stanno ancora ricevendo l'evento precedente (l'executor deve quindi essere asincrono)
+ */
+public class BotPlayer implements PlayerSessionEventObserver {
+
+	static StructuredLogger log = StructuredLogger.getLogger("[BotPlayer]");
+	private final GameService service; //servizio che contiene la sessione del bot
+	private final TTTSymbol symbol; //simbolo del bot
+	private final Executor moves; //esecutore delle mosse del bot
+	private final CompletableFuture<Optional<String>> result; //esito della partita (vincitore, vuoto in caso di pareggio)
+	private int crossMask; //caselle occupate da "croce" (aggiornate dagli eventi, che arrivano in ordine)
+	private int circleMask; //caselle occupate da "cerchio"
+
+	public BotPlayer(GameService service, TTTSymbol symbol, Executor moves) {
+		this.service = service;
+		this.symbol = symbol;
+		this.moves = moves;
+		result = new CompletableFuture<>();
+	}
+
+	//esito della partita
+	public CompletableFuture<Optional<String>> result() {
+		return result;
+	}
+
+	public void enableEventNotification(String playerSessionId) {}
+
+	//la partita è iniziata: "croce" esegue la prima mossa
+	public synchronized void gameStarted(String playerSessionId) {
+		if (symbol == TTTSymbol.X) {
+			play(playerSessionId);
+		}
+	}
+
+	//aggiorna la griglia; se ha mosso l'avversario tocca al bot
+	public synchronized void newMove(String playerSessionId, String who, int x, int y) {
+		int cell = 1 << (y * 3 + x);
+		if (who.equals("X")) {
+			crossMask |= cell;
+		} else {
+			circleMask |= cell;
+		}
+		if (!who.equals(symbol.toString())) {
+			play(playerSessionId);
+		}
+	}
+
+	//la partita è terminata
+	public void gameEnded(String playerSessionId, Optional<String> winner) {
+		result.complete(winner);
+	}
+
+	//sceglie la mossa dalla tabella e la fa eseguire dall'executor
+	private void play(String playerSessionId) {
+		int cell = PositionTable.bestMove(crossMask, circleMask);
+		if (cell < 0) { //partita finita
+			return;
+		}
+		moves.execute(() -> {
+			var ps = service.getPlayerSession(playerSessionId);
+			if (ps == null) { //sessione rimossa (partita scaduta)
+				return;
+			}
+			try {
+				ps.makeMove(cell % 3, cell / 3);
+			} catch (InvalidMoveException ex) {
+				log.info("bot-invalid-move").kv("playerSessionId", playerSessionId).kv("cell", cell).emit();
+			}
+		});
+	}
+}
@@ -0,0 +1,236 @@
+package ttt_game_service.application;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/*
+mappa concorrente con chiavi long primitive (nessun boxing, nessun oggetto per elemento): indirizzamento aperto con scansione lineare,
+suddivisa in 64 segmenti (SEGMENT_BITS) scelti dai bit alti dell'hash della chiave
+- ogni segmento ha due array paralleli (chiavi, valori) riempiti al più per metà e protetti da uno StampedLock
+- le letture sono ottimistiche: senza scritture concorrenti sullo stesso segmento non prendono alcun lock
+- le rimozioni spostano indietro gli elementi successivi dello stesso gruppo (nessuna lapide, le ricerche restano brevi)
+la chiave 0 è riservata (indica una posizione libera)
+ */
+public final class ConcurrentLongMap<V> {
+
+	static final int SEGMENT_BITS = 6; //64 segmenti
+	static final int INITIAL_CAPACITY = 64; //posizioni iniziali per segmento (potenza di due)
+	private final Segment[] segments; //segmenti della mappa
+
+	public ConcurrentLongMap() {
+		segments = new Segment[1 << SEGMENT_BITS];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	//valore associato alla chiave (null se assente)
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		long h = mix(key);
+		var s = segment(h);
+		long stamp = s.tryOptimisticRead();
+		var value = s.find(key, h);
+		if (!s.validate(stamp)) { //una scrittura concorrente sul segmento: si ripete la ricerca con il lock di lettura
+			stamp = s.readLock();
+			try {
+				value = s.find(key, h);
+			} finally {
+				s.unlockRead(stamp);
+			}
+		}
+		return (V) value;
+	}
+
+	//associa il valore alla chiave e restituisce il valore precedente (null se assente)
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		checkKey(key);
+		long h = mix(key);
+		var s = segment(h);
+		long stamp = s.writeLock();
+		try {
+			return (V) s.put(key, h, value);
+		} finally {
+			s.unlockWrite(stamp);
+		}
+	}
+
+	//rimuove la chiave e restituisce il valore associato (null se assente)
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		long h = mix(key);
+		var s = segment(h);
+		long stamp = s.writeLock();
+		try {
+			return (V) s.remove(key, h);
+		} finally {
+			s.unlockWrite(stamp);
+		}
+	}
+
+	//rimuove gli elementi che soddisfano la condizione (un segmento alla volta) e restituisce il numero di elementi rimossi
+	@SuppressWarnings("unchecked")
+	public int removeIf(Predicate<? super V> condition) {
+		int removed = 0;
+		for (var s: segments) {
+			long stamp = s.writeLock();
+			try {
+				var keys = s.keys;
+				var matching = new long[0];
+				int count = 0;
+				for (int i = 0; i < keys.length; i++) {
+					if (keys[i] != 0 && condition.test((V) s.values[i])) {
+						if (count == matching.length) {
+							matching = Arrays.copyOf(matching, Math.max(8, count * 2));
+						}
+						matching[count++] = keys[i];
+					}
+				}
+				for (int i = 0; i < count; i++) { //rimozione dopo la scansione: lo spostamento all'indietro cambierebbe le posizioni non ancora visitate
+					s.remove(matching[i], mix(matching[i]));
+				}
+				removed += count;
+			} finally {
+				s.unlockWrite(stamp);
+			}
+		}
+		return removed;
+	}
+
+	//numero di elementi presenti
+	public int size() {
+		int size = 0;
+		for (var s: segments) {
+			size += s.size;
+		}
+		return size;
+	}
+
+	private Segment segment(long h) {
+		return segments[(int) (h >>> (64 - SEGMENT_BITS))];
+	}
+
+	private static void checkKey(long key) {
+		if (key == 0) {
+			throw new IllegalArgumentException("key 0 is reserved");
+		}
+	}
+
+	//mescolamento finale di murmur3: chiavi consecutive finiscono in segmenti e posizioni lontani
+	static long mix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	//segmento: tabella ad indirizzamento aperto (le posizioni dipendono dai bit bassi dell'hash)
+	@SuppressWarnings("serial")
+	private static final class Segment extends StampedLock {
+
+		long[] keys = new long[INITIAL_CAPACITY]; //chiavi (0 = libera)
+		Object[] values = new Object[INITIAL_CAPACITY]; //valori, nella stessa posizione della chiave
+		volatile int size; //elementi presenti (letto senza lock per le metriche)
+
+		//ricerca (anche durante una lettura ottimistica: gli array possono essere di generazioni diverse, al più viene letto un valore che la validazione scarta)
+		Object find(long key, long h) {
+			var keys = this.keys;
+			var values = this.values;
+			if (keys.length != values.length) {
+				return null;
+			}
+			int mask = keys.length - 1;
+			int i = (int) h & mask;
+			for (int probes = 0; probes < keys.length; probes++) {
+				long k = keys[i];
+				if (k == key) {
+					return values[i];
+				}
+				if (k == 0) {
+					return null;
+				}
+				i = (i + 1) & mask;
+			}
+			return null;
+		}
+
+		//inserimento o sostituzione (con il lock di scrittura)
+		Object put(long key, long h, Object value) {
+			if ((size + 1) * 2 > keys.length) { //la tabella resta piena al più per metà
+				resize(keys.length * 2);
+			}
+			int mask = keys.length - 1;
+			int i = (int) h & mask;
+			while (keys[i] != 0) {
+				if (keys[i] == key) {
+					var previous = values[i];
+					values[i] = value;
+					return previous;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = value;
+			size++;
+			return null;
+		}
+
+		//rimozione con spostamento all'indietro (con il lock di scrittura)
+		Object remove(long key, long h) {
+			int mask = keys.length - 1;
+			int i = (int) h & mask;
+			while (keys[i] != key) {
+				if (keys[i] == 0) {
+					return null;
+				}
+				i = (i + 1) & mask;
+			}
+			var previous = values[i];
+			int j = i;
+			while (true) {
+				j = (j + 1) & mask;
+				long k = keys[j];
+				if (k == 0) {
+					break;
+				}
+				int home = (int) mix(k) & mask;
+				boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j); //la posizione naturale è tra la posizione liberata e j
+				if (!stays) {
+					keys[i] = k;
+					values[i] = values[j];
+					i = j;
+				}
+			}
+			keys[i] = 0;
+			values[i] = null;
+			size--;
+			return previous;
+		}
+
+		//raddoppia la tabella reinserendo gli elementi
+		private void resize(int capacity) {
+			var oldKeys = keys;
+			var oldValues = values;
+			var newKeys = new long[capacity];
+			var newValues = new Object[capacity];
+			int mask = capacity - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				long k = oldKeys[i];
+				if (k != 0) {
+					int j = (int) mix(k) & mask;
+					while (newKeys[j] != 0) {
+						j = (j + 1) & mask;
+					}
+					newKeys[j] = k;
+					newValues[j] = oldValues[i];
+				}
+			}
+			keys = newKeys;
+			values = newValues;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package ttt_game_service.application;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import ttt_game_service.domain.Account;
+
+/*
+pool limitato che esegue hash e verifiche delle password fuori dagli event loop
+la coda ha capacità fissa: quando è piena la richiesta viene rifiutata subito (CredentialCheckRejectedException) invece di accumulare attese
+le verifiche riuscite vengono ricordate per breve tempo, così i login ripetuti non ricalcolano l'hash lento;
+la cache conserva solo un digest della password con una chiave casuale del processo, mai la password stessa
+il login di un utente inesistente verifica la password contro un hash fittizio (rejectUnknown), così dura quanto quello di un utente esistente
+ */
+public class CredentialCheckPool {
+
+	static final int DEFAULT_QUEUE_CAPACITY = 256; //verifiche in attesa oltre le quali le richieste vengono rifiutate
+	static final long DEFAULT_CACHE_TTL = 60_000; //durata (ms) di una verifica riuscita in cache
+	static final int MAX_CACHED = 10_000; //numero massimo di verifiche in cache
+	private final ThreadPoolExecutor executor; //thread dedicati alle verifiche
+	private final ConcurrentHashMap<String, Verified> recent; //verifiche riuscite di recente (username -> verifica)
+	private final long cacheTtl; //durata di una verifica in cache (ms)
+	private final byte[] cacheKey; //chiave casuale usata per il digest delle password in cache
+	private final LongAdder rejected; //numero di richieste rifiutate
+	private volatile CredentialVerifier verifier; //verificatore delle password
+	private volatile String dummyHash; //hash fittizio usato per gli utenti inesistenti (calcolato alla prima richiesta)
+
+	//verifica riuscita: hash memorizzato al momento della verifica, digest della password e scadenza
+	private record Verified(String passwordHash, byte[] digest, long expiresAt) {}
+
+	//pool di default: metà dei core (almeno uno), per lasciare spazio agli event loop
+	public CredentialCheckPool(CredentialVerifier verifier) {
+		this(verifier, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), DEFAULT_QUEUE_CAPACITY, DEFAULT_CACHE_TTL);
+	}
+
+	public CredentialCheckPool(CredentialVerifier verifier, int threads, int queueCapacity, long cacheTtl) {
+		this.verifier = verifier;
+		this.cacheTtl = cacheTtl;
+		var threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+			var t = new Thread(r, "credential-check-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}, new ThreadPoolExecutor.AbortPolicy());
+		recent = new ConcurrentHashMap<>();
+		cacheKey = new byte[32];
+		new SecureRandom().nextBytes(cacheKey);
+		rejected = new LongAdder();
+	}
+
+	//esegue il compito sul pool; se la coda è piena la future fallisce subito con CredentialCheckRejectedException
+	public <T> CompletableFuture<T> submit(Supplier<T> task) {
+		var result = new CompletableFuture<T>();
+		try {
+			executor.execute(() -> {
+				try {
+					result.complete(task.get());
+				} catch (RuntimeException ex) {
+					result.completeExceptionally(ex);
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			rejected.increment();
+			result.completeExceptionally(new CredentialCheckRejectedException());
+		}
+		return result;
+	}
+
+	//verifica se la password è stata verificata di recente per l'account (hash memorizzato invariato)
+	public boolean isRecentlyVerified(Account account, String password) {
+		var v = recent.get(account.getUserName());
+		if (v == null) {
+			return false;
+		}
+		if (System.currentTimeMillis() >= v.expiresAt()) {
+			recent.remove(account.getUserName(), v);
+			return false;
+		}
+		return v.passwordHash().equals(account.getPasswordHash()) && MessageDigest.isEqual(v.digest(), digest(password));
+	}
+
+	//ricorda una verifica riuscita
+	public void remember(Account account, String password) {
+		long now = System.currentTimeMillis();
+		if (recent.size() >= MAX_CACHED) { //cache piena: scarta le verifiche scadute e, se non basta, tutte
+			recent.values().removeIf(v -> now >= v.expiresAt());
+			if (recent.size() >= MAX_CACHED) {
+				recent.clear();
+			}
+		}
+		recent.put(account.getUserName(), new Verified(account.getPasswordHash(), digest(password), now + cacheTtl));
+	}
+
+	//digest veloce della password con la chiave del processo (usato solo per il confronto in cache)
+	private byte[] digest(String password) {
+		try {
+			var md = MessageDigest.getInstance("SHA-256");
+			md.update(cacheKey);
+			return md.digest(password.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	//verifica la password contro un hash fittizio e restituisce sempre false: un utente inesistente costa quanto uno esistente
+	public boolean rejectUnknown(String password) {
+		var v = verifier;
+		var dummy = dummyHash;
+		if (dummy == null) { //due calcoli concorrenti sono innocui
+			dummy = v.hash("dummy-password");
+			dummyHash = dummy;
+		}
+		v.verify(password, dummy);
+		return false;
+	}
+
+	//restituisce il verificatore delle password
+	public CredentialVerifier getVerifier() {
+		return verifier;
+	}
+
+	//sostituisce il verificatore delle password (la cache viene svuotata)
+	public void setVerifier(CredentialVerifier verifier) {
+		this.verifier = verifier;
+		dummyHash = null;
+		recent.clear();
+	}
+
+	//numero di verifiche in attesa
+	public int queueDepth() {
+		return executor.getQueue().size();
+	}
+
+	//numero di richieste rifiutate per coda piena
+	public long rejectedCount() {
+		return rejected.sum();
+	}
+}
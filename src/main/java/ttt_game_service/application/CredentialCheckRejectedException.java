@@ -0,0 +1,6 @@
+package ttt_game_service.application;
+
+//la verifica delle credenziali è stata rifiutata perché il pool di verifica è saturo (il client può riprovare)
+public class CredentialCheckRejectedException extends Exception {
+
+}
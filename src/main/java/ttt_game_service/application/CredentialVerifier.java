@@ -0,0 +1,23 @@
+package ttt_game_service.application;
+
+import exagonal.OutBoundPort;
+
+/*
+interfaccia per il calcolo e la verifica degli hash delle password
+le implementazioni sono volutamente lente (hash con sale e molte iterazioni): vengono eseguite solo dal pool dedicato (CredentialCheckPool), mai sugli event loop
+ */
+@OutBoundPort
+public interface CredentialVerifier {
+
+	//calcola l'hash codificato (algoritmo, parametri, sale e hash) della password
+	String hash(String password);
+
+	//verifica la password rispetto all'hash codificato memorizzato nell'account
+	boolean verify(String password, String passwordHash);
+
+	//verifica se l'hash memorizzato va ricalcolato (vecchio formato o parametri superati)
+	boolean needsRehash(String passwordHash);
+
+	//verifica se il valore memorizzato è una password in chiaro del vecchio formato (il db lo sostituisce con un hash al caricamento)
+	boolean isPlaintext(String passwordHash);
+}
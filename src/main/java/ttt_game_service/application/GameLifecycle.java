@@ -0,0 +1,166 @@
+package ttt_game_service.application;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameEnded;
+import ttt_game_service.domain.GameEvent;
+import ttt_game_service.domain.GameObserver;
+import ttt_game_service.domain.GameStarted;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+
+/*
+osservatore del ciclo di vita di una partita (usato dal servizio per liberare la memoria)
+registra l'ultima attività, l'istante di fine partita e le sessioni giocatore collegate, che vengono rimosse insieme alla partita
+mantiene anche il conteggio delle partite per stato (condiviso dal servizio): la partita viene contata da activate() a release()
+a fine partita conserva l'esito notificato a tutte le sessioni giocatore (GameOutcome), così l'evento viene codificato una volta sola
+la partita è riferita per id: il ciclo di vita non la trattiene sullo heap, quindi un repository che la ricostruisce su richiesta (ad esempio
+MappedGameRepository) può liberarla quando nessuno la usa; chi ottiene la partita dal repository la ricollega con attach()
+gli eventi arrivano con il lock della partita già acquisito
+ */
+class GameLifecycle implements GameObserver {
+
+	private final String gameId; //id della partita osservata
+	private volatile WeakReference<Game> observed; //istanza della partita a cui è registrato come osservatore (debole: non la trattiene sullo heap)
+	private long[] playerSessions; //id numerici delle sessioni giocatore collegate alla partita (protetti dal lock della partita)
+	private int playerSessionCount; //sessioni giocatore collegate
+	private volatile long lastActivity; //istante dell'ultima attività (ms)
+	private volatile long endedAt; //istante di fine partita (ms), -1 se la partita non è terminata
+	private final boolean recovered; //partita ricostruita da un db durevole (i giocatori possono rientrare con il proprio simbolo)
+	private final AtomicIntegerArray gamesByState; //numero di partite per stato (indice: ordinale dello stato)
+	private Game.GameState countedState; //stato con cui la partita è contata, null se non contata (protetto dal lock della partita)
+	private GameOutcome outcome; //esito della partita, null se non ancora terminata (protetto dal lock della partita)
+
+	GameLifecycle(Game game, long now, AtomicIntegerArray gamesByState) {
+		this(game, now, false, gamesByState);
+	}
+
+	GameLifecycle(Game game, long now, boolean recovered, AtomicIntegerArray gamesByState) {
+		gameId = game.getId();
+		observed = new WeakReference<>(null);
+		this.gamesByState = gamesByState;
+		playerSessions = new long[2];
+		lastActivity = now;
+		endedAt = recovered && game.getState() == Game.GameState.FINISHED ? now : -1; //una partita già terminata resta disponibile solo per il periodo di grazia
+		this.recovered = recovered;
+	}
+
+	//registra l'attività della partita
+	public void notifyGameEvent(GameEvent event) {
+		long now = System.currentTimeMillis();
+		lastActivity = now;
+		if (event instanceof GameStarted) {
+			count(Game.GameState.STARTED);
+		} else if (event instanceof GameEnded) { //la partita è terminata: da questo momento parte il periodo di grazia
+			endedAt = now;
+			count(Game.GameState.FINISHED);
+		}
+	}
+
+	@Override
+	public void playerJoined(String gameId, TTTSymbol symbol, UserId userId) {
+		lastActivity = System.currentTimeMillis();
+	}
+
+	@Override
+	public void gameStarted(String gameId) {
+		lastActivity = System.currentTimeMillis();
+		count(Game.GameState.STARTED);
+	}
+
+	//una mossa aggiorna soltanto l'ultima attività
+	@Override
+	public void newMove(String gameId, TTTSymbol symbol, int x, int y) {
+		lastActivity = System.currentTimeMillis();
+	}
+
+	@Override
+	public void gameEnded(String gameId, UserId winner) {
+		long now = System.currentTimeMillis();
+		lastActivity = now;
+		endedAt = now;
+		count(Game.GameState.FINISHED);
+	}
+
+	//esito della partita condiviso dalle sessioni giocatore (chiamato con il lock della partita durante la notifica di fine partita)
+	GameOutcome outcome(UserId winner) {
+		if (outcome == null) {
+			outcome = new GameOutcome(winner == null ? Optional.empty() : Optional.of(winner.id()));
+		}
+		return outcome;
+	}
+
+	//si registra come osservatore della partita, se non lo è già su questa istanza (con il lock della partita, prima di modificarla)
+	void attach(Game game) {
+		if (observed.get() != game) { //prima registrazione o partita ricostruita dal repository
+			game.addGameObserver(this);
+			observed = new WeakReference<>(game);
+		}
+	}
+
+	//inizia a contare la partita con il suo stato attuale (dopo l'inserimento nel registro)
+	void activate(Game game) {
+		synchronized (game) {
+			countedState = game.getState();
+			gamesByState.incrementAndGet(countedState.ordinal());
+		}
+	}
+
+	//sposta la partita nel conteggio del nuovo stato (chiamato con il lock della partita)
+	private void count(Game.GameState state) {
+		if (countedState != null) {
+			gamesByState.decrementAndGet(countedState.ordinal());
+			gamesByState.incrementAndGet(state.ordinal());
+			countedState = state;
+		}
+	}
+
+	//aggiunge una sessione giocatore (chiamato con il lock della partita)
+	void addPlayerSession(long playerSession, long now) {
+		if (playerSessionCount == playerSessions.length) { //rientri dopo un riavvio
+			playerSessions = Arrays.copyOf(playerSessions, playerSessionCount * 2);
+		}
+		playerSessions[playerSessionCount++] = playerSession;
+		lastActivity = now;
+	}
+
+	//verifica se la partita può essere rimossa: terminata da almeno "grace" ms oppure inattiva da almeno "idleTimeout" ms
+	boolean isExpired(long now, long grace, long idleTimeout) {
+		long ended = endedAt;
+		return ended >= 0 ? now - ended >= grace : now - lastActivity >= idleTimeout;
+	}
+
+	//stacca gli osservatori dalla partita ancora sullo heap (se è stata liberata non c'è nulla da staccare) e restituisce le sessioni giocatore da rimuovere
+	long[] release() {
+		var game = observed.get();
+		if (game == null) { //nessun evento può arrivare: la partita non è in uso
+			return detach();
+		}
+		synchronized (game) {
+			game.removeGameObservers();
+			return detach();
+		}
+	}
+
+	//smette di contare la partita (con il lock della partita, se è sullo heap)
+	private long[] detach() {
+		if (countedState != null) {
+			gamesByState.decrementAndGet(countedState.ordinal());
+			countedState = null;
+		}
+		return Arrays.copyOf(playerSessions, playerSessionCount);
+	}
+
+	//verifica se la partita è stata ricostruita da un db durevole
+	boolean isRecovered() {
+		return recovered;
+	}
+
+	//recupera l'id della partita
+	String getGameId() {
+		return gameId;
+	}
+}
@@ -0,0 +1,31 @@
+package ttt_game_service.application;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/*
+esito di una partita terminata, creato una sola volta dal ciclo di vita della partita e passato alle notifiche di tutti i giocatori
+un adapter può associargli la propria codifica dell'evento (encoded): viene calcolata dal primo giocatore notificato e riusata dagli altri
+ */
+public final class GameOutcome {
+
+	private final Optional<String> winner; //vincitore (vuoto in caso di pareggio)
+	private Object encoded; //codifica dell'evento prodotta dall'adapter (null finché nessuno la richiede)
+
+	GameOutcome(Optional<String> winner) {
+		this.winner = winner;
+	}
+
+	//vincitore (vuoto in caso di pareggio)
+	public Optional<String> winner() {
+		return winner;
+	}
+
+	//codifica dell'evento del tipo indicato, calcolata alla prima richiesta e poi condivisa
+	public synchronized <T> T encoded(Class<T> type, Function<Optional<String>, T> encoder) {
+		if (!type.isInstance(encoded)) {
+			encoded = encoder.apply(winner);
+		}
+		return type.cast(encoded);
+	}
+}
@@ -1,12 +1,17 @@
 package ttt_game_service.application;
 
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import ddd.Repository;
 import exagonal.OutBoundPort;
 import ttt_game_service.domain.Game;
+import ttt_game_service.domain.UserId;
 
 /*
 interfaccia che collega l'architettura (applicazione) al db delle partite
 contiene tutti i metodi che l'architettura utilizza per interagire con il db delle partite
+le varianti asincrone vengono usate dagli event loop: di default eseguono il metodo sincrono sul thread chiamante (adapter in memoria),
+un adapter che blocca (disco, rete) le ridefinisce per completare la future senza occupare il chiamante
  */
 @OutBoundPort
 public interface GameRepository extends Repository {
@@ -14,10 +19,51 @@ public interface GameRepository extends Repository {
 	//aggiunge una partita
 	void addGame(Game game);
 
+	//aggiunge una partita solo se non è già presente (operazione atomica); restituisce false se la partita esiste già
+	boolean addGameIfAbsent(Game game);
+
+	//aggiunge una partita solo se non è già presente senza bloccare il chiamante; la future viene completata quando la partita è salvata
+	default CompletableFuture<Boolean> addGameIfAbsentAsync(Game game) {
+		return CompletableFuture.completedFuture(addGameIfAbsent(game));
+	}
+
 	//verifica se una partita è presente
 	boolean isPresent(String gameId);
 
 	//recupera una partita
 	Game getGame(String gameId);
 
+	//recupera una partita senza bloccare il chiamante (null se non è presente)
+	default CompletableFuture<Game> getGameAsync(String gameId) {
+		return CompletableFuture.completedFuture(getGame(gameId));
+	}
+
+	//rimuove una partita (terminata o abbandonata)
+	void removeGame(String gameId);
+
+	//numero di partite presenti
+	int size();
+
+	//partite presenti (ad esempio quelle ricostruite da un db durevole all'avvio)
+	Iterable<Game> getGames();
+
+	//id delle partite presenti; un adapter che ricostruisce le partite su richiesta li restituisce senza ricostruirle
+	default Iterable<String> getGameIds() {
+		var ids = new ArrayList<String>();
+		for (var game: getGames()) {
+			ids.add(game.getId());
+		}
+		return ids;
+	}
+
+	//prepara il repository al join del giocatore (un adapter che salva i nomi a parte rende persistente qui un nome nuovo); di default non fa nulla
+	default void registerPlayer(UserId userId) {
+	}
+
+	//come registerPlayer, senza bloccare il chiamante; la future viene completata quando il join può riferire il giocatore
+	default CompletableFuture<Void> registerPlayerAsync(UserId userId) {
+		registerPlayer(userId);
+		return CompletableFuture.completedFuture(null);
+	}
+
 }
@@ -1,7 +1,12 @@
 package ttt_game_service.application;
 
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import exagonal.InBoundPort;
 import ttt_game_service.domain.Account;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.GameObserver;
 import ttt_game_service.domain.InvalidJoinException;
 import ttt_game_service.domain.TTTSymbol;
 import ttt_game_service.domain.UserId;
@@ -13,21 +18,69 @@ public interface GameService  {
 	//registra un utente al servizio
 	Account registerUser(String userName, String password) throws AccountAlreadyPresentException;
 
-	//esegue il login di un utente al servizio
+	//esegue il login di un utente al servizio (verifica della password sul thread chiamante)
 	UserSession login(String userName, String password) throws LoginFailedException;
 
+	//registra un utente calcolando l'hash della password sul pool di verifica (non blocca il chiamante)
+	CompletableFuture<Account> registerUserAsync(String userName, String password);
+
+	//esegue il login verificando la password sul pool di verifica (non blocca il chiamante); fallisce con LoginFailedException o CredentialCheckRejectedException
+	CompletableFuture<UserSession> loginAsync(String userName, String password);
+
 	//recupera la sessione dell'utente
 	UserSession getUserSession(String sessionId);
 
 	//recupera la sessione del giocatore
 	PlayerSession getPlayerSession(String sessionId);
 
-	//crea una nuova partita
+	//indica se la partita è presente
+	boolean hasGame(String gameId);
+
+	//crea una nuova partita (griglia classica 3x3)
 	void createNewGame(String gameId) throws GameAlreadyPresentException;
 
+	//crea una nuova partita con griglia di dimensioni e lunghezza della combinazione vincente indicate
+	void createNewGame(String gameId, BoardConfig board) throws GameAlreadyPresentException;
+
+	//crea una nuova partita senza bloccare il chiamante; fallisce con GameAlreadyPresentException se la partita esiste già
+	CompletableFuture<Void> createNewGameAsync(String gameId, BoardConfig board);
+
 	//esegue il join di un utente ad un partita
 	PlayerSession joinGame(UserId userId, String gameId, TTTSymbol symbol, PlayerSessionEventObserver observer) throws InvalidJoinException;
 
+	//esegue il join su "gameLoop" dopo aver recuperato la partita dalla porta asincrona del repository; fallisce con InvalidJoinException se il join non è valido
+	CompletableFuture<PlayerSession> joinGameAsync(UserId userId, String gameId, TTTSymbol symbol, PlayerSessionEventObserver observer, Executor gameLoop);
+
+	//crea una partita contro il bot (gioco perfetto): l'utente entra con il simbolo scelto, il bot con l'altro; le mosse del bot vengono eseguite da "botMoves" (asincrono)
+	PlayerSession playAgainstBot(UserId userId, String gameId, TTTSymbol symbol, PlayerSessionEventObserver observer, Executor botMoves) throws GameAlreadyPresentException, InvalidJoinException;
+
+	//come playAgainstBot, senza bloccare il chiamante: creazione e join passano dalle porte asincrone del repository, i join e le mosse del bot vengono eseguiti su "gameLoop"
+	CompletableFuture<PlayerSession> playAgainstBotAsync(UserId userId, String gameId, TTTSymbol symbol, PlayerSessionEventObserver observer, Executor gameLoop);
+
+	//crea una partita tra due bot; restituisce l'esito (vincitore, vuoto in caso di pareggio)
+	CompletableFuture<Optional<String>> playBotAgainstBot(String gameId, Executor botMoves) throws GameAlreadyPresentException;
+
+	//inserisce l'utente nella coda di matchmaking (fascia di punteggio "rating"); la partita viene creata quando si trova un avversario
+	MatchTicket findMatch(UserId userId, int rating, PlayerSessionEventObserver observer);
+
+	//metriche della coda di matchmaking
+	MatchmakingStats matchmakingStats();
+
+	//registra uno spettatore (osservatore in sola lettura) della partita senza bloccare il chiamante; false se la partita non esiste
+	CompletableFuture<Boolean> watchGameAsync(String gameId, GameObserver spectator);
+
+	//rimuove uno spettatore della partita (senza bloccare il chiamante)
+	void unwatchGame(String gameId, GameObserver spectator);
+
+	//rimuove le sessioni utente inattive e le partite terminate (dopo il periodo di grazia) o abbandonate; restituisce il numero di oggetti rimossi
+	int evictExpired();
+
+	//restituisce il numero di oggetti vivi contenuti nei registri
+	RegistryGauges registryGauges();
+
+	//definisce il verificatore delle password
+    void bindCredentialVerifier(CredentialVerifier verifier);
+
 	//definisce un repository per gli account
     void bindAccountRepository(AccountRepository repo);
 
@@ -1,93 +1,434 @@
 package ttt_game_service.application;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import logging.StructuredLogger;
 import ttt_game_service.domain.Account;
+import ttt_game_service.domain.BoardConfig;
 import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameObserver;
 import ttt_game_service.domain.InvalidJoinException;
 import ttt_game_service.domain.TTTSymbol;
 import ttt_game_service.domain.UserId;
 
-//servizio applicativo principale (gestisce il flusso di gioco)
+/*
+servizio applicativo principale (gestisce il flusso di gioco)
+la memoria resta limitata: le sessioni utente inattive e le partite terminate (dopo un periodo di grazia) o abbandonate
+vengono rimosse periodicamente con "evictExpired", insieme alle sessioni giocatore e agli osservatori collegati
+le password sono salvate come hash lenti: le varianti asincrone di registrazione e login calcolano e verificano gli hash
+sul pool limitato CredentialCheckPool, fuori dagli event loop
+le varianti asincrone (registrazione, login, creazione e join delle partite, spettatori) usano le porte asincrone dei repository:
+con un adapter su disco o avvolto da RepositoryWorkers gli event loop non attendono l'i/o; le varianti sincrone restano per bot e test
+le partite ricostruite da un db durevole ricevono il ciclo di vita al primo utilizzo (join), senza ricostruirle tutte all'avvio;
+quelle mai riprese vengono rimosse, leggendo solo i loro id, dopo gameIdleTimeout dal collegamento del repository
+ */
 public class GameServiceImpl implements GameService {
 
-	static Logger logger = Logger.getLogger("[Game Service]");
+	static StructuredLogger log = StructuredLogger.getLogger("[Game Service]");
 	private AccountRepository accountRepository; //repository degli account
     private GameRepository gameRepository; //repository delle partite in corso
     private UserSessions userSessionRepository; //repository delle sessioni degli utenti
     private PlayerSessions playerSessionRepository; //repository delle sessioni dei giocatori
-    private int sessionCount; //numero di sessioni utente
-    private int playerSessionCount; //numero di sessioni giocatore
+    private final AtomicLong sessionCount; //numero di sessioni utente (generatore atomico degli id)
+    private final AtomicLong playerSessionCount; //numero di sessioni giocatore (generatore atomico degli id)
+    private String idPrefix; //prefisso degli id delle sessioni (id del nodo in un cluster, vuoto altrimenti)
+    private final CredentialCheckPool credentialChecks; //pool di verifica delle password
+    private final Matchmaker matchmaker; //coda di matchmaking
+    static final UserId BOT_X = new UserId("bot-x"); //utente del bot quando gioca con "croce"
+    static final UserId BOT_O = new UserId("bot-o"); //utente del bot quando gioca con "cerchio"
+    private final ConcurrentHashMap<String, GameLifecycle> lifecycles; //ciclo di vita delle partite presenti (quelle ricostruite dal db solo dopo il primo utilizzo)
+    private volatile long repositoryBoundAt; //istante (ms) in cui è stato collegato il repository delle partite
+    private final AtomicBoolean recoveredSwept; //partite ricostruite e mai riprese già rimosse
+    private final AtomicIntegerArray gamesByState; //numero di partite presenti per stato (aggiornato dai cicli di vita)
+    private long userSessionIdleTimeout; //inattività dopo la quale una sessione utente viene rimossa (ms)
+    private long finishedGameGracePeriod; //tempo dopo la fine durante il quale una partita resta disponibile (ms)
+    private long gameIdleTimeout; //inattività dopo la quale una partita non terminata viene considerata abbandonata (ms)
+    static final long DEFAULT_USER_SESSION_IDLE_TIMEOUT = 30 * 60_000; //30 minuti
+    static final long DEFAULT_FINISHED_GAME_GRACE_PERIOD = 60_000; //1 minuto
+    static final long DEFAULT_GAME_IDLE_TIMEOUT = 30 * 60_000; //30 minuti
     
     public GameServiceImpl(){
     	userSessionRepository = new UserSessions();
     	playerSessionRepository = new PlayerSessions();
-    	sessionCount = 0;
-    	playerSessionCount = 0;
+    	sessionCount = new AtomicLong();
+    	playerSessionCount = new AtomicLong();
+    	idPrefix = "";
+    	lifecycles = new ConcurrentHashMap<>();
+    	recoveredSwept = new AtomicBoolean();
+    	gamesByState = new AtomicIntegerArray(Game.GameState.values().length);
+    	credentialChecks = new CredentialCheckPool(new Pbkdf2CredentialVerifier());
+    	matchmaker = new Matchmaker(this);
+    	configureEviction(DEFAULT_USER_SESSION_IDLE_TIMEOUT, DEFAULT_FINISHED_GAME_GRACE_PERIOD, DEFAULT_GAME_IDLE_TIMEOUT);
     }
 
+	//in un cluster i token delle sessioni iniziano con l'id del nodo ("n1:u3"), così gli altri nodi sanno a chi inoltrarle
+	public void setNodeId(String nodeId) {
+		idPrefix = nodeId + ":";
+	}
+
+	//definisce i tempi di rimozione (ms) di sessioni utente inattive, partite terminate e partite abbandonate
+	public void configureEviction(long userSessionIdleTimeout, long finishedGameGracePeriod, long gameIdleTimeout) {
+		this.userSessionIdleTimeout = userSessionIdleTimeout;
+		this.finishedGameGracePeriod = finishedGameGracePeriod;
+		this.gameIdleTimeout = gameIdleTimeout;
+	}
+
 	//registra un utente al servizio
 	public Account registerUser(String userName, String password) throws AccountAlreadyPresentException {
-		logger.log(Level.INFO, "Register User: " + userName + " " + password);		
-		if (accountRepository.isPresent(userName)) { //se l'utente esiste già
+		log.info("registerUser").kv("user", userName).emit(); //le credenziali non vengono registrate
+		if (accountRepository.isPresent(userName)) { //se l'utente esiste già non serve calcolare l'hash
 			throw new AccountAlreadyPresentException(); //lancia un'eccezione
 		}
-		var account = new Account(userName, password); //crea l'account
-		accountRepository.addAccount(account); //lo aggiunge
+		var account = new Account(userName, credentialChecks.getVerifier().hash(password)); //crea l'account (con l'hash della password)
+		if (!accountRepository.addAccountIfAbsent(account)) { //registrato nel frattempo
+			throw new AccountAlreadyPresentException();
+		}
 		return account; //restituisce l'account creato
 	}
 
+	//registra un utente al servizio; l'hash della password viene calcolato sul pool di verifica
+	public CompletableFuture<Account> registerUserAsync(String userName, String password) {
+		log.info("registerUser").kv("user", userName).emit();
+		return accountRepository.getAccountAsync(userName).thenCompose(existing -> {
+			if (existing != null) { //se l'utente esiste già non serve calcolare l'hash
+				throw new CompletionException(new AccountAlreadyPresentException());
+			}
+			return credentialChecks.submit(() -> credentialChecks.getVerifier().hash(password));
+		}).thenCompose(passwordHash -> {
+			var account = new Account(userName, passwordHash);
+			return accountRepository.addAccountIfAbsentAsync(account).thenApply(v -> account); //aggiunta atomica (fallisce se registrato nel frattempo); la risposta parte quando l'account è salvato
+		});
+	}
+
 	//esegue il login di un utente al servizio
 	public UserSession login(String userName, String password) throws LoginFailedException {
-		logger.log(Level.INFO, "Login: " + userName + " " + password);
-		if (!accountRepository.isValid(userName, password)) { //se i dati non sono corretti
+		log.info("login").kv("user", userName).emit(); //le credenziali non vengono registrate
+		var account = accountRepository.getAccount(userName);
+		if (account == null ? !credentialChecks.rejectUnknown(password) : !checkCredentials(account, password)) { //se i dati non sono corretti (un utente inesistente costa quanto uno esistente)
 			throw new LoginFailedException(); //lancia un'eccezione
 		}		
+		return createUserSession(userName);
+	}
+
+	//esegue il login di un utente al servizio; la password viene verificata sul pool di verifica (o confrontata con la cache)
+	public CompletableFuture<UserSession> loginAsync(String userName, String password) {
+		log.info("login").kv("user", userName).emit(); //le credenziali non vengono registrate
+		return accountRepository.getAccountAsync(userName).thenCompose(account -> {
+			if (account == null) { //l'hash fittizio rende il rifiuto lento quanto quello di una password sbagliata (nessuna enumerazione degli utenti)
+				return credentialChecks.submit(() -> credentialChecks.rejectUnknown(password)).thenApply(valid -> {
+					throw new CompletionException(new LoginFailedException());
+				});
+			}
+			if (credentialChecks.isRecentlyVerified(account, password)) { //verificata di recente: nessun hash da calcolare
+				return CompletableFuture.completedFuture(createUserSession(userName));
+			}
+			return credentialChecks.submit(() -> checkCredentials(account, password)).thenApply(valid -> {
+				if (!valid) {
+					throw new CompletionException(new LoginFailedException());
+				}
+				return createUserSession(userName);
+			});
+		});
+	}
+
+	/*
+	verifica la password dell'account (operazione lenta); se l'hash memorizzato è in chiaro o usa parametri superati
+	viene sostituito da un nuovo hash
+	 */
+	private boolean checkCredentials(Account account, String password) {
+		if (credentialChecks.isRecentlyVerified(account, password)) {
+			return true;
+		}
+		var verifier = credentialChecks.getVerifier();
+		if (!verifier.verify(password, account.getPasswordHash())) {
+			return false;
+		}
+		if (verifier.needsRehash(account.getPasswordHash())) { //aggiorna l'account al nuovo hash
+			var stored = account;
+			account = new Account(stored.getUserName(), verifier.hash(password));
+			var userName = account.getUserName();
+			accountRepository.replaceAccountAsync(stored, account).exceptionally(ex -> { //il nuovo hash viene salvato senza attendere il db; un account modificato nel frattempo non viene sovrascritto
+				log.warning("rehash-failed").kv("user", userName).kv("error", String.valueOf(ex.getMessage())).emit(); //al prossimo login si riprova
+				return false;
+			});
+		}
+		credentialChecks.remember(account, password);
+		return true;
+	}
+
+	//crea la sessione dell'utente autenticato
+	private UserSession createUserSession(String userName) {
 		var id = new UserId(userName); //crea l'utente
-		sessionCount++; //incrementa il numero di sessioni utente
-		var sessionId = "user-session-" + sessionCount; //crea un id per la sessione
-		var us = new UserSession(sessionId, id, this); //crea la sessione
+		long key = sessionCount.incrementAndGet(); //incrementa il numero di sessioni utente e crea un id numerico per la sessione
+		var us = new UserSession(key, idPrefix + SessionIds.token(SessionIds.USER, key), id, this); //crea la sessione (con il token inviato al client)
 		userSessionRepository.addSession(us); //aggiunge la sessione
 		return us; //restituisce la sessione creata
 	}
 
-	//crea una nuova partita
+	//crea una nuova partita (griglia classica 3x3)
 	public void createNewGame(String gameId) throws GameAlreadyPresentException {
-		logger.log(Level.INFO, "create New Game " + gameId);
-		var game = new Game(gameId); //crea una partita
-		if (gameRepository.isPresent(gameId)) { //se la partita esiste (è già avviata)
+		createNewGame(gameId, BoardConfig.STANDARD);
+	}
+
+	//crea una nuova partita con la griglia indicata
+	public void createNewGame(String gameId, BoardConfig board) throws GameAlreadyPresentException {
+		var game = new Game(gameId, board); //crea una partita
+		var lifecycle = newGame(game);
+		if (!gameRepository.addGameIfAbsent(game)) { //aggiunge la partita in modo atomico; se la partita esiste già (ad esempio mentre viene rimossa)
+			lifecycles.remove(gameId, lifecycle);
 			throw new GameAlreadyPresentException(); //lancia un'eccezione
 		}
-		gameRepository.addGame(game); //avvia la partita
+		lifecycle.activate(game); //la partita viene contata tra quelle presenti
+	}
+
+	//crea una nuova partita senza bloccare il chiamante; la future viene completata quando la partita è salvata nel repository
+	public CompletableFuture<Void> createNewGameAsync(String gameId, BoardConfig board) {
+		var game = new Game(gameId, board);
+		GameLifecycle lifecycle;
+		try {
+			lifecycle = newGame(game);
+		} catch (GameAlreadyPresentException ex) {
+			return CompletableFuture.failedFuture(ex);
+		}
+		return gameRepository.addGameIfAbsentAsync(game).thenApply(added -> {
+			if (!added) {
+				lifecycles.remove(gameId, lifecycle);
+				throw new CompletionException(new GameAlreadyPresentException());
+			}
+			lifecycle.activate(game);
+			return null;
+		});
+	}
+
+	//registra il ciclo di vita della nuova partita (la partita non è ancora nel repository)
+	private GameLifecycle newGame(Game game) throws GameAlreadyPresentException {
+		var board = game.getBoard().getConfig();
+		log.info("createGame").kv("game", game.getId()).kv("board", board.width() + "x" + board.height() + "/" + board.winLength()).emit();
+		var lifecycle = new GameLifecycle(game, System.currentTimeMillis(), gamesByState);
+		lifecycle.attach(game); //osserva la partita per sapere quando può essere rimossa
+		if (lifecycles.putIfAbsent(game.getId(), lifecycle) != null) { //se la partita esiste già
+			throw new GameAlreadyPresentException(); //lancia un'eccezione
+		}
+		return lifecycle;
 	}
 
 	//fa entrare un utente in una partita
 	public PlayerSession joinGame(UserId userId, String gameId, TTTSymbol symbol, PlayerSessionEventObserver notifier) throws InvalidJoinException {
-		logger.log(Level.INFO, "JoinGame - user: " + userId + " game: " + gameId + " symbol " + symbol);
-		var game = gameRepository.getGame(gameId); //recupera la partita
-		game.joinGame(userId, symbol); //fa entrare l'utente nella partita indicata
-		playerSessionCount++; //incrementa il numero di sessioni giocatore
-		var playerSessionId = "player-session-" + playerSessionCount; //crea un id per la sessione
-		var ps = new PlayerSession(playerSessionId, userId, game, symbol);  //crea la sessione
-		ps.bindPlayerSessionEventNotifier(notifier); //definisce un observer per la sessione
-		playerSessionRepository.addSession(ps); //aggiunge la sessione
-		game.addGameObserver(ps); //aggiunge l'observer
-		if (game.isReadyToStart()) { //se la partita può iniziare
-			game.startGame(); //avvia la partita
+		log.info("joinGame").kv("user", userId.id()).kv("game", gameId).kv("symbol", symbol).emit();
+		gameRepository.registerPlayer(userId); //prima del lock della partita
+		return join(userId, gameRepository.getGame(gameId), symbol, notifier);
+	}
+
+	//fa entrare un utente in una partita recuperata dalla porta asincrona del repository; il join viene eseguito su "gameLoop" (l'event loop proprietario della partita)
+	public CompletableFuture<PlayerSession> joinGameAsync(UserId userId, String gameId, TTTSymbol symbol, PlayerSessionEventObserver notifier, Executor gameLoop) {
+		log.info("joinGame").kv("user", userId.id()).kv("game", gameId).kv("symbol", symbol).emit();
+		var registered = gameRepository.registerPlayerAsync(userId); //un nome nuovo viene reso persistente fuori dall'event loop, prima del join
+		return gameRepository.getGameAsync(gameId).thenCombine(registered, (game, v) -> game).thenApplyAsync(game -> {
+			try {
+				return join(userId, game, symbol, notifier);
+			} catch (InvalidJoinException ex) {
+				throw new CompletionException(ex);
+			}
+		}, gameLoop);
+	}
+
+	//join dell'utente nella partita già recuperata
+	private PlayerSession join(UserId userId, Game game, TTTSymbol symbol, PlayerSessionEventObserver notifier) throws InvalidJoinException {
+		if (game == null) { //partita inesistente (o già rimossa)
+			throw new InvalidJoinException();
+		}
+		var gameId = game.getId();
+		synchronized (game) { //join, registrazione dell'observer e avvio devono essere atomici rispetto ad altri join concorrenti sulla stessa partita
+			var lifecycle = lifecycleOf(game);
+			lifecycle.attach(game); //la partita potrebbe essere stata ricostruita dal repository dopo l'ultimo utilizzo
+			boolean rejoin = lifecycle.isRecovered() && userId.equals(game.getPlayer(symbol)); //il giocatore rientra in una partita ricostruita dopo un riavvio
+			if (!rejoin) {
+				game.joinGame(userId, symbol); //fa entrare l'utente nella partita indicata
+			}
+			long key = playerSessionCount.incrementAndGet(); //incrementa il numero di sessioni giocatore e crea un id numerico per la sessione
+			var playerSessionId = idPrefix + SessionIds.token(SessionIds.PLAYER, key);
+			var ps = new PlayerSession(key, playerSessionId, userId, game, symbol);  //crea la sessione
+			ps.bindPlayerSessionEventNotifier(notifier); //definisce un observer per la sessione
+			playerSessionRepository.addSession(ps); //aggiunge la sessione
+			lifecycle.addPlayerSession(key, System.currentTimeMillis()); //la sessione verrà rimossa insieme alla partita
+			ps.bindLifecycle(lifecycle);
+			game.addGameObserver(ps); //aggiunge l'observer
+			if (!rejoin && game.isReadyToStart()) { //se la partita può iniziare
+				game.startGame(); //avvia la partita
+			}
+			return ps; //restituisce la sessione giocatore
+		}
+	}
+
+	//ciclo di vita della partita (con il lock della partita); una partita ricostruita dal db lo riceve al primo utilizzo e da lì viene contata
+	private GameLifecycle lifecycleOf(Game game) {
+		var lifecycle = lifecycles.get(game.getId());
+		if (lifecycle != null) {
+			return lifecycle;
+		}
+		var recovered = new GameLifecycle(game, System.currentTimeMillis(), true, gamesByState);
+		lifecycle = lifecycles.putIfAbsent(game.getId(), recovered);
+		if (lifecycle != null) {
+			return lifecycle;
 		}
-		return ps; //restituisce la sessione giocatore
+		recovered.attach(game);
+		recovered.activate(game);
+		return recovered;
+	}
+
+	//crea una partita contro il bot
+	public PlayerSession playAgainstBot(UserId userId, String gameId, TTTSymbol symbol, PlayerSessionEventObserver notifier, Executor botMoves) throws GameAlreadyPresentException, InvalidJoinException {
+		log.info("playAgainstBot").kv("user", userId.id()).kv("game", gameId).kv("symbol", symbol).emit();
+		createNewGame(gameId);
+		if (symbol == TTTSymbol.X) {
+			var ps = joinGame(userId, gameId, TTTSymbol.X, notifier);
+			joinGame(BOT_O, gameId, TTTSymbol.O, new BotPlayer(this, TTTSymbol.O, botMoves)); //il secondo join avvia la partita
+			return ps;
+		}
+		joinGame(BOT_X, gameId, TTTSymbol.X, new BotPlayer(this, TTTSymbol.X, botMoves));
+		return joinGame(userId, gameId, TTTSymbol.O, notifier);
+	}
+
+	//crea una partita contro il bot tramite le porte asincrone (come il matchmaking): i join e le mosse del bot vengono eseguiti su "gameLoop"
+	public CompletableFuture<PlayerSession> playAgainstBotAsync(UserId userId, String gameId, TTTSymbol symbol, PlayerSessionEventObserver notifier, Executor gameLoop) {
+		log.info("playAgainstBot").kv("user", userId.id()).kv("game", gameId).kv("symbol", symbol).emit();
+		return createNewGameAsync(gameId, BoardConfig.STANDARD).thenCompose(created -> {
+			if (symbol == TTTSymbol.X) {
+				return joinGameAsync(userId, gameId, TTTSymbol.X, notifier, gameLoop)
+					.thenCompose(ps -> joinGameAsync(BOT_O, gameId, TTTSymbol.O, new BotPlayer(this, TTTSymbol.O, gameLoop), gameLoop).thenApply(bot -> ps)); //il secondo join avvia la partita
+			}
+			return joinGameAsync(BOT_X, gameId, TTTSymbol.X, new BotPlayer(this, TTTSymbol.X, gameLoop), gameLoop)
+				.thenCompose(bot -> joinGameAsync(userId, gameId, TTTSymbol.O, notifier, gameLoop));
+		});
+	}
+
+	//crea una partita tra due bot
+	public CompletableFuture<Optional<String>> playBotAgainstBot(String gameId, Executor botMoves) throws GameAlreadyPresentException {
+		createNewGame(gameId);
+		var cross = new BotPlayer(this, TTTSymbol.X, botMoves);
+		try {
+			joinGame(BOT_X, gameId, TTTSymbol.X, cross);
+			joinGame(BOT_O, gameId, TTTSymbol.O, new BotPlayer(this, TTTSymbol.O, botMoves));
+		} catch (InvalidJoinException ex) { //la partita è appena stata creata: i due simboli sono liberi
+			throw new IllegalStateException(ex);
+		}
+		return cross.result();
+	}
+
+	//inserisce l'utente nella coda di matchmaking
+	public MatchTicket findMatch(UserId userId, int rating, PlayerSessionEventObserver notifier) {
+		log.info("findMatch").kv("user", userId.id()).kv("rating", rating).emit();
+		return matchmaker.enqueue(userId, rating, notifier);
+	}
+
+	//metriche della coda di matchmaking
+	public MatchmakingStats matchmakingStats() {
+		return matchmaker.stats();
+	}
+
+	//registra uno spettatore della partita, recuperata dalla porta asincrona del repository
+	public CompletableFuture<Boolean> watchGameAsync(String gameId, GameObserver spectator) {
+		return gameRepository.getGameAsync(gameId).thenApply(game -> {
+			if (game == null) {
+				return false;
+			}
+			game.addSpectator(spectator); //riceve subito lo stato attuale, poi gli eventi successivi
+			return true;
+		});
+	}
+
+	//rimuove uno spettatore della partita (il chiamante non attende il repository)
+	public void unwatchGame(String gameId, GameObserver spectator) {
+		gameRepository.getGameAsync(gameId).thenAccept(game -> {
+			if (game != null) {
+				game.removeSpectator(spectator);
+			}
+		});
 	}
 
 	//recupera una sessione utente
 	public UserSession getUserSession(String sessionId) {
-		return userSessionRepository.getSession(sessionId);
+		long key = sessionKey(sessionId, SessionIds.USER);
+		var us = key <= 0 ? null : userSessionRepository.getSession(key);
+		if (us != null) {
+			us.touch(System.currentTimeMillis()); //la sessione è ancora in uso
+		}
+		return us;
 	}
 
 	//recupera una sessione giocatore
 	public PlayerSession getPlayerSession(String sessionId) {
-		return playerSessionRepository.getSession(sessionId);
+		long key = sessionKey(sessionId, SessionIds.PLAYER);
+		return key <= 0 ? null : playerSessionRepository.getSession(key);
 	}
 
+	//id numerico contenuto nel token (-1 se il token non è valido, è di un altro tipo o appartiene a un altro nodo)
+	private long sessionKey(String token, char kind) {
+		if (token == null || !token.startsWith(idPrefix)) {
+			return -1;
+		}
+		return SessionIds.parse(token, idPrefix.length(), kind);
+	}
+
+	//indica se la partita è presente (anche ricostruita dal db e non ancora ripresa)
+	public boolean hasGame(String gameId) {
+		return lifecycles.containsKey(gameId) || gameRepository.isPresent(gameId);
+	}
+
+	//rimuove le sessioni utente inattive e le partite scadute
+	public int evictExpired() {
+		return evictExpired(System.currentTimeMillis());
+	}
+
+	//rimuove le sessioni utente inattive e le partite scadute rispetto all'istante indicato (ms)
+	public int evictExpired(long now) {
+		int removed = userSessionRepository.removeIdle(now, userSessionIdleTimeout);
+		for (var it = lifecycles.values().iterator(); it.hasNext(); ) {
+			var lifecycle = it.next();
+			if (lifecycle.isExpired(now, finishedGameGracePeriod, gameIdleTimeout)) {
+				it.remove();
+				gameRepository.removeGame(lifecycle.getGameId()); //rimuove la partita
+				for (var playerSession: lifecycle.release()) { //stacca gli osservatori e rimuove le sessioni giocatore collegate
+					playerSessionRepository.removeSession(playerSession);
+				}
+				removed++;
+			}
+		}
+		if (now - repositoryBoundAt >= gameIdleTimeout && recoveredSwept.compareAndSet(false, true)) { //partite ricostruite dal db e mai riprese: abbandonate
+			for (var gameId: gameRepository.getGameIds()) {
+				if (!lifecycles.containsKey(gameId)) {
+					gameRepository.removeGame(gameId);
+					removed++;
+				}
+			}
+		}
+		var gauges = registryGauges();
+		log.info("evict").kv("removed", removed).kv("userSessions", gauges.userSessions()).kv("playerSessions", gauges.playerSessions()).kv("games", gauges.games()).emit();
+		return removed;
+	}
+
+	//restituisce il numero di oggetti vivi contenuti nei registri
+	public RegistryGauges registryGauges() {
+		return new RegistryGauges(userSessionRepository.size(), playerSessionRepository.size(), gameRepository.size(),
+				gamesByState.get(Game.GameState.WAITING_FOR_PLAYERS.ordinal()), gamesByState.get(Game.GameState.STARTED.ordinal()), gamesByState.get(Game.GameState.FINISHED.ordinal()));
+	}
+
+	//definisce il verificatore delle password
+    public void bindCredentialVerifier(CredentialVerifier verifier) {
+    	credentialChecks.setVerifier(verifier);
+    }
+
+	//restituisce il pool di verifica delle password (profondità della coda e richieste rifiutate)
+    public CredentialCheckPool getCredentialChecks() {
+    	return credentialChecks;
+    }
+
 	//definisce un repository per gli account
     public void bindAccountRepository(AccountRepository repo) {
     	this.accountRepository = repo;
@@ -95,7 +436,9 @@ public class GameServiceImpl implements GameService {
 
 	//definisce un repository per le partite
     public void bindGameRepository(GameRepository repo) {
-    	this.gameRepository = repo;
+    	this.gameRepository = repo; //le partite ricostruite dal db non vengono lette qui: ricevono il ciclo di vita al primo join
+    	repositoryBoundAt = System.currentTimeMillis();
+    	recoveredSwept.set(false);
     }
 
 }
@@ -0,0 +1,54 @@
+package ttt_game_service.application;
+
+import java.util.concurrent.CompletableFuture;
+import ttt_game_service.domain.UserId;
+
+/*
+richiesta di partita in attesa nella coda di matchmaking
+il risultato viene completato con la sessione giocatore quando viene trovato un avversario, oppure annullato (CancellationException)
+se la richiesta viene ritirata o sostituita da una nuova richiesta dello stesso utente
+ */
+public class MatchTicket {
+
+	private final Matchmaker matchmaker; //coda che contiene la richiesta
+	private final UserId userId; //utente in attesa
+	private final int bucket; //fascia di punteggio
+	private final PlayerSessionEventObserver notifier; //observer che notificherà gli eventi della partita al giocatore
+	private final long enqueuedAt; //istante di ingresso nella coda (ns)
+	private final CompletableFuture<PlayerSession> result; //sessione giocatore della partita trovata
+
+	MatchTicket(Matchmaker matchmaker, UserId userId, int bucket, PlayerSessionEventObserver notifier, long enqueuedAt) {
+		this.matchmaker = matchmaker;
+		this.userId = userId;
+		this.bucket = bucket;
+		this.notifier = notifier;
+		this.enqueuedAt = enqueuedAt;
+		result = new CompletableFuture<>();
+	}
+
+	//sessione giocatore della partita trovata
+	public CompletableFuture<PlayerSession> result() {
+		return result;
+	}
+
+	//ritira la richiesta se è ancora in attesa; restituisce false se l'avversario è già stato trovato
+	public boolean cancel() {
+		return matchmaker.cancel(this);
+	}
+
+	UserId getUserId() {
+		return userId;
+	}
+
+	int getBucket() {
+		return bucket;
+	}
+
+	PlayerSessionEventObserver getNotifier() {
+		return notifier;
+	}
+
+	long getEnqueuedAt() {
+		return enqueuedAt;
+	}
+}
@@ -0,0 +1,158 @@
+package ttt_game_service.application;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+
+/*
+coda di matchmaking senza lock: per ogni fascia di punteggio c'è al più una richiesta in attesa (slot aggiornato con compare-and-set)
+chi arriva trova lo slot vuoto e si mette in attesa, oppure prende la richiesta in attesa e crea la partita; la coda non ha quindi mai
+più di una richiesta per fascia e l'abbinamento costa un solo cas
+una richiesta che attende da più di WIDEN_AFTER può essere abbinata anche a un giocatore di una fascia adiacente
+la partita e i join della coppia usano le porte asincrone del repository, quindi il thread che completa la coppia non attende l'i/o:
+chi attende da più tempo gioca con "croce", il secondo join avvia la partita e notifica game-started a entrambi i giocatori
+ */
+class Matchmaker {
+
+	static final int BUCKET_WIDTH = 200; //ampiezza di una fascia di punteggio
+	static final int BUCKETS = 16; //numero di fasce (i punteggi oltre l'ultima fascia finiscono nell'ultima)
+	static final long WIDEN_AFTER = 5_000_000_000L; //attesa (ns) dopo la quale si accettano avversari delle fasce adiacenti
+	static final String GAME_ID_PREFIX = "match-"; //prefisso degli id delle partite create dal matchmaking
+
+	private final GameServiceImpl service; //servizio che crea la partita e le sessioni giocatore
+	private final AtomicReferenceArray<MatchTicket> waiting; //richiesta in attesa per fascia (null se nessuna)
+	private final AtomicInteger depth; //richieste in attesa
+	private final AtomicLong gameCount; //generatore degli id delle partite
+	private final LongAdder matches; //partite create
+	private final LongAdder cancelled; //richieste ritirate o sostituite
+	private final LongAdder matchedPlayers; //giocatori abbinati
+	private final LongAdder totalWait; //somma dei tempi di attesa (ns)
+	private final AtomicLong maxWait; //tempo di attesa massimo (ns)
+
+	Matchmaker(GameServiceImpl service) {
+		this.service = service;
+		waiting = new AtomicReferenceArray<>(BUCKETS);
+		depth = new AtomicInteger();
+		gameCount = new AtomicLong();
+		matches = new LongAdder();
+		cancelled = new LongAdder();
+		matchedPlayers = new LongAdder();
+		totalWait = new LongAdder();
+		maxWait = new AtomicLong();
+	}
+
+	//fascia di un punteggio
+	static int bucket(int rating) {
+		return Math.min(BUCKETS - 1, Math.max(0, rating / BUCKET_WIDTH));
+	}
+
+	//inserisce un utente nella coda; se trova un avversario crea subito la partita
+	MatchTicket enqueue(UserId userId, int rating, PlayerSessionEventObserver notifier) {
+		int bucket = bucket(rating);
+		var ticket = new MatchTicket(this, userId, bucket, notifier, System.nanoTime());
+		while (true) {
+			var other = waiting.get(bucket);
+			if (other == null) { //nessuno in attesa nella fascia
+				var neighbour = takeNeighbour(ticket);
+				if (neighbour != null) {
+					pair(neighbour, ticket);
+					return ticket;
+				}
+				if (waiting.compareAndSet(bucket, null, ticket)) {
+					depth.incrementAndGet();
+					return ticket;
+				}
+			} else if (other.getUserId().equals(userId)) { //stesso utente: la nuova richiesta sostituisce la precedente
+				if (waiting.compareAndSet(bucket, other, ticket)) {
+					cancelled.increment();
+					other.result().cancel(false);
+					return ticket;
+				}
+			} else if (waiting.compareAndSet(bucket, other, null)) { //avversario trovato
+				depth.decrementAndGet();
+				pair(other, ticket);
+				return ticket;
+			}
+		}
+	}
+
+	//prende una richiesta di una fascia adiacente che attende da più di WIDEN_AFTER (null se non c'è)
+	private MatchTicket takeNeighbour(MatchTicket ticket) {
+		for (int b = ticket.getBucket() - 1; b <= ticket.getBucket() + 1; b += 2) {
+			if (b < 0 || b >= BUCKETS) {
+				continue;
+			}
+			var other = waiting.get(b);
+			if (other != null && ticket.getEnqueuedAt() - other.getEnqueuedAt() >= WIDEN_AFTER && !other.getUserId().equals(ticket.getUserId()) && waiting.compareAndSet(b, other, null)) {
+				depth.decrementAndGet();
+				return other;
+			}
+		}
+		return null;
+	}
+
+	//ritira una richiesta ancora in attesa
+	boolean cancel(MatchTicket ticket) {
+		if (waiting.compareAndSet(ticket.getBucket(), ticket, null)) {
+			depth.decrementAndGet();
+			cancelled.increment();
+			ticket.result().cancel(false);
+			return true;
+		}
+		return false;
+	}
+
+	//crea la partita per la coppia: "first" (in attesa da più tempo) gioca con "croce"; i join seguono sul thread che completa la lettura della partita
+	private void pair(MatchTicket first, MatchTicket second) {
+		long now = System.nanoTime();
+		recordWait(now - first.getEnqueuedAt());
+		recordWait(now - second.getEnqueuedAt());
+		newGame()
+			.thenCompose(gameId -> service.joinGameAsync(first.getUserId(), gameId, TTTSymbol.X, first.getNotifier(), Runnable::run)
+				.thenCompose(cross -> service.joinGameAsync(second.getUserId(), gameId, TTTSymbol.O, second.getNotifier(), Runnable::run) //avvia la partita
+					.thenAccept(circle -> {
+						matches.increment();
+						first.result().complete(cross);
+						second.result().complete(circle);
+					})))
+			.exceptionally(ex -> {
+				var failure = cause(ex);
+				first.result().completeExceptionally(failure);
+				second.result().completeExceptionally(failure);
+				return null;
+			});
+	}
+
+	//crea una partita con un nuovo id (gli id già usati dagli utenti vengono saltati)
+	private CompletableFuture<String> newGame() {
+		var gameId = GAME_ID_PREFIX + gameCount.incrementAndGet();
+		return service.createNewGameAsync(gameId, BoardConfig.STANDARD)
+			.thenApply(v -> gameId)
+			.exceptionallyCompose(ex -> cause(ex) instanceof GameAlreadyPresentException ? newGame() : CompletableFuture.failedFuture(ex)); //id già in uso: si prova il successivo
+	}
+
+	//restituisce l'eccezione originale di un'operazione asincrona
+	private static Throwable cause(Throwable failure) {
+		return (failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure;
+	}
+
+	//registra il tempo di attesa di un giocatore
+	private void recordWait(long nanos) {
+		matchedPlayers.increment();
+		totalWait.add(nanos);
+		maxWait.accumulateAndGet(nanos, Math::max);
+	}
+
+	//metriche della coda
+	MatchmakingStats stats() {
+		long players = matchedPlayers.sum();
+		double mean = players == 0 ? 0 : totalWait.sum() / 1e6 / players;
+		return new MatchmakingStats(depth.get(), matches.sum(), cancelled.sum(), mean, maxWait.get() / 1e6);
+	}
+}
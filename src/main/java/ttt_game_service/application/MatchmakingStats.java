@@ -0,0 +1,4 @@
+package ttt_game_service.application;
+
+//metriche della coda di matchmaking: richieste in attesa, partite create, richieste ritirate, tempo di attesa (medio e massimo) fino all'abbinamento
+public record MatchmakingStats(int waiting, long matches, long cancelled, double meanTimeToMatchMillis, double maxTimeToMatchMillis) {}
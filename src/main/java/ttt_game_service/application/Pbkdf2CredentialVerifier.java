@@ -0,0 +1,82 @@
+package ttt_game_service.application;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/*
+verificatore di default: PBKDF2 con HMAC-SHA256 e sale casuale per ogni account
+formato dell'hash: pbkdf2-sha256$<iterazioni>$<sale base64>$<hash base64>
+un valore senza il prefisso è una password in chiaro di un account creato prima degli hash: il db la sostituisce con un hash al caricamento,
+un adapter che non lo fa la vede accettata e segnalata per il ricalcolo al login
+ */
+public class Pbkdf2CredentialVerifier implements CredentialVerifier {
+
+	static final String PREFIX = "pbkdf2-sha256$"; //prefisso degli hash prodotti da questo verificatore
+	static final int DEFAULT_ITERATIONS = 210_000; //iterazioni di default
+	static final int SALT_BYTES = 16; //lunghezza del sale
+	static final int HASH_BITS = 256; //lunghezza dell'hash
+	private final int iterations; //iterazioni usate per i nuovi hash
+	private final SecureRandom random; //generatore dei sali
+
+	public Pbkdf2CredentialVerifier() {
+		this(DEFAULT_ITERATIONS);
+	}
+
+	public Pbkdf2CredentialVerifier(int iterations) {
+		this.iterations = iterations;
+		random = new SecureRandom();
+	}
+
+	//calcola l'hash codificato della password con un nuovo sale
+	public String hash(String password) {
+		var salt = new byte[SALT_BYTES];
+		random.nextBytes(salt);
+		var encoder = Base64.getEncoder().withoutPadding();
+		return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(derive(password, salt, iterations));
+	}
+
+	//verifica la password rispetto all'hash codificato (confronto a tempo costante)
+	public boolean verify(String password, String passwordHash) {
+		if (isPlaintext(passwordHash)) { //password in chiaro del vecchio formato
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), passwordHash.getBytes(StandardCharsets.UTF_8));
+		}
+		var parts = passwordHash.substring(PREFIX.length()).split("\\$");
+		if (parts.length != 3) {
+			return false;
+		}
+		var decoder = Base64.getDecoder();
+		var expected = decoder.decode(parts[2]);
+		return MessageDigest.isEqual(expected, derive(password, decoder.decode(parts[1]), Integer.parseInt(parts[0])));
+	}
+
+	//un hash va ricalcolato se è in chiaro o se usa meno iterazioni di quelle correnti
+	public boolean needsRehash(String passwordHash) {
+		if (isPlaintext(passwordHash)) {
+			return true;
+		}
+		int end = passwordHash.indexOf('$', PREFIX.length());
+		return end < 0 || Integer.parseInt(passwordHash.substring(PREFIX.length(), end)) < iterations;
+	}
+
+	//un valore senza il prefisso è una password in chiaro
+	public boolean isPlaintext(String passwordHash) {
+		return !passwordHash.startsWith(PREFIX);
+	}
+
+	//calcola l'hash pbkdf2 della password
+	private static byte[] derive(String password, byte[] salt, int iterations) {
+		var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException ex) {
+			throw new IllegalStateException("PBKDF2 not available", ex);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
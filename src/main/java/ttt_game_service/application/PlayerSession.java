@@ -1,5 +1,6 @@
 package ttt_game_service.application;
 
+import java.util.Optional;
 import ttt_game_service.domain.Game;
 import ttt_game_service.domain.GameEnded;
 import ttt_game_service.domain.GameEvent;
@@ -16,40 +17,83 @@ public class PlayerSession implements GameObserver {
 	private UserId userId; //id del giocatore
 	private Game game; //partita associata alla sessione
 	private final TTTSymbol symbol; //simbolo del giocatore (croce o cerchio)
-	private String playerSessionId; //id della sessione del giocatore
+	private final long key; //id numerico della sessione (chiave del registro)
+	private String playerSessionId; //token della sessione del giocatore inviato al client
 	private PlayerSessionEventObserver playerSessionEventNotifier; //observer associato alla sessione del giocatore (notifica il giocatore associato a questa sessione)
+	private GameLifecycle lifecycle; //ciclo di vita della partita, che fornisce l'esito condiviso a fine partita (null se la partita non ne ha uno)
 	
-	public PlayerSession(String playerSessionId, UserId userId, Game game, TTTSymbol symbol) {
+	public PlayerSession(long key, String playerSessionId, UserId userId, Game game, TTTSymbol symbol) {
+		this.key = key;
 		this.userId = userId;
 		this.game = game;
 		this.symbol = symbol;
 		this.playerSessionId = playerSessionId;
 	}
 
-	//fa eseguire al giocatore una mossa
+	//fa eseguire al giocatore una mossa (con il simbolo assegnato all'ingresso: la partita non deve cercare il giocatore)
 	public void makeMove(int x, int y) throws InvalidMoveException {
-		game.makeAmove(userId, x, y);
+		game.makeAmove(symbol, x, y);
 	}
 
-	//recupera l'id della sessione
+	//recupera l'id numerico della sessione
+	public long getKey() {
+		return key;
+	}
+
+	//recupera il token della sessione
 	public String getId() {
 		return playerSessionId;
 	}
 
+	//recupera l'id della partita associata alla sessione
+	public String getGameId() {
+		return game.getId();
+	}
+
+	//recupera il simbolo del giocatore
+	public TTTSymbol getSymbol() {
+		return symbol;
+	}
+
 	//notifica gli eventi di gioco
 	public void notifyGameEvent(GameEvent ev) {
 		if (ev instanceof GameStarted) { //se l'evento è di tipo "GameStarted"
-			playerSessionEventNotifier.gameStarted(playerSessionId); //notifica al giocatore che la partita è iniziata
+			gameStarted(game.getId());
 		} else if (ev instanceof GameEnded) { //altrimenti se l'evento è di tipo "GameEnded"
 			var e = (GameEnded) ev;
 			playerSessionEventNotifier.gameEnded(playerSessionId, e.winner()); //notifica al giocatore che la partita è terminata e il vincitore
 		} else if (ev instanceof NewMove) { //altrimenti se l'evento è di tipo "NewMove"
 			var e = (NewMove) ev;
-			log("new move: " + e.symbol() + " in (" + e.x() + ", " + e.y() + ")");
-			playerSessionEventNotifier.newMove(playerSessionId, e.symbol(), e.x(), e.y()); //notifica al giocatore che la mossa eseguita dall'avversario
+			newMove(e.gameId(), TTTSymbol.valueOf(e.symbol()), e.x(), e.y());
 		}
 	}
 
+	@Override
+	public void gameStarted(String gameId) {
+		playerSessionEventNotifier.gameStarted(playerSessionId); //notifica al giocatore che la partita è iniziata
+	}
+
+	@Override
+	public void newMove(String gameId, TTTSymbol symbol, int x, int y) { //la mossa viene registrata una sola volta dalla partita ("game-move")
+		playerSessionEventNotifier.newMove(playerSessionId, symbol.toString(), x, y); //notifica al giocatore la mossa eseguita (il nome del simbolo è una costante)
+	}
+
+	@Override
+	public void gameEnded(String gameId, UserId winner) {
+		var outcome = lifecycle != null ? lifecycle.outcome(winner) : new GameOutcome(winner == null ? Optional.empty() : Optional.of(winner.id()));
+		playerSessionEventNotifier.gameEnded(playerSessionId, outcome); //notifica al giocatore che la partita è terminata (stesso esito per tutti i giocatori)
+	}
+
+	@Override
+	public void playerJoined(String gameId, TTTSymbol symbol, UserId userId) {
+		//l'ingresso dei giocatori non viene notificato alla sessione
+	}
+
+	//collega la sessione al ciclo di vita della partita
+	void bindLifecycle(GameLifecycle lifecycle) {
+		this.lifecycle = lifecycle;
+	}
+
 	//definisce un observer per la sessione
 	public void bindPlayerSessionEventNotifier(PlayerSessionEventObserver playerSessionEventNotifier) {
 		this.playerSessionEventNotifier = playerSessionEventNotifier;
@@ -59,8 +103,4 @@ public class PlayerSession implements GameObserver {
 	public PlayerSessionEventObserver getPlayerSessionEventNotifier() {
 		return playerSessionEventNotifier;
 	}
-	
-	private void log(String msg) {
-		System.out.println("[ player " + userId.id() + " in game " + game.getId() + " ] " + msg);
-	}
 }
@@ -21,4 +21,9 @@ public interface PlayerSessionEventObserver {
 	
 	//notifica che la partita è terminata
 	void gameEnded(String playerSessionId, Optional<String> winner);
+
+	//notifica che la partita è terminata con l'esito condiviso da tutti i giocatori (un adapter può codificare l'evento una sola volta)
+	default void gameEnded(String playerSessionId, GameOutcome outcome) {
+		gameEnded(playerSessionId, outcome.winner());
+	}
 }
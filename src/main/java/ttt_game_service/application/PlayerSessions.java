@@ -1,25 +1,34 @@
 package ttt_game_service.application;
 
-import java.util.HashMap;
 import ddd.Repository;
 
-//tiene traccia delle sessioni di tutti i giocatori
+//tiene traccia delle sessioni di tutti i giocatori (thread-safe, chiavi numeriche senza boxing)
 public class PlayerSessions implements Repository {
 
-	private HashMap<String, PlayerSession> userSessions; //hashmap che associa il giocatore alla sessione
+	private ConcurrentLongMap<PlayerSession> playerSessions; //mappa concorrente che associa l'id numerico alla sessione
 	
 	public PlayerSessions() {
-		userSessions = new HashMap<>();
+		playerSessions = new ConcurrentLongMap<>();
 	}
 
 	//aggiunge una sessione
 	public void addSession(PlayerSession ps) {
-		userSessions.put(ps.getId(), ps);
+		playerSessions.put(ps.getKey(), ps);
 	}
 
 	//recupera la sessione del giocatore
-	public PlayerSession getSession(String sessionId) {
-		return userSessions.get(sessionId);
+	public PlayerSession getSession(long key) {
+		return playerSessions.get(key);
+	}
+
+	//rimuove la sessione del giocatore
+	public void removeSession(long key) {
+		playerSessions.remove(key);
+	}
+
+	//numero di sessioni presenti
+	public int size() {
+		return playerSessions.size();
 	}
 	
 }
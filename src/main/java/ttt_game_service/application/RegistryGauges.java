@@ -0,0 +1,4 @@
+package ttt_game_service.application;
+
+//numero di oggetti vivi contenuti nei registri del servizio (le partite anche per stato)
+public record RegistryGauges(int userSessions, int playerSessions, int games, int waitingGames, int startedGames, int finishedGames) {}
@@ -0,0 +1,41 @@
+package ttt_game_service.application;
+
+/*
+id delle sessioni: valori numerici a 64 bit (chiavi dei registri) inviati ai client come token brevi
+token = tipo ('u' sessione utente, 'p' sessione giocatore) + id in base 36, ad esempio "u1z" (in un cluster preceduto dall'id del nodo, "n1:u1z")
+ */
+public final class SessionIds {
+
+	public static final char USER = 'u'; //tipo delle sessioni utente
+	public static final char PLAYER = 'p'; //tipo delle sessioni giocatore
+	static final int MAX_DIGITS = 12; //cifre in base 36 di un id (36^12 < 2^63, nessun overflow)
+
+	private SessionIds() {}
+
+	//token dell'id indicato
+	public static String token(char kind, long id) {
+		return kind + Long.toString(id, 36);
+	}
+
+	//id contenuto nel token a partire dalla posizione "from" (-1 se il token non è valido o è di un altro tipo); non alloca
+	public static long parse(String token, int from, char kind) {
+		int length = token.length() - from - 1;
+		if (length < 1 || length > MAX_DIGITS || token.charAt(from) != kind) {
+			return -1;
+		}
+		long id = 0;
+		for (int i = from + 1; i < token.length(); i++) {
+			char c = token.charAt(i);
+			int digit;
+			if (c >= '0' && c <= '9') {
+				digit = c - '0';
+			} else if (c >= 'a' && c <= 'z') {
+				digit = c - 'a' + 10;
+			} else {
+				return -1;
+			}
+			id = id * 36 + digit;
+		}
+		return id;
+	}
+}
@@ -1,5 +1,8 @@
 package ttt_game_service.application;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import ttt_game_service.domain.BoardConfig;
 import ttt_game_service.domain.InvalidJoinException;
 import ttt_game_service.domain.TTTSymbol;
 import ttt_game_service.domain.UserId;
@@ -7,14 +10,28 @@ import ttt_game_service.domain.UserId;
 //sessione dell'utente (ancora non giocatore)
 public class UserSession {
 
-	private String sessionId; //id della sessione
+	private final long key; //id numerico della sessione (chiave del registro)
+	private String sessionId; //token della sessione inviato al client
 	private UserId userId; //id dell'utente
 	private GameService gameService; //servizio principale dell'app
+	private volatile long lastAccess; //istante dell'ultimo utilizzo della sessione (ms)
 	
-	public UserSession(String sessionId, UserId userId, GameServiceImpl gameService) {
+	public UserSession(long key, String sessionId, UserId userId, GameServiceImpl gameService) {
+		this.key = key;
 		this.userId = userId;
 		this.gameService = gameService;
 		this.sessionId = sessionId;
+		lastAccess = System.currentTimeMillis();
+	}
+
+	//registra un utilizzo della sessione
+	void touch(long now) {
+		lastAccess = now;
+	}
+
+	//restituisce l'istante dell'ultimo utilizzo della sessione
+	long getLastAccess() {
+		return lastAccess;
 	}
 
 	//crea una nuova partita
@@ -22,12 +39,52 @@ public class UserSession {
 		gameService.createNewGame(gameId);		
 	}
 
+	//crea una nuova partita con la griglia indicata
+	public void createNewGame(String gameId, BoardConfig board) throws GameAlreadyPresentException {
+		gameService.createNewGame(gameId, board);
+	}
+
+	//crea una nuova partita senza bloccare il chiamante
+	public CompletableFuture<Void> createNewGameAsync(String gameId, BoardConfig board) {
+		return gameService.createNewGameAsync(gameId, board);
+	}
+
 	//fa entrare un giocatore in una partita
 	public PlayerSession joinGame(String gameId, TTTSymbol symbol, PlayerSessionEventObserver notifier) throws InvalidJoinException {
 		return gameService.joinGame(userId, gameId, symbol, notifier);
 	}
 
-	//recupera l'id della sessione
+	//fa entrare un giocatore in una partita senza bloccare il chiamante sul repository (il join viene eseguito su "gameLoop")
+	public CompletableFuture<PlayerSession> joinGameAsync(String gameId, TTTSymbol symbol, PlayerSessionEventObserver notifier, Executor gameLoop) {
+		return gameService.joinGameAsync(userId, gameId, symbol, notifier, gameLoop);
+	}
+
+	//crea una partita contro il bot
+	public PlayerSession playAgainstBot(String gameId, TTTSymbol symbol, PlayerSessionEventObserver notifier, Executor botMoves) throws GameAlreadyPresentException, InvalidJoinException {
+		return gameService.playAgainstBot(userId, gameId, symbol, notifier, botMoves);
+	}
+
+	//crea una partita contro il bot senza bloccare il chiamante sul repository (join e mosse del bot su "gameLoop")
+	public CompletableFuture<PlayerSession> playAgainstBotAsync(String gameId, TTTSymbol symbol, PlayerSessionEventObserver notifier, Executor gameLoop) {
+		return gameService.playAgainstBotAsync(userId, gameId, symbol, notifier, gameLoop);
+	}
+
+	//cerca un avversario con punteggio simile (il risultato è la sessione giocatore della partita creata)
+	public MatchTicket findMatch(int rating, PlayerSessionEventObserver notifier) {
+		return gameService.findMatch(userId, rating, notifier);
+	}
+
+	//recupera l'utente della sessione
+	public UserId getUserId() {
+		return userId;
+	}
+
+	//recupera l'id numerico della sessione
+	public long getKey() {
+		return key;
+	}
+
+	//recupera il token della sessione
 	public String getSessionId() {
 		return sessionId;
 	}
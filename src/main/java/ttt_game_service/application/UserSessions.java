@@ -1,25 +1,34 @@
 package ttt_game_service.application;
 
-import java.util.HashMap;
 import ddd.Repository;
 
-//tiene traccia delle sessioni di tutti gli utenti
+//tiene traccia delle sessioni di tutti gli utenti (thread-safe, chiavi numeriche senza boxing)
 public class UserSessions implements Repository {
 
-	private HashMap<String, UserSession> userSessions; //hashmap che associa l'utente alla sessione
+	private ConcurrentLongMap<UserSession> userSessions; //mappa concorrente che associa l'id numerico alla sessione
 	
 	public UserSessions() {
-		userSessions = new HashMap<>();
+		userSessions = new ConcurrentLongMap<>();
 	}
 
 	//aggiunge una sessione
 	public void addSession(UserSession us) {
-		userSessions.put(us.getSessionId(), us);
+		userSessions.put(us.getKey(), us);
 	}
 
 	//recupera la sessione dell'utente
-	public UserSession getSession(String sessionId) {
-		return userSessions.get(sessionId);
+	public UserSession getSession(long key) {
+		return userSessions.get(key);
+	}
+
+	//rimuove le sessioni non utilizzate da almeno "idleTimeout" ms e restituisce il numero di sessioni rimosse
+	public int removeIdle(long now, long idleTimeout) {
+		return userSessions.removeIf(us -> now - us.getLastAccess() >= idleTimeout);
+	}
+
+	//numero di sessioni presenti
+	public int size() {
+		return userSessions.size();
 	}
 	
 }
@@ -2,23 +2,23 @@ package ttt_game_service.domain;
 
 import ddd.Entity;
 
-//account utente
+//account utente (la password è memorizzata solo come hash con sale, vedi CredentialVerifier)
 public class Account implements Entity<String> {
 	
 	private String userName;
-	private String password;
+	private String passwordHash; //hash codificato della password (gli account creati nel vecchio formato contengono la password in chiaro)
 	
-	public Account(String userName, String password) {
+	public Account(String userName, String passwordHash) {
 		this.userName = userName;
-		this.password = password;
+		this.passwordHash = passwordHash;
 	}
 
 	public String getUserName() {
 		return userName;
 	}
 
-	public String getPassword() {
-		return password;
+	public String getPasswordHash() {
+		return passwordHash;
 	}
 
 	@Override
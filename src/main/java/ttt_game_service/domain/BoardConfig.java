@@ -0,0 +1,30 @@
+package ttt_game_service.domain;
+
+import ddd.ValueObject;
+
+//record per le dimensioni della griglia (larghezza, altezza) e la lunghezza della combinazione vincente (gioco m,n,k)
+public record BoardConfig(int width, int height, int winLength) implements ValueObject {
+
+	public static final int MIN_SIZE = 3; //dimensione minima di un lato
+	public static final int MAX_SIZE = 64; //dimensione massima di un lato
+	public static final BoardConfig STANDARD = new BoardConfig(3, 3, 3); //griglia classica del tris
+
+	public BoardConfig {
+		if (width < MIN_SIZE || width > MAX_SIZE || height < MIN_SIZE || height > MAX_SIZE) {
+			throw new IllegalArgumentException("board size out of range: " + width + "x" + height);
+		}
+		if (winLength < MIN_SIZE || winLength > Math.max(width, height)) {
+			throw new IllegalArgumentException("win length out of range: " + winLength);
+		}
+	}
+
+	//numero di caselle
+	public int cells() {
+		return width * height;
+	}
+
+	//verifica se è la griglia classica 3x3
+	public boolean isStandard() {
+		return width == 3 && height == 3 && winLength == 3;
+	}
+}
@@ -1,35 +1,61 @@
 package ttt_game_service.domain;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Arrays;
 import ddd.Aggregate;
+import logging.StructuredLogger;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
 
-//partita in corso
+/*
+partita in corso (i metodi che modificano lo stato sono sincronizzati sulla partita stessa)
+ogni evento generato incrementa la versione della partita; la partita può essere ricostruita da uno snapshot (restore) e dagli eventi successivi (replay)
+gli spettatori sono osservatori in sola lettura tenuti in un array separato e notificati dopo i giocatori
+(gli array vengono copiati a ogni registrazione, che è rara: la notifica li scorre senza iteratori)
+i giocatori occupano due posizioni (croce e cerchio) e il turno è il simbolo di chi deve muovere: una mossa di una sessione giocatore,
+che conosce già il proprio simbolo, non confronta stringhe e non crea oggetti (gli osservatori ricevono l'evento tramite i metodi tipizzati)
+ */
 public class Game implements Aggregate<String>{
 
-	static Logger logger = Logger.getLogger("[Game]");
+	static StructuredLogger log = StructuredLogger.getLogger("[Game]");
+	static final Histogram MOVE_APPLY = MetricsRegistry.global().histogram("ttt_game_move_apply_seconds", "Time spent applying a move inside Game.makeAmove, observer notifications included");
 	private String id; //id della partita
 	private GameBoard board; //griglia della partita
 	public enum GameState {WAITING_FOR_PLAYERS, STARTED, FINISHED} //enum per lo stato della partita
 	private GameState state; //stato della partita
-	private Optional<UserId> playerCross; //id del giocatore "croce"
-	private Optional<UserId> playerCircle; //id del giocatore "cerchio"
-	private Optional<UserId> winner; //vincitore
-	private Optional<UserId> currentTurn; //turno corrente
-	private List<GameObserver> observers; //lista degli osservatori (utenti) della partita
+	private static final GameObserver[] NO_OBSERVERS = new GameObserver[0];
+	private UserId playerCross; //id del giocatore "croce" (null se non ancora entrato)
+	private UserId playerCircle; //id del giocatore "cerchio" (null se non ancora entrato)
+	private UserId winner; //vincitore (null se non c'è)
+	private TTTSymbol currentTurn; //simbolo del giocatore di turno (null se la partita non è avviata)
+	private GameObserver[] observers; //osservatori (utenti) della partita
+	private GameObserver[] spectators; //spettatori della partita
+	private long version; //numero di eventi generati dalla partita
 
 	public Game(String id) {
+		this(id, BoardConfig.STANDARD);
+	}
+
+	//partita con griglia di dimensioni e lunghezza della combinazione vincente indicate
+	public Game(String id, BoardConfig config) {
 		this.id = id;
-		board = new GameBoard(id+"-board");
-		playerCross = Optional.empty();
-		playerCircle = Optional.empty();
-		currentTurn = Optional.empty();		
-		winner = Optional.empty();
+		board = new GameBoard(id+"-board", config);
 		state = GameState.WAITING_FOR_PLAYERS; //inizializza lo stato della partita come "in attesa"
-		observers = new ArrayList<>();		
+		observers = NO_OBSERVERS;
+		spectators = NO_OBSERVERS;
+		version = 0;
+	}
+
+	//ricostruisce una partita dal suo stato e dalla sua griglia (ripristino da snapshot); il turno corrente e il vincitore sono indicati dal simbolo (null se assenti)
+	public static Game restore(String id, GameState state, UserId cross, UserId circle, GameBoard board, TTTSymbol turn, TTTSymbol winnerSymbol, long version) {
+		var game = new Game(id, board.getConfig());
+		game.board = board;
+		game.state = state;
+		game.playerCross = cross;
+		game.playerCircle = circle;
+		game.currentTurn = turn;
+		game.winner = winnerSymbol == null ? null : game.getPlayerUsingSymbol(winnerSymbol);
+		game.version = version;
+		return game;
 	}
 
 	//restituisce l'id della partita
@@ -38,74 +64,223 @@ public class Game implements Aggregate<String>{
 	}
 
 	//fa entrare un utente nella partita
-	public void joinGame(UserId userId, TTTSymbol symbol) throws InvalidJoinException {
-		if (!state.equals(GameState.WAITING_FOR_PLAYERS) || (symbol.equals(TTTSymbol.X) && playerCross.isPresent()) || (symbol.equals(TTTSymbol.O) && playerCircle.isPresent())) { //se la partita non è "in attesa" o se l'utente sceglie "croce" e il simbolo è già stato selezionato, se l'utente sceglie "cerchio" e il simbolo è già stato selezionato
+	public synchronized void joinGame(UserId userId, TTTSymbol symbol) throws InvalidJoinException {
+		if (!state.equals(GameState.WAITING_FOR_PLAYERS) || (symbol.equals(TTTSymbol.X) && playerCross != null) || (symbol.equals(TTTSymbol.O) && playerCircle != null)) { //se la partita non è "in attesa" o se l'utente sceglie "croce" e il simbolo è già stato selezionato, se l'utente sceglie "cerchio" e il simbolo è già stato selezionato
 			throw new InvalidJoinException(); //lancia un'eccezione
 		}
 
 		//(altrimenti)
 
 		if (symbol.equals(TTTSymbol.X)) { //se l'utente sceglie "croce"
-			playerCross = Optional.of(userId); //assegna al giocatore il simbolo "croce"
+			playerCross = userId; //assegna al giocatore il simbolo "croce"
 		} else { //altrimenti
-			playerCircle = Optional.of(userId); //assegna al giocatore il simbolo "cerchio"
+			playerCircle = userId; //assegna al giocatore il simbolo "cerchio"
+		}
+		version++;
+		for (var o: observers) { //invia un evento di ingresso del giocatore a tutti gli osservatori registrati alla partita
+			o.playerJoined(id, symbol, userId);
+		}
+		for (var s: spectators) {
+			s.playerJoined(id, symbol, userId);
 		}
 	}
 
-	//esegue una mossa
-	public void makeAmove(UserId userId, int x, int y) throws InvalidMoveException {
-		logger.log(Level.INFO, "new move by " + userId.id() + " in (" + x + ", " + y + ")");
-		UserId p = currentTurn.get(); //recupera il turno corrente
-		if (userId.id().equals(p.id())) { //se l'utente (che chiama il metodo) è il giocatore associato al turno corrente
-			var gridSymbol = userId.id().equals(playerCross.get().id()) ? TTTSymbol.X : TTTSymbol.O; //se il giocatore ha simbolo "croce", memorizza il simbolo croce, altrimenti memorizza il simbolo "cerchio"
-			board.newMove(gridSymbol, x, y); //esegue la mossa
-			notifyGameEvent(new NewMove(id, gridSymbol.toString(), x, y)); //invia un evento di esecuzione della mossa a tutti gli osservatori (giocatori) registrati alla partita
+	//esegue una mossa dell'utente indicato (il simbolo viene ricavato dall'utente)
+	public synchronized void makeAmove(UserId userId, int x, int y) throws InvalidMoveException {
+		var symbol = userId.equals(playerCross) ? TTTSymbol.X : (userId.equals(playerCircle) ? TTTSymbol.O : null);
+		if (symbol == null) { //l'utente non è un giocatore della partita
+			throw new InvalidMoveException();
+		}
+		makeAmove(symbol, x, y);
+	}
+
+	//esegue una mossa del giocatore con il simbolo indicato (posizione già risolta all'ingresso nella partita); la mossa viene registrata solo a livello di debug
+	public synchronized void makeAmove(TTTSymbol symbol, int x, int y) throws InvalidMoveException {
+		log.debug("game-move").kv("game", id).kv("symbol", symbol).kv("x", x).kv("y", y).emit();
+		long start = System.nanoTime();
+		try {
+			if (symbol != currentTurn) { //se non è il turno del giocatore (o la partita non è in corso)
+				throw new InvalidMoveException(); //lancia un'eccezione
+			}
+			board.newMove(symbol, x, y); //esegue la mossa
+			version++;
+			var observers = this.observers;
+			for (int i = 0; i < observers.length; i++) { //invia un evento di esecuzione della mossa a tutti gli osservatori (giocatori) registrati alla partita
+				observers[i].newMove(id, symbol, x, y);
+			}
+			var spectators = this.spectators;
+			for (int i = 0; i < spectators.length; i++) {
+				spectators[i].newMove(id, symbol, x, y);
+			}
 
-			currentTurn = (currentTurn == playerCross) ? playerCircle : playerCross; //cambia il turno
-			var optWin = board.checkWinner(); //verifica la presenza di un vincitore
-			if (optWin.isPresent()) { //se è presente un vincitore
-				winner = Optional.of(getPlayerUsingSymbol(optWin.get())); //recupera il vincitore
-				state = GameState.FINISHED; //imposta lo stato della partita come "terminato"
-				notifyGameEvent(new GameEnded(id, Optional.of(winner.get().id())));
+			currentTurn = symbol == TTTSymbol.X ? TTTSymbol.O : TTTSymbol.X; //cambia il turno
+			if (board.isWinner(symbol)) { //se la mossa ha completato una combinazione vincente (solo chi muove può vincere)
+				winner = getPlayerUsingSymbol(symbol); //recupera il vincitore
+				end();
 			} else if (board.isTie()) { //se è finita in parità
-				state = GameState.FINISHED; //imposta lo stato della partita come "terminato"
-				notifyGameEvent(new GameEnded(id, Optional.empty())); //invia un evento di terminazione della partita a tutti gli osservatori (giocatori) registrati alla partita
+				end();
 			}
-		} else { //altrimenti
-			throw new InvalidMoveException(); //lancia un'eccezione
+		} finally {
+			MOVE_APPLY.record(System.nanoTime() - start); //tempo di applicazione della mossa, notifiche comprese
+		}
+	}
+
+	//termina la partita e notifica gli osservatori (vincitore null in caso di pareggio)
+	private void end() {
+		state = GameState.FINISHED; //imposta lo stato della partita come "terminato"
+		currentTurn = null;
+		version++;
+		for (var o: observers) { //invia un evento di terminazione della partita a tutti gli osservatori (giocatori) registrati alla partita
+			o.gameEnded(id, winner);
+		}
+		for (var s: spectators) {
+			s.gameEnded(id, winner);
 		}
 	}
 
 	//aggiunge un osservatore alla partita
-	public void addGameObserver(GameObserver observer) {
-		observers.add(observer);
+	public synchronized void addGameObserver(GameObserver observer) {
+		observers = append(observers, observer);
+	}
+
+	//rimuove tutti gli osservatori (e gli spettatori) della partita
+	public synchronized void removeGameObservers() {
+		observers = NO_OBSERVERS;
+		spectators = NO_OBSERVERS;
 	}
 
-	//invia un evento di notifica agli osservatori
-	private void notifyGameEvent(GameEvent ev) {
-		for (var o: observers) { //per ogni elemento nella lista degli osservatori
-			o.notifyGameEvent(ev); //notifica l'osservatore
+	//aggiunge uno spettatore, che riceve subito gli eventi che descrivono lo stato attuale della partita (le mosse in ordine di casella)
+	public synchronized void addSpectator(GameObserver spectator) {
+		if (playerCross != null) {
+			spectator.playerJoined(id, TTTSymbol.X, playerCross);
 		}
+		if (playerCircle != null) {
+			spectator.playerJoined(id, TTTSymbol.O, playerCircle);
+		}
+		if (state != GameState.WAITING_FOR_PLAYERS) {
+			spectator.gameStarted(id);
+		}
+		var config = board.getConfig();
+		for (int y = 0; y < config.height(); y++) {
+			for (int x = 0; x < config.width(); x++) {
+				var cell = board.getCell(x, y);
+				if (cell != GameBoard.BoardCellContentType.EMPTY) {
+					spectator.newMove(id, cell == GameBoard.BoardCellContentType.CROSS ? TTTSymbol.X : TTTSymbol.O, x, y);
+				}
+			}
+		}
+		if (state == GameState.FINISHED) {
+			spectator.gameEnded(id, winner);
+		}
+		spectators = append(spectators, spectator);
+	}
+
+	//rimuove uno spettatore
+	public synchronized void removeSpectator(GameObserver spectator) {
+		for (int i = 0; i < spectators.length; i++) {
+			if (spectators[i] == spectator) {
+				var next = new GameObserver[spectators.length - 1];
+				System.arraycopy(spectators, 0, next, 0, i);
+				System.arraycopy(spectators, i + 1, next, i, next.length - i);
+				spectators = next;
+				return;
+			}
+		}
+	}
+
+	//nuovo array con un osservatore in più (l'array precedente resta valido per una notifica in corso)
+	private static GameObserver[] append(GameObserver[] list, GameObserver observer) {
+		var next = Arrays.copyOf(list, list.length + 1);
+		next[list.length] = observer;
+		return next;
 	}
 
 	//recupera l'utente dal suo simbolo
 	private UserId getPlayerUsingSymbol(TTTSymbol symbol) {
 		if (symbol.equals(TTTSymbol.X)) { //se il simbolo è "croce"
-			return playerCross.get(); //restituisce l'id del giocatore croce
+			return playerCross; //restituisce l'id del giocatore croce
 		} else { //altrimenti
-			return playerCircle.get(); //restituisce l'id del giocatore "cerchio"
+			return playerCircle; //restituisce l'id del giocatore "cerchio"
 		}
 	}
 
 	//avvia la partita
-	public void startGame() {
+	public synchronized void startGame() {
 		state = GameState.STARTED; //imposta lo stato della partita come "avviata"
-		currentTurn = playerCross; //inizializza il turno al giocatore "croce"
-		notifyGameEvent(new GameStarted(id));  //invia un evento di avvio della partita a tutti gli osservatori (giocatori) registrati alla partita
+		currentTurn = TTTSymbol.X; //inizializza il turno al giocatore "croce"
+		version++;
+		for (var o: observers) { //invia un evento di avvio della partita a tutti gli osservatori (giocatori) registrati alla partita
+			o.gameStarted(id);
+		}
+		for (var s: spectators) {
+			s.gameStarted(id);
+		}
+	}
+
+	/*
+	riapplica un evento già registrato (ricostruzione della partita), senza validazioni di turno e senza notificare gli osservatori
+	la versione della partita diventa quella dell'evento
+	 */
+	public synchronized void replay(GameEvent ev, long eventVersion) throws InvalidMoveException {
+		if (ev instanceof PlayerJoined) { //se l'evento è di tipo "PlayerJoined"
+			var e = (PlayerJoined) ev;
+			if (e.symbol().equals(TTTSymbol.X.toString())) {
+				playerCross = new UserId(e.userId());
+			} else {
+				playerCircle = new UserId(e.userId());
+			}
+		} else if (ev instanceof GameStarted) { //altrimenti se l'evento è di tipo "GameStarted"
+			state = GameState.STARTED;
+			currentTurn = TTTSymbol.X;
+		} else if (ev instanceof NewMove) { //altrimenti se l'evento è di tipo "NewMove"
+			var e = (NewMove) ev;
+			var symbol = TTTSymbol.valueOf(e.symbol());
+			board.newMove(symbol, e.x(), e.y());
+			currentTurn = symbol == TTTSymbol.X ? TTTSymbol.O : TTTSymbol.X;
+		} else if (ev instanceof GameEnded) { //altrimenti se l'evento è di tipo "GameEnded"
+			var e = (GameEnded) ev;
+			state = GameState.FINISHED;
+			currentTurn = null;
+			winner = e.winner().map(UserId::new).orElse(null);
+		}
+		version = eventVersion;
+	}
+
+	//restituisce la versione della partita (numero di eventi generati)
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	//restituisce lo stato della partita
+	public synchronized GameState getState() {
+		return state;
+	}
+
+	//restituisce il giocatore con il simbolo indicato (null se non ancora entrato)
+	public synchronized UserId getPlayer(TTTSymbol symbol) {
+		return symbol == TTTSymbol.X ? playerCross : playerCircle;
+	}
+
+	//restituisce il simbolo del giocatore di turno (null se la partita non è avviata)
+	public synchronized TTTSymbol getCurrentTurnSymbol() {
+		return currentTurn;
+	}
+
+	//restituisce il simbolo del vincitore (null se non c'è un vincitore)
+	public synchronized TTTSymbol getWinnerSymbol() {
+		if (winner == null) {
+			return null;
+		}
+		return winner.equals(playerCross) ? TTTSymbol.X : TTTSymbol.O;
+	}
+
+	//restituisce la griglia della partita
+	public GameBoard getBoard() {
+		return board;
 	}
 
 	//verifica se la partita può iniziare
-	public boolean isReadyToStart() {
-		return (playerCross.isPresent() && playerCircle.isPresent()); //la partita può iniziare se sono presenti due giocatori
+	public synchronized boolean isReadyToStart() {
+		return playerCross != null && playerCircle != null; //la partita può iniziare se sono presenti due giocatori
 	}
 }
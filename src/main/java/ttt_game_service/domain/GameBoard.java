@@ -3,58 +3,213 @@ package ttt_game_service.domain;
 import java.util.Optional;
 import ddd.Entity;
 
-//griglia di gioco
+/*
+griglia di gioco m,n,k (bitboard): larghezza e altezza configurabili, vince chi allinea "winLength" simboli in orizzontale, verticale o diagonale
+ogni casella (x, y) corrisponde al bit "y * width + x"; le caselle occupate da ciascun simbolo sono memorizzate in un array di long
+una nuova combinazione può passare solo per l'ultima casella occupata: il controllo del vincitore esamina le quattro direzioni
+attraverso l'ultima mossa (al più 4 * 2 * (winLength - 1) caselle), indipendentemente dalle dimensioni della griglia
+(la partita termina alla prima combinazione completata, quindi non può esistere una combinazione che non passi per l'ultima mossa)
+sulla griglia classica 3x3 le caselle stanno in 9 bit e il controllo confronta la maschera con le 8 combinazioni precalcolate
+ */
 public class GameBoard implements Entity<String>{
 
 	public enum BoardCellContentType {CROSS, CIRCLE, EMPTY}; //enum per i simboli delle caselle
-	private BoardCellContentType[][] board; //matrice che rappresenta la griglia di caselle
+	static final int FULL_MASK = 0b111_111_111; //maschera con tutte le caselle occupate (griglia 3x3)
+	static final int[] WIN_MASKS = { //maschere delle combinazioni vincenti della griglia 3x3 (precalcolate)
+			0b000_000_111, 0b000_111_000, 0b111_000_000, //righe
+			0b001_001_001, 0b010_010_010, 0b100_100_100, //colonne
+			0b100_010_001, 0b001_010_100 //diagonali
+	};
+	private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}}; //direzioni delle combinazioni (orizzontale, verticale, diagonali)
+	private static final Optional<TTTSymbol> CROSS_WINS = Optional.of(TTTSymbol.X); //risultato (condiviso) della vittoria di "croce"
+	private static final Optional<TTTSymbol> CIRCLE_WINS = Optional.of(TTTSymbol.O); //risultato (condiviso) della vittoria di "cerchio"
+	private final BoardConfig config; //dimensioni della griglia e lunghezza della combinazione vincente
+	private final int width; //larghezza (copiata dalla configurazione per il controllo delle mosse)
+	private final int height; //altezza
+	private final int winLength; //lunghezza della combinazione vincente
+	private final boolean standard; //griglia classica 3x3 (controllo con le maschere precalcolate)
+	private final long[] cross; //caselle occupate da "croce"
+	private final long[] circle; //caselle occupate da "cerchio"
 	private int numFreeCellsLeft; //numero di caselle disponibili
+	private int lastX = -1, lastY = -1; //ultima casella occupata (-1 se nessuna mossa o griglia ripristinata)
+	private TTTSymbol lastSymbol; //simbolo dell'ultima mossa
 	private String id; //id della griglia
-	
+
 	public GameBoard(String id) {
+		this(id, BoardConfig.STANDARD);
+	}
+
+	public GameBoard(String id, BoardConfig config) {
 		this.id = id;
-		board = new BoardCellContentType[3][3];
-		for (int y = 0; y < 3; y++) { //per ogni riga
-			for (int x = 0; x < 3; x++) { //per ogni colonna
-				board[y][x] = BoardCellContentType.EMPTY; //inizializza lo stato della cella come vuoto
-			}
-		}		
-		numFreeCellsLeft = 9;
+		this.config = config;
+		width = config.width();
+		height = config.height();
+		winLength = config.winLength();
+		standard = config.isStandard();
+		cross = new long[(config.cells() + 63) >>> 6];
+		circle = new long[cross.length];
+		numFreeCellsLeft = config.cells();
+	}
+
+	//ricostruisce una griglia 3x3 a partire dalle maschere delle caselle occupate (ripristino da snapshot)
+	public GameBoard(String id, int crossMask, int circleMask) {
+		this(id, BoardConfig.STANDARD, new long[] {crossMask}, new long[] {circleMask});
+	}
+
+	//ricostruisce una griglia a partire dalle caselle occupate da ciascun simbolo (ripristino da snapshot)
+	public GameBoard(String id, BoardConfig config, long[] crossCells, long[] circleCells) {
+		this(id, config);
+		if (crossCells.length != cross.length || circleCells.length != circle.length) {
+			throw new IllegalArgumentException("cells do not match the board size");
+		}
+		int occupied = 0;
+		for (int i = 0; i < cross.length; i++) {
+			cross[i] = crossCells[i];
+			circle[i] = circleCells[i];
+			occupied += Long.bitCount(cross[i] | circle[i]);
+		}
+		numFreeCellsLeft = config.cells() - occupied;
 	}
 
 	//esegue una mossa
 	public void newMove(TTTSymbol symbol, int x, int y) throws InvalidMoveException {
-		if (board[y][x].equals(BoardCellContentType.EMPTY)) { //se la casella indicata è vuota
-			board[y][x] = symbol.equals(TTTSymbol.X) ? BoardCellContentType.CROSS : BoardCellContentType.CIRCLE; //inserisce il simbolo nella casella
+		if (x < 0 || x >= width || y < 0 || y >= height) { //se la casella indicata è fuori dalla griglia
+			throw new InvalidMoveException(); //lancia un'eccezione
+		}
+		int cell = y * width + x; //indice della casella
+		long bit = 1L << cell; //bit corrispondente alla casella (nella sua parola)
+		if (((cross[cell >>> 6] | circle[cell >>> 6]) & bit) == 0) { //se la casella indicata è vuota
+			if (symbol == TTTSymbol.X) {
+				cross[cell >>> 6] |= bit; //inserisce il simbolo "croce" nella casella
+			} else {
+				circle[cell >>> 6] |= bit; //inserisce il simbolo "cerchio" nella casella
+			}
 			numFreeCellsLeft--; //decrementa il numero di caselle disponibili
+			lastX = x;
+			lastY = y;
+			lastSymbol = symbol;
 		} else { //altrimenti
 			throw new InvalidMoveException(); //lancia un'eccezione
 		}
 	}
 
-	//controlla la presenza di un vincitore
+	//verifica se il simbolo indicato ha completato una combinazione con l'ultima mossa (non alloca)
+	public boolean isWinner(TTTSymbol symbol) {
+		return symbol == lastSymbol && lastMoveCompletesLine();
+	}
+
+	//controlla la presenza di un vincitore (solo le combinazioni che passano per l'ultima mossa)
 	public Optional<TTTSymbol> checkWinner(){
-			for (int y = 0; y < 3; y++) { //per tutte le righe della griglia
-				if (!board[y][0].equals(BoardCellContentType.EMPTY) && board[y][0].equals(board[y][1]) && board[y][1].equals(board[y][2])){ //se tutte e tre le caselle sono uguali
-					return board[y][0].equals(BoardCellContentType.CROSS) ? Optional.of(TTTSymbol.X) : Optional.of(TTTSymbol.O); //restituisce il simbolo presente nella prima casella della riga
+		if (lastSymbol != null && lastMoveCompletesLine()) { //se l'ultima mossa ha completato una combinazione
+			return lastSymbol == TTTSymbol.X ? CROSS_WINS : CIRCLE_WINS;
+		}
+		return Optional.empty(); //altrimenti non ritorna nessun simbolo
+	}
+
+	/*
+	controlla la presenza di un vincitore esaminando tutta la griglia (ogni casella occupata come inizio di una combinazione)
+	serve quando l'ultima mossa non è nota, ad esempio per una griglia ripristinata da uno snapshot
+	 */
+	public Optional<TTTSymbol> scanWinner() {
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				for (var d: DIRECTIONS) {
+					if (lineFrom(cross, x, y, d[0], d[1])) {
+						return CROSS_WINS;
+					}
+					if (lineFrom(circle, x, y, d[0], d[1])) {
+						return CIRCLE_WINS;
+					}
 				}
 			}
+		}
+		return Optional.empty();
+	}
 
-			for (int x = 0; x < 3; x++) { //per tutte le colonne della griglia
-				if (!board[0][x].equals(BoardCellContentType.EMPTY) && board[0][x].equals(board[1][x]) && board[1][x].equals(board[2][x])){ //se tutte e tre le caselle sono uguali
-					return board[0][x].equals(BoardCellContentType.CROSS) ? Optional.of(TTTSymbol.X) : Optional.of(TTTSymbol.O); //restituisce il simbolo presente nella prima casella della colonna
-				}
+	//verifica se l'ultima mossa ha completato una combinazione in una delle quattro direzioni
+	private boolean lastMoveCompletesLine() {
+		var cells = lastSymbol == TTTSymbol.X ? cross : circle;
+		if (standard) {
+			return hasWinningLine((int) cells[0]);
+		}
+		for (var d: DIRECTIONS) {
+			int count = 1 + run(cells, lastX, lastY, d[0], d[1]) + run(cells, lastX, lastY, -d[0], -d[1]); //la casella e i simboli uguali ai due lati
+			if (count >= winLength) {
+				return true;
 			}
+		}
+		return false;
+	}
+
+	//numero di simboli consecutivi (al più winLength - 1) a partire dalla casella successiva a (x, y) nella direzione (dx, dy)
+	private int run(long[] cells, int x, int y, int dx, int dy) {
+		int count = 0;
+		for (int i = 1; i < winLength && isSet(cells, x + i * dx, y + i * dy); i++) {
+			count++;
+		}
+		return count;
+	}
 
-			if (!board[0][0].equals(BoardCellContentType.EMPTY) && board[0][0].equals(board[1][1]) && board[1][1].equals(board[2][2])){ //se tutte e tre le caselle della diagonale principale della griglia sono uguali
-				return board[0][0].equals(BoardCellContentType.CROSS) ? Optional.of(TTTSymbol.X) : Optional.of(TTTSymbol.O); //restituisce il simbolo presente nella prima casella della diagonale
+	//verifica se la combinazione di winLength caselle che inizia in (x, y) nella direzione (dx, dy) è tutta occupata
+	private boolean lineFrom(long[] cells, int x, int y, int dx, int dy) {
+		for (int i = 0; i < winLength; i++) {
+			if (!isSet(cells, x + i * dx, y + i * dy)) {
+				return false;
 			}
+		}
+		return true;
+	}
 
-			if (!board[2][0].equals(BoardCellContentType.EMPTY) && board[2][0].equals(board[1][1]) && board[1][1].equals(board[0][2])){ //se tutte e tre le caselle della diagonale secondaria della griglia sono uguali
-				return board[2][0].equals(BoardCellContentType.CROSS) ? Optional.of(TTTSymbol.X) : Optional.of(TTTSymbol.O); //restituisce il simbolo presente nella prima casella della diagonale
+	//verifica se la casella (x, y) è dentro la griglia e occupata nelle caselle indicate
+	private boolean isSet(long[] cells, int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return false;
+		}
+		int cell = y * width + x;
+		return (cells[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	//verifica se la maschera contiene almeno una combinazione vincente (griglia 3x3)
+	static boolean hasWinningLine(int mask) {
+		for (int win: WIN_MASKS) { //per ogni combinazione vincente
+			if ((mask & win) == win) { //se tutte le caselle della combinazione sono occupate
+				return true;
 			}
+		}
+		return false;
+	}
 
-			return Optional.empty(); //altrimenti non ritorna nessun simbolo
+	//restituisce il contenuto di una casella
+	public BoardCellContentType getCell(int x, int y) {
+		if (isSet(cross, x, y)) {
+			return BoardCellContentType.CROSS;
+		}
+		return isSet(circle, x, y) ? BoardCellContentType.CIRCLE : BoardCellContentType.EMPTY;
+	}
+
+	//restituisce le dimensioni della griglia
+	public BoardConfig getConfig() {
+		return config;
+	}
+
+	//restituisce una copia delle caselle occupate da "croce"
+	public long[] getCrossCells() {
+		return cross.clone();
+	}
+
+	//restituisce una copia delle caselle occupate da "cerchio"
+	public long[] getCircleCells() {
+		return circle.clone();
+	}
+
+	//restituisce la maschera delle caselle occupate da "croce" (solo griglia 3x3)
+	public int getCrossMask() {
+		return (int) cross[0];
+	}
+
+	//restituisce la maschera delle caselle occupate da "cerchio" (solo griglia 3x3)
+	public int getCircleMask() {
+		return (int) circle[0];
 	}
 
 	//verifica il pareggio
@@ -67,4 +222,3 @@ public class GameBoard implements Entity<String>{
 		return id;
 	}
 }
-
@@ -1,7 +1,33 @@
 package ttt_game_service.domain;
 
-//interfaccia observer per gli eventi di gioco
+import java.util.Optional;
+
+/*
+interfaccia observer per gli eventi di gioco
+la partita notifica tramite i metodi tipizzati: di default costruiscono l'evento e lo passano a notifyGameEvent,
+gli osservatori sul percorso della mossa li ridefiniscono per non creare l'evento (e le stringhe del simbolo e dell'utente)
+ */
 public interface GameObserver {
 
 	void notifyGameEvent(GameEvent event);
+
+	//un giocatore è entrato nella partita
+	default void playerJoined(String gameId, TTTSymbol symbol, UserId userId) {
+		notifyGameEvent(new PlayerJoined(gameId, userId.id(), symbol.toString()));
+	}
+
+	//la partita è stata avviata
+	default void gameStarted(String gameId) {
+		notifyGameEvent(new GameStarted(gameId));
+	}
+
+	//è stata eseguita una mossa
+	default void newMove(String gameId, TTTSymbol symbol, int x, int y) {
+		notifyGameEvent(new NewMove(gameId, symbol.toString(), x, y));
+	}
+
+	//la partita è terminata (vincitore null in caso di pareggio)
+	default void gameEnded(String gameId, UserId winner) {
+		notifyGameEvent(new GameEnded(gameId, winner == null ? Optional.empty() : Optional.of(winner.id())));
+	}
 }
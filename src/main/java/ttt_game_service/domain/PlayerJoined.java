@@ -0,0 +1,4 @@
+package ttt_game_service.domain;
+
+//record per l'ingresso di un giocatore nella partita
+public record PlayerJoined (String gameId, String userId, String symbol) implements GameEvent {}
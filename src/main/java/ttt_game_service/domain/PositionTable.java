@@ -0,0 +1,224 @@
+package ttt_game_service.domain;
+
+import java.util.Arrays;
+
+/*
+tabella delle mosse perfette per tutte le posizioni della griglia 3x3, calcolata una sola volta (al caricamento della classe)
+la posizione è codificata in base 3 (casella i = y * 3 + x: 0 vuota, 1 croce, 2 cerchio, peso 3^i), per un totale di 3^9 posizioni;
+per ogni posizione la tabella contiene un byte: casella della mossa migliore per il giocatore di turno (bit 0-3, NO_MOVE se la partita
+è finita o la posizione non è raggiungibile) ed esito con gioco perfetto per il giocatore di turno (bit 4-5)
+la ricerca (negamax) viene eseguita solo sulle posizioni canoniche (la minima codifica tra le 8 simmetrie del quadrato); le altre posizioni
+ricevono la mossa della loro posizione canonica riportata con la simmetria inversa
+la conversione dalle maschere della griglia alla codifica usa una tabella di 512 elementi: una mossa costa tre letture
+ */
+public final class PositionTable {
+
+	public static final int POSITIONS = 19_683; //3^9 posizioni
+	public static final int NO_MOVE = 15; //nessuna mossa (partita finita o posizione non raggiungibile)
+	public static final int LOSS = 0, DRAW = 1, WIN = 2; //esiti con gioco perfetto (per il giocatore di turno)
+	private static final int[] BASE3 = new int[512]; //maschera a 9 bit -> somma dei pesi 3^i delle caselle occupate
+	private static final int[][] SYMMETRIES = new int[8][9]; //simmetria -> casella i -> casella trasformata
+	private static final byte[] TABLE = new byte[POSITIONS]; //posizione -> mossa migliore ed esito
+	private static int reachable; //posizioni raggiungibili da una partita
+	private static int canonical; //posizioni canoniche risolte con la ricerca
+
+	static {
+		for (int mask = 1; mask < 512; mask++) {
+			int low = Integer.numberOfTrailingZeros(mask);
+			BASE3[mask] = BASE3[mask & (mask - 1)] + pow3(low);
+		}
+		for (int i = 0; i < 9; i++) {
+			int x = i % 3;
+			int y = i / 3;
+			int[][] images = { //immagini della casella (x, y): identità, rotazioni, riflessioni
+					{x, y}, {2 - y, x}, {2 - x, 2 - y}, {y, 2 - x},
+					{2 - x, y}, {x, 2 - y}, {y, x}, {2 - y, 2 - x}
+			};
+			for (int s = 0; s < 8; s++) {
+				SYMMETRIES[s][i] = images[s][1] * 3 + images[s][0];
+			}
+		}
+		Arrays.fill(TABLE, (byte) NO_MOVE);
+		new Solver().solve();
+	}
+
+	private PositionTable() {}
+
+	//codifica in base 3 della posizione
+	public static int encode(int crossMask, int circleMask) {
+		return BASE3[crossMask] + 2 * BASE3[circleMask];
+	}
+
+	//casella (y * 3 + x) della mossa migliore per il giocatore di turno, -1 se non ci sono mosse
+	public static int bestMove(int crossMask, int circleMask) {
+		int move = TABLE[encode(crossMask, circleMask)] & 0x0f;
+		return move == NO_MOVE ? -1 : move;
+	}
+
+	//esito con gioco perfetto per il giocatore di turno (LOSS, DRAW, WIN)
+	public static int outcome(int crossMask, int circleMask) {
+		return (TABLE[encode(crossMask, circleMask)] >> 4) & 0x03;
+	}
+
+	//numero di posizioni raggiungibili
+	public static int reachablePositions() {
+		return reachable;
+	}
+
+	//numero di posizioni canoniche (risolte con la ricerca)
+	public static int canonicalPositions() {
+		return canonical;
+	}
+
+	//memoria occupata dalle tabelle usate dalla ricerca della mossa (byte)
+	public static int memoryBytes() {
+		return TABLE.length + BASE3.length * Integer.BYTES;
+	}
+
+	private static int pow3(int n) {
+		int p = 1;
+		for (int i = 0; i < n; i++) {
+			p *= 3;
+		}
+		return p;
+	}
+
+	//ricerca negamax con memoria sulle posizioni canoniche (usata solo durante il calcolo della tabella)
+	private static final class Solver {
+
+		private static final int UNSOLVED = Integer.MIN_VALUE;
+		private final int[] score; //posizione canonica -> punteggio per il giocatore di turno (vittorie più rapide valgono di più)
+		private final byte[] move; //posizione canonica -> mossa migliore
+		private final boolean[] visited; //posizioni raggiungibili già inserite nella tabella
+
+		Solver() {
+			score = new int[POSITIONS];
+			move = new byte[POSITIONS];
+			visited = new boolean[POSITIONS];
+			Arrays.fill(score, UNSOLVED);
+		}
+
+		//risolve tutte le posizioni raggiungibili a partire dalla griglia vuota
+		void solve() {
+			fill(0, 0);
+		}
+
+		//inserisce nella tabella la posizione e quelle raggiungibili da essa
+		private void fill(int cross, int circle) {
+			int code = encode(cross, circle);
+			if (visited[code]) {
+				return;
+			}
+			visited[code] = true;
+			reachable++;
+			int s = canonicalSymmetry(cross, circle);
+			int c = transform(s, cross, circle);
+			int value = search(c);
+			int outcome = value > 0 ? WIN : (value < 0 ? LOSS : DRAW);
+			int best = NO_MOVE;
+			if (move[c] != NO_MOVE) {
+				best = inverse(s, move[c]);
+			}
+			TABLE[code] = (byte) (best | (outcome << 4));
+			if (best == NO_MOVE) { //partita finita
+				return;
+			}
+			boolean crossTurn = Integer.bitCount(cross) == Integer.bitCount(circle);
+			int free = ~(cross | circle) & GameBoard.FULL_MASK;
+			for (int m = free; m != 0; m &= m - 1) {
+				int cell = m & -m;
+				if (crossTurn) {
+					fill(cross | cell, circle);
+				} else {
+					fill(cross, circle | cell);
+				}
+			}
+		}
+
+		//punteggio della posizione canonica (codifica "c") per il giocatore di turno
+		private int search(int c) {
+			if (score[c] != UNSOLVED) {
+				return score[c];
+			}
+			int cross = mask(c, 1);
+			int circle = mask(c, 2);
+			int pieces = Integer.bitCount(cross | circle);
+			int result;
+			int bestMove = NO_MOVE;
+			if (GameBoard.hasWinningLine(cross) || GameBoard.hasWinningLine(circle)) { //l'ultimo giocatore ha vinto
+				result = -(10 - pieces);
+			} else if (pieces == 9) { //pareggio
+				result = 0;
+			} else {
+				boolean crossTurn = Integer.bitCount(cross) == Integer.bitCount(circle);
+				result = Integer.MIN_VALUE;
+				for (int cell = 0; cell < 9; cell++) {
+					int bit = 1 << cell;
+					if (((cross | circle) & bit) != 0) {
+						continue;
+					}
+					int childCross = crossTurn ? cross | bit : cross;
+					int childCircle = crossTurn ? circle : circle | bit;
+					int value = -search(transform(canonicalSymmetry(childCross, childCircle), childCross, childCircle));
+					if (value > result) { //a parità di punteggio vince la casella con indice minore
+						result = value;
+						bestMove = cell;
+					}
+				}
+			}
+			score[c] = result;
+			move[c] = (byte) bestMove;
+			canonical++;
+			return result;
+		}
+
+		//maschera delle caselle con il valore indicato (1 croce, 2 cerchio) nella codifica in base 3
+		private static int mask(int code, int value) {
+			int mask = 0;
+			for (int i = 0; i < 9; i++, code /= 3) {
+				if (code % 3 == value) {
+					mask |= 1 << i;
+				}
+			}
+			return mask;
+		}
+
+		//simmetria che porta la posizione nella sua forma canonica (codifica minima)
+		private static int canonicalSymmetry(int cross, int circle) {
+			int best = 0;
+			int min = Integer.MAX_VALUE;
+			for (int s = 0; s < 8; s++) {
+				int code = transform(s, cross, circle);
+				if (code < min) {
+					min = code;
+					best = s;
+				}
+			}
+			return best;
+		}
+
+		//codifica della posizione trasformata con la simmetria "s"
+		private static int transform(int s, int cross, int circle) {
+			return encode(permute(s, cross), permute(s, circle));
+		}
+
+		//maschera trasformata con la simmetria "s"
+		private static int permute(int s, int mask) {
+			int result = 0;
+			for (int m = mask; m != 0; m &= m - 1) {
+				result |= 1 << SYMMETRIES[s][Integer.numberOfTrailingZeros(m)];
+			}
+			return result;
+		}
+
+		//casella originale che la simmetria "s" porta nella casella "cell"
+		private static int inverse(int s, int cell) {
+			for (int i = 0; i < 9; i++) {
+				if (SYMMETRIES[s][i] == cell) {
+					return i;
+				}
+			}
+			throw new IllegalStateException("invalid symmetry");
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package ttt_game_service.infrastructure;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.stream.IntStream;
+import ttt_game_service.domain.Account;
+
+/*
+snapshot binario degli account, caricato tramite memory mapping a blocchi in parallelo
+formato: [magic][versione] [record...] [indice dei blocchi: (offset, numero di record)...] [numero di blocchi][numero di account][magic]
+record: [lunghezza username (short)][username utf-8][lunghezza hash (short)][hash della password utf-8]
+l'indice è in fondo al file, così lo snapshot può essere scritto in un solo passaggio mentre i record vengono letti dalla mappa
+ */
+public final class AccountSnapshot {
+
+	static final int MAGIC = 0x54545441; //"TTTA"
+	static final int VERSION = 1; //versione del formato
+	static final int HEADER_SIZE = 8; //magic + versione
+	static final int TRAILER_SIZE = 16; //numero di blocchi + numero di account + magic
+	static final int CHUNK_RECORDS = 65_536; //numero di record per blocco (unità di caricamento parallelo)
+	public static final int MAX_STRING_BYTES = 0xFFFF; //lunghezza massima (utf-8) di username e hash: la lunghezza è scritta su 2 byte
+
+	private AccountSnapshot() {}
+
+	//blocco di record
+	private record Chunk(long offset, int records) {}
+
+	//scrive lo snapshot (file temporaneo + rename atomico)
+	public static void write(Path file, Iterable<Account> accounts) throws IOException {
+		var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		var chunks = new ArrayList<Chunk>();
+		long count = 0;
+		try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			long offset = HEADER_SIZE;
+			long chunkStart = offset;
+			int inChunk = 0;
+			for (var account: accounts) { //per ogni account
+				offset += writeString(out, account.getUserName());
+				offset += writeString(out, account.getPasswordHash());
+				count++;
+				if (++inChunk == CHUNK_RECORDS) { //chiude il blocco corrente
+					chunks.add(new Chunk(chunkStart, inChunk));
+					chunkStart = offset;
+					inChunk = 0;
+				}
+			}
+			if (inChunk > 0) {
+				chunks.add(new Chunk(chunkStart, inChunk));
+			}
+			for (var c: chunks) { //indice dei blocchi
+				out.writeLong(c.offset());
+				out.writeInt(c.records());
+			}
+			out.writeInt(chunks.size());
+			out.writeLong(count);
+			out.writeInt(MAGIC);
+		}
+		try (var ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+			ch.force(true); //rende persistente lo snapshot prima del rename
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	//scrive una stringa (lunghezza + byte utf-8) e restituisce il numero di byte scritti
+	private static int writeString(DataOutputStream out, String s) throws IOException {
+		var bytes = s.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > MAX_STRING_BYTES) { //la lunghezza non entrerebbe nei 2 byte del record
+			throw new IOException("string too long for the account snapshot: " + bytes.length + " bytes");
+		}
+		out.writeShort(bytes.length);
+		out.write(bytes);
+		return 2 + bytes.length;
+	}
+
+	//restituisce il numero di account contenuti nello snapshot (per dimensionare la mappa prima del caricamento)
+	public static long count(Path file) throws IOException {
+		try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			return readTrailer(ch).getLong(4);
+		}
+	}
+
+	//carica lo snapshot nella mappa: ogni blocco viene mappato in memoria e decodificato in parallelo
+	public static void load(Path file, Map<String, Account> accounts) throws IOException {
+		try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			var header = ByteBuffer.allocate(HEADER_SIZE);
+			ch.read(header, 0);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException("not an account snapshot: " + file);
+			}
+			var trailer = readTrailer(ch);
+			int chunkCount = trailer.getInt(0);
+			long indexStart = ch.size() - TRAILER_SIZE - 12L * chunkCount;
+			var index = ch.map(FileChannel.MapMode.READ_ONLY, indexStart, 12L * chunkCount);
+			var chunks = new Chunk[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				long offset = index.getLong(i * 12);
+				long end = (i + 1 < chunkCount) ? index.getLong((i + 1) * 12) : indexStart;
+				chunks[i] = new Chunk(offset, index.getInt(i * 12 + 8));
+				if (end < offset) {
+					throw new IOException("corrupted account snapshot index: " + file);
+				}
+			}
+			IntStream.range(0, chunkCount).parallel().forEach(i -> { //decodifica i blocchi in parallelo
+				long end = (i + 1 < chunkCount) ? chunks[i + 1].offset() : indexStart;
+				try {
+					var buf = ch.map(FileChannel.MapMode.READ_ONLY, chunks[i].offset(), end - chunks[i].offset());
+					var scratch = new byte[256]; //buffer riutilizzato per la decodifica delle stringhe del blocco
+					for (int r = 0; r < chunks[i].records(); r++) {
+						var userName = readString(buf, scratch);
+						var account = new Account(userName, readString(buf, scratch));
+						accounts.put(account.getId(), account);
+					}
+				} catch (IOException ex) {
+					throw new IllegalStateException("cannot map account snapshot chunk " + i, ex);
+				}
+			});
+		}
+	}
+
+	//legge la parte finale del file (numero di blocchi, numero di account, magic)
+	private static ByteBuffer readTrailer(FileChannel ch) throws IOException {
+		if (ch.size() < HEADER_SIZE + TRAILER_SIZE) {
+			throw new IOException("truncated account snapshot");
+		}
+		var trailer = ByteBuffer.allocate(TRAILER_SIZE);
+		ch.read(trailer, ch.size() - TRAILER_SIZE);
+		if (trailer.getInt(12) != MAGIC) {
+			throw new IOException("truncated account snapshot");
+		}
+		return trailer;
+	}
+
+	//legge una stringa (lunghezza + byte utf-8); l'unica allocazione è la stringa stessa
+	private static String readString(ByteBuffer buf, byte[] scratch) {
+		int len = Short.toUnsignedInt(buf.getShort());
+		var bytes = len <= scratch.length ? scratch : new byte[len];
+		buf.get(bytes, 0, len);
+		return new String(bytes, 0, len, StandardCharsets.UTF_8);
+	}
+}
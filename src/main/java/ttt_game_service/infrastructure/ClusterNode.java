@@ -0,0 +1,383 @@
+package ttt_game_service.infrastructure;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import metrics.Counter;
+import metrics.MetricsRegistry;
+import ttt_game_service.application.GameService;
+
+/*
+nodo di un cluster di processi TTTGameServiceMain: ogni nodo possiede un insieme disgiunto di partite (hashing consistente dell'id, ClusterRing)
+- gli id delle sessioni (utente e giocatore) iniziano con l'id del nodo che le possiede ("n1:u3"), così ogni nodo sa dove inoltrarle
+- una richiesta arrivata al nodo sbagliato viene inoltrata al proprietario e la sua risposta viene restituita al client così com'è
+- un websocket aperto su un nodo diverso da quello della sessione giocatore si iscrive presso il proprietario,
+  che gli inoltra gli eventi (in ordine) sulla rotta /internal/push del nodo del websocket
+i nodi comunicano via http su un listener separato (l'indirizzo del membro, non la porta pubblica), che serve le rotte /internal/*
+e le rotte /api/* inoltrate; ogni richiesta su quel listener deve portare il segreto condiviso del cluster (authenticate),
+e solo lì viene letto il numero di inoltri (sulle richieste pubbliche l'header viene ignorato)
+un nuovo nodo contatta i fondatori, riceve l'elenco dei membri e si annuncia a tutti: da quel momento le nuove partite vengono distribuite anche su di lui
+ */
+public class ClusterNode {
+
+	static final String HOPS_HEADER = "x-ttt-hops"; //numero di inoltri già subiti dalla richiesta
+	static final String NODE_HEADER = "x-ttt-node"; //nodo che invia una richiesta interna
+	static final String PLAYER_SESSION_HEADER = "x-ttt-player-session"; //sessione giocatore di un evento inoltrato
+	static final String SECRET_HEADER = "x-ttt-cluster-secret"; //segreto condiviso dai nodi del cluster
+	static final int MAX_HOPS = 3; //oltre questo numero di inoltri la richiesta viene gestita localmente (anelli non ancora allineati)
+	static final int PEER_CONNECTIONS = 64; //connessioni http verso ciascun nodo
+	static final char ID_SEPARATOR = ':'; //separatore tra id del nodo e id della sessione
+	static Logger logger = Logger.getLogger("[Cluster]");
+	static final Counter FORWARDED = MetricsRegistry.global().counter("ttt_cluster_forwarded_requests_total", "Requests forwarded to the owner node");
+	static final Counter REMOTE_PUSHES = MetricsRegistry.global().counter("ttt_cluster_remote_pushes_total", "Player events pushed to the node that holds the websocket");
+	static final Counter PUSH_FAILURES = MetricsRegistry.global().counter("ttt_cluster_push_failures_total", "Player events that could not be pushed to another node");
+
+	//membro del cluster: id e indirizzo http del listener interno ("n1=localhost:9080")
+	public record Member(String id, String host, int port) {
+
+		public static Member parse(String s) {
+			var eq = s.indexOf('=');
+			var colon = s.lastIndexOf(':');
+			if (eq <= 0 || colon < eq) {
+				throw new IllegalArgumentException("expected id=host:port, got " + s);
+			}
+			var id = s.substring(0, eq).trim();
+			if (id.indexOf(ID_SEPARATOR) >= 0) {
+				throw new IllegalArgumentException("node id must not contain '" + ID_SEPARATOR + "': " + id);
+			}
+			return new Member(id, s.substring(eq + 1, colon).trim(), Integer.parseInt(s.substring(colon + 1).trim()));
+		}
+
+		//elenco di membri separati da virgola
+		public static List<Member> parseList(String s) {
+			var members = new ArrayList<Member>();
+			for (var part: s.split(",")) {
+				if (!part.isBlank()) {
+					members.add(parse(part));
+				}
+			}
+			return members;
+		}
+
+		public String toString() {
+			return id + "=" + host + ":" + port;
+		}
+	}
+
+	//risposta di un altro nodo
+	record Reply(int status, Buffer body) {}
+
+	private final Member self; //questo nodo
+	private final List<Member> founders; //nodi fondatori (proprietari degli account)
+	private final ConcurrentHashMap<String, Member> members; //id -> membro (compreso questo nodo)
+	private final ClusterRing ring; //proprietà di account e partite
+	private final HttpClient peers; //client verso gli altri nodi
+	private final ConcurrentHashMap<String, RemoteSubscription> remoteSubscriptions; //sessioni di questo nodo con il websocket su un altro nodo
+	private final String secret; //segreto condiviso del cluster
+	private final byte[] secretBytes; //segreto in utf-8 (confronto a tempo costante)
+
+	public ClusterNode(Vertx vertx, Member self, List<Member> founders, String secret) {
+		if (secret == null || secret.isBlank()) {
+			throw new IllegalArgumentException("a cluster secret is required");
+		}
+		this.self = self;
+		this.secret = secret;
+		secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+		this.founders = List.copyOf(founders);
+		members = new ConcurrentHashMap<>();
+		var ids = new ArrayList<String>();
+		for (var m: founders) {
+			members.put(m.id(), m);
+			ids.add(m.id());
+		}
+		ring = new ClusterRing(ids);
+		peers = vertx.createHttpClient(new PoolOptions().setHttp1MaxSize(PEER_CONNECTIONS));
+		remoteSubscriptions = new ConcurrentHashMap<>();
+		MetricsRegistry.global().gauge("ttt_cluster_nodes", "Nodes known to this node", () -> ring.nodes().size());
+	}
+
+	//id di questo nodo
+	public String nodeId() {
+		return self.id();
+	}
+
+	//questo nodo (il suo indirizzo è quello del listener interno)
+	public Member self() {
+		return self;
+	}
+
+	//nodo che possiede la sessione (null se l'id non ha il prefisso di un nodo)
+	public static String nodeOf(String id) {
+		var i = id == null ? -1 : id.indexOf(ID_SEPARATOR);
+		return i <= 0 ? null : id.substring(0, i);
+	}
+
+	//nodo proprietario dell'account
+	public String accountOwner(String userName) {
+		return ring.accountOwner(userName);
+	}
+
+	//nodo a cui assegnare una nuova partita
+	public String gameOwner(String gameId) {
+		return ring.gameOwner(gameId);
+	}
+
+	//nodo su cui cercare una partita che non si trova su questo nodo (null se non ce ne sono altri)
+	public String previousGameOwner(String gameId) {
+		return ring.previousGameOwner(gameId, self.id());
+	}
+
+	/*
+	ingresso nel cluster: se questo nodo è un fondatore non serve altro, altrimenti recupera i membri da un fondatore
+	e si annuncia a tutti (le nuove partite vengono assegnate anche a questo nodo)
+	 */
+	public Future<Void> join() {
+		if (members.containsKey(self.id())) {
+			return Future.succeededFuture();
+		}
+		return fetchMembers(0).compose(list -> {
+			for (var m: list) {
+				addMember(m);
+			}
+			addMember(self);
+			var announces = new ArrayList<Future<Reply>>();
+			for (var m: members.values()) {
+				if (!m.id().equals(self.id())) {
+					announces.add(post(m, "/internal/join", Buffer.buffer(self.toString()), 0));
+				}
+			}
+			return Future.all(announces).<Void>mapEmpty();
+		}).onSuccess(v -> logger.log(Level.INFO, "node " + self.id() + " joined the cluster: " + ring.nodes()));
+	}
+
+	//chiede l'elenco dei membri ai fondatori, uno dopo l'altro
+	private Future<List<Member>> fetchMembers(int founder) {
+		if (founder == founders.size()) {
+			return Future.failedFuture("no founder node reachable");
+		}
+		return post(founders.get(founder), "/internal/members", Buffer.buffer(), 0)
+			.map(reply -> Member.parseList(reply.body().toString(StandardCharsets.UTF_8)))
+			.recover(ex -> fetchMembers(founder + 1));
+	}
+
+	//aggiunge un membro (in coda all'anello, se non è già presente)
+	void addMember(Member m) {
+		if (members.putIfAbsent(m.id(), m) == null) {
+			ring.addNode(m.id());
+		}
+	}
+
+	/*
+	primo handler del listener interno: rifiuta le richieste senza il segreto del cluster (401) e quelle con un numero di inoltri
+	non valido (400); il numero di inoltri viene conservato nel contesto, l'unico punto da cui lo legge forward
+	 */
+	public void authenticate(RoutingContext context) {
+		var presented = context.request().getHeader(SECRET_HEADER);
+		if (presented == null || !MessageDigest.isEqual(presented.getBytes(StandardCharsets.UTF_8), secretBytes)) {
+			context.response().setStatusCode(401).end();
+			return;
+		}
+		var value = context.request().getHeader(HOPS_HEADER);
+		int hops;
+		try {
+			hops = value == null ? 0 : Integer.parseInt(value);
+		} catch (NumberFormatException ex) {
+			hops = -1;
+		}
+		if (hops < 0) {
+			context.response().setStatusCode(400).end();
+			return;
+		}
+		context.put(HOPS_HEADER, hops);
+		context.next();
+	}
+
+	//registra le rotte interne di appartenenza e di consegna degli eventi (sul router del listener interno)
+	public void mountRoutes(Router router, GameService gameService, LocalEventDelivery localDelivery, EventBus eventBus) {
+		router.route(HttpMethod.POST, "/internal/members").handler(context -> {
+			var sb = new StringBuilder();
+			for (var id: ring.nodes()) { //in ordine di aggiunta, così il nuovo nodo ricostruisce gli stessi anelli
+				if (sb.length() > 0) {
+					sb.append(',');
+				}
+				sb.append(members.get(id));
+			}
+			context.response().end(sb.toString());
+		});
+		router.route(HttpMethod.POST, "/internal/join").handler(context -> {
+			var m = Member.parse(context.body().asString());
+			addMember(m);
+			logger.log(Level.INFO, "node " + m.id() + " joined, ring: " + ring.nodes());
+			context.response().end();
+		});
+		router.route(HttpMethod.POST, "/internal/subscribe").handler(context -> { //un websocket su un altro nodo riceverà gli eventi della sessione
+			var playerSessionId = context.body().asString();
+			var subscriber = members.get(context.request().getHeader(NODE_HEADER));
+			var ps = gameService.getPlayerSession(playerSessionId);
+			if (ps == null || subscriber == null) {
+				context.response().setStatusCode(404).end();
+				return;
+			}
+			var subscription = new RemoteSubscription(playerSessionId, subscriber);
+			var previous = remoteSubscriptions.put(playerSessionId, subscription);
+			if (previous != null) {
+				previous.cancel();
+			}
+			subscription.consumer = eventBus.<EventFrame>consumer(playerSessionId, msg -> subscription.push(msg.body()));
+			ps.getPlayerSessionEventNotifier().enableEventNotification(playerSessionId);
+			context.response().end();
+		});
+		router.route(HttpMethod.POST, "/internal/unsubscribe").handler(context -> {
+			var playerSessionId = context.body().asString();
+			var subscription = remoteSubscriptions.get(playerSessionId);
+			if (subscription != null && subscription.subscriber.id().equals(context.request().getHeader(NODE_HEADER)) && remoteSubscriptions.remove(playerSessionId, subscription)) {
+				subscription.cancel();
+			}
+			context.response().end();
+		});
+		router.route(HttpMethod.POST, "/internal/push").handler(context -> { //evento di una sessione posseduta da un altro nodo
+			var frame = decodeFrame(context.body().buffer());
+			boolean delivered = localDelivery.deliver(context.request().getHeader(PLAYER_SESSION_HEADER), frame);
+			context.response().setStatusCode(delivered ? 200 : 410).end(); //410: il websocket non è più su questo nodo
+		});
+	}
+
+	/*
+	inoltra la richiesta al nodo indicato e restituisce al client la sua risposta; restituisce false (nessun inoltro) se il nodo è questo,
+	se non è noto o se la richiesta ha già subito troppi inoltri
+	 */
+	public boolean forward(RoutingContext context, String node) {
+		return forward(context, node, context.request().path(), context.body().buffer());
+	}
+
+	//inoltra la richiesta al nodo indicato, su un'altra rotta e con un altro body
+	public boolean forward(RoutingContext context, String node, String path, Buffer body) {
+		if (node == null || node.equals(self.id())) {
+			return false;
+		}
+		var member = members.get(node);
+		int hops = hops(context);
+		if (member == null || hops >= MAX_HOPS) {
+			return false;
+		}
+		FORWARDED.inc();
+		var response = context.response();
+		post(member, path, body == null ? Buffer.buffer() : body, hops + 1).onComplete(ar -> {
+			if (response.closed() || response.ended()) {
+				return;
+			}
+			response.putHeader(RestReplies.CONTENT_TYPE, RestReplies.APPLICATION_JSON);
+			if (ar.succeeded()) {
+				response.setStatusCode(ar.result().status()).end(ar.result().body());
+			} else {
+				response.setStatusCode(502).end(RestReplies.NODE_UNAVAILABLE);
+			}
+		});
+		return true;
+	}
+
+	//numero di inoltri già subiti dalla richiesta (0 per le richieste pubbliche, qualunque header portino)
+	private static int hops(RoutingContext context) {
+		Integer hops = context.get(HOPS_HEADER); //impostato solo da authenticate
+		return hops == null ? 0 : hops;
+	}
+
+	//chiede al nodo proprietario della sessione giocatore di inoltrare i suoi eventi a questo nodo
+	public Future<Boolean> subscribe(String playerSessionId) {
+		var member = members.get(nodeOf(playerSessionId));
+		if (member == null) {
+			return Future.succeededFuture(false);
+		}
+		return post(member, "/internal/subscribe", Buffer.buffer(playerSessionId), 0).map(reply -> reply.status() == 200);
+	}
+
+	//invia una richiesta pubblica al nodo proprietario della sessione e restituisce il body della risposta
+	public Future<Buffer> call(String playerSessionId, String path, Buffer body) {
+		var member = members.get(nodeOf(playerSessionId));
+		if (member == null) {
+			return Future.failedFuture("unknown node");
+		}
+		return post(member, path, body, 1).map(Reply::body);
+	}
+
+	//annulla l'iscrizione presso il nodo proprietario della sessione giocatore
+	public void unsubscribe(String playerSessionId) {
+		var member = members.get(nodeOf(playerSessionId));
+		if (member != null) {
+			post(member, "/internal/unsubscribe", Buffer.buffer(playerSessionId), 0);
+		}
+	}
+
+	//invia una richiesta interna a un nodo
+	private Future<Reply> post(Member member, String path, Buffer body, int hops, String... headers) {
+		var options = new RequestOptions().setMethod(HttpMethod.POST).setHost(member.host()).setPort(member.port()).setURI(path)
+				.putHeader(HOPS_HEADER, Integer.toString(hops)).putHeader(NODE_HEADER, self.id()).putHeader(SECRET_HEADER, secret);
+		for (int i = 0; i < headers.length; i += 2) {
+			options.putHeader(headers[i], headers[i + 1]);
+		}
+		return peers.request(options).compose(req -> req.send(body).compose(resp -> resp.body().map(b -> new Reply(resp.statusCode(), b))));
+	}
+
+	//evento codificato per l'inoltro: [lunghezza testo (int)][testo utf-8][binario]
+	static Buffer encodeFrame(EventFrame frame) {
+		var text = frame.text().getBytes(StandardCharsets.UTF_8);
+		return Buffer.buffer(4 + text.length + frame.binary().length()).appendInt(text.length).appendBytes(text).appendBuffer(frame.binary());
+	}
+
+	static EventFrame decodeFrame(Buffer buffer) {
+		int length = buffer.getInt(0);
+		return new EventFrame(buffer.getString(4, 4 + length, "UTF-8"), buffer.getBuffer(4 + length, buffer.length()));
+	}
+
+	/*
+	sessione giocatore di questo nodo con il websocket su un altro nodo: gli eventi pubblicati sull'event bus all'indirizzo della sessione
+	vengono inoltrati uno alla volta (il successivo parte quando il precedente è stato consegnato), così arrivano in ordine
+	 */
+	private final class RemoteSubscription {
+
+		private final String playerSessionId; //sessione giocatore
+		private final Member subscriber; //nodo del websocket
+		private MessageConsumer<EventFrame> consumer; //registrazione sull'event bus
+		private Future<?> last = Future.succeededFuture(); //ultimo inoltro (eseguito sul contesto del consumer)
+
+		RemoteSubscription(String playerSessionId, Member subscriber) {
+			this.playerSessionId = playerSessionId;
+			this.subscriber = subscriber;
+		}
+
+		void push(EventFrame frame) {
+			var body = encodeFrame(frame);
+			last = last.transform(prev -> post(subscriber, "/internal/push", body, 0, PLAYER_SESSION_HEADER, playerSessionId).andThen(ar -> {
+				if (ar.succeeded() && ar.result().status() == 200) {
+					REMOTE_PUSHES.inc();
+				} else {
+					PUSH_FAILURES.inc();
+					if (ar.succeeded() && ar.result().status() == 410 && remoteSubscriptions.remove(playerSessionId, this)) { //il websocket è stato chiuso
+						cancel();
+					}
+				}
+			}));
+		}
+
+		void cancel() {
+			if (consumer != null) {
+				consumer.unregister();
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package ttt_game_service.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+proprietà di account e partite tra i nodi del cluster, come sequenza di anelli (uno per ogni nodo aggiunto)
+- gli account appartengono all'anello dei nodi fondatori e non si spostano mai
+- le nuove partite vengono assegnate all'anello più recente; una partita esistente resta sul nodo che l'ha creata,
+  che si trova risalendo gli anelli precedenti (gameOwners)
+i nodi possono solo essere aggiunti; la lettura non usa lock (lista copiata a ogni aggiunta)
+ */
+public final class ClusterRing {
+
+	private volatile List<HashRing> epochs; //anelli in ordine di aggiunta dei nodi (il primo contiene i fondatori)
+
+	public ClusterRing(Collection<String> founders) {
+		epochs = List.of(new HashRing(founders));
+	}
+
+	//aggiunge un nodo (nuovo anello per le partite create da ora in poi); restituisce false se il nodo era già presente
+	public synchronized boolean addNode(String node) {
+		var current = current();
+		if (current.nodes().contains(node)) {
+			return false;
+		}
+		var next = new ArrayList<>(epochs);
+		next.add(current.withNode(node));
+		epochs = List.copyOf(next);
+		return true;
+	}
+
+	//nodo proprietario dell'account
+	public String accountOwner(String userName) {
+		return epochs.get(0).owner(userName);
+	}
+
+	//nodo a cui assegnare una nuova partita
+	public String gameOwner(String gameId) {
+		return current().owner(gameId);
+	}
+
+	//possibili proprietari di una partita esistente, dal più recente al più vecchio (senza ripetizioni)
+	public List<String> gameOwners(String gameId) {
+		var snapshot = epochs;
+		var owners = new ArrayList<String>(2);
+		for (int i = snapshot.size() - 1; i >= 0; i--) {
+			var owner = snapshot.get(i).owner(gameId);
+			if (!owners.contains(owner)) {
+				owners.add(owner);
+			}
+		}
+		return owners;
+	}
+
+	//proprietario precedente della partita rispetto al nodo indicato (null se il nodo è il più vecchio o non è tra i proprietari)
+	public String previousGameOwner(String gameId, String node) {
+		var owners = gameOwners(gameId);
+		int i = owners.indexOf(node);
+		return i < 0 || i == owners.size() - 1 ? null : owners.get(i + 1);
+	}
+
+	//nodi del cluster, in ordine di aggiunta
+	public List<String> nodes() {
+		return current().nodes();
+	}
+
+	private HashRing current() {
+		var snapshot = epochs;
+		return snapshot.get(snapshot.size() - 1);
+	}
+}
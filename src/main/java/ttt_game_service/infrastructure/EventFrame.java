@@ -0,0 +1,92 @@
+package ttt_game_service.infrastructure;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/*
+evento di gioco già codificato, condiviso (immutabile) tra tutti i destinatari
+- testo: json compatto, con gli stessi campi inviati finora ai client
+- binario (per i client che lo richiedono): [tipo] + campi dell'evento
+   game-started: [1]
+   new-move:     [2][simbolo 'X'/'O'][x (short)][y (short)]
+   game-ended:   [3][0 = pareggio | 1 = vincitore][lunghezza vincitore (short)][vincitore utf-8]
+   player-joined (solo spettatori): [4][simbolo 'X'/'O'][lunghezza utente (short)][utente utf-8]
+ */
+public final class EventFrame {
+
+	static final byte GAME_STARTED = 1; //tipo dell'evento "partita iniziata"
+	static final byte NEW_MOVE = 2; //tipo dell'evento "nuova mossa"
+	static final byte GAME_ENDED = 3; //tipo dell'evento "partita terminata"
+	static final byte PLAYER_JOINED = 4; //tipo dell'evento "giocatore entrato"
+	static final int CACHED_COORDS = 16; //le mosse con coordinate inferiori vengono codificate una sola volta e riutilizzate
+
+	private static final EventFrame STARTED = new EventFrame(new JsonObject().put("event", "game-started").encode(), Buffer.buffer(1).appendByte(GAME_STARTED));
+	private static final EventFrame TIE = new EventFrame(new JsonObject().put("event", "game-ended").put("result", "tie").encode(), Buffer.buffer(4).appendByte(GAME_ENDED).appendByte((byte) 0).appendShort((short) 0));
+	private static final EventFrame[] MOVES = new EventFrame[2 * CACHED_COORDS * CACHED_COORDS]; //mosse già codificate (riempita su richiesta)
+
+	private final String text; //codifica testuale (json compatto)
+	private final Buffer binary; //codifica binaria
+
+	EventFrame(String text, Buffer binary) {
+		this.text = text;
+		this.binary = binary;
+	}
+
+	//codifica testuale
+	public String text() {
+		return text;
+	}
+
+	//codifica binaria
+	public Buffer binary() {
+		return binary;
+	}
+
+	//evento "partita iniziata"
+	public static EventFrame gameStarted() {
+		return STARTED;
+	}
+
+	//evento "nuova mossa" (codificato una sola volta per simbolo e casella)
+	public static EventFrame newMove(String symbol, int x, int y) {
+		boolean cross = symbol.equals("X");
+		if (x < 0 || y < 0 || x >= CACHED_COORDS || y >= CACHED_COORDS) {
+			return encodeMove(cross, x, y);
+		}
+		int index = ((cross ? 0 : 1) * CACHED_COORDS + y) * CACHED_COORDS + x;
+		var frame = MOVES[index];
+		if (frame == null) { //la scrittura concorrente è innocua: i frame sono identici
+			frame = encodeMove(cross, x, y);
+			MOVES[index] = frame;
+		}
+		return frame;
+	}
+
+	//codifica una mossa
+	private static EventFrame encodeMove(boolean cross, int x, int y) {
+		var symbol = cross ? "X" : "O";
+		var text = new JsonObject().put("event", "new-move").put("x", x).put("y", y).put("symbol", symbol).encode();
+		var binary = Buffer.buffer(6).appendByte(NEW_MOVE).appendByte((byte) symbol.charAt(0)).appendShort((short) x).appendShort((short) y);
+		return new EventFrame(text, binary);
+	}
+
+	//evento "partita terminata" (chi lo notifica a più destinatari lo codifica una volta sola, vedi GameOutcome)
+	public static EventFrame gameEnded(Optional<String> winner) {
+		if (winner.isEmpty()) {
+			return TIE;
+		}
+		var name = winner.get();
+		var bytes = name.getBytes(StandardCharsets.UTF_8);
+		var binary = Buffer.buffer(4 + bytes.length).appendByte(GAME_ENDED).appendByte((byte) 1).appendShort((short) bytes.length).appendBytes(bytes);
+		return new EventFrame(new JsonObject().put("event", "game-ended").put("winner", name).encode(), binary);
+	}
+
+	//evento "giocatore entrato" (inviato agli spettatori)
+	public static EventFrame playerJoined(String symbol, String userId) {
+		var bytes = userId.getBytes(StandardCharsets.UTF_8);
+		var binary = Buffer.buffer(4 + bytes.length).appendByte(PLAYER_JOINED).appendByte((byte) symbol.charAt(0)).appendShort((short) bytes.length).appendBytes(bytes);
+		return new EventFrame(new JsonObject().put("event", "player-joined").put("symbol", symbol).put("userId", userId).encode(), binary);
+	}
+}
@@ -0,0 +1,52 @@
+package ttt_game_service.infrastructure;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+
+/*
+codec dell'event bus per gli EventFrame
+la consegna locale passa direttamente l'istanza (immutabile), senza copie; la codifica su rete serve solo per l'event bus in cluster
+ */
+public class EventFrameCodec implements MessageCodec<EventFrame, EventFrame> {
+
+	static final String NAME = "ttt-event-frame"; //nome del codec
+
+	//registra il codec come codec di default per gli EventFrame (se non già registrato)
+	public static synchronized void register(EventBus eventBus) {
+		try {
+			eventBus.registerDefaultCodec(EventFrame.class, new EventFrameCodec());
+		} catch (IllegalStateException ex) {
+			//già registrato su questo event bus
+		}
+	}
+
+	//codifica per la rete: [lunghezza testo][testo][lunghezza binario][binario]
+	public void encodeToWire(Buffer buffer, EventFrame frame) {
+		var text = Buffer.buffer(frame.text());
+		buffer.appendInt(text.length()).appendBuffer(text);
+		buffer.appendInt(frame.binary().length()).appendBuffer(frame.binary());
+	}
+
+	//decodifica dalla rete
+	public EventFrame decodeFromWire(int pos, Buffer buffer) {
+		int textLength = buffer.getInt(pos);
+		var text = buffer.getString(pos + 4, pos + 4 + textLength);
+		int binaryStart = pos + 4 + textLength;
+		int binaryLength = buffer.getInt(binaryStart);
+		return new EventFrame(text, buffer.getBuffer(binaryStart + 4, binaryStart + 4 + binaryLength));
+	}
+
+	//consegna locale: lo stesso frame (immutabile)
+	public EventFrame transform(EventFrame frame) {
+		return frame;
+	}
+
+	public String name() {
+		return NAME;
+	}
+
+	public byte systemCodecID() {
+		return -1; //codec utente
+	}
+}
@@ -0,0 +1,40 @@
+package ttt_game_service.infrastructure;
+
+import io.vertx.core.Context;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+/*
+misura il ritardo dell'event loop: un timer viene programmato ogni INTERVAL ms sul contesto e, quando scatta,
+registra di quanto è in ritardo rispetto all'istante previsto (tempo in cui l'event loop era occupato da altri handler)
+il timer appartiene al contesto del controller e viene cancellato insieme al suo deployment
+ */
+final class EventLoopLagProbe {
+
+	static final long INTERVAL = 100; //intervallo (ms) tra due misure
+	static final Histogram LAG = MetricsRegistry.global().histogram("ttt_event_loop_lag_seconds", "Delay between the scheduled and the actual firing of a timer on the event loop");
+
+	private final Context context; //event loop misurato
+	private long expected; //istante (ns) previsto per il prossimo timer
+
+	private EventLoopLagProbe(Context context) {
+		this.context = context;
+	}
+
+	//avvia la misura sull'event loop del contesto (chiamato dal contesto stesso)
+	static void start(Context context) {
+		new EventLoopLagProbe(context).schedule();
+	}
+
+	//programma il prossimo timer
+	private void schedule() {
+		expected = System.nanoTime() + INTERVAL * 1_000_000;
+		context.owner().setTimer(INTERVAL, this::fire);
+	}
+
+	//registra il ritardo e programma la misura successiva
+	private void fire(long timerId) {
+		LAG.record(System.nanoTime() - expected);
+		schedule();
+	}
+}
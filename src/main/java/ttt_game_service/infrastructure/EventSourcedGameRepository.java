@@ -0,0 +1,555 @@
+package ttt_game_service.infrastructure;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import exagonal.Adapter;
+import ttt_game_service.application.GameRepository;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameBoard;
+import ttt_game_service.domain.GameEnded;
+import ttt_game_service.domain.GameEvent;
+import ttt_game_service.domain.GameObserver;
+import ttt_game_service.domain.GameStarted;
+import ttt_game_service.domain.InvalidMoveException;
+import ttt_game_service.domain.NewMove;
+import ttt_game_service.domain.PlayerJoined;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+
+/*
+implementazione durevole della porta di uscita che collega l'architettura (applicazione) al db delle partite (event sourcing)
+ogni partita riceve una chiave numerica; l'ingresso nel repository scrive lo stato completo della partita (CREATED), poi ogni evento
+(PlayerJoined, GameStarted, NewMove, GameEnded) viene accodato a un log segmentato con "group commit" (una scrittura e un fsync per batch)
+periodicamente il log viene compattato in uno snapshot binario di tutte le partite; all'avvio le partite vengono ricostruite
+dallo snapshot e dagli eventi dei segmenti successivi (gli eventi con versione già inclusa nello snapshot vengono saltati);
+la riapplicazione si ferma al primo record incompleto o non valido e i segmenti da lì in poi vengono messi da parte (.corrupt)
+record: [lunghezza body (int)][crc32 del body (int)][tipo (byte)][chiave (long)][versione (long)][dati del tipo]
+lo stato della partita contiene le dimensioni della griglia (larghezza, altezza, lunghezza della combinazione) e le caselle di ciascun simbolo;
+snapshot in formato 1 e record CREATED (griglia 3x3 come due maschere int) vengono ancora letti
+ */
+@Adapter
+public class EventSourcedGameRepository implements GameRepository, AutoCloseable {
+
+	static Logger logger = Logger.getLogger("[GameDB]");
+	static final String SNAPSHOT = "games.snapshot"; //nome dello snapshot
+	static final String LOG_PREFIX = "games"; //prefisso dei segmenti del log
+	static final int MAGIC = 0x54545447; //"TTTG"
+	static final int FORMAT_VERSION = 2; //versione del formato (2: griglia m,n,k)
+	static final int LEGACY_FORMAT_VERSION = 1; //versione precedente (griglia 3x3), ancora leggibile
+	static final long SEGMENT_SIZE = 64L << 20; //dimensione massima di un segmento (64 MB)
+	static final long DEFAULT_COMPACT_EVERY = 2_000_000; //numero di record dopo il quale il log viene compattato
+	static final byte CREATED = 1, JOINED = 2, STARTED = 3, MOVE = 4, ENDED = 5, REMOVED = 6, CREATED_BOARD = 7; //tipi di record (CREATED: formato 1, solo lettura)
+	static final int RECORD_HEADER = 8; //lunghezza + crc
+	static final int BODY_HEADER = 17; //tipo + chiave + versione
+
+	private final Path snapshotFile; //snapshot delle partite
+	private final ConcurrentHashMap<String, Entry> games; //id della partita -> partita e chiave
+	private final AtomicLong nextKey; //generatore delle chiavi delle partite
+	private final GroupCommitLog log; //log segmentato degli eventi
+
+	//partita presente nel repository con la sua chiave
+	private record Entry(long key, Game game) {}
+
+	public EventSourcedGameRepository(Path dbDir) {
+		this(dbDir, DEFAULT_COMPACT_EVERY);
+	}
+
+	//repository con i file del db nella cartella indicata e compattazione ogni "compactEvery" record
+	public EventSourcedGameRepository(Path dbDir, long compactEvery) {
+		snapshotFile = dbDir.resolve(SNAPSHOT);
+		games = new ConcurrentHashMap<>();
+		nextKey = new AtomicLong();
+		long start = System.nanoTime();
+		try {
+			Files.createDirectories(dbDir);
+			var byKey = new HashMap<Long, Game>();
+			long firstSegment = Files.exists(snapshotFile) ? loadSnapshot(byKey) : 0;
+			long segment = firstSegment;
+			long validLength = 0;
+			var segments = GroupCommitLog.segments(dbDir, LOG_PREFIX);
+			for (int i = 0; i < segments.size(); i++) { //riapplica i segmenti successivi allo snapshot
+				if (segments.get(i) < firstSegment) {
+					continue;
+				}
+				segment = segments.get(i);
+				var path = GroupCommitLog.segmentPath(dbDir, LOG_PREFIX, segment);
+				validLength = replaySegment(path, byKey);
+				if (validLength < Files.size(path)) { //la riapplicazione si ferma al primo record non valido: gli eventi successivi non vengono applicati
+					quarantine(dbDir, segments.subList(i, segments.size()));
+					break;
+				}
+			}
+			for (var e: byKey.entrySet()) { //ricollega le partite ricostruite al log
+				var game = e.getValue();
+				game.addGameObserver(new Journal(e.getKey(), game));
+				games.put(game.getId(), new Entry(e.getKey(), game));
+			}
+			log = GroupCommitLog.segmented(dbDir, LOG_PREFIX, segment, validLength, SEGMENT_SIZE, compactEvery, this::saveSnapshot);
+		} catch (IOException ex) {
+			throw new IllegalStateException("cannot open the games DB", ex);
+		}
+		logger.info("Games DB loaded: " + games.size() + " games in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+	}
+
+	//osservatore che registra gli eventi di una partita sul log (chiamato con il lock della partita già acquisito)
+	private class Journal implements GameObserver {
+
+		private final long key; //chiave della partita
+		private final Game game; //partita osservata
+
+		Journal(long key, Game game) {
+			this.key = key;
+			this.game = game;
+		}
+
+		public void notifyGameEvent(GameEvent ev) {
+			log.append(encodeEvent(key, game, ev));
+		}
+
+		//la mossa viene codificata senza costruire l'evento
+		@Override
+		public void newMove(String gameId, TTTSymbol symbol, int x, int y) {
+			log.append(encodeMove(key, game.getVersion(), symbol, x, y));
+		}
+	}
+
+	//aggiunge una partita (sostituisce quella con lo stesso id)
+	public void addGame(Game game) {
+		var entry = new Entry(nextKey.incrementAndGet(), game);
+		Entry previous;
+		synchronized (game) {
+			previous = games.put(game.getId(), entry);
+			journal(entry);
+		}
+		if (previous != null) {
+			removed(previous);
+		}
+	}
+
+	//aggiunge una partita solo se non è già presente (operazione atomica)
+	public boolean addGameIfAbsent(Game game) {
+		return insert(game) != null;
+	}
+
+	/*
+	aggiunge una partita solo se non è già presente; la future viene completata quando il suo stato iniziale è persistente
+	il chiamante si limita ad accodare il record: la barriera di durabilità è la scrittura del record stesso, senza record aggiuntivi
+	 */
+	@Override
+	public CompletableFuture<Boolean> addGameIfAbsentAsync(Game game) {
+		var appended = insert(game);
+		if (appended == null) {
+			return CompletableFuture.completedFuture(false);
+		}
+		return appended.thenApply(v -> true);
+	}
+
+	//inserisce la partita se non è già presente e accoda il suo stato iniziale; restituisce la scrittura del record (null se la partita esiste già)
+	private CompletableFuture<Void> insert(Game game) {
+		var entry = new Entry(nextKey.incrementAndGet(), game); //una chiave inutilizzata se la partita è già presente non viene riusata
+		synchronized (game) { //nessun evento della partita può precedere il suo stato iniziale sul log
+			if (games.putIfAbsent(game.getId(), entry) != null) {
+				return null;
+			}
+			return journal(entry); //fuori dalla mappa: il suo lock resta libero durante l'accodamento
+		}
+	}
+
+	//registra lo stato della partita e collega il suo osservatore al log (chiamato con il lock della partita: nessun evento può inserirsi tra i due passi)
+	private CompletableFuture<Void> journal(Entry entry) {
+		var appended = log.append(encodeCreated(entry.key(), entry.game()));
+		entry.game().addGameObserver(new Journal(entry.key(), entry.game()));
+		return appended;
+	}
+
+	//registra la rimozione di una partita (con il suo lock: il record segue lo stato iniziale e gli eventi già accodati)
+	private void removed(Entry entry) {
+		synchronized (entry.game()) {
+			log.append(record(REMOVED, entry.key(), 0, 0).array());
+		}
+	}
+
+	//verifica la presenza di una partita
+	public boolean isPresent(String gameId) {
+		return games.containsKey(gameId);
+	}
+
+	//recupera una partita
+	public Game getGame(String gameId) {
+		var entry = games.get(gameId);
+		return entry == null ? null : entry.game();
+	}
+
+	//rimuove una partita (anche dal log)
+	public void removeGame(String gameId) {
+		var entry = games.remove(gameId);
+		if (entry != null) {
+			removed(entry);
+		}
+	}
+
+	//numero di partite presenti
+	public int size() {
+		return games.size();
+	}
+
+	//partite presenti
+	public Iterable<Game> getGames() {
+		return () -> games.values().stream().map(Entry::game).iterator();
+	}
+
+	//id delle partite presenti (copia: le partite possono essere rimosse durante l'iterazione)
+	@Override
+	public Iterable<String> getGameIds() {
+		return new ArrayList<>(games.keySet());
+	}
+
+	//scrive subito uno snapshot e cancella i segmenti già inclusi
+	public void snapshot() {
+		log.compactNow();
+	}
+
+	//attende che tutti gli eventi accodati siano persistenti
+	public void flush() {
+		log.flush();
+	}
+
+	//scrive gli eventi in attesa e chiude il db
+	public void close() {
+		log.close();
+	}
+
+	//--- codifica dei record ---
+
+	//crea un record con spazio per "payload" byte di dati
+	private static ByteBuffer record(byte type, long key, long version, int payload) {
+		int bodyLength = BODY_HEADER + payload;
+		var buf = ByteBuffer.allocate(RECORD_HEADER + bodyLength);
+		buf.putInt(bodyLength);
+		buf.putInt(0); //crc, calcolato da seal
+		buf.put(type);
+		buf.putLong(key);
+		buf.putLong(version);
+		if (payload == 0) {
+			seal(buf);
+		}
+		return buf;
+	}
+
+	//calcola il crc del body e restituisce il record completo
+	private static byte[] seal(ByteBuffer buf) {
+		var crc = new CRC32();
+		crc.update(buf.array(), RECORD_HEADER, buf.capacity() - RECORD_HEADER);
+		buf.putInt(4, (int) crc.getValue());
+		return buf.array();
+	}
+
+	//codifica un evento della partita (la versione è quella della partita dopo l'evento)
+	private static byte[] encodeEvent(long key, Game game, GameEvent ev) {
+		long version = game.getVersion();
+		if (ev instanceof PlayerJoined) {
+			var e = (PlayerJoined) ev;
+			var user = e.userId().getBytes(StandardCharsets.UTF_8);
+			var buf = record(JOINED, key, version, 3 + user.length);
+			buf.put(symbolCode(TTTSymbol.valueOf(e.symbol())));
+			buf.putShort((short) user.length);
+			buf.put(user);
+			return seal(buf);
+		} else if (ev instanceof GameStarted) {
+			return seal(record(STARTED, key, version, 0));
+		} else if (ev instanceof NewMove) {
+			var e = (NewMove) ev;
+			return encodeMove(key, version, TTTSymbol.valueOf(e.symbol()), e.x(), e.y());
+		} else if (ev instanceof GameEnded) {
+			var buf = record(ENDED, key, version, 1);
+			buf.put(symbolCode(game.getWinnerSymbol()));
+			return seal(buf);
+		}
+		throw new IllegalArgumentException("unknown game event " + ev);
+	}
+
+	//codifica una mossa
+	private static byte[] encodeMove(long key, long version, TTTSymbol symbol, int x, int y) {
+		var buf = record(MOVE, key, version, 5);
+		buf.put(symbolCode(symbol));
+		buf.putShort((short) x);
+		buf.putShort((short) y);
+		return seal(buf);
+	}
+
+	//codifica lo stato completo della partita (ingresso nel repository)
+	private static byte[] encodeCreated(long key, Game game) {
+		var state = new ByteArrayOutputStream(64);
+		try (var out = new DataOutputStream(state)) {
+			writeGameState(out, game);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		var bytes = state.toByteArray();
+		var buf = record(CREATED_BOARD, key, game.getVersion(), bytes.length);
+		buf.put(bytes);
+		return seal(buf);
+	}
+
+	//scrive lo stato della partita (formato comune a snapshot e record CREATED)
+	private static void writeGameState(DataOutputStream out, Game game) throws IOException {
+		out.writeUTF(game.getId());
+		out.writeByte(game.getState().ordinal());
+		writeUser(out, game.getPlayer(TTTSymbol.X));
+		writeUser(out, game.getPlayer(TTTSymbol.O));
+		var board = game.getBoard();
+		var config = board.getConfig();
+		out.writeByte(config.width());
+		out.writeByte(config.height());
+		out.writeByte(config.winLength());
+		for (long word: board.getCrossCells()) {
+			out.writeLong(word);
+		}
+		for (long word: board.getCircleCells()) {
+			out.writeLong(word);
+		}
+		out.writeByte(symbolCode(game.getCurrentTurnSymbol()));
+		out.writeByte(symbolCode(game.getWinnerSymbol()));
+	}
+
+	//legge lo stato della partita ("legacy": formato 1, griglia 3x3 come due maschere int)
+	private static Game readGameState(DataInputStream in, long version, boolean legacy) throws IOException {
+		var id = in.readUTF();
+		var state = Game.GameState.values()[in.readByte()];
+		var cross = readUser(in);
+		var circle = readUser(in);
+		GameBoard board;
+		if (legacy) {
+			board = new GameBoard(id + "-board", in.readInt(), in.readInt());
+		} else {
+			BoardConfig config;
+			try {
+				config = new BoardConfig(in.readUnsignedByte(), in.readUnsignedByte(), in.readUnsignedByte());
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("invalid board of game " + id, ex);
+			}
+			int words = (config.cells() + 63) >>> 6;
+			var crossCells = new long[words];
+			var circleCells = new long[words];
+			for (int i = 0; i < words; i++) {
+				crossCells[i] = in.readLong();
+			}
+			for (int i = 0; i < words; i++) {
+				circleCells[i] = in.readLong();
+			}
+			board = new GameBoard(id + "-board", config, crossCells, circleCells);
+		}
+		var turn = symbol(in.readByte());
+		var winner = symbol(in.readByte());
+		return Game.restore(id, state, cross, circle, board, turn, winner, version);
+	}
+
+	private static void writeUser(DataOutputStream out, UserId user) throws IOException {
+		out.writeBoolean(user != null);
+		if (user != null) {
+			out.writeUTF(user.id());
+		}
+	}
+
+	private static UserId readUser(DataInputStream in) throws IOException {
+		return in.readBoolean() ? new UserId(in.readUTF()) : null;
+	}
+
+	//codice del simbolo (0 nessuno, 1 croce, 2 cerchio)
+	private static byte symbolCode(TTTSymbol symbol) {
+		return symbol == null ? 0 : (byte) (symbol.ordinal() + 1);
+	}
+
+	private static TTTSymbol symbol(byte code) {
+		return code == 0 ? null : TTTSymbol.values()[code - 1];
+	}
+
+	//--- snapshot ---
+
+	/*
+	scrive lo snapshot di tutte le partite (eseguito dal thread del log durante la compattazione)
+	lo stato di ogni partita viene letto con il lock della partita; gli eventi ancora in coda finiscono nei segmenti successivi
+	e al riavvio vengono saltati se la loro versione è già inclusa
+	 */
+	private void saveSnapshot() throws IOException {
+		var tmp = snapshotFile.resolveSibling(SNAPSHOT + ".tmp");
+		long count = 0;
+		try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(log.currentSegment()); //primo segmento da riapplicare
+			for (var entry: games.values()) {
+				var game = entry.game();
+				synchronized (game) {
+					out.writeBoolean(true);
+					out.writeLong(entry.key());
+					out.writeLong(game.getVersion());
+					writeGameState(out, game);
+				}
+				count++;
+			}
+			out.writeBoolean(false);
+			out.writeLong(nextKey.get());
+			out.writeInt(MAGIC);
+		}
+		try (var ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+			ch.force(true); //rende persistente lo snapshot prima del rename
+		}
+		Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		logger.info("Games snapshot written: " + count + " games");
+	}
+
+	//carica lo snapshot e restituisce il primo segmento da riapplicare
+	private long loadSnapshot(HashMap<Long, Game> byKey) throws IOException {
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("not a games snapshot: " + snapshotFile);
+			}
+			int format = in.readInt();
+			if (format != FORMAT_VERSION && format != LEGACY_FORMAT_VERSION) {
+				throw new IOException("unsupported games snapshot format " + format + ": " + snapshotFile);
+			}
+			long firstSegment = in.readLong();
+			while (in.readBoolean()) {
+				long key = in.readLong();
+				long version = in.readLong();
+				byKey.put(key, readGameState(in, version, format == LEGACY_FORMAT_VERSION));
+			}
+			nextKey.set(in.readLong());
+			if (in.readInt() != MAGIC) {
+				throw new IOException("truncated games snapshot: " + snapshotFile);
+			}
+			return firstSegment;
+		}
+	}
+
+	//--- ricostruzione ---
+
+	//riapplica un segmento e restituisce la lunghezza della parte integra (un record incompleto o corrotto termina il segmento)
+	private long replaySegment(Path segment, HashMap<Long, Game> byKey) throws IOException {
+		try (var ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+			var buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			var crc = new CRC32();
+			while (buf.remaining() >= RECORD_HEADER) {
+				int start = buf.position();
+				int bodyLength = buf.getInt();
+				int expectedCrc = buf.getInt();
+				if (bodyLength < BODY_HEADER || bodyLength > buf.remaining()) {
+					return truncated(segment, start);
+				}
+				crc.reset();
+				crc.update(buf.slice(buf.position(), bodyLength));
+				if ((int) crc.getValue() != expectedCrc) {
+					return truncated(segment, start);
+				}
+				var body = buf.slice(buf.position(), bodyLength);
+				buf.position(buf.position() + bodyLength);
+				try {
+					applyRecord(body, byKey);
+				} catch (IOException | RuntimeException ex) { //record integro ma incoerente con le partite ricostruite
+					logger.warning("corrupt record in " + segment + " at offset " + start + " (" + ex.getMessage() + "), stopping the replay");
+					return start;
+				}
+			}
+			if (buf.remaining() > 0) {
+				return truncated(segment, buf.position());
+			}
+			return buf.position();
+		}
+	}
+
+	/*
+	mette da parte i segmenti a partire da quello con il record non valido (il primo viene copiato, i successivi rinominati con suffisso .corrupt):
+	non vengono riapplicati né sovrascritti dal log, che riprende dopo l'ultimo record valido, ma restano su disco per l'analisi
+	 */
+	private static void quarantine(Path dbDir, List<Long> segments) throws IOException {
+		for (int i = 0; i < segments.size(); i++) {
+			var path = GroupCommitLog.segmentPath(dbDir, LOG_PREFIX, segments.get(i));
+			var target = path.resolveSibling(path.getFileName() + ".corrupt");
+			if (i == 0) {
+				Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		logger.warning("games log corrupted in segment " + segments.get(0) + ": " + (segments.size() - 1) + " later segments moved aside (.corrupt) and not replayed");
+	}
+
+	private static long truncated(Path segment, long offset) {
+		logger.warning("incomplete record in " + segment + " at offset " + offset + ", ignoring the rest of the segment");
+		return offset;
+	}
+
+	//applica un record alle partite ricostruite
+	private void applyRecord(ByteBuffer body, HashMap<Long, Game> byKey) throws IOException {
+		byte type = body.get();
+		long key = body.getLong();
+		long version = body.getLong();
+		if (key > nextKey.get()) {
+			nextKey.set(key);
+		}
+		if (type == CREATED || type == CREATED_BOARD) {
+			if (!byKey.containsKey(key)) {
+				var bytes = new byte[body.remaining()];
+				body.get(bytes);
+				byKey.put(key, readGameState(new DataInputStream(new ByteArrayInputStream(bytes)), version, type == CREATED));
+			}
+			return;
+		}
+		if (type == REMOVED) {
+			byKey.remove(key);
+			return;
+		}
+		var game = byKey.get(key);
+		if (game == null || version <= game.getVersion()) { //partita rimossa o evento già incluso nello snapshot
+			return;
+		}
+		GameEvent ev;
+		switch (type) {
+			case JOINED -> {
+				var symbol = symbol(body.get());
+				var user = new byte[body.getShort()];
+				body.get(user);
+				ev = new PlayerJoined(game.getId(), new String(user, StandardCharsets.UTF_8), symbol.toString());
+			}
+			case STARTED -> ev = new GameStarted(game.getId());
+			case MOVE -> ev = new NewMove(game.getId(), symbol(body.get()).toString(), body.getShort(), body.getShort());
+			case ENDED -> {
+				var winner = symbol(body.get());
+				var winnerId = winner == null ? null : game.getPlayer(winner);
+				if (winner != null && winnerId == null) { //il vincitore non è entrato nella partita: record corrotto
+					throw new IOException("winner " + winner + " has not joined game " + game.getId());
+				}
+				ev = new GameEnded(game.getId(), Optional.ofNullable(winnerId).map(UserId::id));
+			}
+			default -> throw new IOException("unknown record type " + type);
+		}
+		try {
+			game.replay(ev, version);
+		} catch (InvalidMoveException ex) {
+			throw new IOException("inconsistent move for game " + game.getId(), ex);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package ttt_game_service.infrastructure;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.VerticleBase;
+import io.vertx.core.Vertx;
+
+/*
+assegna ogni partita a un event loop "proprietario" (hash dell'id della partita)
+tutte le operazioni su una partita vengono eseguite sul suo event loop, quindi lo stato di una partita non è mai condiviso tra thread
+ */
+public class GameShards {
+
+	private final Context[] owners; //contesti (event loop) proprietari delle partite
+	private final AtomicInteger registered; //numero di contesti registrati
+
+	private GameShards(int size) {
+		owners = new Context[size];
+		registered = new AtomicInteger();
+	}
+
+	//crea una sola partizione sul contesto indicato (esecuzione diretta, senza cambi di thread)
+	public static GameShards local(Context context) {
+		var shards = new GameShards(1);
+		shards.register(context);
+		return shards;
+	}
+
+	//crea "size" partizioni, ciascuna su un event loop distinto (deploy di un verticle per partizione)
+	public static Future<GameShards> deploy(Vertx vertx, int size) {
+		var shards = new GameShards(size);
+		return vertx.deployVerticle(() -> new ShardVerticle(shards), new DeploymentOptions().setInstances(size)) //ogni istanza viene assegnata a un event loop diverso
+				.map(deploymentId -> shards);
+	}
+
+	//registra il contesto di una partizione
+	private void register(Context context) {
+		owners[registered.getAndIncrement()] = context;
+	}
+
+	//restituisce il numero di partizioni
+	public int size() {
+		return owners.length;
+	}
+
+	//restituisce l'indice della partizione proprietaria della partita
+	public int ownerOf(String gameId) {
+		return Math.floorMod(gameId.hashCode(), owners.length);
+	}
+
+	/*
+	esegue un'operazione sull'event loop proprietario della partita
+	il risultato viene consegnato sul contesto del chiamante, così la risposta http viene scritta dal suo event loop
+	 */
+	public <T> Future<T> execute(String gameId, Callable<T> action) {
+		var owner = owners[ownerOf(gameId)];
+		var caller = Vertx.currentContext();
+		if (owner == caller) { //se il chiamante è già sul proprietario esegue direttamente
+			try {
+				return Future.succeededFuture(action.call());
+			} catch (Throwable ex) {
+				return Future.failedFuture(ex);
+			}
+		}
+		Promise<T> promise = Promise.promise();
+		owner.runOnContext(v -> {
+			try {
+				var result = action.call();
+				deliver(caller, () -> promise.complete(result));
+			} catch (Throwable ex) {
+				deliver(caller, () -> promise.fail(ex));
+			}
+		});
+		return promise.future();
+	}
+
+	//esecutore asincrono sull'event loop proprietario della partita (ogni comando viene accodato, anche se il chiamante è già sul proprietario)
+	public Executor executor(String gameId) {
+		var owner = owners[ownerOf(gameId)];
+		return command -> owner.runOnContext(v -> command.run());
+	}
+
+	//consegna il risultato sul contesto del chiamante (se presente)
+	private static void deliver(Context caller, Runnable completion) {
+		if (caller == null) {
+			completion.run();
+		} else {
+			caller.runOnContext(v -> completion.run());
+		}
+	}
+
+	//verticle che fornisce l'event loop di una partizione
+	private static class ShardVerticle extends VerticleBase {
+
+		private final GameShards shards;
+
+		ShardVerticle(GameShards shards) {
+			this.shards = shards;
+		}
+
+		public Future<?> start() {
+			shards.register(context);
+			return Future.succeededFuture();
+		}
+	}
+}
@@ -0,0 +1,284 @@
+package ttt_game_service.infrastructure;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+log append-only con "group commit"
+i record vengono accodati senza bloccare il chiamante; un thread dedicato scrive in un'unica operazione tutti i record in attesa e li rende persistenti con un solo fsync
+ogni "compactEvery" record il thread di scrittura invoca la compattazione (scrittura di uno snapshot) e, se ha successo, svuota il log
+in modalità segmentata (segmented) il log è diviso in file numerati di dimensione limitata: la compattazione passa a un nuovo segmento,
+scrive lo snapshot e cancella i segmenti precedenti (lo snapshot deve indicare da quale segmento riprendere, vedi currentSegment)
+se la scrittura di un batch fallisce il file viene riportato alla fine dell'ultimo batch persistente (nessun record a metà seguito da altri record)
+e i record del batch falliscono; se il file non è più utilizzabile viene riaperto al batch successivo
+la coda dei record in attesa è limitata (QUEUE_CAPACITY): quando il disco non tiene il passo append attende, rallentando chi produce i record
+ */
+public class GroupCommitLog implements AutoCloseable {
+
+	static Logger logger = Logger.getLogger("[GroupCommitLog]");
+	static final int QUEUE_CAPACITY = 65_536; //record in attesa oltre i quali append attende il thread di scrittura
+	private static final Pending CLOSE = new Pending(null, null); //record speciale che termina il thread di scrittura
+	private static final byte[] COMPACT = new byte[0]; //contenuto dei record speciali che richiedono una compattazione immediata
+
+	private FileChannel channel; //file (o segmento corrente) del log, aperto in append
+	private final Path file; //file del log (null se il log è segmentato)
+	private long good; //lunghezza del file (o segmento corrente) fino all'ultimo batch persistente
+	private boolean damaged; //l'ultima scrittura è fallita e il file non è ancora stato riportato a "good"
+	private final Path dir; //cartella dei segmenti (null se il log è un solo file)
+	private final String prefix; //prefisso dei nomi dei segmenti
+	private final long segmentSize; //dimensione oltre la quale si passa al segmento successivo
+	private volatile long segment; //numero del segmento corrente
+	private final LinkedBlockingQueue<Pending> queue; //record in attesa di essere scritti
+	private final long compactEvery; //numero di record dopo il quale il log viene compattato
+	private final Compaction compaction; //scrive lo snapshot che sostituisce il contenuto del log
+	private final Thread writer; //thread di scrittura
+	private long recordsSinceCompaction; //record scritti dall'ultima compattazione
+
+	//compattazione del log: deve scrivere in modo atomico uno snapshot che contenga tutti i record già scritti
+	public interface Compaction {
+		void writeSnapshot() throws IOException;
+	}
+
+	//record in attesa di scrittura
+	private record Pending(byte[] data, CompletableFuture<Void> done) {}
+
+	public GroupCommitLog(Path path, long validLength, long compactEvery, Compaction compaction) throws IOException {
+		this(path, null, null, 0, 0, validLength, compactEvery, compaction);
+	}
+
+	private GroupCommitLog(Path path, Path dir, String prefix, long segmentSize, long segment, long validLength, long compactEvery, Compaction compaction) throws IOException {
+		file = dir == null ? path : null;
+		this.dir = dir;
+		this.prefix = prefix;
+		this.segmentSize = segmentSize;
+		this.segment = segment;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		channel.truncate(validLength); //scarta l'eventuale record incompleto lasciato da un crash
+		channel.position(validLength);
+		good = validLength;
+		this.compactEvery = compactEvery;
+		this.compaction = compaction;
+		recordsSinceCompaction = 0;
+		queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+		writer = new Thread(this::writeLoop, "group-commit-" + (prefix != null ? prefix : path.getFileName()));
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	//log segmentato che riprende dal segmento "segment" (lunghezza integra "validLength"); i segmenti si chiamano <prefix>-<numero>.log
+	public static GroupCommitLog segmented(Path dir, String prefix, long segment, long validLength, long segmentSize, long compactEvery, Compaction compaction) throws IOException {
+		return new GroupCommitLog(segmentPath(dir, prefix, segment), dir, prefix, segmentSize, segment, validLength, compactEvery, compaction);
+	}
+
+	//percorso del segmento indicato
+	public static Path segmentPath(Path dir, String prefix, long segment) {
+		return dir.resolve(String.format("%s-%09d.log", prefix, segment));
+	}
+
+	//numeri dei segmenti presenti nella cartella, in ordine crescente
+	public static List<Long> segments(Path dir, String prefix) throws IOException {
+		var pattern = Pattern.compile(Pattern.quote(prefix) + "-(\\d{9})\\.log");
+		var result = new ArrayList<Long>();
+		try (var files = Files.list(dir)) {
+			files.forEach(f -> {
+				var m = pattern.matcher(f.getFileName().toString());
+				if (m.matches()) {
+					result.add(Long.parseLong(m.group(1)));
+				}
+			});
+		}
+		result.sort(null);
+		return result;
+	}
+
+	//numero del segmento corrente (durante la compattazione: il primo segmento non incluso nello snapshot)
+	public long currentSegment() {
+		return segment;
+	}
+
+	//accoda un record (attende se la coda è piena); la future viene completata quando il record è persistente su disco
+	public CompletableFuture<Void> append(byte[] record) {
+		var done = new CompletableFuture<Void>();
+		try {
+			queue.put(new Pending(record, done));
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			done.completeExceptionally(ex);
+		}
+		return done;
+	}
+
+	//ciclo del thread di scrittura: un batch per ogni giro
+	private void writeLoop() {
+		var batch = new ArrayList<Pending>();
+		while (true) {
+			try {
+				batch.add(queue.take()); //attende almeno un record
+				queue.drainTo(batch); //raccoglie tutti i record accodati nel frattempo
+				boolean closing = batch.remove(CLOSE);
+				if (!batch.isEmpty()) {
+					writeBatch(batch);
+				}
+				for (var p: batch) {
+					if (p.data() == COMPACT) { //compattazione richiesta esplicitamente
+						compact();
+						p.done().complete(null);
+					}
+				}
+				if (closing) {
+					channel.close();
+					return;
+				}
+			} catch (InterruptedException ex) {
+				return;
+			} catch (IOException ex) {
+				logger.log(Level.SEVERE, "log write failed", ex);
+				for (var p: batch) {
+					p.done().completeExceptionally(ex);
+				}
+				damaged = true;
+				repair();
+			}
+			batch.clear();
+		}
+	}
+
+	//scrive un batch con una sola scrittura e un solo fsync
+	private void writeBatch(List<Pending> batch) throws IOException {
+		if (damaged && !repair()) {
+			throw new IOException("the log cannot be repaired");
+		}
+		var buffers = new ByteBuffer[batch.size()];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = ByteBuffer.wrap(batch.get(i).data());
+		}
+		long remaining = 0;
+		for (var b: buffers) {
+			remaining += b.remaining();
+		}
+		while (remaining > 0) {
+			remaining -= channel.write(buffers);
+		}
+		channel.force(false); //rende persistente il batch
+		good = channel.position();
+		for (var p: batch) {
+			if (p.data() != COMPACT) {
+				p.done().complete(null);
+			}
+		}
+		if (dir != null && good >= segmentSize) { //segmento pieno
+			try {
+				roll();
+			} catch (IOException ex) { //si resta sul segmento corrente e si riprova al batch successivo
+				logger.log(Level.WARNING, "cannot open the next log segment", ex);
+			}
+		}
+		recordsSinceCompaction += batch.size();
+		if (recordsSinceCompaction >= compactEvery) {
+			compact();
+		}
+	}
+
+	//passa al segmento successivo (il segmento corrente resta in uso se il nuovo non può essere aperto)
+	private void roll() throws IOException {
+		var next = FileChannel.open(segmentPath(dir, prefix, segment + 1), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			logger.log(Level.WARNING, "cannot close the log segment", ex);
+		}
+		channel = next;
+		segment++;
+		good = 0;
+	}
+
+	//riporta il file alla fine dell'ultimo batch persistente, riaprendolo se necessario; false se non è ancora possibile
+	private boolean repair() {
+		try {
+			if (!channel.isOpen()) {
+				channel = FileChannel.open(file != null ? file : segmentPath(dir, prefix, segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			}
+			channel.truncate(good); //scarta i byte del batch fallito
+			channel.position(good);
+			damaged = false;
+			return true;
+		} catch (IOException ex) {
+			logger.log(Level.SEVERE, "log repair failed, retrying at the next batch", ex);
+			return false;
+		}
+	}
+
+	//compatta il log segmentato: nuovo segmento, snapshot, cancellazione dei segmenti precedenti (già inclusi nello snapshot)
+	private void compactSegments() {
+		try {
+			roll();
+			compaction.writeSnapshot();
+			for (var old: segments(dir, prefix)) {
+				if (old < segment) {
+					Files.deleteIfExists(segmentPath(dir, prefix, old));
+				}
+			}
+			recordsSinceCompaction = 0;
+		} catch (IOException ex) {
+			logger.log(Level.WARNING, "log compaction failed, keeping the segments", ex);
+		}
+	}
+
+	//compatta il log: scrive lo snapshot e svuota il log (in caso di crash tra i due passi il log viene semplicemente riapplicato)
+	private void compact() {
+		if (dir != null) {
+			compactSegments();
+			return;
+		}
+		try {
+			compaction.writeSnapshot();
+			channel.truncate(0);
+			channel.force(true);
+			good = 0;
+			recordsSinceCompaction = 0;
+		} catch (IOException ex) {
+			logger.log(Level.WARNING, "log compaction failed, keeping the log", ex);
+		}
+	}
+
+	//scrive i record accodati finora e compatta il log (snapshot); ritorna a compattazione terminata
+	public void compactNow() {
+		append(COMPACT).join();
+	}
+
+	//future completata quando tutti i record accodati finora sono persistenti (il chiamante non viene bloccato)
+	public CompletableFuture<Void> sync() {
+		return append(new byte[0]);
+	}
+
+	//attende che tutti i record accodati finora siano persistenti
+	public void flush() {
+		sync().join();
+	}
+
+	//scrive i record in attesa e chiude il log
+	public void close() {
+		try {
+			queue.put(CLOSE);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
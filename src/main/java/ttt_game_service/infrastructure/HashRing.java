@@ -0,0 +1,78 @@
+package ttt_game_service.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/*
+anello di hashing consistente (immutabile): ogni nodo occupa VIRTUAL_NODES punti dell'anello e una chiave appartiene
+al primo punto successivo al suo hash; aggiungendo un nodo cambiano proprietario solo le chiavi che passano al nuovo nodo
+ */
+public final class HashRing {
+
+	static final int VIRTUAL_NODES = 128; //punti dell'anello per nodo (distribuzione uniforme delle chiavi)
+	private final List<String> nodes; //nodi dell'anello (in ordine di aggiunta)
+	private final long[] points; //punti dell'anello, ordinati
+	private final String[] owners; //nodo di ciascun punto
+
+	public HashRing(Collection<String> nodes) {
+		if (nodes.isEmpty()) {
+			throw new IllegalArgumentException("empty ring");
+		}
+		this.nodes = List.copyOf(nodes);
+		var entries = new long[this.nodes.size() * VIRTUAL_NODES][];
+		int n = 0;
+		for (int i = 0; i < this.nodes.size(); i++) {
+			for (int v = 0; v < VIRTUAL_NODES; v++) {
+				entries[n++] = new long[] {hash(this.nodes.get(i) + "#" + v), i};
+			}
+		}
+		Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1])); //a parità di hash vince il nodo aggiunto prima
+		points = new long[entries.length];
+		owners = new String[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			points[i] = entries[i][0];
+			owners[i] = this.nodes.get((int) entries[i][1]);
+		}
+	}
+
+	//nuovo anello con un nodo in più
+	public HashRing withNode(String node) {
+		if (nodes.contains(node)) {
+			return this;
+		}
+		var next = new ArrayList<>(nodes);
+		next.add(node);
+		return new HashRing(next);
+	}
+
+	//nodo proprietario della chiave
+	public String owner(String key) {
+		int i = Arrays.binarySearch(points, hash(key));
+		if (i < 0) {
+			i = -i - 1; //primo punto successivo
+		}
+		return owners[i == points.length ? 0 : i]; //oltre l'ultimo punto si riparte dal primo
+	}
+
+	//nodi dell'anello
+	public List<String> nodes() {
+		return nodes;
+	}
+
+	//hash a 64 bit della stringa (fnv-1a seguito dal mescolamento finale di murmur3)
+	static long hash(String s) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -1,6 +1,6 @@
 package ttt_game_service.infrastructure;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import exagonal.Adapter;
 import ttt_game_service.application.AccountRepository;
 import ttt_game_service.domain.Account;
@@ -9,10 +9,10 @@ import ttt_game_service.domain.Account;
 @Adapter
 public class InMemoryAccountRepository implements AccountRepository {
 
-	private HashMap<String, Account> userAccounts; //hashamp che associa l'utente all'account
+	private ConcurrentHashMap<String, Account> userAccounts; //hashamp che associa l'utente all'account
 	
 	public InMemoryAccountRepository() {
-		userAccounts = new HashMap<>();
+		userAccounts = new ConcurrentHashMap<>();
 	}
 
 	//aggiunge un account
@@ -20,14 +20,24 @@ public class InMemoryAccountRepository implements AccountRepository {
 		userAccounts.put(account.getId(), account);
 	}
 
+	//aggiunge un account se l'username è libero
+	public boolean addAccountIfAbsent(Account account) {
+		return userAccounts.putIfAbsent(account.getId(), account) == null;
+	}
+
+	//sostituisce un account se quello registrato è ancora expected
+	public boolean replaceAccount(Account expected, Account updated) {
+		return userAccounts.replace(expected.getId(), expected, updated);
+	}
+
 	//verifica la presenza di un account
 	public boolean isPresent(String userName) {
 		return userAccounts.containsKey(userName);
 	}
 	
-	//verifica l'autenticazione
-	public boolean isValid(String userName, String password) {
-		return (userAccounts.containsKey(userName) && userAccounts.get(userName).getPassword().equals(password));
+	//recupera un account
+	public Account getAccount(String userName) {
+		return userAccounts.get(userName);
 	}
 	
 }
@@ -1,6 +1,6 @@
 package ttt_game_service.infrastructure;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import exagonal.Adapter;
 import ttt_game_service.application.GameRepository;
 import ttt_game_service.domain.Game;
@@ -9,10 +9,10 @@ import ttt_game_service.domain.Game;
 @Adapter
 public class InMemoryGameRepository implements GameRepository {
 
-	private HashMap<String, Game> games; //hashmap che associa l'id della partita alla partita
+	private ConcurrentHashMap<String, Game> games; //hashmap concorrente che associa l'id della partita alla partita
 
 	public InMemoryGameRepository() {
-		games = new HashMap<>();
+		games = new ConcurrentHashMap<>();
 	}
 
 	//aggiunge una partita
@@ -21,6 +21,11 @@ public class InMemoryGameRepository implements GameRepository {
 		
 	}
 
+	//aggiunge una partita solo se non è già presente (operazione atomica)
+	public boolean addGameIfAbsent(Game game) {
+		return games.putIfAbsent(game.getId(), game) == null;
+	}
+
 	//verifica la presenza di un account
 	public boolean isPresent(String gameId) {
 		return games.containsKey(gameId);
@@ -30,4 +35,19 @@ public class InMemoryGameRepository implements GameRepository {
 	public Game getGame(String gameId) {
 		return games.get(gameId);
 	}
+
+	//rimuove una partita
+	public void removeGame(String gameId) {
+		games.remove(gameId);
+	}
+
+	//numero di partite presenti
+	public int size() {
+		return games.size();
+	}
+
+	//partite presenti
+	public Iterable<Game> getGames() {
+		return games.values();
+	}
 }
@@ -0,0 +1,96 @@
+package ttt_game_service.infrastructure;
+
+import java.io.IOException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+
+/*
+lettore dei body json "piatti" delle richieste (rest e websocket) basato sul parser in streaming di jackson, senza costruire l'albero json
+i campi vengono letti in sequenza: nextField() si posiziona sul valore e ne restituisce il nome (canonicalizzato da jackson: i nomi già visti
+non creano nuove stringhe), poi il chiamante legge il valore come stringa o intero oppure lo salta (i valori annidati vengono solo saltati)
+ */
+final class JsonBody {
+
+	private static final JsonFactory FACTORY = new JsonFactory(); //condivisa: la factory è thread-safe
+	private final JsonParser parser; //parser del body
+	private String field; //nome del campo corrente
+
+	JsonBody(Buffer body) throws MalformedRequestException {
+		if (body == null) {
+			throw new MalformedRequestException("missing body");
+		}
+		try {
+			parser = FACTORY.createParser(body.getBytes());
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new MalformedRequestException("object expected");
+			}
+		} catch (IOException ex) {
+			throw malformed(ex);
+		}
+	}
+
+	//si posiziona sul valore del campo successivo e ne restituisce il nome; null alla fine dell'oggetto (dopo sono ammessi solo spazi)
+	String nextField() throws MalformedRequestException {
+		try {
+			if (parser.nextToken() != JsonToken.FIELD_NAME) { //fine dell'oggetto
+				if (parser.nextToken() != null) {
+					throw new MalformedRequestException("unexpected content after the object");
+				}
+				parser.close();
+				return null;
+			}
+			field = parser.currentName();
+			parser.nextToken();
+			return field;
+		} catch (IOException ex) {
+			throw malformed(ex);
+		}
+	}
+
+	//legge il valore corrente come stringa (null se il valore è null)
+	String stringValue() throws MalformedRequestException {
+		try {
+			return switch (parser.currentToken()) {
+				case VALUE_STRING -> parser.getText();
+				case VALUE_NULL -> null;
+				default -> throw new MalformedRequestException("string expected for field " + field);
+			};
+		} catch (IOException ex) {
+			throw malformed(ex);
+		}
+	}
+
+	//legge il valore corrente come intero (numero o stringa numerica)
+	int intValue() throws MalformedRequestException {
+		try {
+			if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+				return parser.getIntValue(); //fuori dall'intervallo di un int: InputCoercionException
+			}
+			if (parser.currentToken() == JsonToken.VALUE_STRING) {
+				return Integer.parseInt(parser.getText().trim());
+			}
+		} catch (NumberFormatException ex) {
+			//gestito sotto
+		} catch (IOException ex) {
+			throw malformed(ex);
+		}
+		throw new MalformedRequestException("number expected for field " + field);
+	}
+
+	//salta il valore corrente (anche un oggetto o un array annidato)
+	void skipValue() throws MalformedRequestException {
+		try {
+			parser.skipChildren();
+		} catch (IOException ex) {
+			throw malformed(ex);
+		}
+	}
+
+	//errore del parser come richiesta non valida (il messaggio non include il contenuto del body)
+	private static MalformedRequestException malformed(IOException ex) {
+		return new MalformedRequestException(ex instanceof JsonProcessingException jpe ? jpe.getOriginalMessage() : ex.getMessage());
+	}
+}
@@ -0,0 +1,85 @@
+package ttt_game_service.infrastructure;
+
+import java.util.concurrent.ConcurrentHashMap;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.ServerWebSocket;
+
+/*
+registro delle consegne locali: associa ogni sessione giocatore al websocket aperto in questa jvm
+gli eventi per una sessione registrata vengono scritti direttamente sul websocket, senza passare dall'event bus;
+l'event bus serve solo quando il websocket si trova su un'altra istanza
+un giocatore troppo lento (coda di scrittura piena) viene disconnesso come gli spettatori, invece di accumulare frame in memoria
+ */
+public class LocalEventDelivery {
+
+	//destinatario locale degli eventi di una sessione giocatore
+	public interface Subscriber {
+		void push(EventFrame frame);
+	}
+
+	private final ConcurrentHashMap<String, Subscriber> subscribers; //sessione giocatore -> destinatario locale
+
+	public LocalEventDelivery() {
+		subscribers = new ConcurrentHashMap<>();
+	}
+
+	//crea il destinatario che scrive sul websocket (dal contesto del websocket)
+	public static Subscriber webSocketSubscriber(ServerWebSocket webSocket, Context context, boolean binary) {
+		return frame -> {
+			if (Vertx.currentContext() == context) { //già sul contesto del websocket
+				write(webSocket, frame, binary);
+			} else {
+				WebSocketMetrics.PLAYER_PENDING.incrementAndGet();
+				context.runOnContext(v -> {
+					WebSocketMetrics.PLAYER_PENDING.decrementAndGet();
+					write(webSocket, frame, binary);
+				});
+			}
+		};
+	}
+
+	//scrive l'evento sul websocket nel formato richiesto dal client
+	private static void write(ServerWebSocket webSocket, EventFrame frame, boolean binary) {
+		if (webSocket.isClosed()) {
+			WebSocketMetrics.CLOSED_DROPS.inc();
+			return;
+		}
+		if (webSocket.writeQueueFull()) { //il client non sta leggendo: come per gli spettatori il websocket viene chiuso invece di accumulare frame
+			webSocket.close((short) 1008, "slow consumer"); //il giocatore può riaprirlo con il messaggio di apertura (la sessione giocatore resta valida)
+			WebSocketMetrics.SLOW_PLAYERS.inc();
+			return;
+		}
+		WebSocketMetrics.PLAYER_FRAMES.inc();
+		if (binary) {
+			webSocket.writeBinaryMessage(frame.binary());
+		} else {
+			webSocket.writeTextMessage(frame.text());
+		}
+	}
+
+	//registra il destinatario locale della sessione
+	public void register(String playerSessionId, Subscriber subscriber) {
+		subscribers.put(playerSessionId, subscriber);
+	}
+
+	//rimuove il destinatario locale della sessione (solo se è ancora quello indicato)
+	public void unregister(String playerSessionId, Subscriber subscriber) {
+		subscribers.remove(playerSessionId, subscriber);
+	}
+
+	//consegna l'evento se la sessione ha un destinatario locale; restituisce false se serve l'event bus
+	public boolean deliver(String playerSessionId, EventFrame frame) {
+		var subscriber = subscribers.get(playerSessionId);
+		if (subscriber == null) {
+			return false;
+		}
+		subscriber.push(frame);
+		return true;
+	}
+
+	//numero di destinatari locali registrati
+	public int size() {
+		return subscribers.size();
+	}
+}
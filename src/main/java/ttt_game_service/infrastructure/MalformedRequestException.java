@@ -0,0 +1,9 @@
+package ttt_game_service.infrastructure;
+
+//il body della richiesta non è un oggetto json valido o non contiene i campi richiesti dalla rotta
+public class MalformedRequestException extends Exception {
+
+	public MalformedRequestException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,678 @@
+package ttt_game_service.infrastructure;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import exagonal.Adapter;
+import ttt_game_service.application.GameRepository;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameBoard;
+import ttt_game_service.domain.GameEvent;
+import ttt_game_service.domain.GameObserver;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+
+/*
+implementazione della porta di uscita che conserva le partite 3x3 in slot binari di dimensione fissa (SLOT_SIZE byte) in un file mappato in memoria
+il file è una tabella hash ad indirizzamento aperto divisa in segmenti (uno per mappatura, ciascuno con il proprio lock): lo slot di una partita
+si calcola dall'hash del suo id, quindi la ricerca legge direttamente lo slot senza indici sullo heap; le rimozioni lasciano una lapide,
+così uno slot occupato non cambia posizione finché il segmento non viene riorganizzato
+la riorganizzazione scrive il segmento in un segmento di appoggio in coda al file, lo segnala nell'intestazione e poi lo ricopia:
+un'interruzione in qualunque momento lascia intatto il segmento originale oppure la copia completa, che viene ripresa all'apertura
+slot: [stato dello slot][stato della partita][turno][vincitore][maschera croce (short)][maschera cerchio (short)][versione (int)]
+      [indice giocatore croce (int)][indice giocatore cerchio (int)][lunghezza id][id in utf-8]
+i giocatori sono indici nella tabella dei nomi (file <store>.names, un nome per giocatore distinto e non per partita); un nome nuovo viene
+forzato su disco prima che uno slot lo usi: registerPlayerAsync lo scrive dal thread dei nomi prima del join, così l'event loop trova
+l'indice già pronto; un indice sconosciuto (file dei nomi perso o troncato) viene letto come giocatore assente
+lo stato vive nella page cache del sistema: il repository sopravvive al riavvio del processo senza log da riapplicare
+(le modifiche vengono forzate su disco solo alla chiusura); le partite vengono ricostruite come oggetti Game solo quando servono e restano
+in una cache a riferimenti deboli finché qualcuno le usa, con un osservatore che riscrive lo slot a ogni evento
+le partite che non entrano in uno slot (griglia diversa da 3x3, id troppo lungo) o che arrivano a segmento pieno vanno nel repository di riserva
+ */
+@Adapter
+public class MappedGameRepository implements GameRepository, AutoCloseable {
+
+	static Logger logger = Logger.getLogger("[GameStore]");
+	static final int MAGIC = 0x5454544D; //"TTTM"
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER = 64; //intestazione del file: magic, versione, segmenti, slot per segmento, segmento in riorganizzazione
+	static final int REHASHING = 16; //posizione nell'intestazione del segmento da ricopiare dal segmento di appoggio (indice + 1, 0 se nessuno)
+	static final int SEGMENT_BITS = 6; //64 segmenti
+	static final int SLOT_SIZE = 64; //byte per partita
+	static final int MAX_ID_BYTES = SLOT_SIZE - 21; //lunghezza massima dell'id (utf-8)
+	static final int MAX_SEGMENT_SLOTS = 1 << 24; //una mappatura non può superare Integer.MAX_VALUE byte: segmenti da al più 1 GB
+	static final long MAX_CAPACITY = ((long) MAX_SEGMENT_SLOTS << SEGMENT_BITS) / 2; //partite al più (tabella piena al più per metà)
+	static final byte FREE = 0, USED = 1, REMOVED = 2; //stato dello slot
+	static final int RETRY = 2; //esito dell'inserimento: un giocatore è entrato dopo il calcolo degli indici, si riprova
+	static final int STATE = 1, TURN = 2, WINNER = 3, CROSS_MASK = 4, CIRCLE_MASK = 6, VERSION = 8, CROSS_PLAYER = 12, CIRCLE_PLAYER = 16, ID_LENGTH = 20, ID = 21; //posizioni dei campi nello slot
+
+	private final FileChannel channel; //file degli slot
+	private final Segment[] segments; //segmenti della tabella
+	private final Scratch scratch; //segmento di appoggio per le riorganizzazioni
+	private final PlayerNames names; //tabella dei nomi dei giocatori
+	private final ExecutorService namesWriter; //thread che scrive i nomi nuovi (fsync) fuori dagli event loop
+	private final GameRepository fallback; //repository delle partite che non entrano in uno slot
+	private final ConcurrentHashMap<String, GameRef> live; //partite ricostruite ancora in uso (riferimenti deboli)
+	private final ReferenceQueue<Game> collected; //riferimenti delle partite non più in uso
+
+	//riferimento debole a una partita ricostruita (l'id serve per rimuoverlo dalla cache)
+	private static final class GameRef extends WeakReference<Game> {
+		final String id;
+
+		GameRef(Game game, ReferenceQueue<Game> queue) {
+			super(game, queue);
+			id = game.getId();
+		}
+	}
+
+	//repository con almeno "capacity" slot nel file indicato (un file esistente mantiene la propria capacità)
+	public MappedGameRepository(Path file, long capacity, GameRepository fallback) {
+		this.fallback = fallback;
+		live = new ConcurrentHashMap<>();
+		collected = new ReferenceQueue<>();
+		long start = System.nanoTime();
+		try {
+			boolean exists = Files.exists(file) && Files.size(file) >= HEADER;
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			int segmentSlots;
+			var header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+			if (exists) {
+				if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION || header.getInt(8) != 1 << SEGMENT_BITS) {
+					throw new IOException("unexpected content in " + file);
+				}
+				segmentSlots = header.getInt(12);
+				if (segmentSlots < 64 || segmentSlots > MAX_SEGMENT_SLOTS || Integer.bitCount(segmentSlots) != 1) {
+					throw new IOException("unexpected segment size in " + file + ": " + segmentSlots + " slots");
+				}
+			} else {
+				if (capacity > MAX_CAPACITY) {
+					throw new IllegalArgumentException("capacity " + capacity + " exceeds the maximum of " + MAX_CAPACITY + " games per store");
+				}
+				long perSegment = Math.max(64, (capacity * 2) >> SEGMENT_BITS); //tabella piena al più per metà
+				segmentSlots = (int) (Long.highestOneBit(perSegment - 1) << 1);
+				header.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(8, 1 << SEGMENT_BITS).putInt(12, segmentSlots).putInt(REHASHING, 0);
+			}
+			segments = new Segment[1 << SEGMENT_BITS];
+			long segmentBytes = (long) segmentSlots * SLOT_SIZE;
+			scratch = new Scratch(header, channel.map(FileChannel.MapMode.READ_WRITE, HEADER + segments.length * segmentBytes, segmentBytes)); //in coda ai segmenti
+			for (int i = 0; i < segments.length; i++) {
+				var slots = channel.map(FileChannel.MapMode.READ_WRITE, HEADER + i * segmentBytes, segmentBytes);
+				if (header.getInt(REHASHING) == i + 1) { //riorganizzazione interrotta dopo la scrittura della copia: la copia è completa
+					scratch.copyTo(slots, i);
+				}
+				segments[i] = new Segment(slots, segmentSlots, i, scratch);
+			}
+			names = new PlayerNames(file.resolveSibling(file.getFileName() + ".names"));
+			namesWriter = Executors.newSingleThreadExecutor(r -> {
+				var t = new Thread(r, "game-store-names");
+				t.setDaemon(true);
+				return t;
+			});
+		} catch (IOException ex) {
+			throw new IllegalStateException("cannot open the game store", ex);
+		}
+		logger.info("Game store opened: " + slotCount() + " games in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+	}
+
+	//aggiunge una partita (sostituisce quella con lo stesso id)
+	public void addGame(Game game) {
+		removeGame(game.getId());
+		addGameIfAbsent(game);
+	}
+
+	//aggiunge una partita solo se non è già presente (operazione atomica per le partite negli slot)
+	public boolean addGameIfAbsent(Game game) {
+		var id = game.getId();
+		var idBytes = id.getBytes(StandardCharsets.UTF_8);
+		if (!game.getBoard().getConfig().isStandard() || idBytes.length > MAX_ID_BYTES) { //la partita non entra in uno slot
+			return findSlot(id) == null && fallback.addGameIfAbsent(game);
+		}
+		if (fallback.isPresent(id)) {
+			return false;
+		}
+		var result = new int[1];
+		do {
+			int cross = names.index(game.getPlayer(TTTSymbol.X)); //prima di compute e senza lock: un nome nuovo viene forzato su disco qui
+			int circle = names.index(game.getPlayer(TTTSymbol.O));
+			live.compute(id, (k, ref) -> {
+				if (ref != null && ref.get() != null) { //partita già presente e in uso
+					result[0] = 0;
+					return ref;
+				}
+				var segment = segment(id);
+				synchronized (game) { //nessun evento può inserirsi tra la scrittura dello slot e la registrazione dell'osservatore
+					if (names.indexOf(game.getPlayer(TTTSymbol.X)) != cross || names.indexOf(game.getPlayer(TTTSymbol.O)) != circle) {
+						result[0] = RETRY;
+						return ref;
+					}
+					synchronized (segment) {
+						result[0] = segment.insert(id, idBytes, game, cross, circle);
+					}
+					if (result[0] <= 0) { //partita già presente o segmento pieno
+						return ref;
+					}
+					game.addGameObserver(new SlotWriter(game, segment, idBytes, cross, circle));
+				}
+				return new GameRef(game, collected);
+			});
+		} while (result[0] == RETRY);
+		expunge();
+		if (result[0] < 0) { //segmento pieno: la partita resta sullo heap
+			return fallback.addGameIfAbsent(game);
+		}
+		return result[0] > 0;
+	}
+
+	//verifica se una partita è presente
+	public boolean isPresent(String gameId) {
+		return findSlot(gameId) != null || fallback.isPresent(gameId);
+	}
+
+	//recupera una partita: quella già in uso, altrimenti la ricostruisce dal suo slot
+	public Game getGame(String gameId) {
+		var ref = live.get(gameId);
+		var game = ref == null ? null : ref.get();
+		if (game != null) {
+			return game;
+		}
+		var result = new Game[1];
+		live.compute(gameId, (k, current) -> {
+			var existing = current == null ? null : current.get();
+			if (existing != null) { //ricostruita nel frattempo da un altro thread
+				result[0] = existing;
+				return current;
+			}
+			var segment = segment(gameId);
+			var idBytes = gameId.getBytes(StandardCharsets.UTF_8);
+			int cross, circle;
+			synchronized (segment) {
+				int slot = segment.find(gameId, idBytes);
+				if (slot < 0) {
+					return null;
+				}
+				result[0] = segment.read(slot, gameId, names);
+				cross = segment.slots.getInt(slot * SLOT_SIZE + CROSS_PLAYER);
+				circle = segment.slots.getInt(slot * SLOT_SIZE + CIRCLE_PLAYER);
+			}
+			result[0].addGameObserver(new SlotWriter(result[0], segment, idBytes, cross, circle));
+			return new GameRef(result[0], collected);
+		});
+		expunge();
+		return result[0] != null ? result[0] : fallback.getGame(gameId);
+	}
+
+	//rimuove una partita (lo slot diventa una lapide)
+	public void removeGame(String gameId) {
+		live.compute(gameId, (k, ref) -> {
+			var segment = segment(gameId);
+			synchronized (segment) {
+				segment.remove(gameId, gameId.getBytes(StandardCharsets.UTF_8));
+			}
+			return null;
+		});
+		fallback.removeGame(gameId);
+	}
+
+	//registra il nome del giocatore (forzato su disco se nuovo) prima del join
+	@Override
+	public void registerPlayer(UserId userId) {
+		names.index(userId);
+		fallback.registerPlayer(userId);
+	}
+
+	//registra il nome del giocatore senza bloccare il chiamante: un nome già presente non richiede i/o, uno nuovo viene scritto dal thread dei nomi
+	@Override
+	public CompletableFuture<Void> registerPlayerAsync(UserId userId) {
+		if (names.indexOf(userId) >= 0) {
+			return fallback.registerPlayerAsync(userId);
+		}
+		return CompletableFuture.runAsync(() -> names.index(userId), namesWriter).thenCompose(v -> fallback.registerPlayerAsync(userId));
+	}
+
+	//numero di partite presenti (letto periodicamente dalle metriche: svuota anche la cache dalle partite non più in uso)
+	public int size() {
+		expunge();
+		return (int) Math.min(Integer.MAX_VALUE, slotCount() + fallback.size());
+	}
+
+	//partite presenti (ricostruite dagli slot) e partite del repository di riserva
+	public Iterable<Game> getGames() {
+		var ids = slotIds();
+		var games = new ArrayList<Game>(ids.size());
+		for (var id: ids) {
+			var game = getGame(id);
+			if (game != null) {
+				games.add(game);
+			}
+		}
+		for (var game: fallback.getGames()) {
+			games.add(game);
+		}
+		return games;
+	}
+
+	//id delle partite presenti, letti dagli slot senza ricostruire le partite
+	@Override
+	public Iterable<String> getGameIds() {
+		var ids = slotIds();
+		for (var id: fallback.getGameIds()) {
+			ids.add(id);
+		}
+		return ids;
+	}
+
+	//id delle partite negli slot
+	private List<String> slotIds() {
+		var ids = new ArrayList<String>();
+		for (var segment: segments) {
+			synchronized (segment) {
+				segment.ids(ids);
+			}
+		}
+		return ids;
+	}
+
+	//forza intestazione, slot e nomi su disco e chiude il file
+	public void close() {
+		for (var segment: segments) {
+			synchronized (segment) {
+				segment.slots.force();
+			}
+		}
+		scratch.force();
+		namesWriter.shutdown();
+		try {
+			names.close();
+			channel.close();
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	//numero di partite negli slot
+	private long slotCount() {
+		long count = 0;
+		for (var segment: segments) {
+			count += segment.used;
+		}
+		return count;
+	}
+
+	//verifica se la partita occupa uno slot (restituisce il segmento, null se assente)
+	private Segment findSlot(String gameId) {
+		var segment = segment(gameId);
+		synchronized (segment) {
+			return segment.find(gameId, gameId.getBytes(StandardCharsets.UTF_8)) >= 0 ? segment : null;
+		}
+	}
+
+	//rimuove dalla cache i riferimenti delle partite non più in uso
+	private void expunge() {
+		GameRef ref;
+		while ((ref = (GameRef) collected.poll()) != null) {
+			live.remove(ref.id, ref);
+		}
+	}
+
+	private Segment segment(String id) {
+		return segments[hash(id) >>> (32 - SEGMENT_BITS)];
+	}
+
+	//mescolamento finale di murmur3 dell'hash dell'id (l'hash della stringa è già in cache)
+	static int hash(String id) {
+		int h = id.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	//codice del simbolo nello slot (0 se assente)
+	private static byte symbolCode(TTTSymbol symbol) {
+		return symbol == null ? 0 : (byte) (symbol == TTTSymbol.X ? 1 : 2);
+	}
+
+	private static TTTSymbol symbol(byte code) {
+		return code == 0 ? null : (code == 1 ? TTTSymbol.X : TTTSymbol.O);
+	}
+
+	//segmento: tabella ad indirizzamento aperto in una mappatura (accesso con il lock del segmento)
+	private static final class Segment {
+		final MappedByteBuffer slots; //slot del segmento
+		final int mask; //numero di slot - 1
+		final int limit; //slot occupati o lapidi oltre i quali il segmento viene riorganizzato
+		final int index; //posizione del segmento nel file
+		final Scratch scratch; //segmento di appoggio condiviso per le riorganizzazioni
+		volatile int used; //slot occupati (letto senza lock per le metriche)
+		int removed; //lapidi
+
+		Segment(MappedByteBuffer slots, int count, int index, Scratch scratch) {
+			this.slots = slots;
+			this.index = index;
+			this.scratch = scratch;
+			mask = count - 1;
+			limit = count / 4 * 3;
+			for (int i = 0; i < count; i++) { //conta slot occupati e lapidi di un file esistente
+				byte status = slots.get(i * SLOT_SIZE);
+				if (status == USED) {
+					used++;
+				} else if (status == REMOVED) {
+					removed++;
+				}
+			}
+		}
+
+		//slot della partita (-1 se assente)
+		int find(String id, byte[] idBytes) {
+			int i = hash(id) & mask;
+			for (int probes = 0; probes <= mask; probes++) {
+				int at = i * SLOT_SIZE;
+				byte status = slots.get(at);
+				if (status == FREE) {
+					return -1;
+				}
+				if (status == USED && matches(at, idBytes)) {
+					return i;
+				}
+				i = (i + 1) & mask;
+			}
+			return -1;
+		}
+
+		//confronta l'id nello slot con quello indicato
+		boolean matches(int at, byte[] idBytes) {
+			if (slots.get(at + ID_LENGTH) != idBytes.length) {
+				return false;
+			}
+			for (int j = 0; j < idBytes.length; j++) {
+				if (slots.get(at + ID + j) != idBytes[j]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		//inserisce la partita (con gli indici dei giocatori già registrati): 1 se inserita, 0 se già presente, -1 se il segmento è pieno
+		int insert(String id, byte[] idBytes, Game game, int cross, int circle) {
+			if (find(id, idBytes) >= 0) {
+				return 0;
+			}
+			if (used + removed >= limit) {
+				if (used >= limit / 3 * 2) { //troppe partite: la riorganizzazione non basterebbe
+					return -1;
+				}
+				scratch.rehash(this); //elimina le lapidi
+			}
+			int i = hash(id) & mask;
+			while (slots.get(i * SLOT_SIZE) == USED) { //il primo slot libero o lapide della sequenza (l'id non è presente)
+				i = (i + 1) & mask;
+			}
+			int at = i * SLOT_SIZE;
+			if (slots.get(at) == REMOVED) {
+				removed--;
+			}
+			slots.put(at + ID_LENGTH, (byte) idBytes.length);
+			slots.put(at + ID, idBytes);
+			writeState(at, game, game.getCurrentTurnSymbol(), cross, circle);
+			slots.put(at, USED); //lo slot diventa valido solo a scrittura completata
+			used++;
+			return 1;
+		}
+
+		//rimuove la partita lasciando una lapide
+		void remove(String id, byte[] idBytes) {
+			int slot = find(id, idBytes);
+			if (slot >= 0) {
+				slots.put(slot * SLOT_SIZE, REMOVED);
+				used--;
+				removed++;
+			}
+		}
+
+		//scrive lo stato della partita nello slot, con il turno e gli indici dei giocatori indicati (con il lock della partita)
+		void writeState(int at, Game game, TTTSymbol turn, int cross, int circle) {
+			var board = game.getBoard();
+			slots.put(at + STATE, (byte) game.getState().ordinal());
+			slots.put(at + TURN, symbolCode(turn));
+			slots.put(at + WINNER, symbolCode(game.getWinnerSymbol()));
+			slots.putShort(at + CROSS_MASK, (short) board.getCrossMask());
+			slots.putShort(at + CIRCLE_MASK, (short) board.getCircleMask());
+			slots.putInt(at + VERSION, (int) game.getVersion());
+			slots.putInt(at + CROSS_PLAYER, cross);
+			slots.putInt(at + CIRCLE_PLAYER, circle);
+		}
+
+		//ricostruisce la partita dallo slot
+		Game read(int slot, String id, PlayerNames names) {
+			int at = slot * SLOT_SIZE;
+			var board = new GameBoard(id + "-board", slots.getShort(at + CROSS_MASK), slots.getShort(at + CIRCLE_MASK));
+			return Game.restore(id, Game.GameState.values()[slots.get(at + STATE)], names.user(slots.getInt(at + CROSS_PLAYER)), names.user(slots.getInt(at + CIRCLE_PLAYER)),
+					board, symbol(slots.get(at + TURN)), symbol(slots.get(at + WINNER)), slots.getInt(at + VERSION));
+		}
+
+		//aggiunge all'elenco gli id delle partite del segmento
+		void ids(List<String> ids) {
+			for (int i = 0; i <= mask; i++) {
+				int at = i * SLOT_SIZE;
+				if (slots.get(at) == USED) {
+					ids.add(id(at));
+				}
+			}
+		}
+
+		String id(int at) {
+			var bytes = new byte[slots.get(at + ID_LENGTH)];
+			slots.get(at + ID, bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	/*
+	segmento di appoggio in coda al file, condiviso dai segmenti (una riorganizzazione alla volta)
+	la riorganizzazione reinserisce gli slot occupati nel segmento di appoggio, segnala nell'intestazione che la copia è completa,
+	la ricopia sul segmento e cancella la segnalazione: il segmento originale non viene toccato finché la copia non è completa,
+	e una copia interrotta viene ripresa all'apertura; nessuna copia del segmento sullo heap
+	 */
+	private static final class Scratch {
+		private final MappedByteBuffer header; //intestazione del file
+		private final MappedByteBuffer slots; //slot di appoggio (stessa dimensione di un segmento)
+
+		Scratch(MappedByteBuffer header, MappedByteBuffer slots) {
+			this.header = header;
+			this.slots = slots;
+		}
+
+		//reinserisce gli slot occupati del segmento eliminando le lapidi (con il lock del segmento; gli osservatori ritrovano lo slot con una nuova ricerca)
+		synchronized void rehash(Segment segment) {
+			var from = segment.slots;
+			for (int i = 0; i <= segment.mask; i++) {
+				slots.put(i * SLOT_SIZE, FREE);
+			}
+			for (int k = 0; k <= segment.mask; k++) {
+				int at = k * SLOT_SIZE;
+				if (from.get(at) != USED) {
+					continue;
+				}
+				var id = segment.id(at);
+				int i = hash(id) & segment.mask;
+				while (slots.get(i * SLOT_SIZE) != FREE) {
+					i = (i + 1) & segment.mask;
+				}
+				slots.put(i * SLOT_SIZE, from, at, SLOT_SIZE);
+			}
+			header.putInt(REHASHING, segment.index + 1); //da qui la copia è quella valida
+			copyTo(from, segment.index);
+			segment.removed = 0;
+		}
+
+		//forza l'intestazione su disco
+		synchronized void force() {
+			header.force();
+		}
+
+		//ricopia il segmento di appoggio sul segmento indicato e cancella la segnalazione
+		synchronized void copyTo(MappedByteBuffer target, int index) {
+			target.put(0, slots, 0, target.capacity());
+			header.putInt(REHASHING, 0);
+		}
+	}
+
+	/*
+	osservatore che riscrive lo slot della partita a ogni evento (chiamato con il lock della partita già acquisito)
+	la posizione dello slot viene ricordata e verificata a ogni scrittura: se la partita è stata rimossa non scrive nulla,
+	se il segmento è stato riorganizzato la ritrova con una nuova ricerca
+	gli indici dei giocatori vengono risolti alla creazione e a ogni join: una mossa non consulta la tabella dei nomi
+	 */
+	private final class SlotWriter implements GameObserver {
+		private final Game game; //partita osservata
+		private final Segment segment; //segmento della partita
+		private final byte[] idBytes; //id in utf-8 (confronto con lo slot)
+		private int slot = -1; //ultima posizione nota dello slot
+		private int cross; //indice del giocatore croce nella tabella dei nomi (0 se assente)
+		private int circle; //indice del giocatore cerchio nella tabella dei nomi (0 se assente)
+
+		SlotWriter(Game game, Segment segment, byte[] idBytes, int cross, int circle) {
+			this.game = game;
+			this.segment = segment;
+			this.idBytes = idBytes;
+			this.cross = cross;
+			this.circle = circle;
+		}
+
+		public void notifyGameEvent(GameEvent event) {
+			write(game.getCurrentTurnSymbol());
+		}
+
+		//il nome è già nella tabella se il join è passato da registerPlayer; altrimenti (join sincrono) viene aggiunto qui
+		@Override
+		public void playerJoined(String gameId, TTTSymbol symbol, UserId userId) {
+			if (symbol == TTTSymbol.X) {
+				cross = names.index(userId);
+			} else {
+				circle = names.index(userId);
+			}
+			write(game.getCurrentTurnSymbol());
+		}
+
+		//le mosse riscrivono lo slot senza costruire l'evento; la notifica precede il cambio del turno, che passa all'altro simbolo
+		//(se la mossa termina la partita segue l'evento di fine, che riscrive il turno)
+		@Override
+		public void newMove(String gameId, TTTSymbol symbol, int x, int y) {
+			write(symbol == TTTSymbol.X ? TTTSymbol.O : TTTSymbol.X);
+		}
+
+		private void write(TTTSymbol turn) {
+			synchronized (segment) {
+				if (slot < 0 || segment.slots.get(slot * SLOT_SIZE) != USED || !segment.matches(slot * SLOT_SIZE, idBytes)) {
+					slot = segment.find(game.getId(), idBytes);
+					if (slot < 0) { //partita rimossa dal repository
+						return;
+					}
+				}
+				segment.writeState(slot * SLOT_SIZE, game, turn, cross, circle);
+			}
+		}
+	}
+
+	/*
+	tabella dei nomi dei giocatori: indice (da 1, 0 = nessun giocatore) -> nome, salvata come append di [lunghezza (short)][nome in utf-8]
+	la ricerca di un nome già presente non prende lock; solo l'aggiunta di un nome nuovo (scrittura e fsync) è serializzata
+	 */
+	private static final class PlayerNames {
+		private final FileChannel channel; //file dei nomi
+		private final ArrayList<UserId> users; //utenti in ordine di indice (protetti dal lock della tabella)
+		private final ConcurrentHashMap<UserId, Integer> indexes; //utente -> indice (letto senza lock)
+
+		PlayerNames(Path file) throws IOException {
+			users = new ArrayList<>();
+			indexes = new ConcurrentHashMap<>();
+			users.add(null);
+			long valid = 0;
+			if (Files.exists(file)) {
+				var buf = ByteBuffer.wrap(Files.readAllBytes(file));
+				while (buf.remaining() >= 2) {
+					int length = buf.getShort() & 0xffff;
+					if (buf.remaining() < length) { //nome incompleto (crash durante la scrittura)
+						break;
+					}
+					var bytes = new byte[length];
+					buf.get(bytes);
+					var user = new UserId(new String(bytes, StandardCharsets.UTF_8));
+					indexes.put(user, users.size());
+					users.add(user);
+					valid = buf.position();
+				}
+			}
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			channel.truncate(valid);
+			channel.position(valid);
+		}
+
+		//indice dell'utente già nella tabella (0 per nessun giocatore, -1 se il nome non è ancora stato aggiunto)
+		int indexOf(UserId user) {
+			if (user == null) {
+				return 0;
+			}
+			var index = indexes.get(user);
+			return index == null ? -1 : index;
+		}
+
+		//indice dell'utente; alla prima occorrenza il nome viene aggiunto e forzato su disco prima che uno slot possa riferirlo
+		int index(UserId user) {
+			int index = indexOf(user);
+			return index >= 0 ? index : append(user);
+		}
+
+		//aggiunge il nome alla tabella (scrittura e fsync, una volta per giocatore)
+		private synchronized int append(UserId user) {
+			var index = indexes.get(user);
+			if (index != null) { //aggiunto nel frattempo
+				return index;
+			}
+			var bytes = user.id().getBytes(StandardCharsets.UTF_8);
+			var record = ByteBuffer.allocate(2 + bytes.length).putShort((short) bytes.length).put(bytes).flip();
+			try {
+				while (record.hasRemaining()) {
+					channel.write(record);
+				}
+				channel.force(false);
+			} catch (IOException ex) {
+				throw new IllegalStateException("cannot write the player names", ex);
+			}
+			users.add(user);
+			indexes.put(user, users.size() - 1); //visibile senza lock solo quando il nome è persistente
+			return users.size() - 1;
+		}
+
+		//utente dell'indice; un indice sconosciuto (nome perso con il file dei nomi) diventa un giocatore assente
+		synchronized UserId user(int index) {
+			if (index < 0 || index >= users.size()) {
+				logger.log(Level.WARNING, "unknown player index " + index + " in the game store");
+				return null;
+			}
+			return users.get(index);
+		}
+
+		synchronized void close() throws IOException {
+			channel.force(false);
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package ttt_game_service.infrastructure;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import exagonal.Adapter;
+import ttt_game_service.application.AccountAlreadyPresentException;
+import ttt_game_service.application.AccountRepository;
+import ttt_game_service.application.GameRepository;
+import ttt_game_service.domain.Account;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.UserId;
+
+/*
+pool di thread dedicato agli adapter dei repository che bloccano il chiamante (i/o sincrono su disco o in rete)
+accounts() e games() avvolgono un adapter: i metodi sincroni restano invariati (usati fuori dagli event loop), le varianti asincrone
+eseguono il metodo sincrono sul pool e completano la future da lì; gli event loop non eseguono mai le chiamate dell'adapter
+(con Java 17 non ci sono thread virtuali: il pool ha un numero fisso di thread e una coda senza limite, la cui profondità è esposta come metrica)
+ */
+public class RepositoryWorkers {
+
+	static final int DEFAULT_THREADS = 8; //thread del pool (le chiamate attendono i/o, non usano cpu)
+	private final ThreadPoolExecutor executor; //thread dedicati alle chiamate bloccanti
+
+	public RepositoryWorkers() {
+		this(DEFAULT_THREADS);
+	}
+
+	public RepositoryWorkers(int threads) {
+		var threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+			var t = new Thread(r, "repository-io-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	//esegue la chiamata bloccante sul pool
+	public <T> CompletableFuture<T> supply(Supplier<T> call) {
+		return CompletableFuture.supplyAsync(call, executor);
+	}
+
+	//numero di chiamate in attesa di un thread
+	public int queueDepth() {
+		return executor.getQueue().size();
+	}
+
+	//adapter degli account le cui varianti asincrone vengono eseguite sul pool
+	public AccountRepository accounts(AccountRepository repo) {
+		return new BlockingAccounts(repo);
+	}
+
+	//adapter delle partite le cui varianti asincrone vengono eseguite sul pool
+	public GameRepository games(GameRepository repo) {
+		return new BlockingGames(repo);
+	}
+
+	@Adapter
+	private final class BlockingAccounts implements AccountRepository {
+		private final AccountRepository repo; //adapter che blocca il chiamante
+
+		BlockingAccounts(AccountRepository repo) {
+			this.repo = repo;
+		}
+
+		public void addAccount(Account account) {
+			repo.addAccount(account);
+		}
+
+		public boolean addAccountIfAbsent(Account account) {
+			return repo.addAccountIfAbsent(account);
+		}
+
+		public boolean replaceAccount(Account expected, Account updated) {
+			return repo.replaceAccount(expected, updated);
+		}
+
+		public boolean isPresent(String userName) {
+			return repo.isPresent(userName);
+		}
+
+		public Account getAccount(String userName) {
+			return repo.getAccount(userName);
+		}
+
+		@Override
+		public CompletableFuture<Account> getAccountAsync(String userName) {
+			return supply(() -> repo.getAccount(userName));
+		}
+
+		@Override
+		public CompletableFuture<Void> addAccountAsync(Account account) {
+			return supply(() -> {
+				repo.addAccount(account);
+				return null;
+			});
+		}
+
+		@Override
+		public CompletableFuture<Void> addAccountIfAbsentAsync(Account account) {
+			return supply(() -> {
+				if (!repo.addAccountIfAbsent(account)) {
+					throw new CompletionException(new AccountAlreadyPresentException());
+				}
+				return null;
+			});
+		}
+
+		@Override
+		public CompletableFuture<Boolean> replaceAccountAsync(Account expected, Account updated) {
+			return supply(() -> repo.replaceAccount(expected, updated));
+		}
+	}
+
+	@Adapter
+	private final class BlockingGames implements GameRepository {
+		private final GameRepository repo; //adapter che blocca il chiamante
+
+		BlockingGames(GameRepository repo) {
+			this.repo = repo;
+		}
+
+		public void addGame(Game game) {
+			repo.addGame(game);
+		}
+
+		public boolean addGameIfAbsent(Game game) {
+			return repo.addGameIfAbsent(game);
+		}
+
+		public boolean isPresent(String gameId) {
+			return repo.isPresent(gameId);
+		}
+
+		public Game getGame(String gameId) {
+			return repo.getGame(gameId);
+		}
+
+		public void removeGame(String gameId) {
+			repo.removeGame(gameId);
+		}
+
+		public int size() {
+			return repo.size();
+		}
+
+		public Iterable<Game> getGames() {
+			return repo.getGames();
+		}
+
+		@Override
+		public Iterable<String> getGameIds() {
+			return repo.getGameIds();
+		}
+
+		@Override
+		public void registerPlayer(UserId userId) {
+			repo.registerPlayer(userId);
+		}
+
+		@Override
+		public CompletableFuture<Void> registerPlayerAsync(UserId userId) {
+			return supply(() -> {
+				repo.registerPlayer(userId);
+				return null;
+			});
+		}
+
+		@Override
+		public CompletableFuture<Boolean> addGameIfAbsentAsync(Game game) {
+			return supply(() -> repo.addGameIfAbsent(game));
+		}
+
+		@Override
+		public CompletableFuture<Game> getGameAsync(String gameId) {
+			return supply(() -> repo.getGame(gameId));
+		}
+	}
+}
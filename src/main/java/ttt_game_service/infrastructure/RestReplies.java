@@ -0,0 +1,76 @@
+package ttt_game_service.infrastructure;
+
+import java.util.Locale;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import ttt_game_service.application.MatchmakingStats;
+
+/*
+risposte delle rotte rest già codificate
+le risposte costanti sono buffer condivisi tra tutte le richieste; quelle con un valore (ad esempio l'id della sessione) vengono scritte direttamente come testo json
+ */
+final class RestReplies {
+
+	static final CharSequence CONTENT_TYPE = HttpHeaders.CONTENT_TYPE; //nome dell'header (già codificato)
+	static final CharSequence APPLICATION_JSON = HttpHeaders.createOptimized("application/json"); //valore dell'header (già codificato)
+
+	static final Buffer OK = Buffer.buffer("{\"result\":\"ok\"}");
+	static final Buffer ACCEPTED = Buffer.buffer("{\"result\":\"accepted\"}");
+	static final Buffer INVALID_MOVE = Buffer.buffer("{\"result\":\"invalid-move\"}");
+	static final Buffer UNKNOWN_SESSION = Buffer.buffer("{\"result\":\"error\",\"error\":\"unknown-session\"}");
+	static final Buffer GAME_ALREADY_PRESENT = Buffer.buffer("{\"result\":\"error\",\"error\":\"game-already-present\"}");
+	static final Buffer ERROR = Buffer.buffer("{\"result\":\"error\",\"error\":null}"); //account già presente, join non valido
+	static final Buffer LOGIN_FAILED = Buffer.buffer("{\"result\":\"login-failed\",\"error\":null}");
+	static final Buffer BUSY = Buffer.buffer("{\"result\":\"busy\"}");
+	static final Buffer BAD_REQUEST = Buffer.buffer("{\"result\":\"error\",\"error\":\"bad-request\"}");
+	static final Buffer NO_MATCH = Buffer.buffer("{\"result\":\"no-match\"}"); //nessun avversario entro il tempo massimo (o richiesta sostituita)
+	static final Buffer INTERNAL_ERROR = Buffer.buffer("{\"result\":\"error\",\"error\":\"internal-error\"}"); //errore inatteso (il dettaglio resta nel log del server)
+	static final Buffer NODE_UNAVAILABLE = Buffer.buffer("{\"result\":\"error\",\"error\":\"node-unavailable\"}"); //il nodo proprietario (cluster) non ha risposto
+
+	private RestReplies() {}
+
+	//risposta di successo con un campo aggiuntivo (ad esempio {"result":"ok","sessionId":"..."})
+	static Buffer okWith(String field, String value) {
+		var sb = new StringBuilder(32 + field.length() + value.length());
+		sb.append("{\"result\":\"ok\",\"").append(field).append("\":");
+		appendString(sb, value);
+		return Buffer.buffer(sb.append('}').toString());
+	}
+
+	//risposta del matchmaking: partita creata, sessione giocatore e simbolo assegnato
+	static Buffer match(String gameId, String playerSessionId, String symbol) {
+		var sb = new StringBuilder(96);
+		sb.append("{\"result\":\"ok\",\"gameId\":");
+		appendString(sb, gameId);
+		sb.append(",\"playerSessionId\":");
+		appendString(sb, playerSessionId);
+		sb.append(",\"symbol\":\"").append(symbol).append('"');
+		return Buffer.buffer(sb.append('}').toString());
+	}
+
+	//metriche del matchmaking
+	static Buffer matchmakingStats(MatchmakingStats stats) {
+		return Buffer.buffer(String.format(Locale.ROOT, "{\"waiting\":%d,\"matches\":%d,\"cancelled\":%d,\"meanTimeToMatchMillis\":%.3f,\"maxTimeToMatchMillis\":%.3f}",
+			stats.waiting(), stats.matches(), stats.cancelled(), stats.meanTimeToMatchMillis(), stats.maxTimeToMatchMillis()));
+	}
+
+	//scrive una stringa json (con le sequenze di escape necessarie)
+	static void appendString(StringBuilder sb, String s) {
+		if (s == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,186 @@
+package ttt_game_service.infrastructure;
+
+import io.vertx.core.buffer.Buffer;
+import ttt_game_service.domain.BoardConfig;
+
+/*
+decoder tipizzati dei body delle rotte rest: ogni rotta legge solo i propri campi con il parser in streaming (JsonBody)
+i campi sconosciuti vengono ignorati, quelli mancanti rendono la richiesta non valida
+ */
+public final class RestRequests {
+
+	static final int DEFAULT_RATING = 1000; //punteggio usato dal matchmaking se la richiesta non lo indica
+
+	private RestRequests() {}
+
+	//credenziali (registrazione e login)
+	public record Credentials(String userName, String password) {}
+
+	//creazione di una partita (dimensioni della griglia facoltative, 3x3 se assenti)
+	public record NewGame(String sessionId, String gameId, BoardConfig board) {}
+
+	//ingresso in una partita
+	public record Join(String sessionId, String gameId, String symbol) {}
+
+	//ingresso in una partita inoltrato al nodo proprietario (cluster): l'utente è già stato autenticato dal nodo della sessione
+	public record RemoteJoin(String userName, String gameId, String symbol) {}
+
+	//mossa (x e y possono essere numeri o stringhe numeriche)
+	public record Move(String playerSessionId, int x, int y) {}
+
+	//ricerca di un avversario (il punteggio è facoltativo)
+	public record FindMatch(String sessionId, int rating) {}
+
+	//decodifica le credenziali
+	public static Credentials credentials(Buffer body) throws MalformedRequestException {
+		String userName = null;
+		String password = null;
+		var r = new JsonBody(body);
+		for (var field = r.nextField(); field != null; field = r.nextField()) {
+			if (field.equals("userName")) {
+				userName = r.stringValue();
+			} else if (field.equals("password")) {
+				password = r.stringValue();
+			} else {
+				r.skipValue();
+			}
+		}
+		return new Credentials(required(userName, "userName"), required(password, "password"));
+	}
+
+	//decodifica la richiesta di creazione di una partita
+	public static NewGame newGame(Buffer body) throws MalformedRequestException {
+		String sessionId = null;
+		String gameId = null;
+		int width = BoardConfig.STANDARD.width();
+		int height = BoardConfig.STANDARD.height();
+		int winLength = -1; //se assente: il lato minore, limitato a 5 (5 in fila sulle griglie grandi)
+		var r = new JsonBody(body);
+		for (var field = r.nextField(); field != null; field = r.nextField()) {
+			if (field.equals("sessionId")) {
+				sessionId = r.stringValue();
+			} else if (field.equals("gameId")) {
+				gameId = r.stringValue();
+			} else if (field.equals("width")) {
+				width = r.intValue();
+			} else if (field.equals("height")) {
+				height = r.intValue();
+			} else if (field.equals("winLength")) {
+				winLength = r.intValue();
+			} else {
+				r.skipValue();
+			}
+		}
+		BoardConfig board;
+		try {
+			board = new BoardConfig(width, height, winLength < 0 ? Math.min(5, Math.min(width, height)) : winLength);
+		} catch (IllegalArgumentException ex) {
+			throw new MalformedRequestException(ex.getMessage());
+		}
+		return new NewGame(required(sessionId, "sessionId"), required(gameId, "gameId"), board);
+	}
+
+	//decodifica la richiesta di ingresso in una partita
+	public static Join join(Buffer body) throws MalformedRequestException {
+		String sessionId = null;
+		String gameId = null;
+		String symbol = null;
+		var r = new JsonBody(body);
+		for (var field = r.nextField(); field != null; field = r.nextField()) {
+			if (field.equals("sessionId")) {
+				sessionId = r.stringValue();
+			} else if (field.equals("gameId")) {
+				gameId = r.stringValue();
+			} else if (field.equals("symbol")) {
+				symbol = r.stringValue();
+			} else {
+				r.skipValue();
+			}
+		}
+		return new Join(required(sessionId, "sessionId"), required(gameId, "gameId"), required(symbol, "symbol"));
+	}
+
+	//decodifica l'ingresso in una partita inoltrato da un altro nodo
+	public static RemoteJoin remoteJoin(Buffer body) throws MalformedRequestException {
+		String userName = null;
+		String gameId = null;
+		String symbol = null;
+		var r = new JsonBody(body);
+		for (var field = r.nextField(); field != null; field = r.nextField()) {
+			if (field.equals("userName")) {
+				userName = r.stringValue();
+			} else if (field.equals("gameId")) {
+				gameId = r.stringValue();
+			} else if (field.equals("symbol")) {
+				symbol = r.stringValue();
+			} else {
+				r.skipValue();
+			}
+		}
+		return new RemoteJoin(required(userName, "userName"), required(gameId, "gameId"), required(symbol, "symbol"));
+	}
+
+	//codifica l'ingresso in una partita da inoltrare al nodo proprietario
+	public static Buffer encode(RemoteJoin join) {
+		var sb = new StringBuilder(64);
+		sb.append("{\"userName\":");
+		RestReplies.appendString(sb, join.userName());
+		sb.append(",\"gameId\":");
+		RestReplies.appendString(sb, join.gameId());
+		sb.append(",\"symbol\":");
+		RestReplies.appendString(sb, join.symbol());
+		return Buffer.buffer(sb.append('}').toString());
+	}
+
+	//decodifica una mossa
+	public static Move move(Buffer body) throws MalformedRequestException {
+		String playerSessionId = null;
+		int x = -1;
+		int y = -1;
+		boolean hasX = false;
+		boolean hasY = false;
+		var r = new JsonBody(body);
+		for (var field = r.nextField(); field != null; field = r.nextField()) {
+			if (field.equals("playerSessionId")) {
+				playerSessionId = r.stringValue();
+			} else if (field.equals("x")) {
+				x = r.intValue();
+				hasX = true;
+			} else if (field.equals("y")) {
+				y = r.intValue();
+				hasY = true;
+			} else {
+				r.skipValue();
+			}
+		}
+		if (!hasX || !hasY) {
+			throw new MalformedRequestException("missing field: " + (hasX ? "y" : "x"));
+		}
+		return new Move(required(playerSessionId, "playerSessionId"), x, y);
+	}
+
+	//decodifica la richiesta di matchmaking
+	public static FindMatch findMatch(Buffer body) throws MalformedRequestException {
+		String sessionId = null;
+		int rating = DEFAULT_RATING;
+		var r = new JsonBody(body);
+		for (var field = r.nextField(); field != null; field = r.nextField()) {
+			if (field.equals("sessionId")) {
+				sessionId = r.stringValue();
+			} else if (field.equals("rating")) {
+				rating = r.intValue();
+			} else {
+				r.skipValue();
+			}
+		}
+		return new FindMatch(required(sessionId, "sessionId"), rating);
+	}
+
+	//verifica la presenza di un campo obbligatorio
+	private static String required(String value, String field) throws MalformedRequestException {
+		if (value == null) {
+			throw new MalformedRequestException("missing field: " + field);
+		}
+		return value;
+	}
+}
@@ -1,84 +1,269 @@
 package ttt_game_service.infrastructure;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Logger;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
 import exagonal.Adapter;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import ttt_game_service.application.AccountAlreadyPresentException;
 import ttt_game_service.application.AccountRepository;
+import ttt_game_service.application.CredentialVerifier;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
 import ttt_game_service.domain.Account;
 
-//implementazione 2 della porta di uscita che collega l'architettura (applicazione) al db degli account (salva i dati in un file .json)
+/*
+implementazione 2 della porta di uscita che collega l'architettura (applicazione) al db degli account
+lo stato è composto da uno snapshot binario (users.db) e da un log append-only (users.log) con un account per riga:
+gli account contengono solo l'hash della password; ogni registrazione costa una piccola append (scritta in batch da un thread dedicato), il log viene periodicamente compattato nello snapshot
+le letture usano la mappa in memoria e addAccountAsync non blocca il chiamante (la future viene completata dal thread del log): nessun metodo usato dagli event loop esegue i/o sul thread chiamante
+un db nel vecchio formato (users.json) viene migrato automaticamente al primo avvio; le password in chiaro del vecchio formato
+(nel db json, nei record del log scritti prima degli hash o in uno snapshot precedente) vengono sostituite da un hash durante il caricamento
+e riscritte subito nello snapshot, così non restano su disco fino al login successivo
+ */
 @Adapter
 public class SimpleFileBasedAccountRepository implements AccountRepository {
 
 	static Logger logger = Logger.getLogger("[MyDB]");
-	static final String DB_USERS = "users.json"; //nome del file usato come db
-	private HashMap<String, Account> userAccounts; //hashmap che associa l'username (id) dell'account all'account
-	
+	static final String DB_USERS = "users.db"; //nome del file usato come snapshot (binario) del db
+	static final String LEGACY_DB_USERS = "users.json"; //nome del file usato come db nel vecchio formato json
+	static final String DB_USERS_LOG = "users.log"; //nome del file usato come log del db
+	static final long COMPACT_EVERY = 10_000; //numero di registrazioni dopo il quale il log viene compattato nello snapshot
+	private final Path snapshotFile; //snapshot del db
+	private final Path logFile; //log del db
+	private final Path legacyFile; //db nel vecchio formato json
+	private ConcurrentHashMap<String, Account> userAccounts; //hashmap che associa l'username (id) dell'account all'account
+	private GroupCommitLog log; //log append-only delle registrazioni
+	private final CredentialVerifier verifier; //calcola gli hash delle password in chiaro trovate al caricamento
+
 	public SimpleFileBasedAccountRepository() {
-		userAccounts = new HashMap<>();
+		this(Path.of("."));
+	}
+
+	//repository con i file del db nella cartella indicata
+	public SimpleFileBasedAccountRepository(Path dbDir) {
+		this(dbDir, new Pbkdf2CredentialVerifier());
+	}
+
+	//repository con i file del db nella cartella indicata; le password in chiaro vengono sostituite dagli hash del verificatore indicato
+	public SimpleFileBasedAccountRepository(Path dbDir, CredentialVerifier verifier) {
+		this.verifier = verifier;
+		snapshotFile = dbDir.resolve(DB_USERS);
+		logFile = dbDir.resolve(DB_USERS_LOG);
+		legacyFile = dbDir.resolve(LEGACY_DB_USERS);
+		userAccounts = new ConcurrentHashMap<>();
 		initFromDB();
 	}
 
-	//inizializza lo stato degli utenti registrati
+	//inizializza lo stato degli utenti registrati (snapshot + riapplicazione del log)
 	private void initFromDB() {
+		long start = System.nanoTime();
 		try {
-			var usersDB = new BufferedReader(new FileReader(DB_USERS)); //apre il file db (FileReader) in lettura (BufferedReader)
-			var sb = new StringBuffer(); //crea una stringa "contenitore" di testo
-			while (usersDB.ready()) { //per ogni riga...
-				sb.append(usersDB.readLine()+"\n"); //legge e lo aggiunge a db
+			Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+			boolean legacy = !Files.exists(snapshotFile) && Files.exists(legacyFile);
+			if (Files.exists(snapshotFile)) {
+				userAccounts = new ConcurrentHashMap<>((int) Math.min(Integer.MAX_VALUE, AccountSnapshot.count(snapshotFile))); //dimensiona la mappa una sola volta
+				AccountSnapshot.load(snapshotFile, userAccounts); //carica lo snapshot a blocchi in parallelo
+			} else if (legacy) {
+				readLegacyDB();
+			} else {
+				logger.info("DB not found, creating an empty one.");
+			}
+			long validLength = replayLog(); //riapplica le registrazioni successive allo snapshot
+			if (hashPlaintextPasswords() || legacy) { //lo snapshot contiene tutto: il log riparte vuoto
+				saveSnapshot();
+				validLength = 0;
 			}
-			usersDB.close(); //chiude il file db
-			var array = new JsonArray(sb.toString()); //trasforma la stringa in un array json
-			for (int i = 0; i < array.size(); i++) { //per ogni elemento...
-				var user = array.getJsonObject(i); //memorizza l'elemento
-				Account acc = new Account(user.getString("userName"), user.getString("password")); //registra l'utente utilizzando i valori dei campi "userId" e "userName"
-				userAccounts.put(acc.getId(), acc); //aggiunge l'account
+			log = new GroupCommitLog(logFile, validLength, COMPACT_EVERY, this::saveSnapshot);
+			if (legacy) {
+				Files.delete(legacyFile); //il vecchio db contiene le password in chiaro: non viene conservato
 			}
-		} catch (Exception ex) {
-			logger.info("DB not found, creating an empty one.");
-			saveOnDB(); //crea un nuovo file json
+		} catch (IOException ex) {
+			throw new IllegalStateException("cannot open the accounts DB", ex);
 		}
+		logger.info("DB loaded: " + userAccounts.size() + " accounts in " + (System.nanoTime() - start) / 1_000_000 + " ms");
 	}
 
-	//memorizza nel db gli utenti registrati
-	private void saveOnDB() {
-		try {
-			JsonArray list = new JsonArray(); //crea un array json
-			for (Account ac: userAccounts.values()) { //per ogni utente registrato
-				var obj = new JsonObject(); //crea un oggetto json
-				obj.put("userName", ac.getUserName()); //aggiunge l'username dell'utente all'oggetto
-				obj.put("password", ac.getPassword()); //aggiunge la password dell'utente all'oggetto
-				list.add(obj); //aggiunge l'oggetto alla lista
+	//legge il db nel vecchio formato json (lettura in streaming, senza costruire l'intero array json); lo snapshot binario viene scritto dopo gli hash
+	private void readLegacyDB() throws IOException {
+		logger.info("Migrating " + legacyFile + " to " + snapshotFile);
+		try (var parser = new JsonFactory().createParser(legacyFile.toFile())) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new IOException("unexpected content in " + legacyFile);
 			}
-			var usersDB = new FileWriter(DB_USERS); //apre il file db in scrittura
-			usersDB.append(list.encodePrettily()); //converte l'array in una stringa (encodePrettily) e scrive sul file db
-			usersDB.flush(); //forza la scrittura
-			usersDB.close(); //chiude il file db
-		} catch (Exception ex) {
-			ex.printStackTrace(); //lancia un'eccezione
-		}	
+			while (parser.nextToken() == JsonToken.START_OBJECT) { //per ogni account
+				String userName = null;
+				String passwordHash = null;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					var field = parser.currentName();
+					parser.nextToken();
+					if (field.equals("userName")) {
+						userName = parser.getText();
+					} else if (field.equals("password")) { //password in chiaro: viene sostituita da un hash prima di scrivere lo snapshot
+						passwordHash = parser.getText();
+					} else {
+						parser.skipChildren();
+					}
+				}
+				var acc = new Account(userName, passwordHash);
+				userAccounts.put(acc.getId(), acc);
+			}
+		}
+	}
+
+	//sostituisce le password in chiaro con il loro hash (in parallelo: l'hash è lento); restituisce true se ne ha trovate
+	private boolean hashPlaintextPasswords() {
+		var plaintext = new ConcurrentLinkedQueue<Account>();
+		userAccounts.forEachValue(1 << 16, acc -> {
+			if (verifier.isPlaintext(acc.getPasswordHash())) {
+				plaintext.add(acc);
+			}
+		});
+		if (plaintext.isEmpty()) {
+			return false;
+		}
+		logger.info("Hashing " + plaintext.size() + " plaintext passwords");
+		plaintext.parallelStream().forEach(acc -> userAccounts.put(acc.getId(), new Account(acc.getUserName(), verifier.hash(acc.getPasswordHash()))));
+		return true;
+	}
+
+	/*
+	riapplica il log e restituisce la lunghezza della parte integra: viene scartata solo un'ultima riga incompleta (senza '\n', dovuta a un crash);
+	un record completo ma illeggibile viene saltato senza perdere le registrazioni successive
+	 */
+	private long replayLog() throws IOException {
+		if (!Files.exists(logFile)) {
+			return 0;
+		}
+		var bytes = Files.readAllBytes(logFile);
+		int lineStart = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] == '\n') { //fine di un record
+				try {
+					putAccount(new JsonObject(new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8)));
+				} catch (RuntimeException ex) {
+					logger.warning("corrupted record in " + logFile + " at offset " + lineStart + ", skipping it");
+				}
+				lineStart = i + 1;
+			}
+		}
+		if (lineStart < bytes.length) {
+			logger.warning("torn record in " + logFile + " at offset " + lineStart + ", truncating it");
+		}
+		return lineStart;
+	}
+
+	//crea l'account a partire dal suo oggetto json (i record scritti prima degli hash hanno il campo "password" in chiaro)
+	private void putAccount(JsonObject user) {
+		var passwordHash = user.getString("passwordHash", user.getString("password"));
+		Account acc = new Account(user.getString("userName"), passwordHash); //registra l'utente utilizzando i valori dei campi "userName" e "passwordHash"
+		userAccounts.put(acc.getId(), acc); //aggiunge l'account
+	}
+
+	//converte l'account in un oggetto json
+	private static JsonObject toJson(Account ac) {
+		var obj = new JsonObject(); //crea un oggetto json
+		obj.put("userName", ac.getUserName()); //aggiunge l'username dell'utente all'oggetto
+		obj.put("passwordHash", ac.getPasswordHash()); //aggiunge l'hash della password dell'utente all'oggetto
+		return obj;
+	}
+
+	//scrive lo snapshot di tutti gli utenti registrati; eseguito dal thread del log
+	private void saveSnapshot() throws IOException {
+		AccountSnapshot.write(snapshotFile, userAccounts.values());
 	}
 
-	//verifica l'autenticazione
+	//recupera un account
 	@Override
-	public boolean isValid(String userName, String password) {
-		return (userAccounts.containsKey(userName) && userAccounts.get(userName).getPassword().equals(password));
+	public Account getAccount(String userName) {
+		return userAccounts.get(userName);
 	}
 
-	//aggiunge un account e lo memorizza nel db
+	//aggiunge un account e attende che la registrazione sia persistente (blocca il chiamante: gli event loop usano addAccountAsync)
 	public void addAccount(Account account) {
-		userAccounts.put(account.getId(), account);
-		saveOnDB();
+		append(account).join();
+	}
+
+	//aggiunge un account; la future viene completata dal thread del log quando la registrazione è persistente (nessun thread resta in attesa)
+	@Override
+	public CompletableFuture<Void> addAccountAsync(Account account) {
+		return append(account);
+	}
+
+	//aggiunge un account se l'username è libero e attende che la registrazione sia persistente
+	public boolean addAccountIfAbsent(Account account) {
+		return store(account, null, true).join();
+	}
+
+	//aggiunge un account se l'username è libero; la future fallisce con AccountAlreadyPresentException se è già registrato
+	@Override
+	public CompletableFuture<Void> addAccountIfAbsentAsync(Account account) {
+		return store(account, null, true).thenApply(added -> {
+			if (!added) {
+				throw new CompletionException(new AccountAlreadyPresentException());
+			}
+			return null;
+		});
+	}
+
+	//sostituisce un account se quello registrato è ancora expected e attende che la modifica sia persistente
+	public boolean replaceAccount(Account expected, Account updated) {
+		return store(updated, expected, true).join();
+	}
+
+	//sostituisce un account se quello registrato è ancora expected; la future viene completata dal thread del log
+	@Override
+	public CompletableFuture<Boolean> replaceAccountAsync(Account expected, Account updated) {
+		return store(updated, expected, true);
+	}
+
+	//rende visibile l'account e accoda la sua registrazione sul log
+	private CompletableFuture<Void> append(Account account) {
+		return store(account, null, false).thenApply(stored -> null);
+	}
+
+	/*
+	registra l'account se quello attuale è expected (con checked a false lo registra sempre) e accoda il record sul log;
+	il record viene accodato dentro compute, così l'ordine del log coincide con quello della mappa e la riapplicazione ritrova l'ultimo account
+	(un username che non entra nello snapshot viene rifiutato)
+	 */
+	private CompletableFuture<Boolean> store(Account account, Account expected, boolean checked) {
+		if (account.getUserName().getBytes(StandardCharsets.UTF_8).length > AccountSnapshot.MAX_STRING_BYTES) {
+			return CompletableFuture.failedFuture(new IllegalArgumentException("user name too long"));
+		}
+		var record = (toJson(account).encode() + "\n").getBytes(StandardCharsets.UTF_8);
+		@SuppressWarnings("unchecked")
+		CompletableFuture<Void>[] written = new CompletableFuture[1];
+		userAccounts.compute(account.getId(), (id, current) -> {
+			if (checked && current != expected) { //registrato (o modificato) nel frattempo
+				return current;
+			}
+			written[0] = log.append(record);
+			return account;
+		});
+		return written[0] == null ? CompletableFuture.completedFuture(false) : written[0].thenApply(v -> true);
 	}
 
 	//verifica la presenza di un account
 	public boolean isPresent(String userName) {
 		return userAccounts.containsKey(userName);
 	}
-	
+
+	//attende che tutte le registrazioni accodate siano persistenti
+	public void flush() {
+		log.flush();
+	}
+
+	//scrive le registrazioni in attesa e chiude il db
+	public void close() {
+		log.close();
+	}
+
 }
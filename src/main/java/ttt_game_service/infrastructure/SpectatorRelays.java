@@ -0,0 +1,259 @@
+package ttt_game_service.infrastructure;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.vertx.core.Context;
+import io.vertx.core.http.ServerWebSocket;
+import ttt_game_service.application.GameService;
+import ttt_game_service.domain.GameEnded;
+import ttt_game_service.domain.GameEvent;
+import ttt_game_service.domain.GameObserver;
+import ttt_game_service.domain.GameStarted;
+import ttt_game_service.domain.NewMove;
+import ttt_game_service.domain.PlayerJoined;
+import ttt_game_service.domain.TTTSymbol;
+
+/*
+registro degli spettatori delle partite (websocket in sola lettura), condiviso tra le istanze del controller
+per ogni partita osservata c'è un solo relay registrato come spettatore della partita, qualunque sia il numero di websocket:
+il relay codifica ogni evento una sola volta (EventFrame) e lo consegna con un solo task per event loop, che scrive lo stesso frame
+su tutti i websocket di quell'event loop; la mossa di un giocatore paga quindi al più un task per event loop, non un invio per spettatore
+uno spettatore che arriva a partita in corso riceve prima i frame già inviati, poi quelli successivi
+uno spettatore troppo lento (coda di scrittura piena) viene disconnesso invece di accumulare frame in memoria
+ */
+public class SpectatorRelays {
+
+	private final GameService gameService; //servizio principale
+	private final ConcurrentHashMap<String, Relay> relays; //id della partita -> relay
+	private final AtomicInteger spectators; //numero di spettatori registrati
+
+	public SpectatorRelays(GameService gameService) {
+		this.gameService = gameService;
+		relays = new ConcurrentHashMap<>();
+		spectators = new AtomicInteger();
+	}
+
+	//spettatore: websocket e formato richiesto
+	private record Spectator(ServerWebSocket webSocket, boolean binary) {}
+
+	//registrazione di uno spettatore (serve per la rimozione)
+	public static final class Watch {
+		private final Relay relay;
+		private final Group group;
+		private final Spectator spectator;
+
+		private Watch(Relay relay, Group group, Spectator spectator) {
+			this.relay = relay;
+			this.group = group;
+			this.spectator = spectator;
+		}
+	}
+
+	/*
+	registra il websocket come spettatore della partita; la future contiene null se la partita non esiste
+	il primo spettatore crea il relay e lo registra sulla partita (porta asincrona del repository), che gli invia subito gli eventi dello stato attuale;
+	gli spettatori vengono aggiunti sul contesto del websocket dopo la registrazione e la future viene completata su quel contesto,
+	prima che vi vengano scritti i frame della partita
+	 */
+	public CompletableFuture<Watch> watch(String gameId, ServerWebSocket webSocket, Context context, boolean binary) {
+		var relay = relays.get(gameId);
+		if (relay == null || relay.isEnded()) { //nessun relay o relay di una partita terminata (l'id potrebbe essere stato riutilizzato)
+			var fresh = new Relay(gameId);
+			if (relay == null ? relays.putIfAbsent(gameId, fresh) != null : !relays.replace(gameId, relay, fresh)) {
+				return watch(gameId, webSocket, context, binary); //un altro spettatore ha creato il relay nel frattempo
+			}
+			gameService.watchGameAsync(gameId, fresh).whenComplete((found, ex) -> {
+				if (ex != null || !found) { //partita inesistente o repository non disponibile
+					fresh.close();
+					relays.remove(gameId, fresh);
+				}
+				if (ex != null) {
+					fresh.registered.completeExceptionally(ex);
+				} else {
+					fresh.registered.complete(found);
+				}
+			});
+			relay = fresh;
+		}
+		var current = relay;
+		Executor onContext = command -> context.runOnContext(v -> command.run());
+		return current.registered.handleAsync((found, ex) -> {
+			if (ex != null) {
+				return CompletableFuture.<Watch>failedFuture(ex);
+			}
+			if (!found) {
+				return CompletableFuture.<Watch>completedFuture(null);
+			}
+			var spectator = new Spectator(webSocket, binary);
+			var group = current.add(spectator, context);
+			if (group == null) { //relay chiuso nel frattempo: se ne crea uno nuovo
+				return watch(gameId, webSocket, context, binary);
+			}
+			spectators.incrementAndGet();
+			return CompletableFuture.completedFuture(new Watch(current, group, spectator));
+		}, onContext).thenCompose(Function.identity());
+	}
+
+	//rimuove lo spettatore (da chiamare sul contesto del websocket); l'ultimo spettatore rimuove il relay dalla partita
+	public void leave(Watch watch) {
+		spectators.decrementAndGet();
+		watch.group.members.remove(watch.spectator);
+		if (watch.relay.remove(watch.group)) {
+			relays.remove(watch.relay.gameId, watch.relay);
+			gameService.unwatchGame(watch.relay.gameId, watch.relay);
+		}
+	}
+
+	//numero di spettatori registrati
+	public int size() {
+		return spectators.get();
+	}
+
+	//numero di partite osservate
+	public int games() {
+		return relays.size();
+	}
+
+	//spettatori di una partita sullo stesso event loop (la lista viene usata solo dal thread del contesto)
+	private static final class Group {
+		private final Context context; //contesto (event loop) dei websocket
+		private final List<Spectator> members; //websocket del gruppo
+		private int count; //spettatori registrati, compresi quelli non ancora aggiunti alla lista (protetto dal lock del relay)
+
+		Group(Context context) {
+			this.context = context;
+			members = new ArrayList<>();
+		}
+
+		//scrive il frame su tutti i websocket del gruppo (sul contesto del gruppo)
+		void write(EventFrame frame) {
+			for (int i = members.size() - 1; i >= 0; i--) {
+				var s = members.get(i);
+				var ws = s.webSocket();
+				if (ws.isClosed()) {
+					members.remove(i);
+					WebSocketMetrics.CLOSED_DROPS.inc();
+				} else if (ws.writeQueueFull()) { //spettatore troppo lento
+					members.remove(i);
+					ws.close((short) 1008, "slow consumer");
+					WebSocketMetrics.SLOW_CONSUMERS.inc();
+				} else if (s.binary()) {
+					ws.writeBinaryMessage(frame.binary());
+					WebSocketMetrics.SPECTATOR_FRAMES.inc();
+				} else {
+					ws.writeTextMessage(frame.text());
+					WebSocketMetrics.SPECTATOR_FRAMES.inc();
+				}
+			}
+		}
+	}
+
+	//spettatore di una partita che inoltra gli eventi a tutti i websocket che la osservano (notificato con il lock della partita)
+	private static final class Relay implements GameObserver {
+		private final String gameId; //id della partita
+		private final HashMap<Context, Group> groups; //gruppi di spettatori per event loop (protetto dal lock del relay)
+		private final List<EventFrame> history; //frame già inviati, per gli spettatori che arrivano dopo (protetto dal lock del relay)
+		private int watchers; //numero di spettatori (protetto dal lock del relay)
+		private boolean closed; //relay rimosso dalla partita (protetto dal lock del relay)
+		private volatile boolean ended; //la partita è terminata
+		private final CompletableFuture<Boolean> registered; //registrazione sulla partita (false se la partita non esiste)
+
+		Relay(String gameId) {
+			this.gameId = gameId;
+			registered = new CompletableFuture<>();
+			groups = new HashMap<>();
+			history = new ArrayList<>(16);
+		}
+
+		//codifica l'evento una sola volta e lo consegna a ogni event loop con spettatori
+		public synchronized void notifyGameEvent(GameEvent ev) {
+			if (ev instanceof GameEnded) {
+				ended = true;
+			}
+			deliver(encode(ev));
+		}
+
+		//le mosse usano direttamente i frame in cache, senza costruire l'evento
+		@Override
+		public synchronized void newMove(String gameId, TTTSymbol symbol, int x, int y) {
+			deliver(EventFrame.newMove(symbol.toString(), x, y));
+		}
+
+		//registra il frame nella cronologia e lo accoda sugli event loop degli spettatori
+		private void deliver(EventFrame frame) {
+			history.add(frame);
+			for (var g: groups.values()) {
+				WebSocketMetrics.SPECTATOR_PENDING.incrementAndGet();
+				g.context.runOnContext(v -> {
+					WebSocketMetrics.SPECTATOR_PENDING.decrementAndGet();
+					g.write(frame);
+				});
+			}
+		}
+
+		//aggiunge uno spettatore; restituisce null se il relay è stato chiuso nel frattempo
+		synchronized Group add(Spectator spectator, Context context) {
+			if (closed) {
+				return null;
+			}
+			watchers++;
+			var group = groups.computeIfAbsent(context, Group::new);
+			group.count++;
+			var past = List.copyOf(history);
+			context.runOnContext(v -> { //accodato prima dei frame successivi: lo spettatore riceve gli eventi in ordine
+				group.members.add(spectator);
+				for (var frame: past) {
+					if (!spectator.webSocket().isClosed()) {
+						if (spectator.binary()) {
+							spectator.webSocket().writeBinaryMessage(frame.binary());
+						} else {
+							spectator.webSocket().writeTextMessage(frame.text());
+						}
+					}
+				}
+			});
+			return group;
+		}
+
+		//rimuove uno spettatore del gruppo; restituisce true se era l'ultimo (il relay viene chiuso)
+		synchronized boolean remove(Group group) {
+			if (--group.count == 0) {
+				groups.remove(group.context);
+			}
+			if (--watchers == 0) {
+				closed = true;
+				return true;
+			}
+			return false;
+		}
+
+		//chiude il relay (nessuno spettatore potrà più aggiungersi)
+		synchronized void close() {
+			closed = true;
+		}
+
+		boolean isEnded() {
+			return ended;
+		}
+
+		//codifica l'evento nel frame condiviso da tutti gli spettatori
+		private static EventFrame encode(GameEvent ev) {
+			if (ev instanceof NewMove) {
+				var e = (NewMove) ev;
+				return EventFrame.newMove(e.symbol(), e.x(), e.y());
+			} else if (ev instanceof GameStarted) {
+				return EventFrame.gameStarted();
+			} else if (ev instanceof GameEnded) {
+				return EventFrame.gameEnded(((GameEnded) ev).winner());
+			}
+			var e = (PlayerJoined) ev;
+			return EventFrame.playerJoined(e.symbol(), e.userId());
+		}
+	}
+}
@@ -1,21 +1,171 @@
 package ttt_game_service.infrastructure;
 
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import logging.AsyncAppender;
+import metrics.MetricsRegistry;
+import ttt_game_service.application.AccountRepository;
+import ttt_game_service.application.GameRepository;
+import ttt_game_service.application.GameService;
 import ttt_game_service.application.GameServiceImpl;
 
-//avvia il backend
+/*
+avvia il backend
+con -Dttt.instances=N (oppure "cores") vengono avviate N istanze del controller, una per core, e ogni partita viene assegnata a un event loop proprietario
+con -Dttt.games.dir=<cartella> le partite vengono salvate su un db durevole (event sourcing) e ricostruite al riavvio
+con -Dttt.games.store=<file> le partite 3x3 vengono salvate in slot di dimensione fissa in un file mappato in memoria (MappedGameRepository),
+dimensionato con -Dttt.games.capacity=N; le altre partite usano il repository indicato sopra
+con -Dttt.accounts.dir=<cartella> gli account vengono salvati su file (snapshot e log) invece che in memoria
+con -Dttt.repository.workers=N le chiamate asincrone ai repository vengono eseguite su un pool dedicato di N thread (RepositoryWorkers),
+per adapter che bloccano il chiamante; senza la proprietà ogni adapter usa le proprie varianti asincrone (quelli su file non bloccano)
+con -Dttt.cluster.node=<id> il processo è un nodo di un cluster (ClusterNode) e possiede solo una parte delle partite:
+-Dttt.cluster.seeds=n1=10.0.0.1:9080,n2=10.0.0.2:9080 elenca i nodi fondatori con l'indirizzo del loro listener interno (usato solo tra i nodi),
+-Dttt.cluster.secret=<segreto> è il segreto condiviso richiesto su ogni richiesta interna (obbligatorio) e -Dttt.http.port la porta pubblica
+del nodo (predefinita 8080); un nodo aggiunto in seguito indica anche il proprio indirizzo interno con -Dttt.cluster.address=10.0.0.3:9080
+ */
 public class TTTGameServiceMain {
 
+	static Logger logger = Logger.getLogger("[TicTacToe Main]");
 	static final int BACKEND_PORT = 8080; //porta sul quale il server ascolta le richiesta http
+	static final String INSTANCES_PROPERTY = "ttt.instances"; //proprietà di sistema con il numero di istanze del controller
+	static final String GAMES_DIR_PROPERTY = "ttt.games.dir"; //proprietà di sistema con la cartella del db delle partite
+	static final String GAMES_STORE_PROPERTY = "ttt.games.store"; //proprietà di sistema con il file degli slot delle partite
+	static final String GAMES_CAPACITY_PROPERTY = "ttt.games.capacity"; //proprietà di sistema con il numero di partite previste nel file degli slot
+	static final long DEFAULT_GAMES_CAPACITY = 1_000_000;
+	static final String ACCOUNTS_DIR_PROPERTY = "ttt.accounts.dir"; //proprietà di sistema con la cartella del db degli account
+	static final String REPOSITORY_WORKERS_PROPERTY = "ttt.repository.workers"; //proprietà di sistema con i thread del pool dei repository
+	static final String CLUSTER_NODE_PROPERTY = "ttt.cluster.node"; //proprietà di sistema con l'id del nodo del cluster
+	static final String CLUSTER_SEEDS_PROPERTY = "ttt.cluster.seeds"; //proprietà di sistema con i nodi fondatori del cluster
+	static final String CLUSTER_ADDRESS_PROPERTY = "ttt.cluster.address"; //proprietà di sistema con l'indirizzo di un nodo non fondatore
+	static final String CLUSTER_SECRET_PROPERTY = "ttt.cluster.secret"; //proprietà di sistema con il segreto condiviso del cluster
+	static final String HTTP_PORT_PROPERTY = "ttt.http.port"; //proprietà di sistema con la porta pubblica di un nodo del cluster
+	static final int CLUSTER_PORT = 9080; //porta predefinita del listener interno di un nodo non fondatore
+	static final long EVICTION_PERIOD = 10_000; //intervallo (ms) tra due rimozioni di sessioni inattive e partite scadute
 
 	public static void main(String[] args) {
-		
+
 		var service = new GameServiceImpl(); //crea un'istanza del servizio principale
-		service.bindAccountRepository(new InMemoryAccountRepository()); //crea un repository degli account utente e lo collega al servizio principale
-		service.bindGameRepository(new InMemoryGameRepository()); //crea un repository delle partite e lo collega al servizio principale
-		var vertx = Vertx.vertx(); //crea un'istanza vertx per gestire le richieste http
-		var server = new VertxGameServiceController(service, BACKEND_PORT); //crea un'istanza del controller
-		vertx.deployVerticle(server); //avvia il server sulla porta specificata (esegue il metodo "start" del controller)
+		var accounts = accountRepository(); //crea un repository degli account utente
+		var games = gameRepository(); //crea un repository delle partite
+		var workers = System.getProperty(REPOSITORY_WORKERS_PROPERTY);
+		if (workers != null) { //adapter bloccanti: le chiamate asincrone passano dal pool dedicato
+			var pool = new RepositoryWorkers(Integer.parseInt(workers));
+			accounts = pool.accounts(accounts);
+			games = pool.games(games);
+			MetricsRegistry.global().gauge("ttt_repository_calls_queued", "Repository calls waiting for a worker thread", pool::queueDepth);
+		}
+		service.bindAccountRepository(accounts); //collega il repository degli account al servizio principale
+		service.bindGameRepository(games); //collega il repository delle partite al servizio principale
+		registerGauges(service);
+		int instances = instances(); //numero di istanze del controller
+		var self = clusterMember(); //questo nodo del cluster (null se il processo è da solo)
+		if (self != null) {
+			service.setNodeId(self.id()); //gli id delle sessioni indicano il nodo che le possiede
+			startClusterNode(service, self, instances);
+		} else if (instances <= 1) {
+			var vertx = Vertx.vertx(); //crea un'istanza vertx per gestire le richieste http
+			var server = new VertxGameServiceController(service, BACKEND_PORT); //crea un'istanza del controller
+			vertx.deployVerticle(server); //avvia il server sulla porta specificata (esegue il metodo "start" del controller)
+			scheduleEviction(vertx, service);
+		} else {
+			var options = new VertxOptions();
+			options.setEventLoopPoolSize(Math.max(options.getEventLoopPoolSize(), instances)); //almeno un event loop per istanza
+			var vertx = Vertx.vertx(options);
+			var localDelivery = new LocalEventDelivery(); //websocket aperti in questa jvm, condivisi tra le istanze del controller
+			var spectators = new SpectatorRelays(service); //spettatori delle partite, condivisi tra le istanze del controller
+			GameShards.deploy(vertx, instances).onSuccess(shards -> { //crea le partizioni delle partite (una per event loop)
+				vertx.deployVerticle(() -> new VertxGameServiceController(service, BACKEND_PORT, shards, localDelivery, spectators), new DeploymentOptions().setInstances(instances)); //avvia le istanze del controller, che condividono la porta http
+			});
+			scheduleEviction(vertx, service);
+		}
+	}
+
+	//avvia un nodo del cluster: le istanze del controller ascoltano sulla porta pubblica e sull'indirizzo interno del nodo, poi il nodo entra nel cluster
+	private static void startClusterNode(GameServiceImpl service, ClusterNode.Member self, int instances) {
+		var options = new VertxOptions();
+		options.setEventLoopPoolSize(Math.max(options.getEventLoopPoolSize(), instances));
+		var vertx = Vertx.vertx(options);
+		var cluster = new ClusterNode(vertx, self, ClusterNode.Member.parseList(System.getProperty(CLUSTER_SEEDS_PROPERTY, self.toString())), System.getProperty(CLUSTER_SECRET_PROPERTY));
+		int httpPort = Integer.getInteger(HTTP_PORT_PROPERTY, BACKEND_PORT);
+		var localDelivery = new LocalEventDelivery();
+		var spectators = new SpectatorRelays(service);
+		GameShards.deploy(vertx, Math.max(1, instances))
+			.compose(shards -> vertx.deployVerticle(() -> new VertxGameServiceController(service, httpPort, shards, localDelivery, spectators, cluster), new DeploymentOptions().setInstances(Math.max(1, instances))))
+			.compose(id -> cluster.join())
+			.onFailure(ex -> logger.log(Level.SEVERE, "node " + self.id() + " could not join the cluster: " + ex.getMessage()));
+		scheduleEviction(vertx, service);
+	}
+
+	//legge l'id e l'indirizzo di questo nodo del cluster (indirizzo preso dai fondatori o da -Dttt.cluster.address)
+	private static ClusterNode.Member clusterMember() {
+		var node = System.getProperty(CLUSTER_NODE_PROPERTY);
+		if (node == null) {
+			return null;
+		}
+		for (var seed: ClusterNode.Member.parseList(System.getProperty(CLUSTER_SEEDS_PROPERTY, ""))) {
+			if (seed.id().equals(node)) {
+				return seed;
+			}
+		}
+		return ClusterNode.Member.parse(node + "=" + System.getProperty(CLUSTER_ADDRESS_PROPERTY, "localhost:" + CLUSTER_PORT));
+	}
+
+	//registra le gauge e i contatori del pool di verifica delle password e del logger asincrono (esposti su /api/metrics)
+	private static void registerGauges(GameServiceImpl service) {
+		var registry = MetricsRegistry.global();
+		var credentialChecks = service.getCredentialChecks();
+		registry.gauge("ttt_credential_checks_queued", "Password checks waiting for a worker", credentialChecks::queueDepth);
+		registry.counter("ttt_credential_checks_rejected_total", "Password checks rejected because the queue was full", credentialChecks::rejectedCount);
+		registry.gauge("ttt_log_events_queued", "Log events waiting for the async appender", AsyncAppender::queuedEvents);
+		registry.gauge("ttt_log_events_dropped", "Log events dropped because the appender queue was full", AsyncAppender::droppedEvents);
 	}
-}
 
+	//rimuove periodicamente sessioni inattive e partite scadute (fuori dagli event loop)
+	private static void scheduleEviction(Vertx vertx, GameService service) {
+		vertx.setPeriodic(EVICTION_PERIOD, id -> vertx.executeBlocking(service::evictExpired, false));
+	}
+
+	//crea il repository degli account: su file se è indicata una cartella, altrimenti in memoria
+	private static AccountRepository accountRepository() {
+		var dir = System.getProperty(ACCOUNTS_DIR_PROPERTY);
+		if (dir == null) {
+			return new InMemoryAccountRepository();
+		}
+		var repo = new SimpleFileBasedAccountRepository(Path.of(dir));
+		Runtime.getRuntime().addShutdownHook(new Thread(repo::close)); //scrive le registrazioni in attesa prima di terminare
+		return repo;
+	}
+
+	//crea il repository delle partite: durevole se è indicata una cartella, altrimenti in memoria; con un file di slot le partite 3x3 vengono salvate lì
+	private static GameRepository gameRepository() {
+		var dir = System.getProperty(GAMES_DIR_PROPERTY);
+		GameRepository repo;
+		if (dir == null) {
+			repo = new InMemoryGameRepository();
+		} else {
+			var eventSourced = new EventSourcedGameRepository(Path.of(dir));
+			Runtime.getRuntime().addShutdownHook(new Thread(eventSourced::close)); //scrive gli eventi in attesa prima di terminare
+			repo = eventSourced;
+		}
+		var store = System.getProperty(GAMES_STORE_PROPERTY);
+		if (store == null) {
+			return repo;
+		}
+		var mapped = new MappedGameRepository(Path.of(store), Long.getLong(GAMES_CAPACITY_PROPERTY, DEFAULT_GAMES_CAPACITY), repo); //le altre partite restano nel repository precedente
+		Runtime.getRuntime().addShutdownHook(new Thread(mapped::close)); //forza gli slot su disco prima di terminare
+		return mapped;
+	}
+
+	//legge il numero di istanze da avviare
+	private static int instances() {
+		var value = System.getProperty(INSTANCES_PROPERTY, "1");
+		if (value.equals("cores")) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return Integer.parseInt(value);
+	}
+}
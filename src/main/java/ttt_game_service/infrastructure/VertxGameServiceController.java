@@ -1,23 +1,35 @@
 package ttt_game_service.infrastructure;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.VerticleBase;
-import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerResponse;
-import io.vertx.core.json.*;
 import io.vertx.ext.web.*;
+import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.StaticHandler;
+import logging.StructuredLogger;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
 import ttt_game_service.application.AccountAlreadyPresentException;
+import ttt_game_service.application.CredentialCheckRejectedException;
 import ttt_game_service.application.GameAlreadyPresentException;
 import ttt_game_service.application.GameService;
 import ttt_game_service.application.LoginFailedException;
 import ttt_game_service.domain.InvalidJoinException;
 import ttt_game_service.domain.InvalidMoveException;
 import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
 
 /*
 controller di backend (intermediario client <-> servizio principale):
@@ -25,200 +37,524 @@ client -> controller che utilizza un server -> servizio principale
  */
 public class VertxGameServiceController extends VerticleBase  {
 
+	static final long MAX_BODY_SIZE = 4096; //dimensione massima (byte) del body delle richieste rest
+	static final int TIMER_POOL = 1024; //timer delle richieste riusabili per rotta (oltre, quelli restituiti vengono scartati)
+	static final long MATCH_TIMEOUT = 30_000; //attesa massima (ms) di un avversario nel matchmaking
 	private int port; //porta su cui il server ascolta le richieste http
 	static Logger logger = Logger.getLogger("[TicTacToe Backend]");
+	static StructuredLogger log = StructuredLogger.getLogger("[TicTacToe Backend]"); //logger strutturato delle richieste (campionato per rotta)
 	private GameService gameService; //servizio principale
+	private GameShards shards; //partizioni che assegnano ogni partita al suo event loop proprietario
+	private LocalEventDelivery localDelivery; //websocket aperti in questa jvm (condiviso tra le istanze del controller)
+	private SpectatorRelays spectators; //spettatori delle partite (condiviso tra le istanze del controller)
+	private ClusterNode cluster; //nodo del cluster (null se il servizio è su un solo processo)
 	
 	public VertxGameServiceController(GameService service, int port) {
+		this(service, port, null, new LocalEventDelivery(), new SpectatorRelays(service));
+	}
+
+	//controller che instrada join e mosse verso l'event loop proprietario della partita (una istanza per core)
+	public VertxGameServiceController(GameService service, int port, GameShards shards, LocalEventDelivery localDelivery, SpectatorRelays spectators) {
+		this(service, port, shards, localDelivery, spectators, null);
+	}
+
+	//controller di un nodo del cluster: le richieste di partite e sessioni di altri nodi vengono inoltrate al proprietario
+	public VertxGameServiceController(GameService service, int port, GameShards shards, LocalEventDelivery localDelivery, SpectatorRelays spectators, ClusterNode cluster) {
 		this.port = port;
 		logger.setLevel(Level.INFO);
 		this.gameService = service;
+		this.shards = shards;
+		this.localDelivery = localDelivery;
+		this.spectators = spectators;
+		this.cluster = cluster;
 	}
 
 	//avvia il server (eseguito automaticamente alla chiamata "vertx.deployVerticle(server)")
 	public Future<?> start() {
 		logger.log(Level.INFO, "TTT Game Service initializing...");
+		if (shards == null) { //se non sono state definite partizioni, tutte le partite appartengono all'event loop di questo controller
+			shards = GameShards.local(context);
+		}
+		EventFrameCodec.register(vertx.eventBus()); //gli eventi di gioco viaggiano sull'event bus come frame già codificati
 		HttpServer server = vertx.createHttpServer(); //crea un'istanza del server http
 		
 		Router router = Router.router(vertx); //crea una rotta che gestisce le richiesta http
-		router.route(HttpMethod.POST, "/api/registerUser").handler(this::registerUser); //rotta per registrare un nuovo utente
-		router.route(HttpMethod.POST, "/api/login").handler(this::login); //rotta per il login di un utente
-		router.route(HttpMethod.POST, "/api/createGame").handler(this::createNewGame); //rotta per creare una nuova partita
-		router.route(HttpMethod.POST, "/api/joinGame").handler(this::joinGame); //rotta per far entrare l'utente in una partita
-		router.route(HttpMethod.POST, "/api/makeAMove").handler(this::makeAMove); //rotta per eseguire una mossa
+		mountApiRoutes(router);
+		registerGauges();
+		EventLoopLagProbe.start(context); //misura il ritardo dell'event loop di questa istanza
 		this.handleEventSubscription(server); //registra un websocket handler al server per ascoltare le richieste del client
 
 		router.route("/public/*").handler(StaticHandler.create()); //gestisce le richieste del client che iniziano con "public", relative all'aspetto della pagina web
 
-		var fut = server.requestHandler(router).listen(port); //avvia il server sulla porta specificata
+		Future<?> fut = server.requestHandler(router).listen(port); //avvia il server sulla porta specificata
 		fut.onSuccess(res -> { //in caso di avvio con successo
 			logger.log(Level.INFO, "TTT Game Service ready - port: " + port); //stampa un messaggio di log
 		});
+		if (cluster != null) { //listener interno del cluster, separato da quello pubblico
+			fut = fut.compose(res -> startInternalServer());
+		}
 
 		return fut; //restituisce la future
 	}
 
-	//registra un nuovo utente
+	//rotte rest (sul listener pubblico e, in un cluster, su quello interno per le richieste inoltrate da altri nodi)
+	private void mountApiRoutes(Router router) {
+		router.route("/api/*").handler(BodyHandler.create(false).setBodyLimit(MAX_BODY_SIZE)); //raccoglie il body (anche se arriva in più chunk); oltre il limite risponde 413
+		router.route(HttpMethod.POST, "/api/registerUser").handler(timed("/api/registerUser", this::registerUser)); //rotta per registrare un nuovo utente
+		router.route(HttpMethod.POST, "/api/login").handler(timed("/api/login", this::login)); //rotta per il login di un utente
+		router.route(HttpMethod.POST, "/api/createGame").handler(timed("/api/createGame", this::createNewGame)); //rotta per creare una nuova partita
+		router.route(HttpMethod.POST, "/api/joinGame").handler(timed("/api/joinGame", this::joinGame)); //rotta per far entrare l'utente in una partita
+		router.route(HttpMethod.POST, "/api/makeAMove").handler(timed("/api/makeAMove", this::makeAMove)); //rotta per eseguire una mossa
+		router.route(HttpMethod.POST, "/api/playBot").handler(timed("/api/playBot", this::playBot)); //rotta per giocare contro il bot
+		router.route(HttpMethod.POST, "/api/findMatch").handler(timed("/api/findMatch", this::findMatch)); //rotta per cercare un avversario (matchmaking)
+		router.route(HttpMethod.GET, "/api/matchmaking/stats").handler(this::matchmakingStats); //rotta per le metriche del matchmaking
+		router.route(HttpMethod.GET, "/api/metrics").handler(this::metrics); //rotta per le metriche in formato prometheus
+	}
+
+	/*
+	avvia il listener interno del cluster sull'indirizzo del nodo: ogni richiesta deve portare il segreto del cluster (authenticate);
+	serve le rotte interne (appartenenza, eventi inoltrati, operazioni sulle partite di questo nodo) e le rotte rest inoltrate
+	 */
+	private Future<HttpServer> startInternalServer() {
+		Router internal = Router.router(vertx);
+		internal.route().handler(cluster::authenticate);
+		mountApiRoutes(internal);
+		internal.route("/internal/*").handler(BodyHandler.create(false).setBodyLimit(MAX_BODY_SIZE));
+		cluster.mountRoutes(internal, gameService, localDelivery, vertx.eventBus());
+		internal.route(HttpMethod.POST, "/internal/createGame").handler(this::createOwnedGame);
+		internal.route(HttpMethod.POST, "/internal/joinGame").handler(this::joinOwnedGame);
+		internal.route(HttpMethod.POST, "/internal/playBot").handler(this::playOwnedBotGame);
+		var self = cluster.self();
+		return vertx.createHttpServer().requestHandler(internal).listen(self.port(), self.host())
+			.onSuccess(res -> logger.log(Level.INFO, "TTT cluster listener ready - " + self.host() + ":" + self.port()));
+	}
+
+	/*
+	registra un nuovo utente (l'hash della password viene calcolato fuori dall'event loop)
+	il body è già stato raccolto per intero da BodyHandler (anche se arriva in più chunk) e viene decodificato direttamente dal buffer
+	 */
 	protected void registerUser(RoutingContext context) { //context è l'oggetto che rappresenta la richiesta http
-		logger.log(Level.INFO, "RegisterUser request");
-		context.request().handler(buf -> { //prende il body del messaggio http inviato dal client
-			JsonObject userInfo = buf.toJsonObject(); //converte il body in un oggetto json
-			logger.log(Level.INFO, "Payload: " + userInfo);
-			var userName = userInfo.getString("userName"); //estrae il valore del campo "userName"
-			var password = userInfo.getString("password"); //estrae il valore del campo "password"
-			var reply = new JsonObject(); //crea un oggetto json di risposta al client
-			try {
-				gameService.registerUser(userName, password); //registra l'utente nel db
-				reply.put("result", "ok"); //popola l'oggetto con un'informazione di successo
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (AccountAlreadyPresentException ex) {
-				reply.put("result", "error"); //popola l'oggetto con un'informazione di errore
-				reply.put("error", ex.getMessage()); //popola l'oggetto con la specifica dell'errore
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (Exception ex1) {
-				sendError(context.response()); //invia un errore al client
-			}
-		});
+		RestRequests.Credentials req;
+		try {
+			req = RestRequests.credentials(context.body().buffer()); //estrae i campi "userName" e "password"
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+			return;
+		}
+		if (forwarded(context, c -> c.accountOwner(req.userName()))) { //l'account appartiene a un altro nodo
+			return;
+		}
+		log.info("registerUser").kv("userName", req.userName()).emit(); //la password non viene passata al logger
+		Future.fromCompletionStage(gameService.registerUserAsync(req.userName(), req.password()), vertx.getOrCreateContext()) //registra l'utente nel db; la risposta torna sull'event loop
+			.onSuccess(account -> sendReply(context.response(), RestReplies.OK))
+			.onFailure(failure -> {
+				var ex = cause(failure);
+				if (ex instanceof AccountAlreadyPresentException) {
+					sendReply(context.response(), RestReplies.ERROR); //invia la risposta di errore al client
+				} else if (ex instanceof CredentialCheckRejectedException) {
+					sendBusy(context.response()); //il pool di verifica è saturo: il client può riprovare
+				} else {
+					sendError(context.response()); //invia un errore al client
+				}
+			});
 	}
 
-	//esegue il login di un utente
+	//esegue il login di un utente (la password viene verificata fuori dall'event loop)
 	protected void login(RoutingContext context) {
-		logger.log(Level.INFO, "Login request");
-		context.request().handler(buf -> { //prende il body del messaggio http inviato dal client
-			JsonObject userInfo = buf.toJsonObject(); //converte il body in un oggetto json
-			logger.log(Level.INFO, "Payload: " + userInfo);
-			var userName = userInfo.getString("userName"); //estrae il valore del campo "userName"
-			var password = userInfo.getString("password"); //estrae il valore del campo "password"
-			var reply = new JsonObject(); //crea un oggetto json di risposta al client
-			try {
-				var session = gameService.login(userName, password); //esegue il login dell'utente
-				reply.put("result", "ok"); //popola l'oggetto con un'informazione di successo
-				reply.put("sessionId", session.getSessionId()); //popola l'oggetto con l'informazione della sessione utente creata con il login
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (LoginFailedException ex) {
-				reply.put("result", "login-failed"); //popola l'oggetto con un'informazione di errore
-				reply.put("error", ex.getMessage()); //popola l'oggetto con la specifica dell'errore
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (Exception ex1) {
-				sendError(context.response()); //invia un errore al client
-			}			
-		});
+		RestRequests.Credentials req;
+		try {
+			req = RestRequests.credentials(context.body().buffer()); //estrae i campi "userName" e "password"
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+			return;
+		}
+		if (forwarded(context, c -> c.accountOwner(req.userName()))) { //l'account appartiene a un altro nodo
+			return;
+		}
+		log.info("login").kv("userName", req.userName()).emit(); //la password non viene passata al logger
+		Future.fromCompletionStage(gameService.loginAsync(req.userName(), req.password()), vertx.getOrCreateContext()) //esegue il login dell'utente; la risposta torna sull'event loop
+			.onSuccess(session -> sendReply(context.response(), RestReplies.okWith("sessionId", session.getSessionId()))) //risponde con la sessione utente creata con il login
+			.onFailure(failure -> {
+				var ex = cause(failure);
+				if (ex instanceof LoginFailedException) {
+					sendReply(context.response(), RestReplies.LOGIN_FAILED); //invia la risposta di errore al client
+				} else if (ex instanceof CredentialCheckRejectedException) {
+					sendBusy(context.response()); //il pool di verifica è saturo: il client può riprovare
+				} else {
+					sendError(context.response()); //invia un errore al client
+				}
+			});
+	}
+
+	//restituisce l'eccezione originale di un'operazione asincrona
+	static Throwable cause(Throwable failure) {
+		return (failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure;
 	}
 
 	//crea una nuova partita
 	protected void createNewGame(RoutingContext context) {
-		logger.log(Level.INFO, "CreateNewGame request - " + context.currentRoute().getPath());
-		context.request().handler(buf -> { //prende il body del messaggio http inviato dal client
-			JsonObject userInfo = buf.toJsonObject(); //converte il body in un oggetto json
-			logger.log(Level.INFO, "Payload: " + userInfo);
-			var sessionId = userInfo.getString("sessionId"); //estrae il valore del campo "sessionId"
-			var reply = new JsonObject(); //crea un oggetto json di risposta al client
-			try {
-				var session = gameService.getUserSession(sessionId); //recupera la sessione dell'utente
-				var gameId = userInfo.getString("gameId"); //estrae il valore del campo "gameId"
-				session.createNewGame(gameId); //crea una partita
-				reply.put("result", "ok"); //popola l'oggetto con un'informazione di successo
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (GameAlreadyPresentException ex) {
-				reply.put("result", "error"); //popola l'oggetto con un'informazione di errore
-				reply.put("error", "game-already-present"); //popola l'oggetto con la specifica dell'errore
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (Exception ex1) {
-				sendError(context.response()); //invia un errore al client
-			}			
-		});		
+		try {
+			var req = RestRequests.newGame(context.body().buffer()); //estrae i campi "sessionId", "gameId" e (facoltativi) "width", "height", "winLength"
+			if (forwarded(context, c -> ClusterNode.nodeOf(req.sessionId()))) { //la sessione appartiene a un altro nodo
+				return;
+			}
+			log.info("createGame").kv("sessionId", req.sessionId()).kv("gameId", req.gameId()).emit();
+			var session = gameService.getUserSession(req.sessionId()); //recupera la sessione dell'utente
+			if (session == null) {
+				sendReply(context.response(), RestReplies.UNKNOWN_SESSION);
+				return;
+			}
+			if (forwarded(context, c -> c.gameOwner(req.gameId()), "/internal/createGame", context.body().buffer())) { //la partita verrà creata dal nodo proprietario
+				return;
+			}
+			replyCreated(context, session.createNewGameAsync(req.gameId(), req.board())); //crea una partita; la risposta parte quando la partita è salvata
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+		} catch (Exception ex1) {
+			sendError(context.response()); //invia un errore al client
+		}
+	}
+
+	//risponde alla creazione di una partita quando il repository l'ha salvata (sull'event loop della richiesta)
+	private void replyCreated(RoutingContext context, CompletableFuture<Void> created) {
+		Future.fromCompletionStage(created, vertx.getOrCreateContext())
+			.onSuccess(v -> sendReply(context.response(), RestReplies.OK)) //invia la risposta al client
+			.onFailure(failure -> {
+				if (cause(failure) instanceof GameAlreadyPresentException) {
+					sendReply(context.response(), RestReplies.GAME_ALREADY_PRESENT); //invia la risposta di errore al client
+				} else {
+					sendError(context.response()); //invia un errore al client
+				}
+			});
 	}
 
 	//consente a un utente di unirsi a una partita
 	protected void joinGame(RoutingContext context) {
-		logger.log(Level.INFO, "JoinGame request - " + context.currentRoute().getPath());
-		context.request().handler(buf -> { //prende il body del messaggio http inviato dal client
-			JsonObject joinInfo = buf.toJsonObject(); //converte il body in un oggetto json
-			logger.log(Level.INFO, "Join info: " + joinInfo);
-			String sessionId = joinInfo.getString("sessionId"); //estrae il valore del campo "sessionId"
-			String gameId = joinInfo.getString("gameId"); //estrae il valore del campo "gameId"
-			String symbol = joinInfo.getString("symbol"); //estrae il valore del campo "symbol"
-
-			var reply = new JsonObject(); //crea un oggetto json di risposta al client
-			try {
-				var session = gameService.getUserSession(sessionId); //recupera la sessione dell'utente
-				var playerSession = session.joinGame(gameId, symbol.equals("X") ? TTTSymbol.X : TTTSymbol.O, new VertxPlayerSessionEventObserver(vertx.eventBus())); //esegue il join dell'utente nella partita
-				reply.put("playerSessionId", playerSession.getId()); //popola l'oggetto con l'informazione della sessione giocatore creata con il join
-				reply.put("result", "ok"); //popola l'oggetto con un'informazione di successo
-				sendReply(context.response(), reply);
-			} catch (InvalidJoinException  ex) {
-				reply.put("result", "error"); //popola l'oggetto con un'informazione di errore
-				reply.put("error", ex.getMessage()); //popola l'oggetto con la specifica dell'errore
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (Exception ex1) {
-				sendError(context.response()); //invia un errore al client
-			}			
+		RestRequests.Join req;
+		try {
+			req = RestRequests.join(context.body().buffer()); //estrae i campi "sessionId", "gameId" e "symbol"
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+			return;
+		}
+		if (forwarded(context, c -> ClusterNode.nodeOf(req.sessionId()))) { //la sessione appartiene a un altro nodo
+			return;
+		}
+		log.info("joinGame").kv("sessionId", req.sessionId()).kv("gameId", req.gameId()).kv("symbol", req.symbol()).emit();
+		var session = gameService.getUserSession(req.sessionId()); //recupera la sessione dell'utente
+		if (session == null) {
+			sendReply(context.response(), RestReplies.UNKNOWN_SESSION);
+			return;
+		}
+		var remoteJoin = new RestRequests.RemoteJoin(session.getUserId().id(), req.gameId(), req.symbol());
+		if (forwarded(context, c -> existingGameOwner(c, req.gameId()), "/internal/joinGame", RestRequests.encode(remoteJoin))) { //la partita si trova su un altro nodo
+			return;
+		}
+		var notifier = new VertxPlayerSessionEventObserver(vertx.eventBus(), localDelivery); //crea l'observer che notifica il giocatore
+		var symbol = req.symbol().equals("X") ? TTTSymbol.X : TTTSymbol.O;
+		var joined = session.joinGameAsync(req.gameId(), symbol, notifier, shards.executor(req.gameId())); //recupera la partita senza bloccare ed esegue il join sull'event loop proprietario
+		Future.fromCompletionStage(joined, vertx.getOrCreateContext()) //la risposta parte dall'event loop della richiesta
+			.onSuccess(playerSession -> sendReply(context.response(), RestReplies.okWith("playerSessionId", playerSession.getId()))) //risponde con la sessione giocatore creata con il join
+			.onFailure(ex -> {
+				if (cause(ex) instanceof InvalidJoinException) {
+					sendReply(context.response(), RestReplies.ERROR); //invia la risposta di errore al client
+				} else {
+					sendError(context.response()); //invia un errore al client
+				}
+			});
+	}
+
+	//crea una partita contro il bot: l'utente entra con il simbolo scelto (il bot muove sull'event loop proprietario della partita)
+	protected void playBot(RoutingContext context) {
+		RestRequests.Join req;
+		try {
+			req = RestRequests.join(context.body().buffer()); //estrae i campi "sessionId", "gameId" e "symbol"
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+			return;
+		}
+		if (forwarded(context, c -> ClusterNode.nodeOf(req.sessionId()))) { //la sessione appartiene a un altro nodo
+			return;
+		}
+		log.info("playBot").kv("sessionId", req.sessionId()).kv("gameId", req.gameId()).kv("symbol", req.symbol()).emit();
+		var session = gameService.getUserSession(req.sessionId()); //recupera la sessione dell'utente
+		if (session == null) {
+			sendReply(context.response(), RestReplies.UNKNOWN_SESSION);
+			return;
+		}
+		var remoteJoin = new RestRequests.RemoteJoin(session.getUserId().id(), req.gameId(), req.symbol());
+		if (forwarded(context, c -> c.gameOwner(req.gameId()), "/internal/playBot", RestRequests.encode(remoteJoin))) { //la partita verrà creata dal nodo proprietario
+			return;
+		}
+		var notifier = new VertxPlayerSessionEventObserver(vertx.eventBus(), localDelivery); //crea l'observer che notifica il giocatore
+		var symbol = req.symbol().equals("X") ? TTTSymbol.X : TTTSymbol.O;
+		var played = session.playAgainstBotAsync(req.gameId(), symbol, notifier, shards.executor(req.gameId())); //crea la partita senza bloccare; join e mosse del bot sull'event loop proprietario
+		Future.fromCompletionStage(played, vertx.getOrCreateContext()) //la risposta parte dall'event loop della richiesta
+			.onSuccess(playerSession -> sendReply(context.response(), RestReplies.okWith("playerSessionId", playerSession.getId())))
+			.onFailure(ex -> {
+				if (cause(ex) instanceof GameAlreadyPresentException) {
+					sendReply(context.response(), RestReplies.GAME_ALREADY_PRESENT);
+				} else if (cause(ex) instanceof InvalidJoinException) {
+					sendReply(context.response(), RestReplies.ERROR);
+				} else {
+					sendError(context.response());
+				}
+			});
+	}
+
+	/*
+	inserisce l'utente nella coda di matchmaking; la risposta arriva quando viene trovato un avversario (la partita è già creata e avviata)
+	la richiesta viene ritirata se il client chiude la connessione o se non si trova un avversario entro MATCH_TIMEOUT
+	 */
+	protected void findMatch(RoutingContext context) {
+		RestRequests.FindMatch req;
+		try {
+			req = RestRequests.findMatch(context.body().buffer()); //estrae i campi "sessionId" e "rating"
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+			return;
+		}
+		if (forwarded(context, c -> ClusterNode.nodeOf(req.sessionId()))) { //la sessione appartiene a un altro nodo (il matchmaking abbina gli utenti dello stesso nodo)
+			return;
+		}
+		log.info("findMatch").kv("sessionId", req.sessionId()).kv("rating", req.rating()).emit();
+		var session = gameService.getUserSession(req.sessionId()); //recupera la sessione dell'utente
+		if (session == null) {
+			sendReply(context.response(), RestReplies.UNKNOWN_SESSION);
+			return;
+		}
+		var response = context.response();
+		var notifier = new VertxPlayerSessionEventObserver(vertx.eventBus(), localDelivery); //gli eventi restano in attesa finché il client non apre il websocket
+		var ticket = session.findMatch(req.rating(), notifier);
+		long timer = vertx.setTimer(MATCH_TIMEOUT, id -> ticket.cancel()); //nessun avversario entro il tempo massimo
+		response.closeHandler(v -> ticket.cancel()); //il client ha chiuso la connessione
+		Future.fromCompletionStage(ticket.result(), vertx.getOrCreateContext()).onComplete(ar -> { //la risposta torna sull'event loop della richiesta
+			vertx.cancelTimer(timer);
+			if (response.closed() || response.ended()) {
+				return;
+			}
+			if (ar.succeeded()) {
+				var ps = ar.result();
+				sendReply(response, RestReplies.match(ps.getGameId(), ps.getId(), ps.getSymbol().toString()));
+			} else if (ar.cause() instanceof CancellationException) {
+				sendReply(response, RestReplies.NO_MATCH);
+			} else {
+				sendError(response);
+			}
 		});
 	}
 
-	//esegue una mossa
+	//restituisce le metriche del matchmaking (richieste in attesa e tempo fino all'abbinamento)
+	protected void matchmakingStats(RoutingContext context) {
+		sendReply(context.response(), RestReplies.matchmakingStats(gameService.matchmakingStats()));
+	}
+
+	//esegue una mossa (nessun albero json: decodifica tipizzata e risposte già codificate)
 	protected void makeAMove(RoutingContext context) {
-		logger.log(Level.INFO, "MakeAMove request - " + context.currentRoute().getPath());
-		context.request().handler(buf -> { //prende il body del messaggio http inviato dal client
-			var reply = new JsonObject(); //crea un oggetto json di risposta al client
-			try {
-				JsonObject moveInfo = buf.toJsonObject(); //converte il body in un oggetto json
-				logger.log(Level.INFO, "move info: " + moveInfo);
-				String playerSessionId = moveInfo.getString("playerSessionId"); //estrae il valore del campo "playerSessionId"
-				int x = Integer.parseInt(moveInfo.getString("x")); //estrae il valore del campo "x" e lo converte in un intero
-				int y = Integer.parseInt(moveInfo.getString("y")); //estrae il valore del campo "y" e lo converte in un intero
-				var ps = gameService.getPlayerSession(playerSessionId); //recupera la sessione del giocatore
-
-				ps.makeMove(x, y); //fa eseguire al giocatore una mossa
-				reply.put("result", "accepted"); //popola l'oggetto con un'informazione di successo
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (InvalidMoveException ex) {
-				reply.put("result", "invalid-move"); //popola l'oggetto con un'informazione di errore
-				sendReply(context.response(), reply); //invia la risposta al client
-			} catch (Exception ex1) {
-				reply.put("result", ex1.getMessage()); //popola l'oggetto con la specifica dell'errore
-				try {
-					sendReply(context.response(), reply); //invia la risposta al client
-				} catch (Exception ex2) {
-					sendError(context.response()); //invia un errore al client
-				}				
+		RestRequests.Move req;
+		try {
+			req = RestRequests.move(context.body().buffer()); //estrae i campi "playerSessionId", "x" e "y" (numeri o stringhe)
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+			return;
+		}
+		if (forwarded(context, c -> ClusterNode.nodeOf(req.playerSessionId()))) { //la partita del giocatore si trova su un altro nodo
+			return;
+		}
+		log.info("makeAMove").kv("playerSessionId", req.playerSessionId()).kv("x", req.x()).kv("y", req.y()).emit();
+		var ps = gameService.getPlayerSession(req.playerSessionId()); //recupera la sessione del giocatore
+		if (ps == null) {
+			sendReply(context.response(), RestReplies.UNKNOWN_SESSION);
+			return;
+		}
+		shards.execute(ps.getGameId(), () -> { //fa eseguire al giocatore una mossa sull'event loop proprietario della partita
+			ps.makeMove(req.x(), req.y());
+			return null;
+		}).onComplete(ar -> {
+			if (ar.succeeded()) {
+				sendReply(context.response(), RestReplies.ACCEPTED); //mossa accettata
+			} else if (cause(ar.cause()) instanceof InvalidMoveException) {
+				sendReply(context.response(), RestReplies.INVALID_MOVE); //mossa non valida
+			} else { //il messaggio dell'eccezione non viene inviato al client
+				log.warning("makeAMove-failed").kv("playerSessionId", req.playerSessionId()).kv("error", String.valueOf(cause(ar.cause()))).emit();
+				sendReply(context.response(), RestReplies.INTERNAL_ERROR);
 			}
 		});
 	}
 
-	//registra un websocket handler al server
-	protected void handleEventSubscription(HttpServer server) {
-		server.webSocketHandler(webSocket -> { //registra un handlder per websocket
-			logger.log(Level.INFO, "New TTT subscription accepted.");
-			webSocket.textMessageHandler(openMsg -> { //imposta un handler per i messaggi ricevuti dal client
-				logger.log(Level.INFO, "For game: " + openMsg);
-				JsonObject obj = new JsonObject(openMsg); //converte il messaggio ricevuto dal client in un oggetto json
-				String playerSessionId = obj.getString("playerSessionId"); //estrae il valore del campo "playerSessionId"
-
-				EventBus eb = vertx.eventBus(); //recupera l'event bus di vertx
-				eb.consumer(playerSessionId, msg -> { //iscrive l'event bus all'indirizzo creato e, ogni volta che arriva un messaggio all'event bus...
-					JsonObject ev = (JsonObject) msg.body(); //...lo converte in json
-					logger.log(Level.INFO, "Event: " + ev.encodePrettily());
-					webSocket.writeTextMessage(ev.encodePrettily()); //lo invia al client tramite websocket
-				});
-				
-				var ps = gameService.getPlayerSession(playerSessionId); //recupera la sessione del giocatore corrispondente al servizio principale (ovvero l'utente in prima persona)
-				var en = ps.getPlayerSessionEventNotifier(); //recupera il notificatore di eventi della sessione del giocatore
-				en.enableEventNotification(playerSessionId); //abilita la notifica degli eventi per questa sessione sul bus con l'indirizzo "playerSessionId"
+	//crea una partita di questo nodo (richiesta inoltrata dal nodo della sessione, che ha già verificato l'utente)
+	protected void createOwnedGame(RoutingContext context) {
+		try {
+			var req = RestRequests.newGame(context.body().buffer());
+			replyCreated(context, gameService.createNewGameAsync(req.gameId(), req.board()));
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+		}
+	}
+
+	//fa entrare un utente di un altro nodo in una partita di questo nodo (se la partita non è qui, prova il proprietario precedente)
+	protected void joinOwnedGame(RoutingContext context) {
+		RestRequests.RemoteJoin req;
+		try {
+			req = RestRequests.remoteJoin(context.body().buffer()); //estrae i campi "userName", "gameId" e "symbol"
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+			return;
+		}
+		if (forwarded(context, c -> gameService.hasGame(req.gameId()) ? null : c.previousGameOwner(req.gameId()))) { //partita creata prima dell'ingresso di questo nodo
+			return;
+		}
+		if (!gameService.hasGame(req.gameId())) {
+			sendReply(context.response(), RestReplies.ERROR);
+			return;
+		}
+		var notifier = new VertxPlayerSessionEventObserver(vertx.eventBus(), localDelivery); //gli eventi raggiungono il websocket tramite l'event bus (anche su un altro nodo)
+		var symbol = req.symbol().equals("X") ? TTTSymbol.X : TTTSymbol.O;
+		var joined = gameService.joinGameAsync(new UserId(req.userName()), req.gameId(), symbol, notifier, shards.executor(req.gameId()));
+		Future.fromCompletionStage(joined, vertx.getOrCreateContext())
+			.onSuccess(playerSession -> sendReply(context.response(), RestReplies.okWith("playerSessionId", playerSession.getId())))
+			.onFailure(ex -> {
+				if (cause(ex) instanceof InvalidJoinException) {
+					sendReply(context.response(), RestReplies.ERROR);
+				} else {
+					sendError(context.response());
+				}
 			});
-		});
 	}
 
-	//invia la risposta al client
-	private void sendReply(HttpServerResponse response, JsonObject reply) {
-		response.putHeader("content-type", "application/json"); //imposta l’header del messaggio http come json
-		response.end(reply.toString()); //converte l’oggetto json in stringa, lo invia al client e chiude la risposta
+	//crea su questo nodo una partita contro il bot per un utente di un altro nodo
+	protected void playOwnedBotGame(RoutingContext context) {
+		RestRequests.RemoteJoin req;
+		try {
+			req = RestRequests.remoteJoin(context.body().buffer());
+		} catch (MalformedRequestException ex) {
+			sendBadRequest(context.response());
+			return;
+		}
+		var notifier = new VertxPlayerSessionEventObserver(vertx.eventBus(), localDelivery);
+		var symbol = req.symbol().equals("X") ? TTTSymbol.X : TTTSymbol.O;
+		var played = gameService.playAgainstBotAsync(new UserId(req.userName()), req.gameId(), symbol, notifier, shards.executor(req.gameId()));
+		Future.fromCompletionStage(played, vertx.getOrCreateContext())
+			.onSuccess(playerSession -> sendReply(context.response(), RestReplies.okWith("playerSessionId", playerSession.getId())))
+			.onFailure(ex -> {
+				if (cause(ex) instanceof GameAlreadyPresentException) {
+					sendReply(context.response(), RestReplies.GAME_ALREADY_PRESENT);
+				} else if (cause(ex) instanceof InvalidJoinException) {
+					sendReply(context.response(), RestReplies.ERROR);
+				} else {
+					sendError(context.response());
+				}
+			});
+	}
+
+	//nodo che possiede una partita esistente: il proprietario nell'anello attuale o, se è questo nodo e la partita non c'è, il proprietario precedente
+	private String existingGameOwner(ClusterNode c, String gameId) {
+		var owner = c.gameOwner(gameId);
+		if (!owner.equals(c.nodeId()) || gameService.hasGame(gameId)) {
+			return owner;
+		}
+		return c.previousGameOwner(gameId);
+	}
+
+	//in un cluster inoltra la richiesta al nodo indicato, se non è questo; restituisce true se la risposta arriverà dal nodo indicato
+	private boolean forwarded(RoutingContext context, Function<ClusterNode, String> node) {
+		return cluster != null && cluster.forward(context, node.apply(cluster));
+	}
+
+	//come sopra, su una rotta interna del nodo indicato
+	private boolean forwarded(RoutingContext context, Function<ClusterNode, String> node, String path, Buffer body) {
+		return cluster != null && cluster.forward(context, node.apply(cluster), path, body);
+	}
+
+	/*
+	registra un websocket handler al server
+	ogni websocket è un canale bidirezionale (WebSocketChannel): riceve gli eventi della sessione giocatore e accetta i comandi del client
+	 */
+	protected void handleEventSubscription(HttpServer server) {
+		server.webSocketHandler(webSocket -> new WebSocketChannel(webSocket, vertx.getOrCreateContext(), gameService, shards, localDelivery, spectators, vertx.eventBus(), cluster));
+	}
+
+	/*
+	misura la latenza della rotta: dall'arrivo della richiesta (body già raccolto) alla fine della risposta, anche se arriva da un altro thread
+	l'istogramma viene recuperato una volta sola, la registrazione non usa lock; l'end handler di ogni richiesta è un timer
+	preso da un pool della rotta e restituito alla fine della risposta (nessuna allocazione per richiesta a regime)
+	 */
+	private Handler<RoutingContext> timed(String route, Handler<RoutingContext> handler) {
+		var latency = MetricsRegistry.global().histogram("ttt_http_request_duration_seconds", "Latency of the REST routes, from the complete request body to the end of the response", "route", route);
+		var timers = new ArrayBlockingQueue<RequestTimer>(TIMER_POOL);
+		return context -> {
+			var timer = timers.poll();
+			if (timer == null) {
+				timer = new RequestTimer(latency, timers);
+			}
+			timer.start = System.nanoTime();
+			context.addEndHandler(timer);
+			handler.handle(context);
+		};
+	}
+
+	//end handler riusabile: registra la durata della richiesta e torna nel pool della rotta
+	private static final class RequestTimer implements Handler<AsyncResult<Void>> {
+
+		private final Histogram latency; //istogramma della rotta
+		private final ArrayBlockingQueue<RequestTimer> pool; //timer liberi della rotta
+		private long start; //inizio della richiesta in corso (ns)
+
+		RequestTimer(Histogram latency, ArrayBlockingQueue<RequestTimer> pool) {
+			this.latency = latency;
+			this.pool = pool;
+		}
+
+		public void handle(AsyncResult<Void> ar) {
+			latency.record(System.nanoTime() - start);
+			pool.offer(this);
+		}
+	}
+
+	//registra le gauge e i contatori del servizio e dei websocket (lette solo durante l'esposizione; ogni istanza del controller le sostituisce con le stesse sorgenti)
+	private void registerGauges() {
+		var registry = MetricsRegistry.global();
+		registry.gauge("ttt_user_sessions", "Live user sessions", () -> gameService.registryGauges().userSessions());
+		registry.gauge("ttt_player_sessions", "Live player sessions", () -> gameService.registryGauges().playerSessions());
+		registry.gauge("ttt_games", "Games in the registry by state", () -> gameService.registryGauges().waitingGames(), "state", "waiting_for_players");
+		registry.gauge("ttt_games", "Games in the registry by state", () -> gameService.registryGauges().startedGames(), "state", "started");
+		registry.gauge("ttt_games", "Games in the registry by state", () -> gameService.registryGauges().finishedGames(), "state", "finished");
+		registry.gauge("ttt_matchmaking_waiting", "Players waiting in the matchmaking queue", () -> gameService.matchmakingStats().waiting());
+		registry.counter("ttt_matchmaking_matches_total", "Games created by the matchmaking queue", () -> gameService.matchmakingStats().matches());
+		registry.gauge("ttt_ws_player_sockets", "Player websockets open in this JVM", localDelivery::size);
+		registry.gauge("ttt_ws_spectators", "Spectator websockets", spectators::size);
+		registry.gauge("ttt_ws_spectated_games", "Games with at least one spectator", spectators::games);
+		WebSocketMetrics.register();
+	}
+
+	//metriche in formato testo prometheus
+	protected void metrics(RoutingContext context) {
+		context.response().putHeader(RestReplies.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8").end(MetricsRegistry.global().scrape());
+	}
+
+	//invia la risposta (già codificata) al client
+	private void sendReply(HttpServerResponse response, Buffer reply) {
+		response.putHeader(RestReplies.CONTENT_TYPE, RestReplies.APPLICATION_JSON); //imposta l’header del messaggio http come json
+		response.end(reply); //invia la risposta al client e chiude la risposta
+	}
+
+	//invia una risposta di richiesta non valida al client (400)
+	private void sendBadRequest(HttpServerResponse response) {
+		response.setStatusCode(400);
+		sendReply(response, RestReplies.BAD_REQUEST);
+	}
+
+	//invia una risposta di servizio occupato al client (503)
+	private void sendBusy(HttpServerResponse response) {
+		response.setStatusCode(503); //imposta lo stato della risposta a 503 (servizio temporaneamente non disponibile)
+		response.putHeader("retry-after", "1"); //il client può riprovare dopo un secondo
+		sendReply(response, RestReplies.BUSY);
 	}
 
 	//invia una risposta di errore al client
 	private void sendError(HttpServerResponse response) {
 		response.setStatusCode(500);  //imposta lo stato della risposta a 500 (errore)
-		response.putHeader("content-type", "application/json"); //imposta l’header del messaggio http come json
+		response.putHeader(RestReplies.CONTENT_TYPE, RestReplies.APPLICATION_JSON); //imposta l’header del messaggio http come json
 		response.end(); //chiude la risposta
 	}
 }
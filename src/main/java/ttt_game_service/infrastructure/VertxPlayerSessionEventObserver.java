@@ -3,78 +3,82 @@ package ttt_game_service.infrastructure;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
-import java.util.logging.Logger;
 import exagonal.Adapter;
 import io.vertx.core.eventbus.EventBus;
-import io.vertx.core.json.JsonObject;
+import logging.StructuredLogger;
+import ttt_game_service.application.GameOutcome;
 import ttt_game_service.application.PlayerSessionEventObserver;
 
 /*
 implementazione della porta di uscita che collega l'architettura (l'applicazione) al client
 notifica gli eventi di una partita ai giocatori
+gli eventi vengono pubblicati come EventFrame già codificati e condivisi tra i destinatari (vedi EventFrameCodec):
+se il websocket della sessione è aperto in questa jvm l'evento gli viene consegnato direttamente, altrimenti passa dall'event bus
+gli eventi di gioco arrivano dall'event loop proprietario della partita, l'abilitazione da quello del websocket: i metodi sono sincronizzati
 */
 @Adapter
 public class VertxPlayerSessionEventObserver implements PlayerSessionEventObserver {
 
-	static Logger logger = Logger.getLogger("[VertxEventNotifierAdapter]");
+	static StructuredLogger log = StructuredLogger.getLogger("[VertxEventNotifierAdapter]");
 	private EventBus eventBus; //event bus di vertx
-	private List<JsonObject> eventBuffer; //lista di eventi in attesa sul buffer
+	private LocalEventDelivery localDelivery; //consegne dirette ai websocket di questa jvm
+	private List<EventFrame> eventBuffer; //lista di eventi in attesa sul buffer
 	private boolean channelOnBusReady; //flag che indica la disponibilità del canale sull'event bus
 	
-	public VertxPlayerSessionEventObserver(EventBus eventBus) {
+	public VertxPlayerSessionEventObserver(EventBus eventBus, LocalEventDelivery localDelivery) {
 		this.eventBus = eventBus;
-		eventBuffer = new LinkedList<JsonObject>();
+		this.localDelivery = localDelivery;
+		eventBuffer = new LinkedList<EventFrame>();
 		channelOnBusReady = false; 
 	}
 
 	//notifica il client che la partita è iniziata
-	public void gameStarted(String playerSessionId) {
-		logger.info("game-started for " + playerSessionId);
-		var evStarted = new JsonObject(); //crea un oggetto json rappresentativo dell'evento inizio partita
-		evStarted.put("event", "game-started"); //aggiunge all'oggetto json il nome dell'evento
-		if (channelOnBusReady) { //se il canale sull'event bus è pronto (il client è pronto a ricevere messaggi)
-			eventBus.publish(playerSessionId, evStarted); //pubblica l'evento sul bus all'indirizzo corrispondente a "playerSessionId"
-		} else { //altrimenti
-			eventBuffer.add(evStarted); //aggiunge l'evento al buffer temporaneo per inviarlo più tardi
-		}
+	public synchronized void gameStarted(String playerSessionId) {
+		log.info("game-started").kv("playerSessionId", playerSessionId).emit();
+		publish(playerSessionId, EventFrame.gameStarted()); //evento inizio partita (codificato una sola volta)
 	}					
 
 	//notifica il client di una nuova mossa eseguita
-	public void newMove(String playerSessionId, String who, int x, int y) {
-		var evMove = new JsonObject(); //crea un oggetto json
-		evMove.put("event", "new-move"); //popola l'oggetto con l'informazione "nuova mossa"
-		evMove.put("x", x); //popola l'oggetto con la coordinata "x" della mossa
-		evMove.put("y", y); //popola l'oggetto con la coordinata "y" della mossa
-		evMove.put("symbol", who); //popola l'oggetto con il simbolo del giocatore
-		if (channelOnBusReady) { //se il canale sull'event bus è pronto (il client è pronto a ricevere messaggi)
-			eventBus.publish(playerSessionId, evMove); //pubblica l'evento sul bus all'indirizzo corrispondente a "playerSessionId"
-		} else { //altrimenti
-			eventBuffer.add(evMove); //aggiunge l'evento al buffer temporaneo per inviarlo più tardi
-		}
+	public synchronized void newMove(String playerSessionId, String who, int x, int y) {
+		publish(playerSessionId, EventFrame.newMove(who, x, y)); //evento della mossa (condiviso da tutti i destinatari)
 	}
 
 	//notifica il client che la partita è terminata
-	public void gameEnded(String playerSessionId, Optional<String> winner) {
-		var evEnd = new JsonObject(); //crea un oggetto json
-		evEnd.put("event", "game-ended"); //popola l'oggetto con il nome
-		if (winner.isEmpty()) { //se non c'è un vincitore
-			evEnd.put("result", "tie");	//popola l'oggetto con l'informazione "pareggio"
-		} else { //altrimenti
-			evEnd.put("winner", winner.get()); //popola l'oggetto con l'informazione del vincitore
-		}				
-		if (channelOnBusReady) { //se il canale sull'event bus è pronto (il client è pronto a ricevere messaggi)
-			eventBus.publish(playerSessionId, evEnd); //pubblica l'evento sul bus all'indirizzo corrispondente a "playerSessionId"
+	public synchronized void gameEnded(String playerSessionId, Optional<String> winner) {
+		publish(playerSessionId, EventFrame.gameEnded(winner)); //evento di fine partita, pareggio o vincitore
+	}
+
+	//notifica il client che la partita è terminata; il frame viene codificato dal primo giocatore notificato e condiviso con gli altri
+	@Override
+	public synchronized void gameEnded(String playerSessionId, GameOutcome outcome) {
+		publish(playerSessionId, outcome.encoded(EventFrame.class, EventFrame::gameEnded));
+	}
+
+	//pubblica un evento se il canale è pronto, altrimenti lo conserva
+	private void publish(String playerSessionId, EventFrame frame) {
+		if (channelOnBusReady) { //se il canale è pronto (il client è pronto a ricevere messaggi)
+			deliver(playerSessionId, frame);
 		} else { //altrimenti
-			eventBuffer.add(evEnd); //aggiunge l'evento al buffer temporaneo per inviarlo più tardi
+			eventBuffer.add(frame); //aggiunge l'evento al buffer temporaneo per inviarlo più tardi
 		}
 	}
 
 	//attiva la consegna degli eventi al client
-	public void enableEventNotification(String playerSessionId) {
+	public synchronized void enableEventNotification(String playerSessionId) {
 		channelOnBusReady = true; //segnala che il canale sull'event bus è pronto
 		for (var ev: eventBuffer) { //per ogni evento presente nel buffer
-			eventBus.publish(playerSessionId, ev); //pubblica ciascun evento sul bus all'indirizzo corrispondente a "playerSessionId"
+			deliver(playerSessionId, ev); //consegna ciascun evento
 		}
 		eventBuffer.clear(); //svuota il buffer
 	}
+
+	//consegna l'evento al websocket locale o, se non è in questa jvm, lo pubblica sull'event bus all'indirizzo corrispondente a "playerSessionId"
+	private void deliver(String playerSessionId, EventFrame frame) {
+		if (localDelivery.deliver(playerSessionId, frame)) {
+			WebSocketMetrics.LOCAL_EVENTS.inc();
+		} else {
+			WebSocketMetrics.BUS_EVENTS.inc();
+			eventBus.publish(playerSessionId, frame);
+		}
+	}
 }
@@ -0,0 +1,287 @@
+package ttt_game_service.infrastructure;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import logging.StructuredLogger;
+import ttt_game_service.application.GameAlreadyPresentException;
+import ttt_game_service.application.GameService;
+import ttt_game_service.application.PlayerSession;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.InvalidJoinException;
+import ttt_game_service.domain.InvalidMoveException;
+import ttt_game_service.domain.TTTSymbol;
+
+/*
+canale bidirezionale su un websocket: il server invia gli eventi della sessione giocatore associata, il client invia comandi
+(createGame, joinGame, makeMove) che vengono eseguiti dagli stessi metodi del servizio usati dalle rotte rest e ricevono un ack
+il websocket viene associato a una sessione giocatore dal messaggio di apertura oppure dal primo joinGame riuscito;
+con watchGame il websocket diventa spettatore di una partita (al più una per websocket)
+alla chiusura vengono rimosse la consegna locale, la registrazione sull'event bus e quella da spettatore; un join completato
+dopo la chiusura non associa più il websocket (le registrazioni non verrebbero mai rimosse)
+in un cluster il websocket può essere associato a una sessione giocatore di un altro nodo: il proprietario inoltra gli eventi a questo nodo
+e le mosse vengono inoltrate al proprietario; createGame e joinGame agiscono solo su sessioni di questo nodo (le rotte rest inoltrano)
+tutti i metodi vengono eseguiti sul contesto del websocket
+ */
+class WebSocketChannel {
+
+	static StructuredLogger log = StructuredLogger.getLogger("[TicTacToe Backend]");
+	private final ServerWebSocket webSocket; //websocket del client
+	private final Context context; //contesto (event loop) del websocket
+	private final GameService gameService; //servizio principale
+	private final GameShards shards; //partizioni delle partite
+	private final LocalEventDelivery localDelivery; //consegne dirette ai websocket di questa jvm
+	private final EventBus eventBus; //event bus di vertx
+	private final SpectatorRelays spectators; //spettatori delle partite
+	private SpectatorRelays.Watch watch; //registrazione da spettatore (null se il websocket non osserva una partita)
+	private boolean watching; //watchGame in corso o completato (al più uno per websocket)
+	private PlayerSession playerSession; //sessione giocatore associata (null finché il websocket non è associato)
+	private LocalEventDelivery.Subscriber subscriber; //destinatario locale degli eventi
+	private MessageConsumer<EventFrame> consumer; //registrazione sull'event bus (eventi prodotti da altre istanze)
+	private final ClusterNode cluster; //nodo del cluster (null se il servizio è su un solo processo)
+	private String remoteSessionId; //sessione giocatore di un altro nodo associata al websocket (null se non presente)
+
+	WebSocketChannel(ServerWebSocket webSocket, Context context, GameService gameService, GameShards shards, LocalEventDelivery localDelivery, SpectatorRelays spectators, EventBus eventBus, ClusterNode cluster) {
+		this.webSocket = webSocket;
+		this.context = context;
+		this.gameService = gameService;
+		this.shards = shards;
+		this.localDelivery = localDelivery;
+		this.eventBus = eventBus;
+		this.spectators = spectators;
+		this.cluster = cluster;
+		webSocket.textMessageHandler(this::onMessage);
+		webSocket.closeHandler(v -> close());
+	}
+
+	//gestisce un messaggio del client
+	private void onMessage(String message) {
+		WebSocketCommand cmd;
+		try {
+			cmd = WebSocketCommand.decode(Buffer.buffer(message));
+		} catch (MalformedRequestException ex) {
+			ack(WebSocketCommand.NO_ID, "error", "error", "bad-request");
+			return;
+		}
+		switch (cmd.type()) {
+			case OPEN -> open(cmd);
+			case CREATE_GAME -> createGame(cmd);
+			case JOIN_GAME -> joinGame(cmd);
+			case MAKE_MOVE -> makeMove(cmd);
+			case WATCH_GAME -> watchGame(cmd);
+			default -> ack(cmd.id(), "error", "error", "unknown-command");
+		}
+	}
+
+	//messaggio di apertura: associa il websocket alla sessione giocatore (i messaggi di apertura successivi vengono ignorati)
+	private void open(WebSocketCommand cmd) {
+		if (playerSession != null || remoteSessionId != null || cmd.playerSessionId() == null) {
+			return;
+		}
+		if (isRemote(cmd.playerSessionId())) {
+			bindRemote(cmd.playerSessionId(), cmd.id(), cmd.binary());
+			return;
+		}
+		var ps = gameService.getPlayerSession(cmd.playerSessionId()); //recupera la sessione del giocatore
+		if (ps == null) {
+			ack(cmd.id(), "error", "error", "unknown-session");
+			return;
+		}
+		bind(ps, cmd.binary());
+	}
+
+	//comando createGame
+	private void createGame(WebSocketCommand cmd) {
+		log.info("createGame").kv("sessionId", cmd.sessionId()).kv("gameId", cmd.gameId()).kv("channel", "ws").emit();
+		var session = cmd.sessionId() == null ? null : gameService.getUserSession(cmd.sessionId()); //recupera la sessione dell'utente
+		if (session == null || cmd.gameId() == null) {
+			ack(cmd.id(), "error", "error", session == null ? "unknown-session" : "bad-request");
+			return;
+		}
+		Future.fromCompletionStage(session.createNewGameAsync(cmd.gameId(), BoardConfig.STANDARD), context) //l'ack parte quando la partita è salvata
+			.onSuccess(v -> ack(cmd.id(), "ok", null, null))
+			.onFailure(ex -> ack(cmd.id(), "error", "error", VertxGameServiceController.cause(ex) instanceof GameAlreadyPresentException ? "game-already-present" : "internal-error"));
+	}
+
+	//comando joinGame: se il websocket non è ancora associato, riceverà gli eventi della nuova sessione giocatore
+	private void joinGame(WebSocketCommand cmd) {
+		log.info("joinGame").kv("sessionId", cmd.sessionId()).kv("gameId", cmd.gameId()).kv("symbol", cmd.symbol()).kv("channel", "ws").emit();
+		var session = cmd.sessionId() == null ? null : gameService.getUserSession(cmd.sessionId()); //recupera la sessione dell'utente
+		if (session == null || cmd.gameId() == null || cmd.symbol() == null) {
+			ack(cmd.id(), "error", "error", session == null ? "unknown-session" : "bad-request");
+			return;
+		}
+		var notifier = new VertxPlayerSessionEventObserver(eventBus, localDelivery); //crea l'observer che notifica il giocatore
+		var symbol = cmd.symbol().equals("X") ? TTTSymbol.X : TTTSymbol.O;
+		var joined = session.joinGameAsync(cmd.gameId(), symbol, notifier, shards.executor(cmd.gameId())); //recupera la partita senza bloccare ed esegue il join sull'event loop proprietario
+		Future.fromCompletionStage(joined, context)
+			.onSuccess(ps -> {
+				ack(cmd.id(), "ok", "playerSessionId", ps.getId());
+				if (playerSession == null && !webSocket.isClosed()) { //chiuso durante il join: close() è già stato eseguito
+					bind(ps, cmd.binary());
+				}
+			})
+			.onFailure(ex -> ack(cmd.id(), "error", "error", VertxGameServiceController.cause(ex) instanceof InvalidJoinException ? null : "internal-error"));
+	}
+
+	//comando makeMove: usa la sessione giocatore associata al websocket (o quella indicata nel comando)
+	private void makeMove(WebSocketCommand cmd) {
+		if (!cmd.hasCoordinates()) { //come la rotta rest: coordinate mancanti
+			ack(cmd.id(), "error", "error", "bad-request");
+			return;
+		}
+		var remote = cmd.playerSessionId() != null ? cmd.playerSessionId() : remoteSessionId;
+		if (isRemote(remote)) {
+			makeRemoteMove(remote, cmd);
+			return;
+		}
+		var ps = playerSession;
+		if (cmd.playerSessionId() != null && (ps == null || !ps.getId().equals(cmd.playerSessionId()))) {
+			ps = gameService.getPlayerSession(cmd.playerSessionId());
+		}
+		if (ps == null) {
+			ack(cmd.id(), "error", "error", "unknown-session");
+			return;
+		}
+		log.info("makeAMove").kv("playerSessionId", ps.getId()).kv("x", cmd.x()).kv("y", cmd.y()).kv("channel", "ws").emit();
+		var player = ps;
+		shards.execute(ps.getGameId(), () -> { //esegue la mossa sull'event loop proprietario della partita
+			player.makeMove(cmd.x(), cmd.y());
+			return null;
+		}).onComplete(ar -> {
+			if (ar.succeeded()) {
+				ack(cmd.id(), "accepted", null, null);
+			} else if (VertxGameServiceController.cause(ar.cause()) instanceof InvalidMoveException) {
+				ack(cmd.id(), "invalid-move", null, null);
+			} else { //il messaggio dell'eccezione non viene inviato al client
+				log.warning("makeAMove-failed").kv("playerSessionId", player.getId()).kv("channel", "ws").kv("error", String.valueOf(VertxGameServiceController.cause(ar.cause()))).emit();
+				ack(cmd.id(), "error", "error", "internal-error");
+			}
+		});
+	}
+
+	//mossa su una sessione di un altro nodo: viene inoltrata alla rotta rest del proprietario e l'esito diventa l'ack
+	private void makeRemoteMove(String playerSessionId, WebSocketCommand cmd) {
+		var body = new JsonObject().put("playerSessionId", playerSessionId).put("x", cmd.x()).put("y", cmd.y()).toBuffer();
+		cluster.call(playerSessionId, "/api/makeAMove", body).onComplete(ar -> {
+			if (ar.failed()) {
+				ack(cmd.id(), "error", "error", "node-unavailable");
+				return;
+			}
+			var reply = new JsonObject(ar.result());
+			ack(cmd.id(), reply.getString("result"), reply.containsKey("error") ? "error" : null, reply.getString("error"));
+		});
+	}
+
+	//comando watchGame: l'ack precede lo stato attuale della partita e gli eventi successivi (eseguito sul contesto del websocket)
+	private void watchGame(WebSocketCommand cmd) {
+		log.info("watchGame").kv("gameId", cmd.gameId()).kv("channel", "ws").emit();
+		if (cmd.gameId() == null) {
+			ack(cmd.id(), "error", "error", "bad-request");
+			return;
+		}
+		if (watching) {
+			ack(cmd.id(), "error", "error", "already-watching");
+			return;
+		}
+		watching = true;
+		spectators.watch(cmd.gameId(), webSocket, context, cmd.binary()).whenComplete((w, ex) -> { //completato sul contesto del websocket, prima dei frame della partita
+			if (ex != null || w == null) {
+				watching = false;
+				ack(cmd.id(), "error", "error", ex != null ? "internal-error" : "unknown-game");
+			} else if (webSocket.isClosed()) { //chiuso durante la registrazione: close() è già stato eseguito
+				spectators.leave(w);
+			} else {
+				watch = w;
+				ack(cmd.id(), "ok", null, null);
+			}
+		});
+	}
+
+	//associa il websocket alla sessione giocatore: consegna locale, registrazione sull'event bus e abilitazione delle notifiche
+	private void bind(PlayerSession ps, boolean binary) {
+		var playerSessionId = ps.getId();
+		log.info("subscribe").kv("playerSessionId", playerSessionId).kv("format", binary ? "binary" : "text").emit();
+		playerSession = ps;
+		subscriber = LocalEventDelivery.webSocketSubscriber(webSocket, context, binary); //destinatario locale degli eventi
+		localDelivery.register(playerSessionId, subscriber);
+		consumer = eventBus.<EventFrame>consumer(playerSessionId, msg -> { //eventi prodotti da un'altra istanza
+			log.info("event").kv("playerSessionId", playerSessionId).emit();
+			subscriber.push(msg.body()); //evento già codificato, nessuna copia
+		});
+		ps.getPlayerSessionEventNotifier().enableEventNotification(playerSessionId); //abilita la notifica degli eventi per questa sessione
+	}
+
+	//associa il websocket a una sessione giocatore di un altro nodo: consegna locale e iscrizione presso il proprietario
+	private void bindRemote(String playerSessionId, long ackId, boolean binary) {
+		log.info("subscribe").kv("playerSessionId", playerSessionId).kv("format", binary ? "binary" : "text").kv("node", ClusterNode.nodeOf(playerSessionId)).emit();
+		remoteSessionId = playerSessionId;
+		subscriber = LocalEventDelivery.webSocketSubscriber(webSocket, context, binary);
+		localDelivery.register(playerSessionId, subscriber); //prima dell'iscrizione: gli eventi in attesa arrivano appena il proprietario la riceve
+		cluster.subscribe(playerSessionId).onComplete(ar -> {
+			if (ar.failed() || !ar.result()) {
+				localDelivery.unregister(playerSessionId, subscriber);
+				remoteSessionId = null;
+				ack(ackId, "error", "error", ar.failed() ? "node-unavailable" : "unknown-session");
+			}
+		});
+	}
+
+	//indica se la sessione giocatore appartiene a un altro nodo del cluster
+	private boolean isRemote(String playerSessionId) {
+		if (cluster == null) {
+			return false;
+		}
+		var node = ClusterNode.nodeOf(playerSessionId);
+		return node != null && !node.equals(cluster.nodeId());
+	}
+
+	//alla chiusura del websocket rimuove le registrazioni
+	private void close() {
+		unbind();
+		if (watch != null) {
+			spectators.leave(watch);
+			watch = null;
+		}
+	}
+
+	//rimuove l'associazione con la sessione giocatore (locale o di un altro nodo)
+	private void unbind() {
+		if (playerSession != null) {
+			localDelivery.unregister(playerSession.getId(), subscriber);
+			consumer.unregister();
+			playerSession = null;
+			consumer = null;
+		}
+		if (remoteSessionId != null) {
+			localDelivery.unregister(remoteSessionId, subscriber);
+			cluster.unsubscribe(remoteSessionId);
+			remoteSessionId = null;
+		}
+		subscriber = null;
+	}
+
+	//invia l'ack di un comando: {"ack": id, "result": ..., campo: valore}
+	private void ack(long id, String result, String field, String value) {
+		if (webSocket.isClosed()) {
+			return;
+		}
+		var sb = new StringBuilder(48);
+		sb.append("{\"ack\":");
+		if (id == WebSocketCommand.NO_ID) {
+			sb.append("null");
+		} else {
+			sb.append(id);
+		}
+		sb.append(",\"result\":\"").append(result).append('"');
+		if (field != null) {
+			sb.append(",\"").append(field).append("\":");
+			RestReplies.appendString(sb, value);
+		}
+		webSocket.writeTextMessage(sb.append('}').toString());
+	}
+}
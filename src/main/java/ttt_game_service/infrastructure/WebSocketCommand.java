@@ -0,0 +1,82 @@
+package ttt_game_service.infrastructure;
+
+import io.vertx.core.buffer.Buffer;
+
+/*
+messaggio ricevuto dal client sul websocket
+- apertura (senza "cmd"): {"playerSessionId": "...", "format": "binary"?} associa il websocket alla sessione giocatore
+- comando: {"cmd": "createGame" | "joinGame" | "makeMove" | "watchGame", "id": <id di correlazione>, ...campi del comando}
+  createGame: sessionId, gameId; joinGame: sessionId, gameId, symbol (e format); makeMove: x, y (e playerSessionId, se il websocket non è già associato)
+  watchGame: gameId (e format), il websocket riceve gli eventi della partita in sola lettura
+ogni comando riceve un ack con lo stesso id: {"ack": <id>, "result": "...", ...}
+ */
+public record WebSocketCommand(Type type, long id, String sessionId, String gameId, String symbol, String playerSessionId, String format, int x, int y) {
+
+	//tipo di messaggio
+	public enum Type {OPEN, CREATE_GAME, JOIN_GAME, MAKE_MOVE, WATCH_GAME, UNKNOWN}
+
+	static final long NO_ID = -1; //comando senza id di correlazione
+	static final int NO_COORD = Integer.MIN_VALUE; //coordinata assente
+
+	//decodifica un messaggio del client con il parser in streaming (JsonBody)
+	public static WebSocketCommand decode(Buffer message) throws MalformedRequestException {
+		var type = Type.OPEN;
+		long id = NO_ID;
+		String sessionId = null;
+		String gameId = null;
+		String symbol = null;
+		String playerSessionId = null;
+		String format = null;
+		int x = NO_COORD;
+		int y = NO_COORD;
+		var r = new JsonBody(message);
+		for (var field = r.nextField(); field != null; field = r.nextField()) {
+			if (field.equals("cmd")) {
+				type = type(r.stringValue());
+			} else if (field.equals("id")) {
+				id = r.intValue();
+			} else if (field.equals("sessionId")) {
+				sessionId = r.stringValue();
+			} else if (field.equals("gameId")) {
+				gameId = r.stringValue();
+			} else if (field.equals("symbol")) {
+				symbol = r.stringValue();
+			} else if (field.equals("playerSessionId")) {
+				playerSessionId = r.stringValue();
+			} else if (field.equals("format")) {
+				format = r.stringValue();
+			} else if (field.equals("x")) {
+				x = r.intValue();
+			} else if (field.equals("y")) {
+				y = r.intValue();
+			} else {
+				r.skipValue();
+			}
+		}
+		return new WebSocketCommand(type, id, sessionId, gameId, symbol, playerSessionId, format, x, y);
+	}
+
+	//converte il nome del comando nel suo tipo
+	private static Type type(String cmd) {
+		if (cmd == null) {
+			return Type.UNKNOWN;
+		}
+		return switch (cmd) {
+			case "createGame" -> Type.CREATE_GAME;
+			case "joinGame" -> Type.JOIN_GAME;
+			case "makeMove" -> Type.MAKE_MOVE;
+			case "watchGame" -> Type.WATCH_GAME;
+			default -> Type.UNKNOWN;
+		};
+	}
+
+	//il comando indica entrambe le coordinate della mossa
+	public boolean hasCoordinates() {
+		return x != NO_COORD && y != NO_COORD;
+	}
+
+	//il client chiede gli eventi in formato binario
+	boolean binary() {
+		return "binary".equals(format);
+	}
+}
@@ -0,0 +1,41 @@
+package ttt_game_service.infrastructure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.Counter;
+import metrics.MetricsRegistry;
+
+/*
+metriche dei websocket (registro condiviso): frame scritti, frame scartati e frame in coda verso l'event loop del websocket
+un frame è "in coda" da quando viene accodato con runOnContext sul contesto del websocket fino alla sua scrittura
+ */
+final class WebSocketMetrics {
+
+	static final Counter PLAYER_FRAMES = pushed("player"); //frame scritti sui websocket dei giocatori
+	static final Counter SPECTATOR_FRAMES = pushed("spectator"); //frame scritti sui websocket degli spettatori
+	static final Counter CLOSED_DROPS = MetricsRegistry.global().counter("ttt_ws_frames_dropped_total", "Frames dropped because the websocket was already closed");
+	static final Counter SLOW_PLAYERS = MetricsRegistry.global().counter("ttt_ws_slow_players_closed_total", "Player websockets closed because their write queue was full");
+	static final Counter SLOW_CONSUMERS = MetricsRegistry.global().counter("ttt_ws_slow_consumers_closed_total", "Spectator websockets closed because their write queue was full");
+	static final Counter LOCAL_EVENTS = delivered("local"); //eventi consegnati direttamente a un websocket di questa jvm
+	static final Counter BUS_EVENTS = delivered("eventbus"); //eventi pubblicati sull'event bus
+	static final AtomicLong PLAYER_PENDING = pending("player"); //frame per i giocatori in coda verso l'event loop del websocket
+	static final AtomicLong SPECTATOR_PENDING = pending("spectator"); //scritture per gli spettatori in coda verso l'event loop del gruppo
+
+	private WebSocketMetrics() {}
+
+	//carica la classe: le metriche compaiono nell'esposizione anche prima del primo frame
+	static void register() {}
+
+	private static Counter pushed(String kind) {
+		return MetricsRegistry.global().counter("ttt_ws_frames_pushed_total", "Frames written to websockets", "kind", kind);
+	}
+
+	private static Counter delivered(String path) {
+		return MetricsRegistry.global().counter("ttt_player_events_total", "Player session events by delivery path", "delivery", path);
+	}
+
+	private static AtomicLong pending(String kind) {
+		var pending = new AtomicLong();
+		MetricsRegistry.global().gauge("ttt_ws_pending_frames", "Frames queued towards the websocket event loop and not yet written", pending::get, "kind", kind);
+		return pending;
+	}
+}
@@ -0,0 +1,88 @@
+package ttt_game_service_benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
+import ttt_game_service.domain.Account;
+import ttt_game_service.infrastructure.AccountSnapshot;
+import ttt_game_service.infrastructure.SimpleFileBasedAccountRepository;
+
+/*
+benchmark dell'avvio del repository degli account basato su file
+- binary: caricamento dello snapshot binario (memory mapping a blocchi in parallelo)
+- legacyJson: primo avvio con un db nel vecchio formato json (include la migrazione allo snapshot binario e gli hash delle password in chiaro,
+  calcolati con una sola iterazione: il benchmark misura il formato, non il costo dell'hash)
+il tempo di caricamento viene anche stampato dal repository nel log di avvio
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class AccountDBLoadBenchmark {
+
+	@Param({"1000000"})
+	public int accounts; //numero di account nel db
+
+	@Param({"binary", "legacyJson"})
+	public String format; //formato del db all'avvio
+
+	private Path dbDir; //cartella del db
+	private byte[] legacyContent; //contenuto del db json
+	private SimpleFileBasedAccountRepository repo;
+
+	@Setup(Level.Trial)
+	public void createDB() throws IOException {
+		dbDir = Files.createTempDirectory("ttt-accounts-bench");
+		var list = new ArrayList<Account>(accounts);
+		var json = new JsonArray();
+		for (int i = 0; i < accounts; i++) {
+			if (format.equals("legacyJson")) {
+				json.add(new JsonObject().put("userName", "user-" + i).put("password", "password-" + i));
+			} else {
+				list.add(new Account("user-" + i, "pbkdf2-sha256$210000$c2FsdC1zYWx0LXNhbHQ$aGFzaC0" + i)); //stessa forma di un hash reale
+			}
+		}
+		if (format.equals("legacyJson")) {
+			legacyContent = json.encodePrettily().getBytes();
+		} else {
+			AccountSnapshot.write(dbDir.resolve("users.db"), list);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void resetLegacyDB() throws IOException {
+		if (format.equals("legacyJson")) { //ripristina il db json da migrare
+			Files.deleteIfExists(dbDir.resolve("users.db"));
+			Files.write(dbDir.resolve("users.json"), legacyContent);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void closeRepo() {
+		repo.close();
+		repo = null;
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteDB() throws IOException {
+		try (var files = Files.walk(dbDir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	//avvio del repository
+	@Benchmark
+	public SimpleFileBasedAccountRepository load() {
+		repo = new SimpleFileBasedAccountRepository(dbDir, new Pbkdf2CredentialVerifier(1));
+		return repo;
+	}
+}
@@ -0,0 +1,46 @@
+package ttt_game_service_benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/*
+utilità comuni ai benchmark
+i log restano al livello di produzione (INFO): gli eventi abilitati vengono costruiti e accodati (il costo resta misurato),
+quelli di debug (ad esempio la mossa) no; nessuna riga viene stampata su console
+ */
+final class BenchmarkSupport {
+
+	private static PrintStream originalOut; //stream di output originale
+	private static Handler[] originalHandlers; //handler originali del logger radice
+
+	private BenchmarkSupport() {}
+
+	//disabilita la stampa dei log (handler di java.util.logging e System.out) senza cambiarne il livello
+	static void silenceOutput() {
+		var root = Logger.getLogger("");
+		if (originalHandlers == null) {
+			originalHandlers = root.getHandlers();
+		}
+		for (var handler: root.getHandlers()) {
+			root.removeHandler(handler);
+		}
+		originalOut = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	//ripristina lo stream di output e gli handler originali
+	static void restoreOutput() {
+		if (originalOut != null) {
+			System.setOut(originalOut);
+		}
+		if (originalHandlers != null) {
+			var root = Logger.getLogger("");
+			for (var handler: originalHandlers) {
+				root.addHandler(handler);
+			}
+			originalHandlers = null;
+		}
+	}
+}
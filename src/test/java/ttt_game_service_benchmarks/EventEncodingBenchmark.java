@@ -0,0 +1,57 @@
+package ttt_game_service_benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import io.vertx.core.Vertx;
+import ttt_game_service.infrastructure.EventFrameCodec;
+import ttt_game_service.infrastructure.LocalEventDelivery;
+import ttt_game_service.infrastructure.VertxPlayerSessionEventObserver;
+
+//benchmark della codifica e della consegna degli eventi (VertxPlayerSessionEventObserver): websocket locale oppure event bus
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventEncodingBenchmark {
+
+	private Vertx vertx;
+	private VertxPlayerSessionEventObserver observer;
+	private final Optional<String> winner = Optional.of("alice");
+
+	@Param({"local", "eventBus"})
+	public String delivery; //consegna diretta al websocket locale oppure tramite event bus
+
+	@Setup
+	public void setup() {
+		BenchmarkSupport.silenceOutput();
+		vertx = Vertx.vertx();
+		EventFrameCodec.register(vertx.eventBus());
+		var localDelivery = new LocalEventDelivery();
+		if (delivery.equals("local")) {
+			localDelivery.register("bench-session", frame -> {}); //websocket locale fittizio
+		}
+		observer = new VertxPlayerSessionEventObserver(vertx.eventBus(), localDelivery);
+		observer.enableEventNotification("bench-session"); //canale pronto: gli eventi vengono consegnati
+	}
+
+	@TearDown
+	public void tearDown() {
+		vertx.close().await();
+		BenchmarkSupport.restoreOutput();
+	}
+
+	//evento "new-move"
+	@Benchmark
+	public void newMove() {
+		observer.newMove("bench-session", "X", 1, 2);
+	}
+
+	//evento "game-ended" con vincitore
+	@Benchmark
+	public void gameEnded() {
+		observer.gameEnded("bench-session", winner);
+	}
+}
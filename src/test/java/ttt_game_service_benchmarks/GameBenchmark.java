@@ -0,0 +1,168 @@
+package ttt_game_service_benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.application.PlayerSession;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameEvent;
+import ttt_game_service.domain.GameObserver;
+import ttt_game_service.domain.InvalidJoinException;
+import ttt_game_service.domain.InvalidMoveException;
+import ttt_game_service.domain.NewMove;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service_tests.NoOpPlayerSessionEventObserver;
+
+/*
+benchmark di Game.makeAmove con i due giocatori (PlayerSession) registrati come osservatori
+nonTerminalMove misura la singola mossa che non termina la partita (da eseguire con -prof gc, attivo nel profilo "bench"):
+la griglia 64x64 con allineamento 3 viene riempita in un ordine che non forma mai tre simboli allineati, quindi una partita dura
+4094 mosse e solo la creazione della partita successiva alloca memoria (circa 0.3 B/op); la mossa in sé non alloca
+oltre alle sessioni la partita ha altri due tipi di osservatori (come il ciclo di vita e il journal nel servizio): la notifica
+è megamorfica e la JIT non può eliminare un evento creato per la notifica
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+	private final UserId alice = new UserId("alice");
+	private final UserId bob = new UserId("bob");
+
+	@Setup
+	public void setup() {
+		BenchmarkSupport.silenceOutput();
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkSupport.restoreOutput();
+	}
+
+	//partita avviata con due giocatori e i relativi osservatori
+	private Game startedGame() throws InvalidJoinException {
+		var game = new Game("bench-game");
+		game.joinGame(alice, TTTSymbol.X);
+		game.joinGame(bob, TTTSymbol.O);
+		var psX = new PlayerSession(1, "p1", alice, game, TTTSymbol.X);
+		var psO = new PlayerSession(2, "p2", bob, game, TTTSymbol.O);
+		psX.bindPlayerSessionEventNotifier(NoOpPlayerSessionEventObserver.INSTANCE);
+		psO.bindPlayerSessionEventNotifier(NoOpPlayerSessionEventObserver.INSTANCE);
+		game.addGameObserver(psX);
+		game.addGameObserver(psO);
+		game.startGame();
+		return game;
+	}
+
+	//partita grande senza vincitore: sessioni dei due giocatori e sequenza di mosse
+	@State(Scope.Thread)
+	public static class LongGame {
+		static final BoardConfig CONFIG = new BoardConfig(BoardConfig.MAX_SIZE, BoardConfig.MAX_SIZE, 3);
+		final int[] xs = new int[CONFIG.cells() - 2]; //l'ultima coppia di mosse viene saltata (la griglia piena è un pareggio)
+		final int[] ys = new int[xs.length];
+		PlayerSession cross;
+		PlayerSession circle;
+		int next;
+
+		@Setup
+		public void setup() throws InvalidJoinException {
+			BenchmarkSupport.silenceOutput();
+			int crossMoves = 0, circleMoves = 1;
+			for (int y = 0; y < CONFIG.height(); y++) {
+				for (int x = 0; x < CONFIG.width(); x++) {
+					int i = ((x + 2 * y) & 3) < 2 ? crossMoves : circleMoves; //righe XXOO, colonne e diagonali con al più due simboli uguali consecutivi
+					if (i < xs.length) {
+						xs[i] = x;
+						ys[i] = y;
+					}
+					if (i == crossMoves) {
+						crossMoves += 2;
+					} else {
+						circleMoves += 2;
+					}
+				}
+			}
+			newGame();
+		}
+
+		@TearDown
+		public void tearDown() {
+			BenchmarkSupport.restoreOutput();
+		}
+
+		void newGame() throws InvalidJoinException {
+			var game = new Game("bench-long-game", CONFIG);
+			var alice = new UserId("alice");
+			var bob = new UserId("bob");
+			game.joinGame(alice, TTTSymbol.X);
+			game.joinGame(bob, TTTSymbol.O);
+			cross = new PlayerSession(1, "p1", alice, game, TTTSymbol.X);
+			circle = new PlayerSession(2, "p2", bob, game, TTTSymbol.O);
+			cross.bindPlayerSessionEventNotifier(NoOpPlayerSessionEventObserver.INSTANCE);
+			circle.bindPlayerSessionEventNotifier(NoOpPlayerSessionEventObserver.INSTANCE);
+			game.addGameObserver(cross);
+			game.addGameObserver(circle);
+			game.addGameObserver(new Activity());
+			game.addGameObserver(new MoveCounter());
+			game.startGame();
+			next = 0;
+		}
+	}
+
+	//osservatore che registra l'istante dell'ultimo evento
+	static final class Activity implements GameObserver {
+		long last;
+
+		public void notifyGameEvent(GameEvent event) {
+			last = System.nanoTime();
+		}
+
+		@Override
+		public void newMove(String gameId, TTTSymbol symbol, int x, int y) {
+			last = System.nanoTime();
+		}
+	}
+
+	//osservatore che conta le mosse
+	static final class MoveCounter implements GameObserver {
+		long moves;
+
+		public void notifyGameEvent(GameEvent event) {
+			if (event instanceof NewMove) {
+				moves++;
+			}
+		}
+
+		@Override
+		public void newMove(String gameId, TTTSymbol symbol, int x, int y) {
+			moves++;
+		}
+	}
+
+	//una mossa (non finale) di una sessione giocatore, notificata a entrambe le sessioni
+	@Benchmark
+	public void nonTerminalMove(LongGame g) throws InvalidJoinException, InvalidMoveException {
+		int i = g.next++;
+		(i % 2 == 0 ? g.cross : g.circle).makeMove(g.xs[i], g.ys[i]);
+		if (g.next == g.xs.length) {
+			g.newGame();
+		}
+	}
+
+	//partita completa vinta da "croce" (5 mosse, l'ultima termina la partita)
+	@Benchmark
+	@OperationsPerInvocation(5)
+	public Game winningGame() throws InvalidJoinException, InvalidMoveException {
+		var game = startedGame();
+		game.makeAmove(alice, 0, 0);
+		game.makeAmove(bob, 0, 1);
+		game.makeAmove(alice, 1, 0);
+		game.makeAmove(bob, 1, 1);
+		game.makeAmove(alice, 2, 0);
+		return game;
+	}
+}
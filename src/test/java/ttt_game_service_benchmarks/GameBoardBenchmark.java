@@ -0,0 +1,63 @@
+package ttt_game_service_benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ttt_game_service.domain.GameBoard;
+import ttt_game_service.domain.InvalidMoveException;
+import ttt_game_service.domain.TTTSymbol;
+
+//benchmark della griglia di gioco (GameBoard.newMove / checkWinner)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBoardBenchmark {
+
+	private GameBoard midGame; //griglia con alcune mosse già eseguite e nessun vincitore
+
+	@Setup
+	public void setup() throws InvalidMoveException {
+		midGame = new GameBoard("bench-board");
+		midGame.newMove(TTTSymbol.X, 0, 0);
+		midGame.newMove(TTTSymbol.O, 1, 1);
+		midGame.newMove(TTTSymbol.X, 2, 0);
+		midGame.newMove(TTTSymbol.O, 1, 0);
+	}
+
+	//controllo del vincitore tramite Optional
+	@Benchmark
+	public Object checkWinner() {
+		return midGame.checkWinner();
+	}
+
+	//controllo del vincitore senza allocazioni
+	@Benchmark
+	public boolean isWinner() {
+		return midGame.isWinner(TTTSymbol.X);
+	}
+
+	//partita completa (pareggio): 9 mosse con controllo del vincitore dopo ogni mossa
+	@Benchmark
+	public void fullGame(Blackhole bh) throws InvalidMoveException {
+		var board = new GameBoard("bench-board");
+		move(board, bh, TTTSymbol.X, 0, 0);
+		move(board, bh, TTTSymbol.O, 1, 0);
+		move(board, bh, TTTSymbol.X, 2, 0);
+		move(board, bh, TTTSymbol.O, 1, 1);
+		move(board, bh, TTTSymbol.X, 0, 1);
+		move(board, bh, TTTSymbol.O, 2, 1);
+		move(board, bh, TTTSymbol.X, 1, 2);
+		move(board, bh, TTTSymbol.O, 0, 2);
+		move(board, bh, TTTSymbol.X, 2, 2);
+		bh.consume(board.isTie());
+	}
+
+	//esegue una mossa e controlla il vincitore
+	private static void move(GameBoard board, Blackhole bh, TTTSymbol symbol, int x, int y) throws InvalidMoveException {
+		board.newMove(symbol, x, y);
+		bh.consume(board.checkWinner());
+	}
+}
@@ -0,0 +1,79 @@
+package ttt_game_service_benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.EventSourcedGameRepository;
+
+/*
+benchmark dell'avvio del repository durevole delle partite con molte partite in corso
+- snapshot: tutte le partite sono nello snapshot binario (log vuoto)
+- log: nessuno snapshot, tutte le partite vengono ricostruite riapplicando gli eventi del log
+il tempo di caricamento e il picco di heap vengono anche stampati dal repository nel log di avvio
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class GameRecoveryBenchmark {
+
+	@Param({"1000000"})
+	public int games; //numero di partite in corso nel db
+
+	@Param({"snapshot", "log"})
+	public String mode; //contenuto del db all'avvio
+
+	private Path dbDir; //cartella del db
+	private EventSourcedGameRepository repo;
+
+	@Setup(Level.Trial)
+	public void createDB() throws Exception {
+		BenchmarkSupport.silenceOutput(); //ogni mossa viene registrata nel log della partita
+		dbDir = Files.createTempDirectory("ttt-games-bench");
+		var db = new EventSourcedGameRepository(dbDir, Long.MAX_VALUE); //nessuna compattazione automatica
+		var cross = new UserId("alice");
+		var circle = new UserId("bob");
+		for (int i = 0; i < games; i++) { //partite avviate con due mosse
+			var game = new Game("game-" + i);
+			db.addGameIfAbsent(game);
+			game.joinGame(cross, TTTSymbol.X);
+			game.joinGame(circle, TTTSymbol.O);
+			game.startGame();
+			game.makeAmove(cross, i % 3, 0);
+			game.makeAmove(circle, i % 3, 1);
+		}
+		if (mode.equals("snapshot")) {
+			db.snapshot();
+		}
+		db.close();
+	}
+
+	@TearDown(Level.Invocation)
+	public void closeRepo() {
+		repo.close();
+		repo = null;
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteDB() throws IOException {
+		try (var files = Files.walk(dbDir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+		BenchmarkSupport.restoreOutput();
+	}
+
+	//avvio del repository
+	@Benchmark
+	public EventSourcedGameRepository load() {
+		repo = new EventSourcedGameRepository(dbDir, Long.MAX_VALUE);
+		return repo;
+	}
+}
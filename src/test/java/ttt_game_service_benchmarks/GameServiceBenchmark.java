@@ -0,0 +1,59 @@
+package ttt_game_service_benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.LoginFailedException;
+import ttt_game_service.application.PlayerSession;
+import ttt_game_service.application.UserSession;
+import ttt_game_service.domain.InvalidJoinException;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import ttt_game_service_tests.NoOpPlayerSessionEventObserver;
+
+//benchmark del servizio principale (GameServiceImpl.login / joinGame)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameServiceBenchmark {
+
+	private GameServiceImpl service;
+	private final UserId alice = new UserId("alice");
+	private final UserId bob = new UserId("bob");
+	private long gameCount; //contatore usato per generare id di partita sempre nuovi
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkSupport.silenceOutput();
+		service = new GameServiceImpl();
+		service.bindAccountRepository(new InMemoryAccountRepository());
+		service.bindGameRepository(new InMemoryGameRepository());
+		service.registerUser("alice", "secret");
+		service.registerUser("bob", "secret");
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkSupport.restoreOutput();
+	}
+
+	//login di un utente registrato
+	@Benchmark
+	public UserSession login() throws LoginFailedException {
+		return service.login("alice", "secret");
+	}
+
+	//creazione di una partita e join dei due giocatori (il secondo join avvia la partita)
+	@Benchmark
+	public PlayerSession createAndJoinGame() throws Exception {
+		var gameId = "bench-game-" + (gameCount++);
+		service.createNewGame(gameId);
+		service.joinGame(alice, gameId, TTTSymbol.X, NoOpPlayerSessionEventObserver.INSTANCE);
+		return service.joinGame(bob, gameId, TTTSymbol.O, NoOpPlayerSessionEventObserver.INSTANCE);
+	}
+}
@@ -0,0 +1,121 @@
+package ttt_game_service_benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.InvalidJoinException;
+import ttt_game_service.domain.InvalidMoveException;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import ttt_game_service.infrastructure.MappedGameRepository;
+
+/*
+benchmark del repository delle partite in slot di un file mappato in memoria (-p games=10000000 per provare store più grandi)
+durante il setup vengono create le stesse partite in corso (due giocatori, due mosse) nel repository in memoria e negli slot,
+e viene stampata la memoria sullo heap occupata da ciascuno per partita; le partite negli slot non restano sullo heap
+la ricerca di una partita non in uso la ricostruisce dal suo slot, quella in memoria restituisce l'oggetto già presente;
+gli id cercati coprono tutte le partite, così la cache delle partite ricostruite (riferimenti deboli) viene svuotata dalla gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+@State(Scope.Benchmark)
+public class GameStoreBenchmark {
+
+	@Param({"1000000"})
+	public int games; //partite in corso
+
+	private InMemoryGameRepository inMemory; //partite sullo heap
+	private MappedGameRepository mapped; //partite negli slot
+	private Path dir; //cartella del file degli slot
+	private String[] ids; //id cercati (sequenza casuale lunga quanto il numero di partite)
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, InterruptedException, InvalidJoinException, InvalidMoveException {
+		BenchmarkSupport.silenceOutput();
+		dir = Files.createTempDirectory("game-store-bench");
+		long before = usedMemory();
+		inMemory = new InMemoryGameRepository();
+		for (int i = 0; i < games; i++) {
+			inMemory.addGameIfAbsent(startedGame("game-" + i));
+		}
+		long afterHeap = usedMemory();
+		mapped = new MappedGameRepository(dir.resolve("games.slots"), games, new InMemoryGameRepository());
+		for (int i = 0; i < games; i++) {
+			mapped.addGameIfAbsent(startedGame("game-" + i));
+		}
+		for (int i = 0; i < 3; i++) { //i riferimenti delle partite raccolte arrivano in coda in modo asincrono
+			usedMemory();
+			Thread.sleep(100);
+			mapped.size(); //rimuove dalla cache i riferimenti delle partite raccolte
+		}
+		long afterMapped = usedMemory();
+		BenchmarkSupport.restoreOutput();
+		System.out.printf("%n%d games - InMemoryGameRepository: %.1f B/game on heap, MappedGameRepository: %.1f B/game on heap (%d B/game in the slots file)%n",
+				games, (afterHeap - before) / (double) games, (afterMapped - afterHeap) / (double) games, Files.size(dir.resolve("games.slots")) / games);
+		var random = new Random(42);
+		ids = new String[games];
+		for (int i = 0; i < games; i++) {
+			ids[i] = "game-" + random.nextInt(games);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		mapped.close();
+		try (var files = Files.list(dir)) {
+			for (var f: (Iterable<Path>) files::iterator) {
+				Files.delete(f);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	//partita avviata con due mosse
+	private static Game startedGame(String id) throws InvalidJoinException, InvalidMoveException {
+		var game = new Game(id);
+		var alice = new UserId("alice-" + id.hashCode() % 1000);
+		game.joinGame(alice, TTTSymbol.X);
+		game.joinGame(new UserId("bob-" + id.hashCode() % 1000), TTTSymbol.O);
+		game.startGame();
+		game.makeAmove(TTTSymbol.X, 0, 0);
+		game.makeAmove(TTTSymbol.O, 1, 1);
+		return game;
+	}
+
+	//memoria occupata dopo la garbage collection
+	private static long usedMemory() {
+		var runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private String nextId() {
+		if (next == ids.length) {
+			next = 0;
+		}
+		return ids[next++];
+	}
+
+	//partita sullo heap
+	@Benchmark
+	public Game inMemoryLookup() {
+		return inMemory.getGame(nextId());
+	}
+
+	//partita ricostruita dal suo slot (se non è ancora in uso)
+	@Benchmark
+	public Game mappedLookup() {
+		return mapped.getGame(nextId());
+	}
+}
@@ -0,0 +1,69 @@
+package ttt_game_service_benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.GameBoard;
+import ttt_game_service.domain.InvalidMoveException;
+import ttt_game_service.domain.TTTSymbol;
+
+/*
+benchmark del controllo del vincitore su griglie grandi (5 in fila): controllo incrementale attraverso l'ultima mossa (checkWinner)
+contro la scansione di tutta la griglia (scanWinner)
+la griglia è occupata per metà (in modo casuale, senza combinazioni complete): è il caso peggiore della scansione, che non trova vincitori
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LargeBoardBenchmark {
+
+	@Param({"15", "19"})
+	public int size; //lato della griglia
+
+	private GameBoard board; //griglia a metà partita, senza vincitore
+
+	@Setup
+	public void setup() throws InvalidMoveException {
+		var config = new BoardConfig(size, size, 5);
+		var random = new Random(42);
+		while (board == null) {
+			var cross = new long[(config.cells() + 63) >>> 6];
+			var circle = new long[cross.length];
+			int free = -1;
+			for (int cell = 0; cell < config.cells(); cell++) {
+				int r = random.nextInt(4);
+				if (r == 0) {
+					cross[cell >>> 6] |= 1L << cell;
+				} else if (r == 1) {
+					circle[cell >>> 6] |= 1L << cell;
+				} else {
+					free = cell;
+				}
+			}
+			var candidate = new GameBoard("bench-board", config, cross, circle);
+			if (free < 0 || candidate.scanWinner().isPresent()) {
+				continue;
+			}
+			candidate.newMove(TTTSymbol.X, free % size, free / size); //ultima mossa (controllo incrementale)
+			if (candidate.scanWinner().isEmpty()) {
+				board = candidate;
+			}
+		}
+	}
+
+	//controllo incrementale: solo le quattro linee che passano per l'ultima mossa
+	@Benchmark
+	public Object checkWinner() {
+		return board.checkWinner();
+	}
+
+	//scansione di tutta la griglia
+	@Benchmark
+	public Object scanWinner() {
+		return board.scanWinner();
+	}
+}
@@ -0,0 +1,71 @@
+package ttt_game_service_benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.MatchTicket;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import ttt_game_service_tests.NoOpPlayerSessionEventObserver;
+
+/*
+benchmark della coda di matchmaking (GameServiceImpl.findMatch) con più thread che inseriscono richieste
+ogni inserimento trova lo slot della fascia vuoto (si mette in attesa) oppure occupato (crea la partita e avvia i due giocatori)
+il servizio viene ricreato a ogni iterazione, così le partite create non si accumulano tra le iterazioni
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@Threads(4)
+public class MatchmakingBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Queue {
+
+		@Param({"1", "8"})
+		public int buckets; //numero di fasce di punteggio usate dalle richieste
+
+		GameServiceImpl service;
+		final AtomicInteger threads = new AtomicInteger(); //generatore degli id dei thread
+
+		@Setup(Level.Iteration)
+		public void setup() {
+			BenchmarkSupport.silenceOutput();
+			service = new GameServiceImpl();
+			service.bindAccountRepository(new InMemoryAccountRepository());
+			service.bindGameRepository(new InMemoryGameRepository());
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			BenchmarkSupport.restoreOutput();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Player {
+
+		UserId[] users; //utenti di questo thread (distinti da quelli degli altri thread)
+		int next; //prossimo utente
+
+		@Setup(Level.Trial)
+		public void setup(Queue queue) {
+			int thread = queue.threads.getAndIncrement();
+			users = new UserId[1024];
+			for (int i = 0; i < users.length; i++) {
+				users[i] = new UserId("user-" + thread + "-" + i);
+			}
+		}
+	}
+
+	//inserimento di una richiesta (la metà degli inserimenti crea una partita)
+	@Benchmark
+	public MatchTicket findMatch(Queue queue, Player player) {
+		int i = player.next++ & 1023;
+		return queue.service.findMatch(player.users[i], (i % queue.buckets) * 200, NoOpPlayerSessionEventObserver.INSTANCE);
+	}
+}
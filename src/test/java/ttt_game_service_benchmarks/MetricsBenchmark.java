@@ -0,0 +1,43 @@
+package ttt_game_service_benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+/*
+benchmark della registrazione delle metriche sul percorso critico (più thread sulla stessa metrica)
+con -prof gc si verifica che la registrazione non allochi (0 B/op)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+	private Histogram histogram; //istogramma condiviso dai thread
+	private Counter counter; //contatore condiviso dai thread
+
+	@Setup
+	public void setup() {
+		var registry = new MetricsRegistry();
+		histogram = registry.histogram("bench_seconds", "Benchmark histogram");
+		counter = registry.counter("bench_total", "Benchmark counter");
+	}
+
+	//registrazione di una durata (come per la latenza di una rotta)
+	@Benchmark
+	public void recordLatency() {
+		histogram.record(System.nanoTime() & 0xFFFFF);
+	}
+
+	//incremento di un contatore (come per i frame scritti sui websocket)
+	@Benchmark
+	public void incrementCounter() {
+		counter.inc();
+	}
+}
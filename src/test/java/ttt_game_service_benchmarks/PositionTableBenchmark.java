@@ -0,0 +1,56 @@
+package ttt_game_service_benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.domain.PositionTable;
+
+/*
+benchmark della scelta della mossa del bot (PositionTable.bestMove): conversione delle maschere in codifica base 3 e lettura della tabella
+le posizioni vengono generate con partite casuali e scorse in ordine, così il costo misurato è quello della lettura
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionTableBenchmark {
+
+	int[] cross; //maschere di "croce" delle posizioni
+	int[] circle; //maschere di "cerchio" delle posizioni
+	int next; //prossima posizione
+
+	@Setup(Level.Trial)
+	public void setup() {
+		var random = new Random(42);
+		cross = new int[4096];
+		circle = new int[4096];
+		for (int i = 0; i < cross.length; i++) {
+			int x = 0;
+			int o = 0;
+			int moves = random.nextInt(9);
+			for (int m = 0; m < moves; m++) {
+				int cell;
+				do {
+					cell = 1 << random.nextInt(9);
+				} while (((x | o) & cell) != 0);
+				if (m % 2 == 0) {
+					x |= cell;
+				} else {
+					o |= cell;
+				}
+			}
+			cross[i] = x;
+			circle[i] = o;
+		}
+		System.err.println("position table: " + PositionTable.memoryBytes() + " bytes, " + PositionTable.reachablePositions() + " reachable, " + PositionTable.canonicalPositions() + " canonical");
+	}
+
+	//scelta della mossa per una posizione
+	@Benchmark
+	public int bestMove() {
+		int i = next++ & 4095;
+		return PositionTable.bestMove(cross[i], circle[i]);
+	}
+}
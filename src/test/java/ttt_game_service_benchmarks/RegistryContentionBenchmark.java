@@ -0,0 +1,79 @@
+package ttt_game_service_benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.application.UserSession;
+import ttt_game_service.application.UserSessions;
+import ttt_game_service.domain.UserId;
+
+/*
+benchmark di contesa sui registri delle sessioni (4 thread, 90% letture e 10% nuove sessioni)
+le nuove sessioni sovrascrivono un insieme limitato di chiavi, così la dimensione del registro resta stabile durante la misura
+confronta il registro concorrente (UserSessions, chiavi numeriche) con la HashMap precedente (chiavi stringa) resa thread-safe tramite un lock globale
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RegistryContentionBenchmark {
+
+	static final int PRELOADED = 10_000; //sessioni presenti prima della misura
+
+	private UserSessions concurrentSessions; //registro concorrente
+	private Map<String, UserSession> lockedSessions; //HashMap protetta da un lock globale
+	private AtomicLong atomicCount; //generatore atomico degli id
+	private long lockedCount; //generatore degli id protetto da lock
+	private final Object lockedCountLock = new Object();
+
+	@Setup
+	public void setup() {
+		concurrentSessions = new UserSessions();
+		lockedSessions = Collections.synchronizedMap(new HashMap<>());
+		atomicCount = new AtomicLong();
+		for (int i = 0; i < PRELOADED; i++) {
+			var us = new UserSession(i + 1, "u" + Long.toString(i + 1, 36), new UserId("user-" + i), null);
+			concurrentSessions.addSession(us);
+			lockedSessions.put("user-session-" + i, us); //id stringa del formato precedente
+		}
+	}
+
+	//stato per thread: sequenza delle operazioni
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+
+	@Benchmark
+	public UserSession concurrentRegistry(Cursor c) {
+		int i = c.next++;
+		if (i % 10 == 0) { //nuova sessione
+			long key = PRELOADED + 1 + atomicCount.incrementAndGet() % PRELOADED;
+			var us = new UserSession(key, null, null, null);
+			concurrentSessions.addSession(us);
+			return us;
+		}
+		return concurrentSessions.getSession(i % PRELOADED + 1);
+	}
+
+	@Benchmark
+	public UserSession lockedHashMap(Cursor c) {
+		int i = c.next++;
+		if (i % 10 == 0) { //nuova sessione
+			long id;
+			synchronized (lockedCountLock) {
+				id = ++lockedCount;
+			}
+			var us = new UserSession(PRELOADED + 1 + id % PRELOADED, "user-session-" + (PRELOADED + id % PRELOADED), null, null);
+			lockedSessions.put(us.getSessionId(), us);
+			return us;
+		}
+		return lockedSessions.get("user-session-" + (i % PRELOADED));
+	}
+}
@@ -0,0 +1,34 @@
+package ttt_game_service_benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import ttt_game_service.infrastructure.MalformedRequestException;
+import ttt_game_service.infrastructure.RestRequests;
+
+//benchmark della decodifica del body della mossa: albero json (vecchio percorso) contro decoder tipizzato
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RestDecodingBenchmark {
+
+	private final Buffer body = Buffer.buffer("{\"playerSessionId\":\"player-session-42\",\"x\":\"1\",\"y\":\"2\"}");
+
+	//vecchio percorso: toJsonObject + parsing delle coordinate da stringa
+	@Benchmark
+	public int jsonTree() {
+		JsonObject moveInfo = body.toJsonObject();
+		return moveInfo.getString("playerSessionId").length() + Integer.parseInt(moveInfo.getString("x")) + Integer.parseInt(moveInfo.getString("y"));
+	}
+
+	//decoder tipizzato direttamente dal buffer
+	@Benchmark
+	public int typedDecoder() throws MalformedRequestException {
+		var move = RestRequests.move(body);
+		return move.playerSessionId().length() + move.x() + move.y();
+	}
+}
@@ -0,0 +1,94 @@
+package ttt_game_service_benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ttt_game_service.application.SessionIds;
+import ttt_game_service.application.UserSession;
+import ttt_game_service.application.UserSessions;
+
+/*
+benchmark della ricerca di una sessione con milioni di sessioni vive (-p sessions=4000000 per provare registri più grandi)
+confronta la mappa precedente (ConcurrentHashMap con id stringa "user-session-N") con il registro a chiavi numeriche (token "uXXXX")
+in entrambi i casi si parte dai byte del token, come nel body di una richiesta: la stringa decodificata è nuova, quindi il suo hash
+non è ancora calcolato; durante il setup viene stampata la memoria occupata da ciascun registro per sessione (sessioni escluse)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+@State(Scope.Benchmark)
+public class SessionRegistryBenchmark {
+
+	static final int LOOKUPS = 1 << 16; //sequenza (casuale) dei token cercati
+
+	@Param({"1000000"})
+	public int sessions; //sessioni vive nel registro
+
+	private ConcurrentHashMap<String, UserSession> stringKeyed; //registro precedente
+	private UserSessions longKeyed; //registro a chiavi numeriche
+	private byte[][] oldTokens; //token cercati, formato precedente
+	private byte[][] newTokens; //token cercati, formato compatto
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		var all = new UserSession[sessions];
+		for (int i = 0; i < sessions; i++) {
+			long key = i + 1;
+			all[i] = new UserSession(key, SessionIds.token(SessionIds.USER, key), null, null);
+		}
+		var oldIds = new String[sessions];
+		for (int i = 0; i < sessions; i++) {
+			oldIds[i] = "user-session-" + (i + 1); //nel formato precedente la sessione conteneva questa stringa come id
+		}
+		long before = usedMemory();
+		stringKeyed = new ConcurrentHashMap<>();
+		for (int i = 0; i < sessions; i++) {
+			stringKeyed.put(oldIds[i], all[i]);
+		}
+		long afterOld = usedMemory();
+		longKeyed = new UserSessions();
+		for (var us: all) {
+			longKeyed.addSession(us);
+		}
+		long afterNew = usedMemory();
+		System.out.printf("%n%d sessions - ConcurrentHashMap<String>: %.1f B/session, ConcurrentLongMap: %.1f B/session%n",
+				sessions, (afterOld - before) / (double) sessions, (afterNew - afterOld) / (double) sessions);
+		var random = new Random(42);
+		oldTokens = new byte[LOOKUPS][];
+		newTokens = new byte[LOOKUPS][];
+		for (int i = 0; i < LOOKUPS; i++) {
+			int s = random.nextInt(sessions);
+			oldTokens[i] = oldIds[s].getBytes(StandardCharsets.ISO_8859_1);
+			newTokens[i] = all[s].getSessionId().getBytes(StandardCharsets.ISO_8859_1);
+		}
+	}
+
+	//memoria occupata dopo la garbage collection
+	private static long usedMemory() {
+		var runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	//mappa precedente: hash della stringa (nuova) e confronto carattere per carattere
+	@Benchmark
+	public UserSession stringKeyedLookup() {
+		var bytes = oldTokens[next++ & (LOOKUPS - 1)];
+		return stringKeyed.get(new String(bytes, StandardCharsets.ISO_8859_1));
+	}
+
+	//registro a chiavi numeriche: decodifica del token senza allocazioni e ricerca senza boxing
+	@Benchmark
+	public UserSession longKeyedLookup() {
+		var bytes = newTokens[next++ & (LOOKUPS - 1)];
+		var token = new String(bytes, StandardCharsets.ISO_8859_1);
+		return longKeyed.getSession(SessionIds.parse(token, 0, SessionIds.USER));
+	}
+}
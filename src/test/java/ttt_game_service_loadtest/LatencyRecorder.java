@@ -0,0 +1,90 @@
+package ttt_game_service_loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+registratore delle latenze (ns) con intervalli log-lineari: 64 sotto-intervalli per ogni potenza di due (errore relativo < 1.6%)
+i valori fino a 127 ns hanno un intervallo ciascuno; la registrazione è un incremento atomico, sicuro da più event loop
+ */
+final class LatencyRecorder {
+
+	private static final int SUB_BUCKETS = 64; //sotto-intervalli per potenza di due
+	private final String name; //nome della misura (rotta o evento)
+	private final AtomicLongArray counts; //conteggio per intervallo
+	private final AtomicLong errors; //richieste fallite (risposta inattesa o errore di rete)
+	private final AtomicLong max; //valore massimo registrato
+
+	LatencyRecorder(String name) {
+		this.name = name;
+		counts = new AtomicLongArray(64 * SUB_BUCKETS);
+		errors = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	String name() {
+		return name;
+	}
+
+	//registra una latenza
+	void record(long nanos) {
+		long v = Math.max(0, nanos);
+		counts.incrementAndGet(index(v));
+		max.accumulateAndGet(v, Math::max);
+	}
+
+	//registra un errore
+	void error() {
+		errors.incrementAndGet();
+	}
+
+	long errors() {
+		return errors.get();
+	}
+
+	long max() {
+		return max.get();
+	}
+
+	//numero di latenze registrate
+	long count() {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	//latenza al percentile indicato (0-100), limite superiore dell'intervallo che la contiene
+	long percentile(double p) {
+		long total = count();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * p / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	//indice dell'intervallo: valore diviso per 2^shift, con shift scelto in modo che il quoziente stia in [64, 128)
+	static int index(long v) {
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(v) - 6);
+		return shift * SUB_BUCKETS + (int) (v >>> shift);
+	}
+
+	//valore massimo contenuto nell'intervallo
+	static long upperBound(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = index - (long) shift * SUB_BUCKETS;
+		return ((sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,247 @@
+package ttt_game_service_loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.WebSocketClient;
+import io.vertx.core.http.WebSocketClientOptions;
+import logging.StructuredLogger;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
+import ttt_game_service.infrastructure.GameShards;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import ttt_game_service.infrastructure.LocalEventDelivery;
+import ttt_game_service.infrastructure.SpectatorRelays;
+import ttt_game_service.infrastructure.VertxGameServiceController;
+
+/*
+generatore di carico end-to-end: migliaia di giocatori virtuali (a coppie, VirtualTable) percorrono il flusso reale del servizio
+su http e websocket e al termine viene stampato un riepilogo con throughput, p50/p99/p999 per rotta e latenza mossa -> push
+uso: mvn -B -Pload test-compile exec:exec -Dload.args="players=2000 games=5"
+parametri (chiave=valore):
+- players: giocatori virtuali (pari, default 2000); games: partite per coppia (default 5)
+- host, port: server da usare; se "host" non è indicato viene avviato un server nella stessa jvm (su "port", default 8090)
+- instances: istanze del controller del server interno (default 1); iterations: iterazioni pbkdf2 del server interno (default 1000,
+  così la registrazione non domina la misura; un server esterno usa le proprie); logSample: tasso di campionamento del log
+  delle rotte del server interno (default 0, il log di ogni richiesta peserebbe sulla misura più del servizio stesso)
+- drivers: event loop del generatore (default numero di core); connections: connessioni http del generatore (default 256)
+- rampUp: intervallo (ms) in cui vengono avviate le coppie (default 2000)
+ */
+public final class LoadGenerator {
+
+	private static final String[] LOGGED_ROUTES = {"registerUser", "login", "createGame", "joinGame", "makeAMove", "subscribe", "event",
+			"game-started", "game-move"}; //rotte del server interno registrate a ogni richiesta o evento
+
+	private final Map<String, String> args; //parametri
+	private final Vertx vertx; //istanza vertx del generatore (separata da quella del server interno)
+	private final HttpClient http; //client rest condiviso
+	private final WebSocketClient webSockets; //client websocket condiviso
+	private final String host; //host del server
+	private final int port; //porta del server
+	private final int gamesPerTable; //partite per coppia
+	private final String runId; //prefisso dei nomi utente (unico per esecuzione)
+	private final Map<String, LatencyRecorder> routes; //latenze per rotta (in ordine di stampa)
+	private final LatencyRecorder pushLatency; //latenza mossa -> push all'avversario
+	private final AtomicLong completedGames = new AtomicLong(); //partite terminate con "game-ended"
+	private final AtomicLong stalledGames = new AtomicLong(); //partite senza "game-ended" entro il tempo massimo
+	private final AtomicLong failedGames = new AtomicLong(); //partite non avviate (errore di creazione, join o websocket)
+	private final AtomicLong failedTables = new AtomicLong(); //coppie senza registrazione o login
+	private final AtomicLong moves = new AtomicLong(); //mosse inviate
+
+	private LoadGenerator(Map<String, String> args, String host, int port) {
+		this.args = args;
+		this.host = host;
+		this.port = port;
+		int drivers = intArg("drivers", Runtime.getRuntime().availableProcessors());
+		vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(drivers));
+		http = vertx.createHttpClient(new PoolOptions().setHttp1MaxSize(intArg("connections", 256)));
+		webSockets = vertx.createWebSocketClient(new WebSocketClientOptions().setMaxConnections(Integer.MAX_VALUE));
+		gamesPerTable = intArg("games", 5);
+		runId = "load" + Long.toString(System.currentTimeMillis(), 36);
+		routes = new LinkedHashMap<>();
+		for (var route: new String[] {"registerUser", "login", "createGame", "joinGame", "ws-open", "makeAMove"}) {
+			routes.put(route, new LatencyRecorder(route));
+		}
+		pushLatency = new LatencyRecorder("move->push");
+	}
+
+	public static void main(String[] argv) throws Exception {
+		var args = new LinkedHashMap<String, String>();
+		for (var arg: argv) {
+			var kv = arg.split("=", 2);
+			if (kv.length == 2) {
+				args.put(kv[0], kv[1]);
+			}
+		}
+		Vertx server = null;
+		var host = args.get("host");
+		int port = Integer.parseInt(args.getOrDefault("port", host == null ? "8090" : "8080"));
+		if (host == null) { //server nella stessa jvm
+			host = "localhost";
+			double logSample = Double.parseDouble(args.getOrDefault("logSample", "0"));
+			for (var route: LOGGED_ROUTES) {
+				StructuredLogger.setSampleRate(route, logSample);
+			}
+			server = startServer(port, Integer.parseInt(args.getOrDefault("instances", "1")), Integer.parseInt(args.getOrDefault("iterations", "1000")));
+		}
+		var load = new LoadGenerator(args, host, port);
+		try {
+			load.run();
+		} finally {
+			load.vertx.close().await();
+			if (server != null) {
+				server.close().await();
+			}
+		}
+	}
+
+	//avvia il server nella stessa jvm (come TTTGameServiceMain, con un verificatore delle password più economico)
+	private static Vertx startServer(int port, int instances, int iterations) {
+		var service = new GameServiceImpl();
+		service.bindAccountRepository(new InMemoryAccountRepository());
+		service.bindGameRepository(new InMemoryGameRepository());
+		service.bindCredentialVerifier(new Pbkdf2CredentialVerifier(iterations));
+		var options = new VertxOptions();
+		options.setEventLoopPoolSize(Math.max(options.getEventLoopPoolSize(), instances));
+		var vertx = Vertx.vertx(options);
+		if (instances <= 1) {
+			vertx.deployVerticle(new VertxGameServiceController(service, port)).await();
+		} else {
+			var localDelivery = new LocalEventDelivery();
+			var spectators = new SpectatorRelays(service);
+			var shards = GameShards.deploy(vertx, instances).await();
+			vertx.deployVerticle(() -> new VertxGameServiceController(service, port, shards, localDelivery, spectators), new DeploymentOptions().setInstances(instances)).await();
+		}
+		vertx.setPeriodic(10_000, id -> vertx.executeBlocking(service::evictExpired, false));
+		System.out.println("embedded server on port " + port + " (" + instances + " instance(s), pbkdf2 " + iterations + " iterations)");
+		return vertx;
+	}
+
+	//avvia le coppie distribuite sugli event loop del generatore e attende la fine di tutte le partite
+	private void run() {
+		int players = intArg("players", 2000);
+		int tables = Math.max(1, players / 2);
+		long rampUp = intArg("rampUp", 2000);
+		var contexts = new ArrayList<Context>();
+		for (int i = 0; i < intArg("drivers", Runtime.getRuntime().availableProcessors()); i++) {
+			contexts.add(vertx.getOrCreateContext()); //chiamato fuori da un contesto: ogni chiamata crea un contesto su un event loop diverso
+		}
+		System.out.printf(Locale.ROOT, "%d virtual players (%d tables), %d games per table, %d generator event loops, target %s:%d%n", tables * 2, tables, gamesPerTable, contexts.size(), host, port);
+		var done = new ArrayList<Future<Void>>();
+		var progress = vertx.setPeriodic(5_000, id -> System.out.printf(Locale.ROOT, "... %d games completed, %d moves%n", completedGames.get(), moves.get()));
+		long start = System.nanoTime();
+		for (int i = 0; i < tables; i++) {
+			var table = new VirtualTable(this, contexts.get(i % contexts.size()), i);
+			long delay = rampUp * i / tables;
+			Promise<Void> promise = Promise.promise();
+			if (delay == 0) {
+				table.start().onComplete(promise);
+			} else {
+				vertx.setTimer(delay, id -> table.start().onComplete(promise));
+			}
+			done.add(promise.future());
+		}
+		Future.join(done).await();
+		long elapsed = System.nanoTime() - start;
+		vertx.cancelTimer(progress);
+		report(elapsed);
+	}
+
+	//stampa il riepilogo della misura
+	private void report(long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		long requests = 0;
+		for (var r: routes.values()) {
+			if (!r.name().equals("ws-open")) {
+				requests += r.count();
+			}
+		}
+		System.out.printf(Locale.ROOT, "%nduration %.1f s: %d games completed (%.1f/s), %d moves (%.1f/s), %d rest requests (%.1f/s)%n",
+				seconds, completedGames.get(), completedGames.get() / seconds, moves.get(), moves.get() / seconds, requests, requests / seconds);
+		System.out.printf(Locale.ROOT, "stalled games %d, failed games %d, failed tables %d%n%n", stalledGames.get(), failedGames.get(), failedTables.get());
+		System.out.printf(Locale.ROOT, "%-14s %9s %7s %10s %10s %10s %10s%n", "route", "count", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+		for (var r: routes.values()) {
+			printRow(r);
+		}
+		printRow(pushLatency);
+	}
+
+	private static void printRow(LatencyRecorder r) {
+		System.out.printf(Locale.ROOT, "%-14s %9d %7d %10.3f %10.3f %10.3f %10.3f%n", r.name(), r.count(), r.errors(),
+				r.percentile(50) / 1e6, r.percentile(99) / 1e6, r.percentile(99.9) / 1e6, r.max() / 1e6);
+	}
+
+	private int intArg(String name, int defaultValue) {
+		var value = args.get(name);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	//--- accesso per le coppie ---
+
+	Vertx vertx() {
+		return vertx;
+	}
+
+	HttpClient http() {
+		return http;
+	}
+
+	WebSocketClient webSockets() {
+		return webSockets;
+	}
+
+	String host() {
+		return host;
+	}
+
+	int port() {
+		return port;
+	}
+
+	int gamesPerTable() {
+		return gamesPerTable;
+	}
+
+	String runId() {
+		return runId;
+	}
+
+	LatencyRecorder route(String name) {
+		return routes.get(name);
+	}
+
+	LatencyRecorder pushLatency() {
+		return pushLatency;
+	}
+
+	AtomicLong completedGames() {
+		return completedGames;
+	}
+
+	AtomicLong stalledGames() {
+		return stalledGames;
+	}
+
+	AtomicLong failedGames() {
+		return failedGames;
+	}
+
+	AtomicLong failedTables() {
+		return failedTables;
+	}
+
+	AtomicLong moves() {
+		return moves;
+	}
+}
@@ -0,0 +1,248 @@
+package ttt_game_service_loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.json.JsonObject;
+
+/*
+coppia di giocatori virtuali che percorre il flusso reale del servizio: registrazione, login, poi per ogni partita
+createGame, joinGame (X e O), apertura dei websocket e mosse casuali valide via rest fino a "game-ended"
+tutti i callback della coppia vengono eseguiti sullo stesso contesto (event loop del generatore), quindi lo stato non ha lock
+la latenza mossa -> push è il tempo tra l'invio della mossa e l'arrivo del "new-move" sul websocket dell'avversario
+ */
+final class VirtualTable {
+
+	static final int[][] LINES = {{0, 1, 2}, {3, 4, 5}, {6, 7, 8}, {0, 3, 6}, {1, 4, 7}, {2, 5, 8}, {0, 4, 8}, {2, 4, 6}}; //combinazioni vincenti 3x3
+	static final long GAME_TIMEOUT = 30_000; //attesa massima (ms) di una partita, poi la partita viene contata come bloccata
+	static final int MAX_RETRIES = 50; //tentativi per registrazione e login se il servizio risponde "busy"
+
+	private final LoadGenerator load; //configurazione, client e misure condivise
+	private final Context context; //contesto della coppia
+	private final String[] users; //nomi dei due utenti (X, O)
+	private final String[] sessions; //sessioni utente
+	private final String[] players; //sessioni giocatore della partita in corso
+	private final WebSocket[] sockets; //websocket della partita in corso
+	private final Promise<Void> done; //completata quando la coppia ha giocato tutte le partite
+	private String gameId; //partita in corso
+	private int gamesPlayed; //partite concluse
+	private final char[] board; //caselle della partita in corso (' ', 'X', 'O')
+	private int movesMade; //mosse della partita in corso
+	private boolean finished; //partita in corso terminata (vittoria o pareggio) secondo le mosse inviate
+	private int endedEvents; //"game-ended" ricevuti (uno per websocket)
+	private long moveSentAt; //istante di invio dell'ultima mossa (ns)
+	private long timer; //timer di blocco della partita in corso
+	private boolean playing; //partita in corso non ancora chiusa (evita una doppia chiusura tra timer ed errori)
+
+	VirtualTable(LoadGenerator load, Context context, int index) {
+		this.load = load;
+		this.context = context;
+		users = new String[] {load.runId() + "-" + index + "-x", load.runId() + "-" + index + "-o"};
+		sessions = new String[2];
+		players = new String[2];
+		sockets = new WebSocket[2];
+		board = new char[9];
+		done = Promise.promise();
+	}
+
+	//avvia la coppia (sul suo contesto); la future viene completata alla fine dell'ultima partita
+	Future<Void> start() {
+		context.runOnContext(v -> account(0)
+				.compose(r -> account(1))
+				.onSuccess(r -> nextGame())
+				.onFailure(ex -> {
+					load.failedTables().incrementAndGet();
+					done.complete();
+				}));
+		return done.future();
+	}
+
+	//registra e fa il login di un utente
+	private Future<Void> account(int player) {
+		var credentials = new JsonObject().put("userName", users[player]).put("password", "pw-" + users[player]);
+		return retryBusy(load.route("registerUser"), credentials, 0)
+				.compose(r -> retryBusy(load.route("login"), credentials, 0))
+				.map(r -> {
+					sessions[player] = r.getString("sessionId");
+					return null;
+				});
+	}
+
+	//richiesta che viene ripetuta se il servizio è occupato (pool di verifica delle password pieno)
+	private Future<JsonObject> retryBusy(LatencyRecorder route, JsonObject body, int attempt) {
+		return post(route, body).transform(ar -> {
+			if (ar.succeeded() && "busy".equals(ar.result().getString("result")) && attempt < MAX_RETRIES) {
+				Promise<JsonObject> retry = Promise.promise();
+				load.vertx().setTimer(50 + ThreadLocalRandom.current().nextInt(100), id -> retryBusy(route, body, attempt + 1).onComplete(retry));
+				return retry.future();
+			}
+			if (ar.succeeded() && !"ok".equals(ar.result().getString("result"))) {
+				route.error();
+				return Future.failedFuture(route.name() + ": " + ar.result());
+			}
+			return ar.succeeded() ? Future.succeededFuture(ar.result()) : Future.failedFuture(ar.cause());
+		});
+	}
+
+	//invia una richiesta rest e registra la latenza della rotta (solo le risposte 2xx e 503)
+	private Future<JsonObject> post(LatencyRecorder route, JsonObject body) {
+		long start = System.nanoTime();
+		return load.http().request(HttpMethod.POST, load.port(), load.host(), "/api/" + route.name())
+				.compose(req -> req.send(body.toBuffer()))
+				.compose(HttpClientResponse::body)
+				.map(Buffer::toJsonObject)
+				.andThen(ar -> {
+					if (ar.succeeded()) {
+						route.record(System.nanoTime() - start);
+					} else {
+						route.error();
+					}
+				});
+	}
+
+	//crea la partita successiva, fa entrare i due giocatori e apre i websocket
+	private void nextGame() {
+		if (gamesPlayed == load.gamesPerTable()) {
+			done.complete();
+			return;
+		}
+		gameId = users[0] + "-g" + gamesPlayed;
+		Arrays.fill(board, ' ');
+		movesMade = 0;
+		finished = false;
+		endedEvents = 0;
+		playing = true;
+		timer = load.vertx().setTimer(GAME_TIMEOUT, id -> {
+			load.stalledGames().incrementAndGet();
+			endGame();
+		});
+		post(load.route("createGame"), new JsonObject().put("sessionId", sessions[0]).put("gameId", gameId))
+				.compose(r -> join(0, "X"))
+				.compose(r -> join(1, "O"))
+				.compose(r -> openSocket(0))
+				.compose(r -> openSocket(1))
+				.onFailure(ex -> {
+					load.vertx().cancelTimer(timer);
+					load.failedGames().incrementAndGet();
+					endGame();
+				});
+	}
+
+	private Future<Void> join(int player, String symbol) {
+		return post(load.route("joinGame"), new JsonObject().put("sessionId", sessions[player]).put("gameId", gameId).put("symbol", symbol))
+				.compose(r -> {
+					if (!"ok".equals(r.getString("result"))) {
+						load.route("joinGame").error();
+						return Future.failedFuture("join: " + r);
+					}
+					players[player] = r.getString("playerSessionId");
+					return Future.succeededFuture();
+				});
+	}
+
+	//apre il websocket del giocatore e lo associa alla sua sessione giocatore (gli eventi già prodotti vengono consegnati subito)
+	private Future<Void> openSocket(int player) {
+		var route = load.route("ws-open");
+		long start = System.nanoTime();
+		return load.webSockets().connect(load.port(), load.host(), "/").map(ws -> {
+			route.record(System.nanoTime() - start);
+			sockets[player] = ws;
+			ws.textMessageHandler(message -> {
+				if (sockets[player] == ws) { //ignora gli eventi di un websocket già chiuso
+					onEvent(player, new JsonObject(message));
+				}
+			});
+			ws.writeTextMessage(new JsonObject().put("playerSessionId", players[player]).encode());
+			return (Void) null;
+		}).onFailure(ex -> route.error());
+	}
+
+	//evento ricevuto dal websocket del giocatore
+	private void onEvent(int player, JsonObject event) {
+		var type = event.getString("event");
+		if (type == null) { //ack di un comando (non usato: le mosse passano dalla rotta rest)
+			return;
+		}
+		switch (type) {
+			case "game-started" -> {
+				if (player == 0) { //"croce" muove per prima
+					move(0);
+				}
+			}
+			case "new-move" -> {
+				int mover = "X".equals(event.getString("symbol")) ? 0 : 1;
+				if (mover != player) { //mossa dell'avversario arrivata sul websocket di questo giocatore
+					load.pushLatency().record(System.nanoTime() - moveSentAt);
+					if (!finished) {
+						move(player);
+					}
+				}
+			}
+			case "game-ended" -> {
+				if (++endedEvents == 2) {
+					load.vertx().cancelTimer(timer);
+					load.completedGames().incrementAndGet();
+					endGame();
+				}
+			}
+			default -> {}
+		}
+	}
+
+	//esegue una mossa casuale valida
+	private void move(int player) {
+		int free = 9 - movesMade;
+		int pick = ThreadLocalRandom.current().nextInt(free);
+		int cell = 0;
+		for (int i = 0; i < 9; i++) {
+			if (board[i] == ' ' && pick-- == 0) {
+				cell = i;
+				break;
+			}
+		}
+		char symbol = player == 0 ? 'X' : 'O';
+		board[cell] = symbol;
+		movesMade++;
+		finished = movesMade == 9 || wins(symbol);
+		load.moves().incrementAndGet();
+		moveSentAt = System.nanoTime();
+		var route = load.route("makeAMove");
+		post(route, new JsonObject().put("playerSessionId", players[player]).put("x", cell % 3).put("y", cell / 3))
+				.onSuccess(r -> {
+					if (!"accepted".equals(r.getString("result"))) {
+						route.error();
+					}
+				});
+	}
+
+	private boolean wins(char symbol) {
+		for (var line: LINES) {
+			if (board[line[0]] == symbol && board[line[1]] == symbol && board[line[2]] == symbol) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//chiude i websocket della partita e passa alla successiva
+	private void endGame() {
+		if (!playing) {
+			return;
+		}
+		playing = false;
+		for (int i = 0; i < 2; i++) {
+			if (sockets[i] != null) {
+				sockets[i].close();
+				sockets[i] = null;
+			}
+		}
+		gamesPlayed++;
+		nextGame();
+	}
+}
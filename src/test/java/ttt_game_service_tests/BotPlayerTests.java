@@ -0,0 +1,103 @@
+package ttt_game_service_tests;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ttt_game_service.application.GameAlreadyPresentException;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.domain.PositionTable;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import static org.assertj.core.api.Assertions.*;
+
+//test del bot con gioco perfetto
+public class BotPlayerTests {
+
+    private static final int[] LINES = {0b000000111, 0b000111000, 0b111000000, 0b001001001, 0b010010010, 0b100100100, 0b100010001, 0b001010100};
+    private GameServiceImpl service;
+    private ExecutorService moves; //esecutore asincrono delle mosse dei bot
+
+    @BeforeEach
+    public void setup() {
+        service = new GameServiceImpl();
+        service.bindAccountRepository(new InMemoryAccountRepository());
+        service.bindGameRepository(new InMemoryGameRepository());
+        moves = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        moves.shutdownNow();
+    }
+
+    //la tabella contiene tutte le posizioni raggiungibili; con gioco perfetto la partita è patta
+    @Test
+    public void tableCoversReachablePositions() {
+        assertThat(PositionTable.reachablePositions()).isEqualTo(5478);
+        assertThat(PositionTable.canonicalPositions()).isLessThan(1000);
+        assertThat(PositionTable.outcome(0, 0)).isEqualTo(PositionTable.DRAW);
+    }
+
+    //due bot giocano fino al pareggio
+    @Test
+    public void botAgainstBotIsDraw() throws Exception {
+        Optional<String> winner = service.playBotAgainstBot("g1", moves).get(5, TimeUnit.SECONDS);
+        assertThat(winner).isEmpty();
+    }
+
+    //partita contro il bot tramite le porte asincrone: l'utente entra con "cerchio", il bot avvia la partita; un id già usato viene rifiutato
+    @Test
+    public void asyncBotGameStarts() throws Exception {
+        var ps = service.playAgainstBotAsync(new UserId("alice"), "g2", TTTSymbol.O, NoOpPlayerSessionEventObserver.INSTANCE, moves).get(5, TimeUnit.SECONDS);
+        assertThat(ps.getGameId()).isEqualTo("g2");
+        assertThat(service.playAgainstBotAsync(new UserId("bob"), "g2", TTTSymbol.X, NoOpPlayerSessionEventObserver.INSTANCE, moves))
+            .failsWithin(Duration.ofSeconds(5)).withThrowableOfType(ExecutionException.class).withCauseInstanceOf(GameAlreadyPresentException.class);
+    }
+
+    //il bot non perde contro nessuna sequenza di mosse dell'avversario, con entrambi i simboli
+    @Test
+    public void botNeverLoses() {
+        assertThat(botLoses(0, 0, false)).isFalse(); //il bot gioca con "cerchio"
+        assertThat(botLoses(0, 0, true)).isFalse(); //il bot gioca con "croce"
+    }
+
+    //esplora tutte le mosse dell'avversario; il bot risponde con la mossa della tabella
+    private boolean botLoses(int cross, int circle, boolean botIsCross) {
+        if (wins(botIsCross ? circle : cross)) {
+            return true;
+        }
+        if (wins(botIsCross ? cross : circle) || (cross | circle) == 0x1ff) {
+            return false;
+        }
+        boolean crossTurn = Integer.bitCount(cross) == Integer.bitCount(circle);
+        if (crossTurn == botIsCross) {
+            int cell = PositionTable.bestMove(cross, circle);
+            assertThat(cell).isBetween(0, 8);
+            assertThat((cross | circle) & (1 << cell)).isZero();
+            return crossTurn ? botLoses(cross | 1 << cell, circle, botIsCross) : botLoses(cross, circle | 1 << cell, botIsCross);
+        }
+        for (int cell = 0; cell < 9; cell++) {
+            if (((cross | circle) & (1 << cell)) == 0 && (crossTurn ? botLoses(cross | 1 << cell, circle, botIsCross) : botLoses(cross, circle | 1 << cell, botIsCross))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean wins(int mask) {
+        for (int line : LINES) {
+            if ((mask & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,90 @@
+package ttt_game_service_tests;
+
+import java.net.ServerSocket;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
+import ttt_game_service.infrastructure.ClusterNode;
+import ttt_game_service.infrastructure.GameShards;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import ttt_game_service.infrastructure.LocalEventDelivery;
+import ttt_game_service.infrastructure.SpectatorRelays;
+import ttt_game_service.infrastructure.VertxGameServiceController;
+import static org.assertj.core.api.Assertions.*;
+
+//test dei listener di un nodo del cluster: le rotte interne sono solo sul listener interno e richiedono il segreto del cluster
+public class ClusterListenerTests {
+
+    private static final String SECRET = "s3cret";
+    private Vertx vertx;
+    private HttpClient client;
+    private int publicPort;
+    private int internalPort;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        publicPort = freePort();
+        internalPort = freePort();
+        var service = new GameServiceImpl();
+        service.bindAccountRepository(new InMemoryAccountRepository());
+        service.bindGameRepository(new InMemoryGameRepository());
+        service.bindCredentialVerifier(new Pbkdf2CredentialVerifier(1_000)); //poche iterazioni: il test non misura il costo dell'hash
+        service.setNodeId("n1");
+        vertx = Vertx.vertx();
+        var self = new ClusterNode.Member("n1", "localhost", internalPort);
+        var cluster = new ClusterNode(vertx, self, List.of(self), SECRET);
+        var shards = GameShards.deploy(vertx, 1).await();
+        vertx.deployVerticle(new VertxGameServiceController(service, publicPort, shards, new LocalEventDelivery(), new SpectatorRelays(service), cluster)).await();
+        client = vertx.createHttpClient();
+    }
+
+    @AfterEach
+    public void teardown() {
+        vertx.close().await();
+    }
+
+    //la porta pubblica non espone le rotte interne
+    @Test
+    public void internalRoutesAreNotPublic() {
+        assertThat(post(publicPort, "/internal/joinGame", null, null)).isEqualTo(404);
+        assertThat(post(publicPort, "/internal/members", SECRET, null)).isEqualTo(404);
+    }
+
+    //sul listener interno servono il segreto del cluster e un numero di inoltri valido
+    @Test
+    public void internalListenerRequiresSecret() {
+        assertThat(post(internalPort, "/internal/members", null, null)).isEqualTo(401);
+        assertThat(post(internalPort, "/internal/members", "wrong", null)).isEqualTo(401);
+        assertThat(post(internalPort, "/api/registerUser", null, null)).isEqualTo(401); //anche le rotte rest inoltrate
+        assertThat(post(internalPort, "/internal/members", SECRET, "abc")).isEqualTo(400);
+        assertThat(post(internalPort, "/internal/members", SECRET, "-1")).isEqualTo(400);
+        assertThat(post(internalPort, "/internal/members", SECRET, "1")).isEqualTo(200);
+        assertThatThrownBy(() -> new ClusterNode(vertx, new ClusterNode.Member("n2", "localhost", 1), List.of(), " ")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    //invia una richiesta POST vuota e restituisce lo stato della risposta
+    private int post(int port, String path, String secret, String hops) {
+        var options = new RequestOptions().setMethod(HttpMethod.POST).setHost("localhost").setPort(port).setURI(path);
+        if (secret != null) {
+            options.putHeader("x-ttt-cluster-secret", secret);
+        }
+        if (hops != null) {
+            options.putHeader("x-ttt-hops", hops);
+        }
+        return client.request(options).compose(req -> req.send()).await().statusCode();
+    }
+
+    private static int freePort() throws Exception {
+        try (var probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ttt_game_service_tests;
+
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import ttt_game_service.infrastructure.ClusterNode;
+import ttt_game_service.infrastructure.ClusterRing;
+import ttt_game_service.infrastructure.HashRing;
+import static org.assertj.core.api.Assertions.*;
+
+//test dell'assegnazione di account e partite ai nodi del cluster (hashing consistente)
+public class ClusterRingTests {
+
+    static final int KEYS = 20_000;
+
+    //le chiavi sono distribuite in modo uniforme tra i nodi
+    @Test
+    public void keysAreSpreadEvenly() {
+        var ring = new HashRing(List.of("n1", "n2", "n3", "n4"));
+        var counts = new HashMap<String, Integer>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.owner("game-" + i), 1, Integer::sum);
+        }
+        assertThat(counts).containsOnlyKeys("n1", "n2", "n3", "n4");
+        assertThat(counts.values()).allSatisfy(n -> assertThat(n).isBetween(KEYS / 4 * 7 / 10, KEYS / 4 * 13 / 10));
+    }
+
+    //aggiungendo un nodo le nuove partite si ribilanciano: cambiano proprietario solo quelle che passano al nuovo nodo (circa un quarto)
+    @Test
+    public void addingNodeRebalancesNewGames() {
+        var ring = new ClusterRing(List.of("n1", "n2", "n3"));
+        var before = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            before[i] = ring.gameOwner("game-" + i);
+        }
+        assertThat(ring.addNode("n4")).isTrue();
+        assertThat(ring.addNode("n4")).isFalse();
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            var gameId = "game-" + i;
+            var after = ring.gameOwner(gameId);
+            if (!after.equals(before[i])) {
+                moved++;
+                assertThat(after).isEqualTo("n4");
+                assertThat(ring.gameOwners(gameId)).containsExactly("n4", before[i]); //le partite esistenti si trovano sul proprietario precedente
+                assertThat(ring.previousGameOwner(gameId, "n4")).isEqualTo(before[i]);
+            } else {
+                assertThat(ring.gameOwners(gameId)).containsExactly(after);
+                assertThat(ring.previousGameOwner(gameId, after)).isNull();
+            }
+        }
+        assertThat(moved).isBetween(KEYS / 4 * 6 / 10, KEYS / 4 * 14 / 10);
+        assertThat(ring.nodes()).containsExactly("n1", "n2", "n3", "n4");
+    }
+
+    //gli account restano sui nodi fondatori; gli id delle sessioni indicano il nodo proprietario
+    @Test
+    public void accountsStayOnFoundersAndSessionIdsNameTheNode() {
+        var ring = new ClusterRing(List.of("n1", "n2"));
+        var owner = ring.accountOwner("alice");
+        ring.addNode("n3");
+        ring.addNode("n4");
+        assertThat(ring.accountOwner("alice")).isEqualTo(owner);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(ring.accountOwner("user-" + i)).isIn("n1", "n2");
+        }
+        assertThat(ClusterNode.nodeOf("n3:p7")).isEqualTo("n3");
+        assertThat(ClusterNode.nodeOf("p7")).isNull();
+        assertThat(ClusterNode.Member.parse("n2=localhost:8081")).isEqualTo(new ClusterNode.Member("n2", "localhost", 8081));
+    }
+}
@@ -0,0 +1,115 @@
+package ttt_game_service_tests;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ttt_game_service.application.AccountAlreadyPresentException;
+import ttt_game_service.application.CredentialCheckPool;
+import ttt_game_service.application.CredentialCheckRejectedException;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.LoginFailedException;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
+import ttt_game_service.domain.Account;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import static org.assertj.core.api.Assertions.*;
+
+//test della verifica delle credenziali (hash delle password, login asincrono, rifiuto con coda piena)
+public class CredentialTests {
+
+    private GameServiceImpl service;
+    private InMemoryAccountRepository accounts;
+
+    @BeforeEach
+    public void setup() {
+        service = new GameServiceImpl();
+        accounts = new InMemoryAccountRepository();
+        service.bindAccountRepository(accounts);
+        service.bindGameRepository(new InMemoryGameRepository());
+        service.bindCredentialVerifier(new Pbkdf2CredentialVerifier(1_000)); //poche iterazioni: il test non misura il costo dell'hash
+    }
+
+    //la password viene salvata come hash e verificata sia dal login sincrono che da quello asincrono
+    @Test
+    public void passwordIsHashedAndVerified() throws Exception {
+        service.registerUserAsync("alice", "secret").join();
+        assertThat(accounts.getAccount("alice").getPasswordHash()).doesNotContain("secret");
+
+        assertThat(service.login("alice", "secret")).isNotNull();
+        assertThat(service.loginAsync("alice", "secret").join()).isNotNull();
+        assertThatThrownBy(() -> service.login("alice", "wrong")).isInstanceOf(LoginFailedException.class);
+        assertThatThrownBy(() -> service.loginAsync("alice", "wrong").join()).isInstanceOf(CompletionException.class).hasCauseInstanceOf(LoginFailedException.class);
+    }
+
+    //un account del vecchio formato (password in chiaro) viene aggiornato all'hash al primo login
+    @Test
+    public void legacyPlaintextIsRehashed() throws Exception {
+        accounts.addAccount(new Account("bob", "secret"));
+        service.loginAsync("bob", "secret").join();
+        assertThat(accounts.getAccount("bob").getPasswordHash()).startsWith("pbkdf2-sha256$");
+        assertThat(service.login("bob", "secret")).isNotNull();
+    }
+
+    //il login di un utente inesistente verifica comunque una password (hash fittizio): il rifiuto non rivela se l'utente esiste
+    @Test
+    public void unknownUserIsCheckedAgainstADummyHash() throws Exception {
+        var verified = new AtomicInteger();
+        service.bindCredentialVerifier(new Pbkdf2CredentialVerifier(1_000) {
+            public boolean verify(String password, String passwordHash) {
+                verified.incrementAndGet();
+                return super.verify(password, passwordHash);
+            }
+        });
+        assertThatThrownBy(() -> service.loginAsync("nobody", "secret").join()).hasCauseInstanceOf(LoginFailedException.class);
+        assertThatThrownBy(() -> service.login("nobody", "secret")).isInstanceOf(LoginFailedException.class);
+        assertThat(verified).hasValue(2);
+    }
+
+    //con la coda piena le richieste vengono rifiutate subito
+    @Test
+    public void fullQueueRejectsImmediately() throws Exception {
+        var pool = new CredentialCheckPool(new Pbkdf2CredentialVerifier(1_000), 1, 1, 1_000);
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(1);
+        var busy = pool.submit(() -> { //occupa l'unico thread
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        started.await();
+        var queued = pool.submit(() -> true); //occupa l'unico posto in coda
+        var rejected = pool.submit(() -> true);
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(CredentialCheckRejectedException.class);
+        assertThat(pool.rejectedCount()).isEqualTo(1);
+        release.countDown();
+        assertThat(busy.join()).isTrue();
+        assertThat(queued.join()).isTrue();
+    }
+
+    //registrazioni concorrenti dello stesso utente: una sola ha successo, le altre falliscono con AccountAlreadyPresentException
+    @Test
+    public void concurrentRegistrationsCreateOneAccount() throws Exception {
+        var attempts = new ArrayList<CompletableFuture<Account>>();
+        for (int i = 0; i < 8; i++) {
+            attempts.add(service.registerUserAsync("carol", "pw" + i));
+        }
+        var created = new ArrayList<Account>();
+        for (var attempt : attempts) {
+            try {
+                created.add(attempt.join());
+            } catch (CompletionException ex) {
+                assertThat(ex).hasCauseInstanceOf(AccountAlreadyPresentException.class);
+            }
+        }
+        assertThat(created).hasSize(1);
+        assertThat(accounts.getAccount("carol")).isSameAs(created.get(0));
+    }
+}
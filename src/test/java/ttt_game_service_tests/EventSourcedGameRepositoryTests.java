@@ -0,0 +1,228 @@
+package ttt_game_service_tests;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameBoard.BoardCellContentType;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.EventSourcedGameRepository;
+import static org.assertj.core.api.Assertions.*;
+
+//test del repository durevole delle partite (log degli eventi + snapshot)
+public class EventSourcedGameRepositoryTests {
+
+    @TempDir
+    Path dbDir; //cartella temporanea del db
+
+    private static final UserId ALICE = new UserId("alice");
+    private static final UserId BOB = new UserId("bob");
+
+    //crea una partita avviata con due mosse
+    private static Game startedGame(EventSourcedGameRepository repo, String id) throws Exception {
+        var game = new Game(id);
+        repo.addGameIfAbsent(game);
+        game.joinGame(ALICE, TTTSymbol.X);
+        game.joinGame(BOB, TTTSymbol.O);
+        game.startGame();
+        game.makeAmove(ALICE, 0, 0);
+        game.makeAmove(BOB, 1, 1);
+        return game;
+    }
+
+    //una partita in corso viene ricostruita dal log e può proseguire
+    @Test
+    public void inProgressGameIsReplayedFromLog() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        var game = startedGame(repo, "g1");
+        long version = game.getVersion();
+        repo.close();
+
+        var reopened = new EventSourcedGameRepository(dbDir);
+        var restored = reopened.getGame("g1");
+        assertThat(restored.getVersion()).isEqualTo(version);
+        assertThat(restored.getState()).isEqualTo(Game.GameState.STARTED);
+        assertThat(restored.getPlayer(TTTSymbol.O)).isEqualTo(BOB);
+        assertThat(restored.getCurrentTurnSymbol()).isEqualTo(TTTSymbol.X);
+        assertThat(restored.getBoard().getCell(1, 1)).isEqualTo(BoardCellContentType.CIRCLE);
+        restored.makeAmove(ALICE, 0, 1); //la partita ricostruita accetta nuove mosse, che vengono registrate
+        reopened.close();
+
+        var again = new EventSourcedGameRepository(dbDir);
+        assertThat(again.getGame("g1").getBoard().getCell(0, 1)).isEqualTo(BoardCellContentType.CROSS);
+        again.close();
+    }
+
+    //lo snapshot e gli eventi successivi vengono combinati senza riapplicare due volte gli eventi già inclusi
+    @Test
+    public void snapshotPlusLaterEvents() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        var game = startedGame(repo, "g1");
+        repo.snapshot();
+        game.makeAmove(ALICE, 0, 1);
+        game.makeAmove(BOB, 2, 2);
+        game.makeAmove(ALICE, 0, 2); //vittoria di "croce"
+        repo.close();
+
+        var reopened = new EventSourcedGameRepository(dbDir);
+        var restored = reopened.getGame("g1");
+        assertThat(restored.getVersion()).isEqualTo(game.getVersion());
+        assertThat(restored.getState()).isEqualTo(Game.GameState.FINISHED);
+        assertThat(restored.getWinnerSymbol()).isEqualTo(TTTSymbol.X);
+        reopened.close();
+    }
+
+    //un record incompleto lasciato da un crash viene scartato e il log resta utilizzabile
+    @Test
+    public void tornTailIsDiscarded() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        startedGame(repo, "g1");
+        repo.close();
+        try (var files = Files.list(dbDir)) {
+            var segment = files.filter(f -> f.getFileName().toString().endsWith(".log")).max(Path::compareTo).orElseThrow();
+            Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND); //simula una scrittura interrotta
+        }
+
+        var recovered = new EventSourcedGameRepository(dbDir);
+        assertThat(recovered.getGame("g1").getBoard().getCell(0, 0)).isEqualTo(BoardCellContentType.CROSS);
+        recovered.getGame("g1").makeAmove(ALICE, 2, 0);
+        recovered.close();
+
+        var reopened = new EventSourcedGameRepository(dbDir);
+        assertThat(reopened.getGame("g1").getBoard().getCell(2, 0)).isEqualTo(BoardCellContentType.CROSS);
+        reopened.close();
+    }
+
+    //una partita rimossa non viene ricostruita, anche se il suo id viene riutilizzato
+    @Test
+    public void removedGameIsNotRestored() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        startedGame(repo, "g1");
+        repo.removeGame("g1");
+        repo.addGameIfAbsent(new Game("g1"));
+        repo.close();
+
+        var reopened = new EventSourcedGameRepository(dbDir);
+        assertThat(reopened.size()).isEqualTo(1);
+        assertThat(reopened.getGame("g1").getState()).isEqualTo(Game.GameState.WAITING_FOR_PLAYERS);
+        reopened.close();
+    }
+
+    //la griglia m,n,k (dimensioni e caselle) sopravvive sia allo snapshot sia al log
+    @Test
+    public void largeBoardSurvivesSnapshotAndLog() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        var game = new Game("big", new BoardConfig(15, 15, 5));
+        repo.addGameIfAbsent(game);
+        game.joinGame(ALICE, TTTSymbol.X);
+        game.joinGame(BOB, TTTSymbol.O);
+        game.startGame();
+        game.makeAmove(ALICE, 14, 14); //ultima casella (parola del bitboard successiva alla prima)
+        repo.snapshot();
+        game.makeAmove(BOB, 7, 7);
+        repo.close();
+
+        var reopened = new EventSourcedGameRepository(dbDir);
+        var restored = reopened.getGame("big");
+        assertThat(restored.getBoard().getConfig()).isEqualTo(new BoardConfig(15, 15, 5));
+        assertThat(restored.getBoard().getCell(14, 14)).isEqualTo(BoardCellContentType.CROSS);
+        assertThat(restored.getBoard().getCell(7, 7)).isEqualTo(BoardCellContentType.CIRCLE);
+        reopened.close();
+    }
+
+    //aggiunte concorrenti della stessa partita: ne entra una sola e al riavvio viene ricostruita solo quella
+    @Test
+    public void concurrentAddsJournalOneGame() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        var added = new AtomicInteger();
+        IntStream.range(0, 16).parallel().forEach(i -> {
+            if (repo.addGameIfAbsent(new Game("g1", new BoardConfig(3 + i % 2, 3, 3)))) {
+                added.incrementAndGet();
+            }
+        });
+        assertThat(added.get()).isEqualTo(1);
+        var width = repo.getGame("g1").getBoard().getConfig().width();
+        repo.close();
+
+        var reopened = new EventSourcedGameRepository(dbDir);
+        assertThat(reopened.size()).isEqualTo(1);
+        assertThat(reopened.getGame("g1").getBoard().getConfig().width()).isEqualTo(width);
+        reopened.close();
+    }
+
+    //l'aggiunta asincrona viene completata quando lo stato iniziale della partita è sul log
+    @Test
+    public void asyncAddCompletesWhenJournaled() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        assertThat(repo.addGameIfAbsentAsync(new Game("async-game")).get()).isTrue();
+        try (var segments = Files.list(dbDir)) {
+            assertThat(segments.filter(f -> f.getFileName().toString().endsWith(".log")))
+                .anySatisfy(f -> assertThat(new String(Files.readAllBytes(f), StandardCharsets.ISO_8859_1)).contains("async-game"));
+        }
+        assertThat(repo.addGameIfAbsentAsync(new Game("async-game")).get()).isFalse();
+        repo.close();
+    }
+
+    //un record corrotto in un segmento intermedio ferma la riapplicazione: i segmenti successivi non vengono applicati né sovrascritti
+    @Test
+    public void replayStopsAtFirstCorruptSegment() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        var game = startedGame(repo, "g1");
+        repo.close();
+        var first = dbDir.resolve("games-000000000.log");
+        var firstBytes = Files.readAllBytes(first);
+
+        var reopened = new EventSourcedGameRepository(dbDir);
+        reopened.snapshot(); //gli eventi successivi finiscono nel segmento 1
+        reopened.getGame("g1").makeAmove(ALICE, 0, 1);
+        reopened.addGameIfAbsent(new Game("g2"));
+        reopened.close();
+        Files.delete(dbDir.resolve("games.snapshot")); //la riapplicazione riparte dal segmento 0
+        firstBytes[firstBytes.length - 1] ^= 1; //corrompe l'ultimo record (la seconda mossa)
+        Files.write(first, firstBytes);
+
+        var recovered = new EventSourcedGameRepository(dbDir);
+        assertThat(recovered.getGame("g1").getVersion()).isEqualTo(game.getVersion() - 1);
+        assertThat(recovered.getGame("g1").getBoard().getCell(0, 1)).isEqualTo(BoardCellContentType.EMPTY);
+        assertThat(recovered.isPresent("g2")).isFalse();
+        assertThat(dbDir.resolve("games-000000001.log.corrupt")).exists();
+        assertThat(dbDir.resolve("games-000000000.log.corrupt")).exists();
+        recovered.addGameIfAbsent(new Game("g3")); //il log riprende dopo l'ultimo record valido
+        recovered.close();
+
+        var again = new EventSourcedGameRepository(dbDir);
+        assertThat(again.isPresent("g3")).isTrue();
+        assertThat(again.isPresent("g2")).isFalse();
+        again.close();
+    }
+
+    //un record ENDED con un vincitore che non è entrato nella partita è corrotto: la riapplicazione si ferma senza errori
+    @Test
+    public void endedWithUnknownWinnerIsCorrupt() throws Exception {
+        var repo = new EventSourcedGameRepository(dbDir);
+        var game = new Game("g1");
+        repo.addGameIfAbsent(game);
+        game.joinGame(ALICE, TTTSymbol.X);
+        repo.close();
+        var ended = ByteBuffer.allocate(8 + 18);
+        ended.putInt(18).putInt(0).put((byte) 5).putLong(1).putLong(game.getVersion() + 1).put((byte) 2); //ENDED, vincitore "cerchio"
+        var crc = new CRC32();
+        crc.update(ended.array(), 8, 18);
+        ended.putInt(4, (int) crc.getValue());
+        Files.write(dbDir.resolve("games-000000000.log"), ended.array(), StandardOpenOption.APPEND);
+
+        var recovered = new EventSourcedGameRepository(dbDir);
+        assertThat(recovered.getGame("g1").getState()).isEqualTo(Game.GameState.WAITING_FOR_PLAYERS);
+        assertThat(recovered.getGame("g1").getVersion()).isEqualTo(game.getVersion());
+        recovered.close();
+    }
+}
@@ -0,0 +1,134 @@
+package ttt_game_service_tests;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ttt_game_service.application.AccountAlreadyPresentException;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
+import ttt_game_service.domain.Account;
+import ttt_game_service.infrastructure.SimpleFileBasedAccountRepository;
+import static org.assertj.core.api.Assertions.*;
+
+//test del repository degli account basato su file (snapshot + log append-only)
+public class FileBasedAccountRepositoryTests {
+
+    @TempDir
+    Path dbDir; //cartella temporanea del db
+
+    private static final Pbkdf2CredentialVerifier VERIFIER = new Pbkdf2CredentialVerifier(1_000); //poche iterazioni: il test non misura il costo dell'hash
+    private static final String HASH = VERIFIER.hash("secret");
+
+    //gli account registrati sopravvivono al riavvio
+    @Test
+    public void accountsSurviveRestart() {
+        var repo = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        repo.addAccount(new Account("alice", HASH));
+        repo.addAccount(new Account("bob", HASH));
+        repo.close();
+
+        var reopened = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        assertThat(reopened.isPresent("alice")).isTrue();
+        assertThat(reopened.getAccount("bob").getPasswordHash()).isEqualTo(HASH);
+        reopened.close();
+    }
+
+    //un record incompleto lasciato da un crash viene scartato e il log resta utilizzabile
+    @Test
+    public void tornRecordIsDiscarded() throws Exception {
+        var repo = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        repo.addAccount(new Account("alice", HASH));
+        repo.close();
+        Files.writeString(dbDir.resolve("users.log"), "{\"userName\":\"bo", StandardOpenOption.APPEND); //simula una scrittura interrotta
+
+        var recovered = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        assertThat(recovered.isPresent("alice")).isTrue();
+        assertThat(recovered.isPresent("bob")).isFalse();
+        recovered.addAccount(new Account("carol", HASH));
+        recovered.close();
+
+        var reopened = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        assertThat(reopened.isPresent("carol")).isTrue();
+        reopened.close();
+    }
+
+    //un record illeggibile in mezzo al log viene saltato senza perdere le registrazioni successive
+    @Test
+    public void corruptedRecordDoesNotHideLaterOnes() throws Exception {
+        var repo = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        repo.addAccount(new Account("alice", HASH));
+        repo.close();
+        Files.writeString(dbDir.resolve("users.log"), "{\"userName\":\"bo#\n{\"userName\":\"carol\",\"passwordHash\":\"" + HASH + "\"}\n", StandardOpenOption.APPEND);
+
+        var recovered = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        assertThat(recovered.isPresent("alice")).isTrue();
+        assertThat(recovered.isPresent("carol")).isTrue();
+        recovered.addAccount(new Account("dave", HASH));
+        recovered.close();
+
+        var reopened = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        assertThat(reopened.isPresent("carol")).isTrue();
+        assertThat(reopened.isPresent("dave")).isTrue();
+        reopened.close();
+    }
+
+    //un db nel vecchio formato json viene migrato allo snapshot binario al primo avvio; le password in chiaro
+    //(del db json o dei record del log scritti prima degli hash) vengono sostituite dall'hash già durante il caricamento
+    @Test
+    public void legacyJsonIsMigrated() throws Exception {
+        Files.writeString(dbDir.resolve("users.json"), "[ {\n  \"userName\" : \"alice\",\n  \"password\" : \"secret\"\n} ]");
+
+        var migrated = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        var aliceHash = migrated.getAccount("alice").getPasswordHash();
+        assertThat(aliceHash).startsWith("pbkdf2-sha256$");
+        assertThat(VERIFIER.verify("secret", aliceHash)).isTrue();
+        migrated.close();
+        assertThat(dbDir.resolve("users.db")).exists();
+        assertThat(new String(Files.readAllBytes(dbDir.resolve("users.db")), StandardCharsets.UTF_8)).doesNotContain("secret");
+        assertThat(dbDir.resolve("users.json")).doesNotExist();
+        assertThat(dbDir.resolve("users.json.migrated")).doesNotExist(); //nessuna copia delle password in chiaro
+        Files.writeString(dbDir.resolve("users.log"), "{\"userName\":\"bob\",\"password\":\"plain-pw\"}\n", StandardOpenOption.APPEND); //record del log precedente agli hash
+
+        var reopened = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        assertThat(reopened.getAccount("alice").getPasswordHash()).isEqualTo(aliceHash);
+        assertThat(VERIFIER.verify("plain-pw", reopened.getAccount("bob").getPasswordHash())).isTrue();
+        assertThat(VERIFIER.isPlaintext(reopened.getAccount("bob").getPasswordHash())).isFalse();
+        assertThat(Files.readString(dbDir.resolve("users.log"))).doesNotContain("plain-pw");
+        reopened.close();
+    }
+
+    //registrazione asincrona: con il repository su file la registrazione risponde quando l'account è persistente
+    @Test
+    public void asyncRegistrationIsDurableOnCompletion() throws Exception {
+        var service = new GameServiceImpl();
+        service.bindCredentialVerifier(VERIFIER);
+        var fileRepo = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        service.bindAccountRepository(fileRepo);
+        service.registerUserAsync("alice", "secret").get();
+        assertThat(Files.readString(dbDir.resolve("users.log"))).contains("\"alice\""); //già sul log al completamento
+        fileRepo.close();
+    }
+
+    //aggiunta atomica e sostituzione condizionata: un username registrato non viene sovrascritto e la sostituzione richiede l'account atteso
+    @Test
+    public void conditionalWritesDoNotOverwrite() {
+        var repo = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        var alice = new Account("alice", HASH);
+        assertThat(repo.addAccountIfAbsent(alice)).isTrue();
+        assertThat(repo.addAccountIfAbsent(new Account("alice", VERIFIER.hash("other")))).isFalse();
+        assertThatThrownBy(() -> repo.addAccountIfAbsentAsync(new Account("alice", HASH)).join()).hasCauseInstanceOf(AccountAlreadyPresentException.class);
+
+        var rehashed = new Account("alice", VERIFIER.hash("secret"));
+        assertThat(repo.replaceAccount(new Account("alice", HASH), rehashed)).isFalse(); //non è l'account registrato
+        assertThat(repo.replaceAccountAsync(alice, rehashed).join()).isTrue();
+        assertThat(repo.replaceAccount(alice, new Account("alice", HASH))).isFalse(); //già sostituito
+        repo.close();
+
+        var reopened = new SimpleFileBasedAccountRepository(dbDir, VERIFIER);
+        assertThat(reopened.getAccount("alice").getPasswordHash()).isEqualTo(rehashed.getPasswordHash());
+        reopened.close();
+    }
+}
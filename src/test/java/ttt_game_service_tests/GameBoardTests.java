@@ -0,0 +1,73 @@
+package ttt_game_service_tests;
+
+import org.junit.jupiter.api.Test;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.GameBoard;
+import ttt_game_service.domain.InvalidMoveException;
+import ttt_game_service.domain.TTTSymbol;
+import static org.assertj.core.api.Assertions.*;
+
+//test della griglia di gioco
+public class GameBoardTests {
+
+    //test delle combinazioni vincenti
+    @Test
+    public void winningLines() throws InvalidMoveException {
+        var row = new GameBoard("row");
+        row.newMove(TTTSymbol.X, 0, 1);
+        row.newMove(TTTSymbol.X, 1, 1);
+        assertThat(row.isWinner(TTTSymbol.X)).isFalse(); //riga incompleta
+        row.newMove(TTTSymbol.X, 2, 1);
+        assertThat(row.isWinner(TTTSymbol.X)).isTrue(); //riga completa
+        assertThat(row.checkWinner()).contains(TTTSymbol.X);
+
+        var diagonal = new GameBoard("diagonal");
+        diagonal.newMove(TTTSymbol.O, 2, 0);
+        diagonal.newMove(TTTSymbol.O, 1, 1);
+        diagonal.newMove(TTTSymbol.O, 0, 2);
+        assertThat(diagonal.isWinner(TTTSymbol.O)).isTrue(); //diagonale secondaria completa
+        assertThat(diagonal.isWinner(TTTSymbol.X)).isFalse();
+        assertThat(diagonal.getCell(1, 1)).isEqualTo(GameBoard.BoardCellContentType.CIRCLE);
+    }
+
+    //test delle mosse non valide e del pareggio
+    @Test
+    public void invalidMovesAndTie() throws InvalidMoveException {
+        var board = new GameBoard("tie");
+        board.newMove(TTTSymbol.X, 0, 0);
+        assertThatThrownBy(() -> board.newMove(TTTSymbol.O, 0, 0)).isInstanceOf(InvalidMoveException.class); //casella occupata
+        assertThatThrownBy(() -> board.newMove(TTTSymbol.O, 3, 0)).isInstanceOf(InvalidMoveException.class); //casella fuori dalla griglia
+
+        //X O X / X O O / O X X
+        board.newMove(TTTSymbol.O, 1, 0);
+        board.newMove(TTTSymbol.X, 2, 0);
+        board.newMove(TTTSymbol.O, 1, 1);
+        board.newMove(TTTSymbol.X, 0, 1);
+        board.newMove(TTTSymbol.O, 2, 1);
+        board.newMove(TTTSymbol.X, 1, 2);
+        board.newMove(TTTSymbol.O, 0, 2);
+        board.newMove(TTTSymbol.X, 2, 2);
+        assertThat(board.checkWinner()).isEmpty();
+        assertThat(board.isTie()).isTrue();
+    }
+
+    //griglia 15x15 con 5 in fila: la combinazione viene trovata anche se l'ultima mossa ne chiude il centro
+    @Test
+    public void fiveInARowOnLargeBoard() throws InvalidMoveException {
+        var board = new GameBoard("gomoku", new BoardConfig(15, 15, 5));
+        board.newMove(TTTSymbol.X, 3, 3);
+        board.newMove(TTTSymbol.X, 4, 4);
+        board.newMove(TTTSymbol.X, 6, 6);
+        board.newMove(TTTSymbol.X, 7, 7);
+        assertThat(board.checkWinner()).isEmpty(); //quattro simboli con un buco
+        board.newMove(TTTSymbol.O, 14, 0);
+        board.newMove(TTTSymbol.O, 13, 1);
+        assertThat(board.isWinner(TTTSymbol.O)).isFalse();
+        board.newMove(TTTSymbol.X, 5, 5); //chiude la diagonale al centro
+        assertThat(board.isWinner(TTTSymbol.X)).isTrue();
+        assertThat(board.checkWinner()).contains(TTTSymbol.X);
+        assertThat(board.scanWinner()).contains(TTTSymbol.X);
+        assertThatThrownBy(() -> board.newMove(TTTSymbol.O, 15, 0)).isInstanceOf(InvalidMoveException.class); //fuori dalla griglia
+        assertThatThrownBy(() -> new BoardConfig(15, 15, 16)).isInstanceOf(IllegalArgumentException.class); //combinazione più lunga del lato
+    }
+}
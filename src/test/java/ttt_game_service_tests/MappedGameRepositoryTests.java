@@ -0,0 +1,221 @@
+package ttt_game_service_tests;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameBoard.BoardCellContentType;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import ttt_game_service.infrastructure.MappedGameRepository;
+import static org.assertj.core.api.Assertions.*;
+
+//test del repository delle partite in slot di un file mappato in memoria
+public class MappedGameRepositoryTests {
+
+    @TempDir
+    Path dbDir; //cartella temporanea del db
+
+    private static final UserId ALICE = new UserId("alice");
+    private static final UserId BOB = new UserId("bob");
+
+    //una partita in corso viene riletta dal suo slot dopo il riavvio e può proseguire
+    @Test
+    public void gameSurvivesRestartInItsSlot() throws Exception {
+        var file = dbDir.resolve("games.slots");
+        var repo = new MappedGameRepository(file, 1000, new InMemoryGameRepository());
+        var game = new Game("g1");
+        assertThat(repo.addGameIfAbsent(game)).isTrue();
+        assertThat(repo.addGameIfAbsent(new Game("g1"))).isFalse();
+        assertThat(repo.getGame("g1")).isSameAs(game); //la partita in uso non viene ricostruita
+        game.joinGame(ALICE, TTTSymbol.X);
+        game.joinGame(BOB, TTTSymbol.O);
+        game.startGame();
+        game.makeAmove(ALICE, 0, 0);
+        game.makeAmove(BOB, 1, 1);
+        long version = game.getVersion();
+        repo.close();
+
+        var reopened = new MappedGameRepository(file, 1000, new InMemoryGameRepository());
+        assertThat(reopened.size()).isEqualTo(1);
+        var restored = reopened.getGame("g1");
+        assertThat(restored.getVersion()).isEqualTo(version);
+        assertThat(restored.getState()).isEqualTo(Game.GameState.STARTED);
+        assertThat(restored.getPlayer(TTTSymbol.O)).isEqualTo(BOB);
+        assertThat(restored.getCurrentTurnSymbol()).isEqualTo(TTTSymbol.X);
+        assertThat(restored.getBoard().getCell(1, 1)).isEqualTo(BoardCellContentType.CIRCLE);
+        restored.makeAmove(ALICE, 0, 1); //le nuove mosse riscrivono lo slot
+        restored.makeAmove(BOB, 2, 2);
+        restored.makeAmove(ALICE, 0, 2);
+        reopened.close();
+
+        var again = new MappedGameRepository(file, 1000, new InMemoryGameRepository());
+        var finished = again.getGame("g1");
+        assertThat(finished.getState()).isEqualTo(Game.GameState.FINISHED);
+        assertThat(finished.getWinnerSymbol()).isEqualTo(TTTSymbol.X);
+        again.close();
+    }
+
+    //rimozioni e reinserimenti riusano gli slot; le griglie diverse da 3x3 e gli id troppo lunghi vanno nel repository di riserva
+    @Test
+    public void removedSlotsAreReusedAndOtherGamesFallBack() {
+        var fallback = new InMemoryGameRepository();
+        var repo = new MappedGameRepository(dbDir.resolve("games.slots"), 64, fallback); //capacità minima: 64 segmenti da 64 slot
+        for (int round = 0; round < 5; round++) { //molte più partite di quelle che un segmento contiene contemporaneamente
+            for (int i = 0; i < 1000; i++) {
+                assertThat(repo.addGameIfAbsent(new Game("game-" + i))).isTrue();
+            }
+            assertThat(fallback.size()).isZero();
+            assertThat(repo.size()).isEqualTo(1000);
+            for (int i = 0; i < 1000; i++) {
+                repo.removeGame("game-" + i);
+            }
+            assertThat(repo.isPresent("game-7")).isFalse();
+        }
+
+        var large = new Game("large", new BoardConfig(5, 5, 4));
+        var longId = new Game("x".repeat(60));
+        assertThat(repo.addGameIfAbsent(large)).isTrue();
+        assertThat(repo.addGameIfAbsent(longId)).isTrue();
+        assertThat(fallback.size()).isEqualTo(2);
+        assertThat(repo.getGame("large")).isSameAs(large);
+        assertThat(repo.size()).isEqualTo(2);
+        repo.close();
+    }
+
+    //una riorganizzazione interrotta durante la copia dal segmento di appoggio viene completata all'apertura
+    @Test
+    public void interruptedRehashIsResumed() throws Exception {
+        var file = dbDir.resolve("games.slots");
+        var repo = new MappedGameRepository(file, 64, new InMemoryGameRepository());
+        for (int i = 0; i < 200; i++) {
+            repo.addGameIfAbsent(new Game("game-" + i));
+        }
+        repo.close();
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) { //simula il crash: copia completa, segmento 0 a metà
+            var header = ByteBuffer.allocate(64);
+            channel.read(header, 0);
+            long segmentBytes = (long) header.getInt(12) * 64;
+            var segment = ByteBuffer.allocate((int) segmentBytes);
+            channel.read(segment, 64);
+            channel.write(segment.flip(), 64 + 64 * segmentBytes); //segmento di appoggio
+            channel.write(ByteBuffer.allocate((int) segmentBytes / 2), 64); //prima metà del segmento sovrascritta dalla copia interrotta
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1), 16); //segmento 0 in riorganizzazione
+        }
+
+        var reopened = new MappedGameRepository(file, 64, new InMemoryGameRepository());
+        assertThat(reopened.size()).isEqualTo(200);
+        for (int i = 0; i < 200; i++) {
+            assertThat(reopened.isPresent("game-" + i)).isTrue();
+        }
+        reopened.close();
+    }
+
+    //una capacità che non entra nelle mappature viene rifiutata con un errore esplicito
+    @Test
+    public void capacityIsValidated() {
+        assertThatThrownBy(() -> new MappedGameRepository(dbDir.resolve("huge.slots"), 1L << 40, new InMemoryGameRepository()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("capacity");
+    }
+
+    //uno slot che riferisce un nome perso (file dei nomi troncato) viene letto con il giocatore assente
+    @Test
+    public void unknownPlayerIndexIsTolerated() throws Exception {
+        var file = dbDir.resolve("games.slots");
+        var repo = new MappedGameRepository(file, 64, new InMemoryGameRepository());
+        var game = new Game("g1");
+        repo.addGameIfAbsent(game);
+        game.joinGame(ALICE, TTTSymbol.X);
+        repo.close();
+        Files.write(dbDir.resolve("games.slots.names"), new byte[0]);
+
+        var reopened = new MappedGameRepository(file, 64, new InMemoryGameRepository());
+        assertThat(reopened.getGame("g1").getPlayer(TTTSymbol.X)).isNull();
+        reopened.close();
+    }
+
+    //il servizio non trattiene le partite: una partita non in uso lascia lo heap e viene ricollegata al ciclo di vita al join successivo
+    @Test
+    public void unusedGamesLeaveTheHeap() throws Exception {
+        var repo = new MappedGameRepository(dbDir.resolve("games.slots"), 64, new InMemoryGameRepository());
+        var service = new GameServiceImpl();
+        service.bindGameRepository(repo);
+        service.createNewGame("g1");
+        var ref = new WeakReference<>(repo.getGame("g1"));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (ref.get() != null && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(ref.get()).isNull();
+
+        service.joinGame(ALICE, "g1", TTTSymbol.X, NoOpPlayerSessionEventObserver.INSTANCE); //ricostruita dallo slot
+        service.joinGame(BOB, "g1", TTTSymbol.O, NoOpPlayerSessionEventObserver.INSTANCE);
+        assertThat(service.registryGauges().startedGames()).isEqualTo(1); //il ciclo di vita osserva la partita ricostruita
+        assertThat(service.registryGauges().waitingGames()).isZero();
+        repo.close();
+    }
+
+    //un nome nuovo viene reso persistente prima del join e fuori dal chiamante; un nome già presente non richiede i/o
+    @Test
+    public void newPlayerNamesArePersistedBeforeTheJoin() throws Exception {
+        var file = dbDir.resolve("games.slots");
+        var repo = new MappedGameRepository(file, 64, new InMemoryGameRepository());
+        repo.registerPlayerAsync(ALICE).get();
+        assertThat(new String(Files.readAllBytes(dbDir.resolve("games.slots.names")), StandardCharsets.UTF_8)).contains("alice");
+        assertThat(repo.registerPlayerAsync(ALICE)).isDone(); //indice già in tabella
+
+        var service = new GameServiceImpl();
+        service.bindGameRepository(repo);
+        service.createNewGame("g1");
+        service.joinGameAsync(ALICE, "g1", TTTSymbol.X, NoOpPlayerSessionEventObserver.INSTANCE, Runnable::run).get();
+        service.joinGameAsync(BOB, "g1", TTTSymbol.O, NoOpPlayerSessionEventObserver.INSTANCE, Runnable::run).get();
+        repo.close();
+
+        var reopened = new MappedGameRepository(file, 64, new InMemoryGameRepository());
+        assertThat(reopened.getGame("g1").getPlayer(TTTSymbol.O)).isEqualTo(BOB);
+        reopened.close();
+    }
+
+    //al collegamento le partite ricostruite non vengono lette: ricevono il ciclo di vita al primo join, quelle mai riprese vengono rimosse
+    @Test
+    public void recoveredGamesGetALifecycleOnFirstUse() throws Exception {
+        var file = dbDir.resolve("games.slots");
+        var repo = new MappedGameRepository(file, 64, new InMemoryGameRepository());
+        var started = new Game("g1");
+        repo.addGameIfAbsent(started);
+        started.joinGame(ALICE, TTTSymbol.X);
+        started.joinGame(BOB, TTTSymbol.O);
+        started.startGame();
+        repo.addGameIfAbsent(new Game("g2"));
+        repo.close();
+
+        var reopened = new MappedGameRepository(file, 64, new InMemoryGameRepository());
+        var service = new GameServiceImpl();
+        service.configureEviction(60_000, 60_000, 60_000);
+        service.bindGameRepository(reopened);
+        assertThat(service.registryGauges().startedGames()).isZero(); //nessuna partita ricostruita all'avvio
+        assertThat(service.hasGame("g2")).isTrue();
+
+        service.joinGame(ALICE, "g1", TTTSymbol.X, NoOpPlayerSessionEventObserver.INSTANCE); //rientro nella partita ricostruita
+        assertThat(service.registryGauges().startedGames()).isEqualTo(1);
+        assertThat(service.evictExpired(System.currentTimeMillis())).isZero();
+        service.evictExpired(System.currentTimeMillis() + 30_000); //ciclo di vita del primo join: 30 s di inattività non bastano
+        assertThat(reopened.isPresent("g1")).isTrue();
+        assertThat(reopened.isPresent("g2")).isTrue();
+        service.evictExpired(System.currentTimeMillis() + 60_000);
+        assertThat(reopened.isPresent("g2")).isFalse(); //mai ripresa: abbandonata
+        reopened.close();
+    }
+}
@@ -0,0 +1,79 @@
+package ttt_game_service_tests;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.PlayerSessionEventObserver;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import static org.assertj.core.api.Assertions.*;
+
+//test della coda di matchmaking
+public class MatchmakingTests {
+
+    private GameServiceImpl service;
+    private final AtomicInteger started = new AtomicInteger(); //notifiche di inizio partita ricevute
+
+    //observer che conta le notifiche di inizio partita
+    private final PlayerSessionEventObserver counter = new PlayerSessionEventObserver() {
+        public void gameStarted(String playerSessionId) { started.incrementAndGet(); }
+        public void newMove(String playerSessionId, String symbol, int x, int y) {}
+        public void gameEnded(String playerSessionId, Optional<String> winner) {}
+        public void enableEventNotification(String playerSessionId) {}
+    };
+
+    @BeforeEach
+    public void setup() {
+        service = new GameServiceImpl();
+        service.bindAccountRepository(new InMemoryAccountRepository());
+        service.bindGameRepository(new InMemoryGameRepository());
+    }
+
+    //due giocatori della stessa fascia vengono abbinati: chi attende gioca con "croce" e la partita parte per entrambi
+    @Test
+    public void playersInSameBucketArePaired() throws Exception {
+        var first = service.findMatch(new UserId("alice"), 1010, counter);
+        assertThat(first.result()).isNotDone();
+        assertThat(service.matchmakingStats().waiting()).isEqualTo(1);
+
+        var second = service.findMatch(new UserId("bob"), 1190, counter);
+        var cross = first.result().join();
+        var circle = second.result().join();
+        assertThat(cross.getGameId()).isEqualTo(circle.getGameId());
+        assertThat(cross.getSymbol()).isEqualTo(TTTSymbol.X);
+        assertThat(circle.getSymbol()).isEqualTo(TTTSymbol.O);
+        assertThat(started.get()).isEqualTo(2);
+        assertThat(service.matchmakingStats().waiting()).isZero();
+        assertThat(service.matchmakingStats().matches()).isEqualTo(1);
+    }
+
+    //fasce diverse non vengono abbinate subito; una richiesta ritirata non viene più abbinata
+    @Test
+    public void cancelledTicketIsNotPaired() {
+        var alice = service.findMatch(new UserId("alice"), 1000, counter);
+        var bob = service.findMatch(new UserId("bob"), 2000, counter);
+        assertThat(alice.result()).isNotDone();
+        assertThat(bob.result()).isNotDone();
+
+        assertThat(alice.cancel()).isTrue();
+        assertThatThrownBy(() -> alice.result().join()).isInstanceOf(CancellationException.class);
+        var carol = service.findMatch(new UserId("carol"), 1000, counter);
+        assertThat(carol.result()).isNotDone();
+        assertThat(service.matchmakingStats().waiting()).isEqualTo(2);
+    }
+
+    //una nuova richiesta dello stesso utente sostituisce quella in attesa (nessuna partita contro se stesso)
+    @Test
+    public void sameUserReplacesOwnTicket() {
+        var old = service.findMatch(new UserId("alice"), 1000, counter);
+        var renewed = service.findMatch(new UserId("alice"), 1000, counter);
+        assertThat(old.result()).isCancelled();
+        assertThat(renewed.result()).isNotDone();
+        assertThat(service.matchmakingStats().waiting()).isEqualTo(1);
+    }
+}
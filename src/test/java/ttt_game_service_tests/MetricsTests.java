@@ -0,0 +1,48 @@
+package ttt_game_service_tests;
+
+import org.junit.jupiter.api.Test;
+import metrics.MetricsRegistry;
+import static org.assertj.core.api.Assertions.*;
+
+//test del registro delle metriche e dell'esposizione in formato prometheus
+public class MetricsTests {
+
+    //gli intervalli dell'istogramma sono cumulativi; somma in secondi e conteggio totale
+    @Test
+    public void histogramIsExposedWithCumulativeBuckets() {
+        var registry = new MetricsRegistry();
+        var latency = registry.histogram("route_seconds", "Route latency", "route", "/api/login");
+        latency.record(800); //0.8 µs
+        latency.record(3_000_000); //3 ms
+        latency.record(20_000_000_000L); //20 s, oltre l'ultimo limite
+
+        var text = registry.scrape();
+        assertThat(text).contains("# TYPE route_seconds histogram");
+        assertThat(text).contains("route_seconds_bucket{route=\"/api/login\",le=\"0.000001\"} 1");
+        assertThat(text).contains("route_seconds_bucket{route=\"/api/login\",le=\"0.0025\"} 1");
+        assertThat(text).contains("route_seconds_bucket{route=\"/api/login\",le=\"0.005\"} 2");
+        assertThat(text).contains("route_seconds_bucket{route=\"/api/login\",le=\"10\"} 2");
+        assertThat(text).contains("route_seconds_bucket{route=\"/api/login\",le=\"+Inf\"} 3");
+        assertThat(text).contains("route_seconds_count{route=\"/api/login\"} 3");
+        assertThat(text).contains("route_seconds_sum{route=\"/api/login\"} 20.0030008");
+    }
+
+    //stesso nome ed etichette: stessa istanza; le gauge vengono lette durante l'esposizione e sostituite se registrate di nuovo
+    @Test
+    public void countersAndGauges() {
+        var registry = new MetricsRegistry();
+        registry.counter("frames_total", "Frames", "kind", "player").inc();
+        registry.counter("frames_total", "Frames", "kind", "player").add(2);
+        registry.counter("frames_total", "Frames", "kind", "a\"b").inc();
+        registry.gauge("sessions", "Sessions", () -> 1);
+        registry.gauge("sessions", "Sessions", () -> 7);
+        registry.counter("matches_total", "Matches", () -> 5L); //contatore mantenuto da un altro componente
+
+        var text = registry.scrape();
+        assertThat(text).contains("frames_total{kind=\"player\"} 3");
+        assertThat(text).contains("frames_total{kind=\"a\\\"b\"} 1"); //valore dell'etichetta con escape
+        assertThat(text).contains("sessions 7");
+        assertThat(text).contains("# TYPE matches_total counter\nmatches_total 5");
+        assertThatThrownBy(() -> registry.histogram("sessions", "Sessions")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
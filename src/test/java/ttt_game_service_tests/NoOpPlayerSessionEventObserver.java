@@ -0,0 +1,17 @@
+package ttt_game_service_tests;
+
+import java.util.Optional;
+import ttt_game_service.application.PlayerSessionEventObserver;
+
+//observer che scarta tutti gli eventi (condiviso da test e benchmark, che misurano solo il costo del dominio e dell'applicazione)
+public final class NoOpPlayerSessionEventObserver implements PlayerSessionEventObserver {
+
+    public static final NoOpPlayerSessionEventObserver INSTANCE = new NoOpPlayerSessionEventObserver();
+
+    private NoOpPlayerSessionEventObserver() {}
+
+    public void enableEventNotification(String playerSessionId) {}
+    public void gameStarted(String playerSessionId) {}
+    public void newMove(String playerSessionId, String symbol, int x, int y) {}
+    public void gameEnded(String playerSessionId, Optional<String> winner) {}
+}
@@ -0,0 +1,93 @@
+package ttt_game_service_tests;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
+import ttt_game_service.domain.Account;
+import ttt_game_service.domain.BoardConfig;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameEvent;
+import ttt_game_service.domain.GameObserver;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import ttt_game_service.infrastructure.RepositoryWorkers;
+import static org.assertj.core.api.Assertions.*;
+
+//test del pool che esegue le chiamate degli adapter bloccanti: le porte asincrone del servizio non eseguono mai l'adapter sul chiamante
+public class RepositoryWorkersTests {
+
+    //registrazione e login asincroni: ogni chiamata all'adapter degli account avviene sui thread del pool
+    @Test
+    public void accountPortsRunOnWorkers() throws Exception {
+        var callers = ConcurrentHashMap.<String>newKeySet();
+        var blocking = new InMemoryAccountRepository() { //adapter che registra i thread chiamanti
+            public Account getAccount(String userName) {
+                callers.add(Thread.currentThread().getName());
+                return super.getAccount(userName);
+            }
+
+            public void addAccount(Account account) {
+                callers.add(Thread.currentThread().getName());
+                super.addAccount(account);
+            }
+
+            public boolean addAccountIfAbsent(Account account) {
+                callers.add(Thread.currentThread().getName());
+                return super.addAccountIfAbsent(account);
+            }
+        };
+        var service = new GameServiceImpl();
+        service.bindCredentialVerifier(new Pbkdf2CredentialVerifier(1_000)); //poche iterazioni: il test non misura il costo dell'hash
+        service.bindAccountRepository(new RepositoryWorkers(2).accounts(blocking));
+        service.registerUserAsync("bob", "secret").get();
+        assertThat(service.loginAsync("bob", "secret").get().getSessionId()).isNotNull();
+        assertThat(service.loginAsync("bob", "wrong")).failsWithin(Duration.ofSeconds(5));
+        assertThat(callers).isNotEmpty().allSatisfy(name -> assertThat(name).startsWith("repository-io-"));
+    }
+
+    //creazione, join e spettatori asincroni: le letture della partita avvengono sul pool, il join sull'esecutore indicato
+    @Test
+    public void gamePortsRunOnWorkers() throws Exception {
+        var callers = ConcurrentHashMap.<String>newKeySet();
+        var blocking = new InMemoryGameRepository() { //adapter che registra i thread chiamanti
+            public boolean addGameIfAbsent(Game game) {
+                callers.add(Thread.currentThread().getName());
+                return super.addGameIfAbsent(game);
+            }
+
+            public Game getGame(String gameId) {
+                callers.add(Thread.currentThread().getName());
+                return super.getGame(gameId);
+            }
+        };
+        var service = new GameServiceImpl();
+        service.bindAccountRepository(new InMemoryAccountRepository());
+        service.bindGameRepository(new RepositoryWorkers(2).games(blocking));
+        var gameLoop = Executors.newSingleThreadExecutor(r -> new Thread(r, "game-loop"));
+        try {
+            service.createNewGameAsync("g1", BoardConfig.STANDARD).get();
+            var joinedOn = new AtomicReference<String>();
+            var spectator = new GameObserver() { //registra il thread che esegue il join
+                public void notifyGameEvent(GameEvent ev) {
+                    joinedOn.compareAndSet(null, Thread.currentThread().getName());
+                }
+            };
+            assertThat(service.watchGameAsync("g1", spectator).get()).isTrue();
+            var notifier = NoOpPlayerSessionEventObserver.INSTANCE;
+            var cross = service.joinGameAsync(new UserId("alice"), "g1", TTTSymbol.X, notifier, gameLoop).get();
+            assertThat(cross.getGameId()).isEqualTo("g1");
+            assertThat(joinedOn.get()).isEqualTo("game-loop");
+            assertThat(service.watchGameAsync("missing", spectator).get()).isFalse();
+            assertThat(service.joinGameAsync(new UserId("bob"), "missing", TTTSymbol.O, notifier, gameLoop)).failsWithin(Duration.ofSeconds(5));
+            assertThat(callers).isNotEmpty().allSatisfy(name -> assertThat(name).startsWith("repository-io-"));
+        } finally {
+            gameLoop.shutdown();
+        }
+    }
+}
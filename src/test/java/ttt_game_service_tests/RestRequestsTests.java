@@ -0,0 +1,39 @@
+package ttt_game_service_tests;
+
+import org.junit.jupiter.api.Test;
+import io.vertx.core.buffer.Buffer;
+import ttt_game_service.infrastructure.MalformedRequestException;
+import ttt_game_service.infrastructure.RestRequests;
+import static org.assertj.core.api.Assertions.*;
+
+//test dei decoder tipizzati dei body rest
+public class RestRequestsTests {
+
+    //le coordinate della mossa possono essere numeri o stringhe; i campi sconosciuti (anche annidati) vengono ignorati
+    @Test
+    public void moveAcceptsNumbersAndStrings() throws Exception {
+        var move = RestRequests.move(Buffer.buffer("{\"playerSessionId\":\"player-session-1\",\"x\":\"2\",\"y\":1}"));
+        assertThat(move).isEqualTo(new RestRequests.Move("player-session-1", 2, 1));
+
+        var withExtra = RestRequests.move(Buffer.buffer(" { \"extra\" : {\"a\":[1,\"}\"]}, \"y\" : 0 , \"x\":0,\"playerSessionId\":\"p\" } "));
+        assertThat(withExtra).isEqualTo(new RestRequests.Move("p", 0, 0));
+    }
+
+    //le stringhe con sequenze di escape e caratteri non ascii vengono decodificate
+    @Test
+    public void credentialsDecodeEscapes() throws Exception {
+        var credentials = RestRequests.credentials(Buffer.buffer("{\"userName\":\"andr\\u00e8 \\\"a\\\"\",\"password\":\"pà\\\\ss\"}"));
+        assertThat(credentials.userName()).isEqualTo("andrè \"a\"");
+        assertThat(credentials.password()).isEqualTo("pà\\ss");
+    }
+
+    //body non validi o incompleti vengono rifiutati
+    @Test
+    public void malformedBodiesAreRejected() {
+        assertThatThrownBy(() -> RestRequests.move(Buffer.buffer("{\"playerSessionId\":\"p\",\"x\":1}"))).isInstanceOf(MalformedRequestException.class);
+        assertThatThrownBy(() -> RestRequests.move(Buffer.buffer("{\"playerSessionId\":\"p\",\"x\":\"a\",\"y\":1}"))).isInstanceOf(MalformedRequestException.class);
+        assertThatThrownBy(() -> RestRequests.credentials(Buffer.buffer("{\"userName\":\"alice\""))).isInstanceOf(MalformedRequestException.class);
+        assertThatThrownBy(() -> RestRequests.credentials(Buffer.buffer("{\"userName\":\"alice\",\"password\":\"x\"} {}"))).isInstanceOf(MalformedRequestException.class);
+        assertThatThrownBy(() -> RestRequests.newGame(null)).isInstanceOf(MalformedRequestException.class);
+    }
+}
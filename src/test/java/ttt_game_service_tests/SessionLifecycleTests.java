@@ -0,0 +1,106 @@
+package ttt_game_service_tests;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ttt_game_service.application.GameOutcome;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
+import ttt_game_service.application.PlayerSessionEventObserver;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import static org.assertj.core.api.Assertions.*;
+
+//test della rimozione di sessioni inattive e partite terminate
+public class SessionLifecycleTests {
+
+    private static final long IDLE = 1_000; //inattività massima delle sessioni e delle partite (ms)
+    private static final long GRACE = 100; //periodo di grazia delle partite terminate (ms)
+    private GameServiceImpl service;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        service = new GameServiceImpl();
+        service.bindAccountRepository(new InMemoryAccountRepository());
+        service.bindGameRepository(new InMemoryGameRepository());
+        service.bindCredentialVerifier(new Pbkdf2CredentialVerifier(1_000)); //poche iterazioni: il test non misura il costo dell'hash
+        service.configureEviction(IDLE, GRACE, IDLE);
+        service.registerUser("alice", "pw");
+        service.registerUser("bob", "pw");
+    }
+
+    //una sessione utente inattiva viene rimossa, una sessione usata di recente no
+    @Test
+    public void idleUserSessionIsEvicted() throws Exception {
+        var session = service.login("alice", "pw");
+        long now = System.currentTimeMillis();
+        service.evictExpired(now);
+        assertThat(service.getUserSession(session.getSessionId())).isNotNull();
+
+        service.evictExpired(System.currentTimeMillis() + IDLE);
+        assertThat(service.getUserSession(session.getSessionId())).isNull();
+        assertThat(service.registryGauges().userSessions()).isZero();
+    }
+
+    //una partita terminata e le sue sessioni giocatore vengono rimosse solo dopo il periodo di grazia
+    @Test
+    public void finishedGameIsEvictedAfterGracePeriod() throws Exception {
+        var alice = service.login("alice", "pw");
+        var bob = service.login("bob", "pw");
+        alice.createNewGame("g1");
+        assertThat(service.registryGauges().waitingGames()).isEqualTo(1);
+        var x = alice.joinGame("g1", TTTSymbol.X, NoOpPlayerSessionEventObserver.INSTANCE);
+        var o = bob.joinGame("g1", TTTSymbol.O, NoOpPlayerSessionEventObserver.INSTANCE);
+        assertThat(service.registryGauges().startedGames()).isEqualTo(1);
+        assertThat(service.registryGauges().waitingGames()).isZero();
+        x.makeMove(0, 0);
+        o.makeMove(0, 1);
+        x.makeMove(1, 0);
+        o.makeMove(1, 1);
+        x.makeMove(2, 0); //vince "croce"
+        long ended = System.currentTimeMillis();
+        assertThat(service.registryGauges().games()).isEqualTo(1);
+        assertThat(service.registryGauges().finishedGames()).isEqualTo(1);
+
+        service.evictExpired(ended);
+        assertThat(service.getPlayerSession(x.getId())).isNotNull();
+
+        service.evictExpired(ended + GRACE);
+        assertThat(service.getPlayerSession(x.getId())).isNull();
+        assertThat(service.getPlayerSession(o.getId())).isNull();
+        assertThat(service.registryGauges().games()).isZero();
+        assertThat(service.registryGauges().finishedGames()).isZero();
+        assertThat(service.registryGauges().playerSessions()).isZero();
+    }
+
+    //a fine partita le sessioni dei due giocatori ricevono lo stesso esito (l'evento viene codificato una volta sola)
+    @Test
+    public void playersShareTheGameOutcome() throws Exception {
+        var outcomes = new ArrayList<GameOutcome>();
+        var collector = new PlayerSessionEventObserver() {
+            public void gameStarted(String playerSessionId) {}
+            public void newMove(String playerSessionId, String symbol, int x, int y) {}
+            public void gameEnded(String playerSessionId, Optional<String> winner) {}
+            public void gameEnded(String playerSessionId, GameOutcome outcome) {
+                outcomes.add(outcome);
+            }
+            public void enableEventNotification(String playerSessionId) {}
+        };
+        var alice = service.login("alice", "pw");
+        var bob = service.login("bob", "pw");
+        alice.createNewGame("g1");
+        var x = alice.joinGame("g1", TTTSymbol.X, collector);
+        var o = bob.joinGame("g1", TTTSymbol.O, collector);
+        x.makeMove(0, 0);
+        o.makeMove(0, 1);
+        x.makeMove(1, 0);
+        o.makeMove(1, 1);
+        x.makeMove(2, 0); //vince "croce"
+        assertThat(outcomes).hasSize(2);
+        assertThat(outcomes.get(0)).isSameAs(outcomes.get(1));
+        assertThat(outcomes.get(0).winner()).contains("alice");
+        assertThat(outcomes.get(0).encoded(String.class, w -> "frame")).isSameAs(outcomes.get(1).encoded(String.class, w -> "other"));
+    }
+}
@@ -0,0 +1,57 @@
+package ttt_game_service_tests;
+
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import ttt_game_service.application.ConcurrentLongMap;
+import ttt_game_service.application.SessionIds;
+import static org.assertj.core.api.Assertions.*;
+
+//test degli id numerici delle sessioni e della mappa a chiavi long usata dai registri
+public class SessionRegistryTests {
+
+    //il token contiene tipo e id; i token non validi o di un altro tipo restituiscono -1
+    @Test
+    public void tokensRoundTrip() {
+        for (long id: new long[] {1, 35, 36, 1_000_000, 4_000_000_000L}) {
+            var token = SessionIds.token(SessionIds.PLAYER, id);
+            assertThat(SessionIds.parse(token, 0, SessionIds.PLAYER)).isEqualTo(id);
+            assertThat(SessionIds.parse("n1:" + token, 3, SessionIds.PLAYER)).isEqualTo(id);
+            assertThat(SessionIds.parse(token, 0, SessionIds.USER)).isEqualTo(-1);
+        }
+        assertThat(SessionIds.token(SessionIds.USER, 1_000_000)).isEqualTo("ulfls");
+        assertThat(SessionIds.parse("u", 0, SessionIds.USER)).isEqualTo(-1);
+        assertThat(SessionIds.parse("uA1", 0, SessionIds.USER)).isEqualTo(-1);
+        assertThat(SessionIds.parse("user-session-1", 0, SessionIds.USER)).isEqualTo(-1);
+        assertThat(SessionIds.parse("u1234567890abc", 0, SessionIds.USER)).isEqualTo(-1); //troppe cifre
+    }
+
+    //inserimenti, sostituzioni e rimozioni casuali (con crescita dei segmenti) restano coerenti con una HashMap
+    @Test
+    public void longMapMatchesHashMap() {
+        var map = new ConcurrentLongMap<String>();
+        var expected = new HashMap<Long, String>();
+        var random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                var value = "v" + i;
+                assertThat(map.put(key, value)).isEqualTo(expected.put(key, value));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 20_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        int removed = map.removeIf(v -> v.endsWith("7"));
+        int expectedRemoved = expected.size();
+        expected.values().removeIf(v -> v.endsWith("7"));
+        assertThat(removed).isEqualTo(expectedRemoved - expected.size());
+        for (long key = 1; key <= 20_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        assertThatThrownBy(() -> map.put(0, "x")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
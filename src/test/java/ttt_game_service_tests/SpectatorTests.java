@@ -0,0 +1,46 @@
+package ttt_game_service_tests;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+import ttt_game_service.domain.Game;
+import ttt_game_service.domain.GameEvent;
+import ttt_game_service.domain.GameObserver;
+import ttt_game_service.domain.GameStarted;
+import ttt_game_service.domain.NewMove;
+import ttt_game_service.domain.PlayerJoined;
+import ttt_game_service.domain.TTTSymbol;
+import ttt_game_service.domain.UserId;
+import static org.assertj.core.api.Assertions.*;
+
+//test degli spettatori di una partita
+public class SpectatorTests {
+
+    private static final UserId ALICE = new UserId("alice");
+    private static final UserId BOB = new UserId("bob");
+
+    //uno spettatore che arriva a partita in corso riceve lo stato attuale e poi gli eventi successivi, finché non viene rimosso
+    @Test
+    public void lateSpectatorCatchesUp() throws Exception {
+        var game = new Game("g1");
+        game.joinGame(ALICE, TTTSymbol.X);
+        game.joinGame(BOB, TTTSymbol.O);
+        game.startGame();
+        game.makeAmove(ALICE, 2, 1);
+
+        var events = new ArrayList<GameEvent>();
+        GameObserver spectator = events::add;
+        game.addSpectator(spectator);
+        assertThat(events).containsExactly(
+            new PlayerJoined("g1", "alice", "X"),
+            new PlayerJoined("g1", "bob", "O"),
+            new GameStarted("g1"),
+            new NewMove("g1", "X", 2, 1));
+
+        game.makeAmove(BOB, 0, 0);
+        assertThat(events).last().isEqualTo(new NewMove("g1", "O", 0, 0));
+
+        game.removeSpectator(spectator);
+        game.makeAmove(ALICE, 1, 1);
+        assertThat(events).hasSize(5);
+    }
+}
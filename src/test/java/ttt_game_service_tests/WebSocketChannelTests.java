@@ -0,0 +1,137 @@
+package ttt_game_service_tests;
+
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketClient;
+import io.vertx.core.json.JsonObject;
+import ttt_game_service.application.GameServiceImpl;
+import ttt_game_service.application.Pbkdf2CredentialVerifier;
+import ttt_game_service.domain.Game;
+import ttt_game_service.infrastructure.GameShards;
+import ttt_game_service.infrastructure.InMemoryAccountRepository;
+import ttt_game_service.infrastructure.InMemoryGameRepository;
+import ttt_game_service.infrastructure.LocalEventDelivery;
+import ttt_game_service.infrastructure.MalformedRequestException;
+import ttt_game_service.infrastructure.SpectatorRelays;
+import ttt_game_service.infrastructure.VertxGameServiceController;
+import ttt_game_service.infrastructure.WebSocketCommand;
+import static org.assertj.core.api.Assertions.*;
+
+//test dei comandi ricevuti sul websocket e del canale che li esegue
+public class WebSocketChannelTests {
+
+    private Vertx vertx;
+    private GameServiceImpl service;
+    private LocalEventDelivery localDelivery;
+    private WebSocketClient client; //riferito dal test: vertx chiude i client raccolti dal garbage collector
+    private int port;
+    private volatile CountDownLatch lookupGate; //se presente, la lettura delle partite attende che venga aperto
+
+    @BeforeEach
+    public void setup() throws Exception {
+        service = new GameServiceImpl();
+        service.bindAccountRepository(new InMemoryAccountRepository());
+        service.bindGameRepository(new InMemoryGameRepository() { //adapter asincrono: la lettura viene completata da un altro thread
+            public CompletableFuture<Game> getGameAsync(String gameId) {
+                var gate = lookupGate;
+                if (gate == null) {
+                    return super.getGameAsync(gameId);
+                }
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        gate.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return getGame(gameId);
+                });
+            }
+        });
+        service.bindCredentialVerifier(new Pbkdf2CredentialVerifier(1_000)); //poche iterazioni: il test non misura il costo dell'hash
+        service.registerUser("alice", "pw");
+        try (var probe = new ServerSocket(0)) { //porta libera
+            port = probe.getLocalPort();
+        }
+        vertx = Vertx.vertx();
+        localDelivery = new LocalEventDelivery();
+        var shards = GameShards.deploy(vertx, 1).await(); //le partite su un event loop diverso da quello dei websocket
+        vertx.deployVerticle(new VertxGameServiceController(service, port, shards, localDelivery, new SpectatorRelays(service))).await();
+        client = vertx.createWebSocketClient();
+    }
+
+    @AfterEach
+    public void teardown() {
+        vertx.close().await();
+    }
+
+    //i campi del comando vengono letti per nome; le coordinate assenti restano distinguibili da quelle non valide
+    @Test
+    public void commandsAreDecoded() throws Exception {
+        var move = WebSocketCommand.decode(Buffer.buffer("{\"cmd\":\"makeMove\",\"id\":7,\"x\":\"2\",\"y\":1,\"extra\":[{}]}"));
+        assertThat(move.type()).isEqualTo(WebSocketCommand.Type.MAKE_MOVE);
+        assertThat(move.id()).isEqualTo(7);
+        assertThat(move.x()).isEqualTo(2);
+        assertThat(move.hasCoordinates()).isTrue();
+        assertThat(WebSocketCommand.decode(Buffer.buffer("{\"cmd\":\"makeMove\",\"x\":-1}")).hasCoordinates()).isFalse();
+
+        var open = WebSocketCommand.decode(Buffer.buffer("{\"playerSessionId\":\"p1\",\"format\":\"binary\"}"));
+        assertThat(open.type()).isEqualTo(WebSocketCommand.Type.OPEN);
+        assertThat(open.playerSessionId()).isEqualTo("p1");
+        assertThat(WebSocketCommand.decode(Buffer.buffer("{\"cmd\":\"dance\"}")).type()).isEqualTo(WebSocketCommand.Type.UNKNOWN);
+
+        assertThatThrownBy(() -> WebSocketCommand.decode(Buffer.buffer("[1]"))).isInstanceOf(MalformedRequestException.class);
+        assertThatThrownBy(() -> WebSocketCommand.decode(Buffer.buffer("{\"id\":\"x\"}"))).isInstanceOf(MalformedRequestException.class);
+    }
+
+    //una mossa senza coordinate è una richiesta non valida (come sulla rotta rest), non una mossa non valida
+    @Test
+    public void moveWithoutCoordinatesIsBadRequest() throws Exception {
+        var acks = new LinkedBlockingQueue<JsonObject>();
+        var webSocket = connect(acks);
+        webSocket.writeTextMessage("{\"cmd\":\"makeMove\",\"id\":1,\"playerSessionId\":\"p1\",\"x\":0}");
+        var ack = acks.poll(5, TimeUnit.SECONDS);
+        assertThat(ack.getLong("ack")).isEqualTo(1);
+        assertThat(ack.getString("error")).isEqualTo("bad-request");
+
+        webSocket.writeTextMessage("{\"cmd\":\"makeMove\",\"id\":2,\"playerSessionId\":\"p1\",\"x\":0,\"y\":0}");
+        assertThat(acks.poll(5, TimeUnit.SECONDS).getString("error")).isEqualTo("unknown-session");
+    }
+
+    //un websocket chiuso mentre il join è in corso non resta registrato per la consegna degli eventi
+    @Test
+    public void closedWebSocketIsNotBoundAfterJoin() throws Exception {
+        var session = service.login("alice", "pw");
+        session.createNewGame("g1");
+        lookupGate = new CountDownLatch(1); //il join resta in attesa della lettura della partita
+        var webSocket = connect(new LinkedBlockingQueue<>());
+        webSocket.writeTextMessage("{\"cmd\":\"joinGame\",\"id\":1,\"sessionId\":\"" + session.getSessionId() + "\",\"gameId\":\"g1\",\"symbol\":\"X\"}");
+        Thread.sleep(100);
+        webSocket.close().await();
+        Thread.sleep(100); //il server riceve la chiusura prima che il join termini
+        lookupGate.countDown();
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.registryGauges().playerSessions() == 0 && System.currentTimeMillis() < deadline) { //attende il join
+            Thread.sleep(10);
+        }
+        assertThat(service.registryGauges().playerSessions()).isEqualTo(1);
+        Thread.sleep(100); //un bind successivo alla chiusura comparirebbe qui
+        assertThat(localDelivery.size()).isZero();
+    }
+
+    //apre un websocket verso il server; gli ack ricevuti vengono accodati
+    private WebSocket connect(LinkedBlockingQueue<JsonObject> acks) {
+        var webSocket = client.connect(port, "localhost", "/api/events").await();
+        webSocket.textMessageHandler(msg -> acks.add(new JsonObject(msg)));
+        return webSocket;
+    }
+}